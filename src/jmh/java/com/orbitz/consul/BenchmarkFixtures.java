@@ -0,0 +1,89 @@
+package com.orbitz.consul;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Base64;
+
+/**
+ * JSON payloads shaped like the responses of Consul, shared by the benchmarks.
+ */
+public final class BenchmarkFixtures {
+
+    private BenchmarkFixtures() {
+
+    }
+
+    /**
+     * A response of GET /v1/kv/{prefix}?recurse.
+     */
+    public static String valuesJson(String prefix, int count, int valueSize) {
+        StringBuilder json = new StringBuilder("[");
+        for (int i = 0; i < count; i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            appendValue(json, prefix + "key-" + i, i, valueSize);
+        }
+        return json.append(']').toString();
+    }
+
+    /**
+     * A single entry of a response of GET /v1/kv/{key}.
+     */
+    public static String valueJson(String key, int valueSize) {
+        return appendValue(new StringBuilder(), key, 1, valueSize).toString();
+    }
+
+    private static StringBuilder appendValue(StringBuilder json, String key, int index, int valueSize) {
+        return json.append("{\"CreateIndex\":").append(index)
+                .append(",\"ModifyIndex\":").append(index + 1)
+                .append(",\"LockIndex\":0")
+                .append(",\"Key\":\"").append(key).append('"')
+                .append(",\"Flags\":0")
+                .append(",\"Value\":\"").append(encodedPayload(valueSize)).append('"')
+                .append('}');
+    }
+
+    /**
+     * A response of GET /v1/health/service/{service}, with one node, one service and two checks per instance.
+     */
+    public static String serviceHealthJson(String service, int count) {
+        StringBuilder json = new StringBuilder("[");
+        for (int i = 0; i < count; i++) {
+            String node = "node-" + i;
+            String address = "10.0." + (i / 256 % 256) + "." + (i % 256);
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append("{\"Node\":{\"Node\":\"").append(node).append("\",\"Address\":\"").append(address)
+                    .append("\",\"Datacenter\":\"dc1\",\"TaggedAddresses\":{\"lan\":\"").append(address)
+                    .append("\",\"wan\":\"").append(address).append("\"},\"Meta\":{\"rack\":\"r").append(i % 8).append("\"}},")
+                    .append("\"Service\":{\"ID\":\"").append(service).append('-').append(i)
+                    .append("\",\"Service\":\"").append(service)
+                    .append("\",\"Tags\":[\"primary\",\"v1\"],\"Address\":\"").append(address)
+                    .append("\",\"Meta\":{\"version\":\"1.0\"},\"Port\":8080,\"EnableTagOverride\":false")
+                    .append(",\"CreateIndex\":").append(i + 10).append(",\"ModifyIndex\":").append(i + 10).append("},")
+                    .append("\"Checks\":[")
+                    .append("{\"Node\":\"").append(node).append("\",\"CheckID\":\"serfHealth\",\"Name\":\"Serf Health Status\"")
+                    .append(",\"Status\":\"passing\",\"Notes\":\"\",\"Output\":\"Agent alive and reachable\"")
+                    .append(",\"ServiceID\":\"\",\"ServiceName\":\"\",\"ServiceTags\":[],\"CreateIndex\":5,\"ModifyIndex\":5},")
+                    .append("{\"Node\":\"").append(node).append("\",\"CheckID\":\"service:").append(service).append('-').append(i)
+                    .append("\",\"Name\":\"Service check\",\"Status\":\"passing\",\"Notes\":\"\",\"Output\":\"HTTP GET: 200 OK\"")
+                    .append(",\"ServiceID\":\"").append(service).append('-').append(i)
+                    .append("\",\"ServiceName\":\"").append(service)
+                    .append("\",\"ServiceTags\":[\"primary\",\"v1\"],\"CreateIndex\":12,\"ModifyIndex\":12}")
+                    .append("]}");
+        }
+        return json.append(']').toString();
+    }
+
+    private static String encodedPayload(int size) {
+        byte[] payload = new byte[size];
+        Arrays.fill(payload, (byte) 'x');
+        return Base64.getEncoder().encodeToString(payload);
+    }
+
+    public static byte[] utf8(String json) {
+        return json.getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,75 @@
+package com.orbitz.consul;
+
+import com.orbitz.consul.model.ConsulResponse;
+import com.orbitz.consul.model.health.ServiceHealth;
+import com.orbitz.consul.model.kv.Value;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Round trips through the whole client stack (Retrofit, OkHttp, Jackson) against a {@link MockConsulServer}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ClientBenchmark {
+
+    @Param({"10", "1000"})
+    public int entries;
+
+    private MockConsulServer server;
+    private Consul consul;
+    private KeyValueClient keyValueClient;
+    private HealthClient healthClient;
+
+    @Setup
+    public void setUp() throws IOException {
+        server = new MockConsulServer(entries, 256);
+        server.start();
+        consul = Consul.builder()
+                .withHostAndPort(server.getHostAndPort())
+                .withPing(false)
+                .build();
+        keyValueClient = consul.keyValueClient();
+        healthClient = consul.healthClient();
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        consul.destroy();
+        server.close();
+    }
+
+    @Benchmark
+    public Optional<Value> getValue() {
+        return keyValueClient.getValue(MockConsulServer.KV_PREFIX + "key-0");
+    }
+
+    @Benchmark
+    public List<Value> getValues() {
+        return keyValueClient.getValues(MockConsulServer.KV_PREFIX);
+    }
+
+    @Benchmark
+    public ConsulResponse<List<ServiceHealth>> getHealthyServiceInstances() {
+        return healthClient.getHealthyServiceInstances(MockConsulServer.SERVICE);
+    }
+}
@@ -0,0 +1,76 @@
+package com.orbitz.consul;
+
+import com.google.common.net.HostAndPort;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+
+import java.io.IOException;
+
+/**
+ * An in-process HTTP server answering the KV and health endpoints with canned payloads,
+ * so that the benchmarks exercise the whole client stack without a Consul agent.
+ */
+public class MockConsulServer implements AutoCloseable {
+
+    public static final String SERVICE = "bench";
+    public static final String KV_PREFIX = "bench/";
+
+    private final MockWebServer server = new MockWebServer();
+    private final String values;
+    private final String value;
+    private final String serviceHealth;
+
+    /**
+     * @param entries the number of KV entries under {@link #KV_PREFIX} and of instances of {@link #SERVICE}
+     * @param valueSize the size of each KV value
+     */
+    public MockConsulServer(int entries, int valueSize) {
+        this.values = BenchmarkFixtures.valuesJson(KV_PREFIX, entries, valueSize);
+        this.value = "[" + BenchmarkFixtures.valueJson(KV_PREFIX + "key-0", valueSize) + "]";
+        this.serviceHealth = BenchmarkFixtures.serviceHealthJson(SERVICE, entries);
+        server.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                return answer(request);
+            }
+        });
+    }
+
+    private MockResponse answer(RecordedRequest request) {
+        String path = request.getRequestUrl().encodedPath();
+        if (path.equals("/v1/kv/" + KV_PREFIX) && request.getRequestUrl().queryParameter("recurse") != null) {
+            return json(values);
+        } else if (path.startsWith("/v1/kv/" + KV_PREFIX)) {
+            return json(value);
+        } else if (path.equals("/v1/health/service/" + SERVICE)) {
+            return json(serviceHealth);
+        } else if (path.equals("/v1/status/leader")) {
+            return json("\"127.0.0.1:8300\"");
+        }
+        return new MockResponse().setResponseCode(404);
+    }
+
+    private static MockResponse json(String body) {
+        return new MockResponse()
+                .setHeader("Content-Type", "application/json")
+                .setHeader("X-Consul-Index", "1234")
+                .setHeader("X-Consul-Knownleader", "true")
+                .setHeader("X-Consul-Lastcontact", "0")
+                .setBody(body);
+    }
+
+    public void start() throws IOException {
+        server.start();
+    }
+
+    public HostAndPort getHostAndPort() {
+        return HostAndPort.fromParts(server.getHostName(), server.getPort());
+    }
+
+    @Override
+    public void close() throws IOException {
+        server.shutdown();
+    }
+}
@@ -0,0 +1,77 @@
+package com.orbitz.consul.cache;
+
+import com.google.common.collect.ImmutableMap;
+import com.orbitz.consul.config.CacheConfig;
+import com.orbitz.consul.model.ConsulResponse;
+import com.orbitz.consul.model.kv.ImmutableValue;
+import com.orbitz.consul.model.kv.Value;
+import com.orbitz.consul.monitoring.ClientEventCallback;
+import com.orbitz.consul.monitoring.ClientEventHandler;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Conversion of a response to the map of a cache, done on every change of the watched values.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ConsulCacheBenchmark {
+
+    @Param({"100", "10000", "100000"})
+    public int entries;
+
+    private CacheScheduler cacheScheduler;
+    private ConsulCache<String, Value> cache;
+    private ConsulResponse<List<Value>> response;
+
+    @Setup
+    public void setUp() {
+        List<Value> values = new ArrayList<>(entries);
+        for (int i = 0; i < entries; i++) {
+            values.add(ImmutableValue.builder()
+                    .createIndex(i)
+                    .modifyIndex(i)
+                    .lockIndex(0)
+                    .key("bench/key-" + i)
+                    .flags(0)
+                    .build());
+        }
+        response = new ConsulResponse<>(values, 0, true, BigInteger.ONE, null, null);
+        cacheScheduler = new CacheScheduler(1);
+        cache = new ConsulCache<>(KVCache.getKeyExtractorFunction("bench/"),
+                (index, callback) -> { },
+                CacheConfig.builder().build(),
+                new ClientEventHandler("benchmark", new ClientEventCallback() { }),
+                new CacheDescriptor("benchmark"),
+                cacheScheduler.newScheduler());
+    }
+
+    @TearDown
+    public void tearDown() {
+        cacheScheduler.close();
+    }
+
+    @Benchmark
+    public ImmutableMap<String, Value> convertToMap() {
+        return cache.convertToMap(response);
+    }
+}
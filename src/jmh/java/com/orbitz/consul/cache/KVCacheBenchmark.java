@@ -0,0 +1,56 @@
+package com.orbitz.consul.cache;
+
+import com.orbitz.consul.model.kv.ImmutableValue;
+import com.orbitz.consul.model.kv.Value;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Extraction of the cache key of every KV entry.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class KVCacheBenchmark {
+
+    private Function<Value, String> keyExtractor;
+    private Function<Value, String> rootKeyExtractor;
+    private Value value;
+
+    @Setup
+    public void setUp() {
+        keyExtractor = KVCache.getKeyExtractorFunction("config/service/");
+        rootKeyExtractor = KVCache.getKeyExtractorFunction("");
+        value = ImmutableValue.builder()
+                .createIndex(1)
+                .modifyIndex(1)
+                .lockIndex(0)
+                .key("config/service/database/connection-pool/max-size")
+                .flags(0)
+                .build();
+    }
+
+    @Benchmark
+    public String extractKey() {
+        return keyExtractor.apply(value);
+    }
+
+    @Benchmark
+    public String extractKeyFromRoot() {
+        return rootKeyExtractor.apply(value);
+    }
+}
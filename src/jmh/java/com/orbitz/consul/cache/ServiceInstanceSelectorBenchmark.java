@@ -0,0 +1,63 @@
+package com.orbitz.consul.cache;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.google.common.collect.ImmutableMap;
+import com.orbitz.consul.BenchmarkFixtures;
+import com.orbitz.consul.model.health.ServiceHealth;
+import com.orbitz.consul.util.Jackson;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Selection of an instance by each strategy, run with {@code -prof gc} to check that it does not allocate.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+public class ServiceInstanceSelectorBenchmark {
+
+    @Param({"10", "100"})
+    private int instances;
+
+    @Param({"ROUND_ROBIN", "WEIGHTED_RANDOM", "POWER_OF_TWO_CHOICES", "LEAST_OUTSTANDING"})
+    private ServiceInstanceSelector.Strategy strategy;
+
+    private ServiceInstanceSelector selector;
+
+    @Setup
+    public void setUp() throws IOException {
+        List<ServiceHealth> health = Jackson.MAPPER.readValue(
+                BenchmarkFixtures.serviceHealthJson("bench", instances), new TypeReference<List<ServiceHealth>>() {});
+        ImmutableMap.Builder<ServiceHealthKey, ServiceHealth> map = ImmutableMap.builder();
+        for (ServiceHealth instance : health) {
+            map.put(ServiceHealthKey.fromServiceHealth(instance), instance);
+        }
+        selector = new ServiceInstanceSelector(strategy);
+        selector.notify(map.build());
+    }
+
+    @Benchmark
+    public ServiceInstanceSelector.Instance selectAndRelease() {
+        ServiceInstanceSelector.Instance instance = selector.select();
+        instance.release();
+        return instance;
+    }
+}
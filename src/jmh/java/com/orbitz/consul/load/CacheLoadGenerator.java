@@ -0,0 +1,185 @@
+package com.orbitz.consul.load;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import com.orbitz.consul.Consul;
+import com.orbitz.consul.KeyValueClient;
+import com.orbitz.consul.cache.CacheDelta;
+import com.orbitz.consul.cache.KVCache;
+import com.orbitz.consul.fake.FakeConsulServer;
+import com.orbitz.consul.model.kv.Value;
+import com.orbitz.consul.monitoring.EndpointMetricsSnapshot;
+import com.orbitz.consul.monitoring.LatencyHistogram;
+
+import org.slf4j.LoggerFactory;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Soak test of the caches: starts a {@link FakeConsulServer}, watches thousands of KV prefixes with as many
+ * {@link KVCache}s, writes random keys at a fixed rate and reports the throughput of the notifications, the
+ * latency from a write to its notification, the latency of the requests and the allocation rate.
+ * <p>
+ * Run with the benchmarks profile, e.g.
+ * <pre>
+ * mvn -Pbenchmarks test-compile exec:exec -Dbenchmark.main=com.orbitz.consul.load.CacheLoadGenerator \
+ *     -Djmh.args="--caches 5000 --keys 10 --writes 1000 --duration 60"
+ * </pre>
+ */
+public class CacheLoadGenerator {
+
+    private static final String PREFIX = "load/";
+
+    private int caches = 1000;
+    private int keys = 10;
+    private int writesPerSecond = 500;
+    private int durationSeconds = 30;
+    private int watchSeconds = 10;
+    private int reportSeconds = 5;
+
+    private final LongAdder notifications = new LongAdder();
+    private final LatencyHistogram propagation = new LatencyHistogram();
+
+    public static void main(String[] args) throws Exception {
+        // the caches log every update at debug level, which would be measured too
+        ((Logger) LoggerFactory.getLogger(Logger.ROOT_LOGGER_NAME)).setLevel(Level.INFO);
+
+        CacheLoadGenerator generator = new CacheLoadGenerator();
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            int value = Integer.parseInt(args[i + 1]);
+            switch (args[i]) {
+                case "--caches":
+                    generator.caches = value;
+                    break;
+                case "--keys":
+                    generator.keys = value;
+                    break;
+                case "--writes":
+                    generator.writesPerSecond = value;
+                    break;
+                case "--duration":
+                    generator.durationSeconds = value;
+                    break;
+                case "--watch":
+                    generator.watchSeconds = value;
+                    break;
+                case "--report":
+                    generator.reportSeconds = value;
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option " + args[i]);
+            }
+        }
+        generator.run();
+        System.exit(0);
+    }
+
+    private void run() throws Exception {
+        try (FakeConsulServer server = new FakeConsulServer().start()) {
+            Consul consul = Consul.builder()
+                    .withHostAndPort(server.getHostAndPort())
+                    .withPing(false)
+                    .withReadTimeoutMillis(TimeUnit.SECONDS.toMillis(watchSeconds * 2L))
+                    .build();
+            KeyValueClient kv = consul.keyValueClient();
+
+            for (int cache = 0; cache < caches; cache++) {
+                for (int key = 0; key < keys; key++) {
+                    kv.putValue(key(cache, key), Long.toString(System.nanoTime()));
+                }
+            }
+
+            List<KVCache> kvCaches = new ArrayList<>(caches);
+            for (int cache = 0; cache < caches; cache++) {
+                KVCache kvCache = KVCache.newCache(kv, PREFIX + cache + "/", watchSeconds);
+                kvCache.addDeltaListener(this::onDelta);
+                kvCache.start();
+                kvCaches.add(kvCache);
+            }
+            for (KVCache kvCache : kvCaches) {
+                kvCache.awaitInitialized(1, TimeUnit.MINUTES);
+            }
+            System.out.printf("%d caches of %d keys initialized, %d blocking queries%n",
+                    caches, keys, server.getBlockedQueries());
+            notifications.reset();
+            consul.metrics().reset();
+
+            long start = System.nanoTime();
+            long end = start + TimeUnit.SECONDS.toNanos(durationSeconds);
+            long nextReport = start + TimeUnit.SECONDS.toNanos(reportSeconds);
+            long intervalNanos = TimeUnit.SECONDS.toNanos(1) / Math.max(1, writesPerSecond);
+            long writes = 0;
+            long allocatedBefore = allocatedBytes();
+            long requestsBefore = server.getRequestCount();
+            long reportStart = start;
+
+            for (long next = start; next < end; next += intervalNanos) {
+                long sleep = next - System.nanoTime();
+                if (sleep > 0) {
+                    TimeUnit.NANOSECONDS.sleep(sleep);
+                }
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                kv.putValue(key(random.nextInt(caches), random.nextInt(keys)), Long.toString(System.nanoTime()));
+                writes++;
+
+                long now = System.nanoTime();
+                if (now >= nextReport) {
+                    double seconds = (now - reportStart) / 1e9;
+                    long allocated = allocatedBytes();
+                    long requests = server.getRequestCount();
+                    System.out.printf("%6.1fs writes=%d notifications/s=%.0f requests/s=%.0f allocation=%.1fMB/s "
+                                    + "propagation=%s%n",
+                            (now - start) / 1e9, writes, notifications.sumThenReset() / seconds,
+                            (requests - requestsBefore) / seconds, (allocated - allocatedBefore) / seconds / 1e6,
+                            propagation.snapshot());
+                    allocatedBefore = allocated;
+                    requestsBefore = requests;
+                    reportStart = now;
+                    nextReport = now + TimeUnit.SECONDS.toNanos(reportSeconds);
+                }
+            }
+
+            TimeUnit.SECONDS.sleep(1);
+            System.out.printf("%nPropagation from write to notification: %s%n", propagation.snapshot());
+            for (EndpointMetricsSnapshot snapshot : consul.metrics().getSnapshots()) {
+                System.out.printf("%s %s %s%s: %d requests, %d errors, %s%n", snapshot.getClientName(),
+                        snapshot.getMethod(), snapshot.getEndpoint(), snapshot.isBlocking() ? " (blocking)" : "",
+                        snapshot.getRequests(), snapshot.getErrors(), snapshot.getLatency());
+            }
+
+            kvCaches.forEach(KVCache::stop);
+            consul.destroy();
+        }
+    }
+
+    private void onDelta(CacheDelta<String, Value> delta) {
+        long now = System.nanoTime();
+        notifications.increment();
+        // the keys are written before the caches start, so that the added ones are the initial values
+        for (Value value : delta.getModified().values()) {
+            value.getValueAsString().ifPresent(written -> propagation.record(now - Long.parseLong(written)));
+        }
+    }
+
+    private static String key(int cache, int key) {
+        return PREFIX + cache + "/" + key;
+    }
+
+    /**
+     * Gets the bytes allocated by the live threads of the JVM, client and server alike.
+     */
+    private static long allocatedBytes() {
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long total = 0;
+        for (long allocated : threads.getThreadAllocatedBytes(threads.getAllThreadIds())) {
+            total += Math.max(0, allocated);
+        }
+        return total;
+    }
+}
@@ -0,0 +1,291 @@
+package com.orbitz.consul.load;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import com.google.common.io.BaseEncoding;
+import com.google.common.net.HostAndPort;
+import com.orbitz.consul.Consul;
+import com.orbitz.consul.KeyValueClient;
+import com.orbitz.consul.cache.CacheDelta;
+import com.orbitz.consul.cache.KVCache;
+import com.orbitz.consul.model.kv.Value;
+import com.orbitz.consul.monitoring.ConnectionMetrics;
+import com.orbitz.consul.monitoring.ConsulMetrics;
+import com.orbitz.consul.monitoring.LatencyHistogram;
+import okhttp3.HttpUrl;
+import okhttp3.Protocol;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+import org.slf4j.LoggerFactory;
+
+import javax.net.ServerSocketFactory;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares HTTP/1.1 and HTTP/2 (h2c) under many blocking queries: starts a KV server, watches as many keys with
+ * {@link KVCache}s, writes random keys at a fixed rate, then sends plain reads while the blocking queries are
+ * pending. Reports the sockets open, the latency from a write to its notification and the latency of the reads.
+ * <p>
+ * The JDK server of the {@link com.orbitz.consul.fake.FakeConsulServer} only speaks HTTP/1.1, so both transports
+ * are measured against a {@link MockWebServer} serving the KV endpoint with the same blocking semantics.
+ * The connection pool keeps as many idle connections as there are watches, unless {@code --pool} is given, so that
+ * HTTP/1.1 does not reconnect between two blocking queries.
+ * Run with the benchmarks profile, e.g.
+ * <pre>
+ * mvn -Pbenchmarks test-compile exec:exec -Dbenchmark.main=com.orbitz.consul.load.TransportComparison \
+ *     -Djmh.args="--watches 2000 --writes 200 --duration 20 --reads 2000"
+ * </pre>
+ */
+public class TransportComparison {
+
+    private static final String PREFIX = "load/";
+
+    private int watches = 1000;
+    private int writesPerSecond = 200;
+    private int durationSeconds = 10;
+    private int reads = 1000;
+    private int watchSeconds = 10;
+    private int poolSize;
+
+    public static void main(String[] args) throws Exception {
+        // the caches log every update at debug level, which would be measured too
+        ((Logger) LoggerFactory.getLogger(Logger.ROOT_LOGGER_NAME)).setLevel(Level.INFO);
+
+        TransportComparison comparison = new TransportComparison();
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            int value = Integer.parseInt(args[i + 1]);
+            switch (args[i]) {
+                case "--watches":
+                    comparison.watches = value;
+                    break;
+                case "--writes":
+                    comparison.writesPerSecond = value;
+                    break;
+                case "--duration":
+                    comparison.durationSeconds = value;
+                    break;
+                case "--reads":
+                    comparison.reads = value;
+                    break;
+                case "--watch":
+                    comparison.watchSeconds = value;
+                    break;
+                case "--pool":
+                    comparison.poolSize = value;
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option " + args[i]);
+            }
+        }
+        comparison.run(Protocol.HTTP_1_1);
+        comparison.run(Protocol.H2_PRIOR_KNOWLEDGE);
+        System.exit(0);
+    }
+
+    private void run(Protocol protocol) throws Exception {
+        KvDispatcher dispatcher = new KvDispatcher(watches);
+        MockWebServer server = new MockWebServer();
+        server.setProtocols(Collections.singletonList(protocol));
+        server.setDispatcher(dispatcher);
+        // as Consul, answer without waiting for the delayed ACK of the client
+        server.setServerSocketFactory(new NoDelayServerSocketFactory());
+        server.start();
+
+        ConsulMetrics metrics = new ConsulMetrics();
+        Consul consul = Consul.builder()
+                .withHostAndPort(HostAndPort.fromParts(server.getHostName(), server.getPort()))
+                .withPing(false)
+                .withHttp2(protocol == Protocol.H2_PRIOR_KNOWLEDGE)
+                .withMetrics(metrics)
+                .withConnectionPoolSize(poolSize > 0 ? poolSize : watches, TimeUnit.MINUTES.toMillis(5))
+                .withReadTimeoutMillis(TimeUnit.SECONDS.toMillis(watchSeconds * 2L))
+                .build();
+        KeyValueClient kv = consul.keyValueClient();
+        LatencyHistogram propagation = new LatencyHistogram();
+
+        List<KVCache> caches = new ArrayList<>(watches);
+        for (int watch = 0; watch < watches; watch++) {
+            KVCache cache = KVCache.newCache(kv, PREFIX + watch, watchSeconds);
+            cache.addDeltaListener(delta -> onDelta(delta, propagation));
+            cache.start();
+            caches.add(cache);
+        }
+        for (KVCache cache : caches) {
+            cache.awaitInitialized(1, TimeUnit.MINUTES);
+        }
+
+        long intervalNanos = TimeUnit.SECONDS.toNanos(1) / Math.max(1, writesPerSecond);
+        long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(durationSeconds);
+        for (long next = System.nanoTime(); next < end; next += intervalNanos) {
+            long sleep = next - System.nanoTime();
+            if (sleep > 0) {
+                TimeUnit.NANOSECONDS.sleep(sleep);
+            }
+            dispatcher.write(ThreadLocalRandom.current().nextInt(watches), Long.toString(System.nanoTime()));
+        }
+        TimeUnit.SECONDS.sleep(1);
+
+        ConnectionMetrics connections = metrics.getConnectionMetrics();
+        int socketsWhileWatching = connections.getOpenConnections();
+        long inUse = connections.getInUse();
+        LatencyHistogram readLatency = new LatencyHistogram();
+        for (int read = 0; read < reads; read++) {
+            long start = System.nanoTime();
+            kv.getValue(PREFIX + (read % watches));
+            readLatency.record(System.nanoTime() - start);
+        }
+
+        System.out.printf("%s: %d blocking queries over %d sockets (%d opened, %d over HTTP/2)%n",
+                protocol, inUse, socketsWhileWatching, connections.getOpened(), connections.getOpenedHttp2());
+        System.out.printf("  propagation from write to notification: %s%n", propagation.snapshot());
+        System.out.printf("  reads while watching: %s%n%n", readLatency.snapshot());
+
+        caches.forEach(KVCache::stop);
+        consul.destroy();
+        dispatcher.shutdown();
+        server.shutdown();
+    }
+
+    private static void onDelta(CacheDelta<String, Value> delta, LatencyHistogram propagation) {
+        long now = System.nanoTime();
+        for (Value value : delta.getModified().values()) {
+            value.getValueAsString().ifPresent(written -> propagation.record(now - Long.parseLong(written)));
+        }
+    }
+
+    /**
+     * Serves {@code GET /v1/kv/load/<n>}, blocking until the key changes when the request has an index.
+     */
+    private static final class KvDispatcher extends Dispatcher {
+
+        private final Entry[] entries;
+        private volatile boolean running = true;
+
+        KvDispatcher(int keys) {
+            entries = new Entry[keys];
+            for (int key = 0; key < keys; key++) {
+                entries[key] = new Entry(PREFIX + key);
+            }
+        }
+
+        void write(int key, String value) {
+            Entry entry = entries[key];
+            synchronized (entry) {
+                entry.value = value;
+                entry.modifyIndex++;
+                entry.notifyAll();
+            }
+        }
+
+        @Override
+        public void shutdown() {
+            running = false;
+            for (Entry entry : entries) {
+                synchronized (entry) {
+                    entry.notifyAll();
+                }
+            }
+        }
+
+        @Override
+        public MockResponse dispatch(RecordedRequest request) throws InterruptedException {
+            HttpUrl url = request.getRequestUrl();
+            // the key is a single path segment, its slashes being encoded
+            List<String> segments = url.pathSegments();
+            String key = String.join("/", segments.subList(Math.min(2, segments.size()), segments.size()));
+            if (!url.encodedPath().startsWith("/v1/kv/") || !key.startsWith(PREFIX)) {
+                return new MockResponse().setResponseCode(404);
+            }
+            Entry entry = entries[Integer.parseInt(key.substring(PREFIX.length()))];
+            String index = url.queryParameter("index");
+            long waitMillis = parseWaitMillis(url.queryParameter("wait"));
+            long modifyIndex;
+            String value;
+            synchronized (entry) {
+                if (index != null) {
+                    long minIndex = Long.parseLong(index);
+                    long deadline = System.currentTimeMillis() + waitMillis;
+                    long remaining = waitMillis;
+                    while (running && entry.modifyIndex <= minIndex && remaining > 0) {
+                        entry.wait(remaining);
+                        remaining = deadline - System.currentTimeMillis();
+                    }
+                }
+                modifyIndex = entry.modifyIndex;
+                value = entry.value;
+            }
+            String body = "[{\"Key\":\"" + entry.key + "\",\"CreateIndex\":1,\"ModifyIndex\":" + modifyIndex
+                    + ",\"LockIndex\":0,\"Flags\":0,\"Value\":\""
+                    + BaseEncoding.base64().encode(value.getBytes(StandardCharsets.UTF_8)) + "\"}]";
+            return new MockResponse()
+                    .addHeader("Content-Type", "application/json")
+                    .addHeader("X-Consul-Index", modifyIndex)
+                    .addHeader("X-Consul-Knownleader", "true")
+                    .addHeader("X-Consul-Lastcontact", "0")
+                    .setBody(body);
+        }
+
+        private static long parseWaitMillis(String wait) {
+            if (wait == null) {
+                return TimeUnit.MINUTES.toMillis(5);
+            }
+            if (wait.endsWith("ms")) {
+                return Long.parseLong(wait.substring(0, wait.length() - 2));
+            }
+            long amount = Long.parseLong(wait.substring(0, wait.length() - 1));
+            return wait.endsWith("m") ? TimeUnit.MINUTES.toMillis(amount) : TimeUnit.SECONDS.toMillis(amount);
+        }
+
+        private static final class Entry {
+
+            private final String key;
+            private String value = "0";
+            private long modifyIndex = 1;
+
+            Entry(String key) {
+                this.key = key;
+            }
+        }
+    }
+
+    private static final class NoDelayServerSocketFactory extends ServerSocketFactory {
+
+        @Override
+        public ServerSocket createServerSocket() throws IOException {
+            return new ServerSocket() {
+                @Override
+                public Socket accept() throws IOException {
+                    Socket socket = super.accept();
+                    socket.setTcpNoDelay(true);
+                    return socket;
+                }
+            };
+        }
+
+        @Override
+        public ServerSocket createServerSocket(int port) throws IOException {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public ServerSocket createServerSocket(int port, int backlog) throws IOException {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public ServerSocket createServerSocket(int port, int backlog, InetAddress address) throws IOException {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
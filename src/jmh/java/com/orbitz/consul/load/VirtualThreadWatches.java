@@ -0,0 +1,184 @@
+package com.orbitz.consul.load;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.orbitz.consul.Consul;
+import com.orbitz.consul.KeyValueClient;
+import com.orbitz.consul.cache.KVCache;
+import com.orbitz.consul.fake.FakeConsulServer;
+import com.orbitz.consul.util.VirtualThreads;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryUsage;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Measures the threads and the memory used by the client to hold thousands of concurrent blocking queries, each
+ * watched by a {@link KVCache}, with platform threads or with virtual threads
+ * ({@link Consul.Builder#withVirtualThreads(boolean)}, Java 21 and later).
+ * <p>
+ * Reports the platform threads of the client, excluding the threads of the {@link FakeConsulServer}, the heap used
+ * after a GC and the resident memory of the process, once all the watches are pending and after writing random keys
+ * for a while. On Java 21, the server runs on virtual threads whatever the mode, so that the difference between two
+ * runs is the client's. Every watch holds a socket on each side: the limit of open files may need to be raised.
+ * Run with the benchmarks profile, once per mode, e.g.
+ * <pre>
+ * mvn -Pbenchmarks test-compile exec:exec -Dbenchmark.main=com.orbitz.consul.load.VirtualThreadWatches \
+ *     -Djmh.args="--watches 10000 --virtual 1 --duration 30"
+ * </pre>
+ */
+public class VirtualThreadWatches {
+
+    private static final String PREFIX = "watch/";
+    private static final String SERVER_THREADS = "fake-consul-";
+
+    private int watches = 10_000;
+    private boolean virtual = true;
+    private int writesPerSecond = 200;
+    private int durationSeconds = 20;
+    private int watchSeconds = 30;
+
+    private final LongAdder notifications = new LongAdder();
+
+    public static void main(String[] args) throws Exception {
+        // the caches log every update at debug level, which would be measured too
+        ((Logger) LoggerFactory.getLogger(Logger.ROOT_LOGGER_NAME)).setLevel(Level.INFO);
+
+        VirtualThreadWatches benchmark = new VirtualThreadWatches();
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            int value = Integer.parseInt(args[i + 1]);
+            switch (args[i]) {
+                case "--watches":
+                    benchmark.watches = value;
+                    break;
+                case "--virtual":
+                    benchmark.virtual = value != 0;
+                    break;
+                case "--writes":
+                    benchmark.writesPerSecond = value;
+                    break;
+                case "--duration":
+                    benchmark.durationSeconds = value;
+                    break;
+                case "--watch":
+                    benchmark.watchSeconds = value;
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option " + args[i]);
+            }
+        }
+        benchmark.run();
+        System.exit(0);
+    }
+
+    private void run() throws Exception {
+        System.out.printf("Java %s, %d watches on %s threads%n", System.getProperty("java.version"), watches,
+                virtual && VirtualThreads.isAvailable() ? "virtual" : "platform");
+        try (FakeConsulServer server = new FakeConsulServer().start(serverExecutor())) {
+            Consul consul = Consul.builder()
+                    .withHostAndPort(server.getHostAndPort())
+                    .withPing(false)
+                    .withVirtualThreads(virtual)
+                    .withReadTimeoutMillis(TimeUnit.SECONDS.toMillis(watchSeconds * 2L))
+                    .build();
+            KeyValueClient kv = consul.keyValueClient();
+            report("Before the watches", 0);
+
+            List<KVCache> kvCaches = new ArrayList<>(watches);
+            for (int watch = 0; watch < watches; watch++) {
+                kv.putValue(key(watch), "0");
+                KVCache kvCache = KVCache.newCache(kv, PREFIX + watch + "/", watchSeconds);
+                kvCache.addListener(values -> notifications.increment());
+                kvCache.start();
+                kvCaches.add(kvCache);
+            }
+            for (KVCache kvCache : kvCaches) {
+                kvCache.awaitInitialized(1, TimeUnit.MINUTES);
+            }
+            // the initial reads complete before the blocking queries are sent
+            long deadline = System.nanoTime() + TimeUnit.MINUTES.toNanos(1);
+            while (server.getBlockedQueries() < watches && System.nanoTime() < deadline) {
+                TimeUnit.MILLISECONDS.sleep(100);
+            }
+            report("Watches pending", server.getBlockedQueries());
+
+            notifications.reset();
+            int peakThreads = 0;
+            long start = System.nanoTime();
+            long end = start + TimeUnit.SECONDS.toNanos(durationSeconds);
+            long intervalNanos = TimeUnit.SECONDS.toNanos(1) / Math.max(1, writesPerSecond);
+            for (long next = start; next < end; next += intervalNanos) {
+                long sleep = next - System.nanoTime();
+                if (sleep > 0) {
+                    TimeUnit.NANOSECONDS.sleep(sleep);
+                }
+                kv.putValue(key(ThreadLocalRandom.current().nextInt(watches)), Long.toString(next));
+                peakThreads = Math.max(peakThreads, clientPlatformThreads());
+            }
+            report(String.format("After %ds of writes, %d notifications, at most %d platform threads",
+                    durationSeconds, notifications.sum(), peakThreads), server.getBlockedQueries());
+
+            kvCaches.forEach(KVCache::stop);
+            consul.destroy();
+        }
+    }
+
+    private static ExecutorService serverExecutor() {
+        return VirtualThreads.newThreadPerTaskExecutor(SERVER_THREADS)
+                .orElseGet(() -> Executors.newCachedThreadPool(new ThreadFactoryBuilder()
+                        .setNameFormat(SERVER_THREADS + "%d")
+                        .setDaemon(true)
+                        .build()));
+    }
+
+    private static void report(String stage, int pending) throws IOException {
+        System.gc();
+        MemoryUsage heap = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage();
+        System.out.printf("%s: %d blocking queries, %d client platform threads, heap after GC %.1fMB, RSS %s%n",
+                stage, pending, clientPlatformThreads(), heap.getUsed() / 1e6, residentMemory());
+    }
+
+    /**
+     * Counts the live platform threads, except the server's; virtual threads are not listed
+     */
+    private static int clientPlatformThreads() {
+        int threads = 0;
+        for (Thread thread : Thread.getAllStackTraces().keySet()) {
+            if (!thread.getName().startsWith(SERVER_THREADS)) {
+                threads++;
+            }
+        }
+        return threads;
+    }
+
+    /**
+     * Reads the resident memory of the process, client and server alike, on Linux
+     */
+    private static String residentMemory() throws IOException {
+        if (!Files.isReadable(Paths.get("/proc/self/status"))) {
+            return "unknown";
+        }
+        for (String line : Files.readAllLines(Paths.get("/proc/self/status"), StandardCharsets.UTF_8)) {
+            if (line.startsWith("VmRSS:")) {
+                return line.substring("VmRSS:".length()).trim();
+            }
+        }
+        return "unknown";
+    }
+
+    private static String key(int watch) {
+        return PREFIX + watch + "/value";
+    }
+}
@@ -0,0 +1,66 @@
+package com.orbitz.consul.model.kv;
+
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.orbitz.consul.BenchmarkFixtures;
+import com.orbitz.consul.util.Jackson;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Base64 decoding of the KV payloads, and the accessors of the decoded payload.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ValueBenchmark {
+
+    @Param({"64", "4096", "65536"})
+    public int valueSize;
+
+    private ObjectReader reader;
+    private byte[] json;
+    private Value value;
+
+    @Setup
+    public void setUp() throws IOException {
+        reader = Jackson.MAPPER.readerFor(Value.class);
+        json = BenchmarkFixtures.utf8(BenchmarkFixtures.valueJson("bench/key", valueSize));
+        value = reader.readValue(json);
+    }
+
+    @Benchmark
+    public Value deserialize() throws IOException {
+        return reader.readValue(json);
+    }
+
+    @Benchmark
+    public Optional<String> getValueAsString() {
+        return value.getValueAsString();
+    }
+
+    @Benchmark
+    public Optional<byte[]> getValueAsBytes() {
+        return value.getValueAsBytes();
+    }
+
+    @Benchmark
+    public Optional<String> getValue() {
+        return value.getValue();
+    }
+}
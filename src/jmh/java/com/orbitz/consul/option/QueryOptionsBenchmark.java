@@ -0,0 +1,68 @@
+package com.orbitz.consul.option;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigInteger;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Conversion of the options to query parameters and headers, done for every request.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class QueryOptionsBenchmark {
+
+    private QueryOptions blank;
+    private QueryOptions blocking;
+    private QueryOptions filtered;
+
+    @Setup
+    public void setUp() {
+        blank = QueryOptions.BLANK;
+        blocking = QueryOptions.blockSeconds(10, new BigInteger("123456789"))
+                .consistencyMode(ConsistencyMode.STALE)
+                .token("a-token")
+                .datacenter("dc1")
+                .build();
+        filtered = ImmutableQueryOptions.builder()
+                .near("_agent")
+                .filter("Service.Meta.version == \"1.0\"")
+                .addTag("primary", "v1")
+                .addNodeMeta("rack:r1")
+                .build();
+    }
+
+    @Benchmark
+    public Map<String, Object> blankToQuery() {
+        return blank.toQuery();
+    }
+
+    @Benchmark
+    public Map<String, Object> blockingToQuery() {
+        return blocking.toQuery();
+    }
+
+    @Benchmark
+    public Map<String, String> blockingToHeaders() {
+        return blocking.toHeaders();
+    }
+
+    @Benchmark
+    public Map<String, Object> filteredToQuery() {
+        return filtered.toQuery();
+    }
+}
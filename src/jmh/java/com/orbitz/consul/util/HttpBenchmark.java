@@ -0,0 +1,65 @@
+package com.orbitz.consul.util;
+
+import com.orbitz.consul.model.ConsulResponse;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import retrofit2.Response;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parsing of the Consul headers of every response.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HttpBenchmark {
+
+    private Response<String> response;
+    private Response<String> responseWithoutHeaders;
+
+    @Setup
+    public void setUp() {
+        Request request = new Request.Builder().url("http://localhost:8500/v1/kv/foo").build();
+        response = Response.success("body", new okhttp3.Response.Builder()
+                .request(request)
+                .protocol(Protocol.HTTP_1_1)
+                .code(200)
+                .message("OK")
+                .header("X-Consul-Index", "123456789")
+                .header("X-Consul-Lastcontact", "12")
+                .header("X-Consul-Knownleader", "true")
+                .header("X-Consul-Effective-Consistency", "leader")
+                .header("X-Consul-ContentHash", "9b53d4d3b2e8a9f0")
+                .header("X-Cache", "HIT")
+                .header("Age", "3")
+                .header("Content-Type", "application/json")
+                .header("Vary", "Accept-Encoding")
+                .build());
+        responseWithoutHeaders = Response.success("body");
+    }
+
+    @Benchmark
+    public ConsulResponse<String> consulResponse() {
+        return Http.consulResponse(response);
+    }
+
+    @Benchmark
+    public ConsulResponse<String> consulResponseWithoutHeaders() {
+        return Http.consulResponse(responseWithoutHeaders);
+    }
+}
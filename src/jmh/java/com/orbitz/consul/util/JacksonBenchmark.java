@@ -0,0 +1,60 @@
+package com.orbitz.consul.util;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.orbitz.consul.BenchmarkFixtures;
+import com.orbitz.consul.model.health.ServiceHealth;
+import com.orbitz.consul.model.kv.Value;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Deserialization of the largest responses: health of the instances of a service and KV trees.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JacksonBenchmark {
+
+    @Param({"10", "1000"})
+    public int entries;
+
+    private ObjectReader serviceHealthReader;
+    private ObjectReader valuesReader;
+    private byte[] serviceHealthJson;
+    private byte[] valuesJson;
+
+    @Setup
+    public void setUp() {
+        serviceHealthReader = Jackson.MAPPER.readerFor(new TypeReference<List<ServiceHealth>>() {});
+        valuesReader = Jackson.MAPPER.readerFor(new TypeReference<List<Value>>() {});
+        serviceHealthJson = BenchmarkFixtures.utf8(BenchmarkFixtures.serviceHealthJson("bench", entries));
+        valuesJson = BenchmarkFixtures.utf8(BenchmarkFixtures.valuesJson("bench/", entries, 256));
+    }
+
+    @Benchmark
+    public List<ServiceHealth> serviceHealth() throws IOException {
+        return serviceHealthReader.readValue(serviceHealthJson);
+    }
+
+    @Benchmark
+    public List<Value> values() throws IOException {
+        return valuesReader.readValue(valuesJson);
+    }
+}
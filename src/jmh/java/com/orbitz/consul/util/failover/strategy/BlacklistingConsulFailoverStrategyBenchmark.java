@@ -0,0 +1,64 @@
+package com.orbitz.consul.util.failover.strategy;
+
+import com.google.common.net.HostAndPort;
+import okhttp3.MediaType;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Computation of the target of every request sent through the failover interceptor.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BlacklistingConsulFailoverStrategyBenchmark {
+
+    private BlacklistingConsulFailoverStrategy strategy;
+    private Request request;
+    private Response failedResponse;
+
+    @Setup
+    public void setUp() {
+        strategy = new BlacklistingConsulFailoverStrategy(Arrays.asList(
+                HostAndPort.fromParts("10.0.0.1", 8500),
+                HostAndPort.fromParts("10.0.0.2", 8500),
+                HostAndPort.fromParts("10.0.0.3", 8500)), 60_000);
+        request = new Request.Builder().url("http://10.0.0.1:8500/v1/health/service/bench?passing=true&index=42").build();
+        failedResponse = new Response.Builder()
+                .request(request)
+                .protocol(Protocol.HTTP_1_1)
+                .code(503)
+                .message("Service Unavailable")
+                .body(ResponseBody.create(MediaType.parse("text/plain"), ""))
+                .build();
+    }
+
+    @Benchmark
+    public Optional<Request> firstAttempt() {
+        return strategy.computeNextStage(request, null);
+    }
+
+    @Benchmark
+    public Optional<Request> afterFailure() {
+        return strategy.computeNextStage(request, failedResponse);
+    }
+}
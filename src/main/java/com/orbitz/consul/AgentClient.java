@@ -2,6 +2,7 @@ package com.orbitz.consul;
 
 import com.google.common.net.HostAndPort;
 import com.orbitz.consul.async.ConsulResponseCallback;
+import com.orbitz.consul.cache.CacheScheduler;
 import com.orbitz.consul.config.ClientConfig;
 import com.orbitz.consul.model.ConsulResponse;
 import com.orbitz.consul.model.State;
@@ -21,13 +22,14 @@ import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * HTTP Client for /v1/agent/ endpoints.
  *
  * @see <a href="http://www.consul.io/docs/agent/http.html#agent">The Consul API Docs</a>
  */
-public class AgentClient extends BaseClient {
+public class AgentClient extends BaseCacheableClient {
 
     private static String CLIENT_NAME = "agent";
 
@@ -38,8 +40,9 @@ public class AgentClient extends BaseClient {
      *
      * @param retrofit The {@link Retrofit} to build a client from.
      */
-    AgentClient(Retrofit retrofit, ClientConfig config, ClientEventCallback eventCallback) {
-        super(CLIENT_NAME, config, eventCallback);
+    AgentClient(Retrofit retrofit, ClientConfig config, ClientEventCallback eventCallback,
+                Consul.NetworkTimeoutConfig networkTimeoutConfig, CacheScheduler cacheScheduler) {
+        super(CLIENT_NAME, config, eventCallback, networkTimeoutConfig, cacheScheduler);
         this.api = retrofit.create(Api.class);
     }
 
@@ -737,6 +740,191 @@ public class AgentClient extends BaseClient {
         http.handle(api.toggleMaintenanceMode(serviceId, queryOptions.toQuery()));
     }
 
+    /**
+     * Asynchronously pings the Consul Agent.
+     *
+     * @return A future completed once the agent answers, or exceptionally if it cannot be reached.
+     */
+    public CompletableFuture<ConsulResponse<Void>> pingAsync() {
+        return http.extractConsulResponseAsync(api.ping());
+    }
+
+    /**
+     * Asynchronously registers the client as a service with Consul.
+     *
+     * @param registration The registration payload.
+     * @param options An optional QueryOptions instance.
+     * @param queryParameterOptions The Query Parameter Options to use.
+     * @return A future completed once the registration is acknowledged.
+     */
+    public CompletableFuture<ConsulResponse<Void>> registerAsync(Registration registration, QueryOptions options,
+                                                                 QueryParameterOptions queryParameterOptions) {
+        return http.extractConsulResponseAsync(api.register(registration, options.toQuery(),
+                queryParameterOptions.toQueryParameters()));
+    }
+
+    /**
+     * Asynchronously deregisters a service with Consul.
+     *
+     * @param serviceId The service id.
+     * @param options An optional QueryOptions instance.
+     * @return A future completed once the deregistration is acknowledged.
+     */
+    public CompletableFuture<ConsulResponse<Void>> deregisterAsync(String serviceId, QueryOptions options) {
+        return http.extractConsulResponseAsync(api.deregister(serviceId, options.toQuery()));
+    }
+
+    /**
+     * Asynchronously registers a Health Check with the Agent.
+     *
+     * @param check The Check to register.
+     * @return A future completed once the registration is acknowledged.
+     */
+    public CompletableFuture<ConsulResponse<Void>> registerCheckAsync(Check check) {
+        return http.extractConsulResponseAsync(api.registerCheck(check));
+    }
+
+    /**
+     * Asynchronously de-registers a Health Check with the Agent.
+     *
+     * @param checkId the id of the Check to deregister
+     * @return A future completed once the deregistration is acknowledged.
+     */
+    public CompletableFuture<ConsulResponse<Void>> deregisterCheckAsync(String checkId) {
+        return http.extractConsulResponseAsync(api.deregisterCheck(checkId));
+    }
+
+    /**
+     * Asynchronously retrieves the Agent's configuration and member information.
+     * <p/>
+     * GET /v1/agent/self
+     *
+     * @return A future completed with the {@link com.orbitz.consul.model.agent.Agent}.
+     */
+    public CompletableFuture<ConsulResponse<Agent>> getAgentAsync() {
+        return http.extractConsulResponseAsync(api.getAgent());
+    }
+
+    /**
+     * Asynchronously retrieves all checks registered with the Agent.
+     * <p/>
+     * GET /v1/agent/checks
+     *
+     * @param queryOptions The Query Options to use.
+     * @return A future completed with a map of Check ID to Checks.
+     */
+    public CompletableFuture<ConsulResponse<Map<String, HealthCheck>>> getChecksAsync(QueryOptions queryOptions) {
+        return http.extractConsulResponseAsync(api.getChecks(queryOptions.toQuery()));
+    }
+
+    /**
+     * Asynchronously retrieves all services registered with the Agent.
+     * <p/>
+     * GET /v1/agent/services
+     *
+     * @param queryOptions The Query Options to use.
+     * @return A future completed with a map of Service ID to Services.
+     */
+    public CompletableFuture<ConsulResponse<Map<String, Service>>> getServicesAsync(QueryOptions queryOptions) {
+        return http.extractConsulResponseAsync(api.getServices(queryOptions.toQuery()));
+    }
+
+    /**
+     * Asynchronously retrieves all information about a service.
+     * <p/>
+     * GET /v1/agent/service/:service_id
+     * <p/>
+     * Unlike {@link #getService(String, QueryOptions)}, the future is completed exceptionally with the
+     * {@link ConsulException} returned by the agent, a 404 if the service is not registered.
+     *
+     * @param id           The service id.
+     * @param queryOptions The Query Options to use.
+     * @return A future completed with a {@link com.orbitz.consul.model.ConsulResponse} containing {@link FullService} object.
+     */
+    public CompletableFuture<ConsulResponse<FullService>> getServiceAsync(String id, QueryOptions queryOptions) {
+        return http.extractConsulResponseAsync(api.getService(id, queryOptions.toQuery()));
+    }
+
+    /**
+     * Asynchronously retrieves all members that the Agent can see in the gossip pool.
+     * <p/>
+     * GET /v1/agent/members
+     *
+     * @param queryOptions The Query Options to use.
+     * @return A future completed with a list of Members.
+     */
+    public CompletableFuture<ConsulResponse<List<Member>>> getMembersAsync(QueryOptions queryOptions) {
+        return http.extractConsulResponseAsync(api.getMembers(queryOptions.toQuery()));
+    }
+
+    /**
+     * Asynchronously checks in with Consul.
+     *
+     * @param checkId The Check ID to check in.
+     * @param state   The current state of the Check.
+     * @param note    Any note to associate with the Check.
+     * @return A future completed once the check in is acknowledged.
+     */
+    public CompletableFuture<ConsulResponse<Void>> checkAsync(String checkId, State state, String note) {
+        ImmutableQueryOptions queryOptions = ImmutableQueryOptions.builder().note(Optional.ofNullable(note)).build();
+        return http.extractConsulResponseAsync(api.check(state.getPath(), checkId, queryOptions.toQuery()));
+    }
+
+    /**
+     * Asynchronously instructs the agent to force a node into the "left" state.
+     * <p/>
+     * PUT /v1/agent/force-leave/{node}
+     *
+     * @param node Node name
+     * @param queryParameterOptions The Query Parameters Options to use.
+     * @return A future completed once the node is forced to leave.
+     */
+    public CompletableFuture<ConsulResponse<Void>> forceLeaveAsync(String node,
+                                                                   QueryParameterOptions queryParameterOptions) {
+        return http.extractConsulResponseAsync(api.forceLeave(node, queryParameterOptions.toQueryParameters()));
+    }
+
+    /**
+     * Asynchronously instructs the agent to join a node.
+     * <p/>
+     * PUT /v1/agent/join/{address}?{@code queryOptions}
+     * <p/>
+     * Unlike {@link #join(String, QueryOptions)}, a failed join completes the future exceptionally.
+     *
+     * @param address The address to join.
+     * @param queryOptions The Query Options to use.
+     * @return A future completed once the node is joined.
+     */
+    public CompletableFuture<ConsulResponse<Void>> joinAsync(String address, QueryOptions queryOptions) {
+        return http.extractConsulResponseAsync(api.join(address, queryOptions.toQuery()));
+    }
+
+    /**
+     * Asynchronously toggles maintenance mode for a service ID.
+     *
+     * @param serviceId The service ID.
+     * @param enable <code>true</code> if the service should be in
+     *               maintenance mode, otherwise <code>false</code>.
+     * @param reason The reason for maintenance mode.
+     * @return A future completed once the change is acknowledged.
+     */
+    public CompletableFuture<ConsulResponse<Void>> toggleMaintenanceModeAsync(String serviceId, boolean enable,
+                                                                              String reason) {
+        return toggleMaintenanceModeAsync(serviceId,
+                ImmutableQueryOptions.builder().enable(enable).reason(reason).build());
+    }
+
+    /**
+     * Asynchronously toggles maintenance mode for a service ID.
+     *
+     * @param serviceId The service ID.
+     * @param queryOptions The Query Options to use.
+     * @return A future completed once the change is acknowledged.
+     */
+    public CompletableFuture<ConsulResponse<Void>> toggleMaintenanceModeAsync(String serviceId, QueryOptions queryOptions) {
+        return http.extractConsulResponseAsync(api.toggleMaintenanceMode(serviceId, queryOptions.toQuery()));
+    }
+
     /**
      * Retrofit API interface.
      */
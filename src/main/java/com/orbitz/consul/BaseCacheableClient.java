@@ -1,5 +1,6 @@
 package com.orbitz.consul;
 
+import com.orbitz.consul.cache.CacheScheduler;
 import com.orbitz.consul.config.ClientConfig;
 import com.orbitz.consul.monitoring.ClientEventCallback;
 import com.orbitz.consul.monitoring.ClientEventHandler;
@@ -8,14 +9,29 @@ import com.orbitz.consul.util.Http;
 abstract class BaseCacheableClient extends BaseClient {
 
     private final Consul.NetworkTimeoutConfig networkTimeoutConfig;
+    private final CacheScheduler cacheScheduler;
 
     protected BaseCacheableClient(String name, ClientConfig config, ClientEventCallback eventCallback,
                                   Consul.NetworkTimeoutConfig networkTimeoutConfig) {
+        this(name, config, eventCallback, networkTimeoutConfig, null);
+    }
+
+    protected BaseCacheableClient(String name, ClientConfig config, ClientEventCallback eventCallback,
+                                  Consul.NetworkTimeoutConfig networkTimeoutConfig, CacheScheduler cacheScheduler) {
         super(name, config, eventCallback);
         this.networkTimeoutConfig = networkTimeoutConfig;
+        this.cacheScheduler = cacheScheduler;
     }
 
     public Consul.NetworkTimeoutConfig getNetworkTimeoutConfig() {
         return networkTimeoutConfig;
     }
+
+    /**
+     * Gets the scheduler shared by the caches created from this client, or null if each cache
+     * should use its own scheduler.
+     */
+    public CacheScheduler getCacheScheduler() {
+        return cacheScheduler;
+    }
 }
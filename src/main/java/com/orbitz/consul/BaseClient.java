@@ -2,6 +2,7 @@ package com.orbitz.consul;
 
 import com.orbitz.consul.config.ClientConfig;
 import com.orbitz.consul.monitoring.ClientEventCallback;
+import com.orbitz.consul.monitoring.ClientEventDispatcher;
 import com.orbitz.consul.monitoring.ClientEventHandler;
 import com.orbitz.consul.util.Http;
 
@@ -13,8 +14,9 @@ abstract class BaseClient {
 
     protected BaseClient(String name, ClientConfig config, ClientEventCallback eventCallback) {
         this.config = config;
-        this.eventHandler = new ClientEventHandler(name, eventCallback);
-        this.http = new Http(eventHandler);
+        this.eventHandler = new ClientEventHandler(name, eventCallback,
+                config.getClientEventDispatcher().orElseGet(ClientEventDispatcher::getDefault));
+        this.http = new Http(eventHandler, config.getRequestCoalescer().orElse(null));
     }
 
     public ClientConfig getConfig() {
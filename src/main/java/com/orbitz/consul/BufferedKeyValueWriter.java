@@ -0,0 +1,433 @@
+package com.orbitz.consul;
+
+import com.google.common.base.Preconditions;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.orbitz.consul.option.TransactionOptions;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static com.orbitz.consul.util.Strings.trimLeadingSlash;
+
+/**
+ * Buffers the writes to the key/value store and sends them as transactions, with
+ * {@link KeyValueClient#putValuesAsync(Map, TransactionOptions)}: the writes to a key pending in the buffer are
+ * coalesced, only the last value being sent. The buffer is flushed every flush interval, or as soon as it holds
+ * a batch of keys.
+ * <p>
+ * A single flush is in flight at a time, so that the values of a key are written in order. The buffer holds at most
+ * a maximum number of keys while a flush is in flight: beyond it, {@link #put(String, byte[])} waits for the flush,
+ * and {@link #offer(String, byte[], long, TimeUnit)} gives up after its timeout. The values of each failed
+ * transaction of a flush are handed to the {@link FailureListener}, and not written again.
+ * <pre>
+ * try (BufferedKeyValueWriter writer = BufferedKeyValueWriter.builder(consul.keyValueClient()).build()) {
+ *     writer.put("service/state", "up");
+ *     ...
+ * }
+ * </pre>
+ */
+public class BufferedKeyValueWriter implements AutoCloseable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(BufferedKeyValueWriter.class);
+
+    private final KeyValueClient kvClient;
+    private final TransactionOptions transactionOptions;
+    private final int batchSize;
+    private final int maxPendingKeys;
+    private final FailureListener failureListener;
+    private final ScheduledExecutorService scheduler;
+    private final boolean ownsScheduler;
+    private final ScheduledFuture<?> periodicFlush;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notFull = lock.newCondition();
+    private final Condition flushed = lock.newCondition();
+    private LinkedHashMap<String, byte[]> pending = new LinkedHashMap<>();
+    private boolean flushing;
+    private long startedFlushes;
+    private long completedFlushes;
+    private boolean flushRequested;
+    private boolean closed;
+
+    private BufferedKeyValueWriter(KeyValueClient kvClient, TransactionOptions transactionOptions, Duration flushInterval,
+                                   int batchSize, int maxPendingKeys, FailureListener failureListener,
+                                   ScheduledExecutorService scheduler) {
+        this.kvClient = kvClient;
+        this.transactionOptions = transactionOptions;
+        this.batchSize = batchSize;
+        this.maxPendingKeys = maxPendingKeys;
+        this.failureListener = failureListener;
+        this.ownsScheduler = scheduler == null;
+        this.scheduler = scheduler != null ? scheduler : Executors.newSingleThreadScheduledExecutor(
+                new ThreadFactoryBuilder().setNameFormat("consul-kv-writer-%d").setDaemon(true).build());
+        long intervalMillis = flushInterval.toMillis();
+        this.periodicFlush = this.scheduler.scheduleWithFixedDelay(this::flushPending, intervalMillis, intervalMillis,
+                TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Buffers a value, waiting for the flush in flight if the buffer is full.
+     *
+     * @param key The key to use as index.
+     * @param value The value to index.
+     * @throws InterruptedException if interrupted while waiting.
+     * @throws IllegalStateException if the writer is closed.
+     */
+    public void put(String key, byte[] value) throws InterruptedException {
+        offer(key, value, Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Buffers a value encoded in UTF-8, waiting for the flush in flight if the buffer is full.
+     *
+     * @param key The key to use as index.
+     * @param value The value to index.
+     * @throws InterruptedException if interrupted while waiting.
+     * @throws IllegalStateException if the writer is closed.
+     */
+    public void put(String key, String value) throws InterruptedException {
+        put(key, value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Buffers a value, waiting up to the given timeout for the flush in flight if the buffer is full. A value
+     * replacing a pending value of the same key never waits.
+     *
+     * @param key The key to use as index.
+     * @param value The value to index.
+     * @return false if the buffer was still full after the timeout, the value being dropped.
+     * @throws InterruptedException if interrupted while waiting.
+     * @throws IllegalStateException if the writer is closed.
+     */
+    public boolean offer(String key, byte[] value, long timeout, TimeUnit unit) throws InterruptedException {
+        Preconditions.checkNotNull(key, "Key must be defined");
+        Preconditions.checkNotNull(value, "Value must be defined");
+        long remaining = unit.toNanos(timeout);
+        Map<String, byte[]> batch = null;
+        lock.lockInterruptibly();
+        try {
+            while (true) {
+                Preconditions.checkState(!closed, "The writer is closed");
+                if (pending.size() < maxPendingKeys || pending.containsKey(key)) {
+                    break;
+                }
+                if (remaining <= 0) {
+                    return false;
+                }
+                remaining = notFull.awaitNanos(remaining);
+            }
+            pending.put(key, value);
+            if (pending.size() >= batchSize) {
+                batch = takeBatch();
+            }
+        } finally {
+            lock.unlock();
+        }
+        if (batch != null) {
+            send(batch);
+        }
+        return true;
+    }
+
+    /**
+     * Gets the number of keys waiting for the next flush.
+     */
+    public int getPendingCount() {
+        lock.lock();
+        try {
+            return pending.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Sends the values buffered so far, and waits until they are written or reported to the failure listener.
+     *
+     * @throws InterruptedException if interrupted while waiting.
+     */
+    public void flush() throws InterruptedException {
+        long target;
+        Map<String, byte[]> batch = null;
+        lock.lockInterruptibly();
+        try {
+            // the next flush holds all the pending values, otherwise the one in flight holds the last ones
+            target = startedFlushes;
+            if (!pending.isEmpty()) {
+                target++;
+                flushRequested = true;
+                batch = takeBatch();
+            }
+        } finally {
+            lock.unlock();
+        }
+        if (batch != null) {
+            send(batch);
+        }
+        lock.lockInterruptibly();
+        try {
+            while (completedFlushes < target) {
+                flushed.await();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Flushes the buffered values and stops the writer. The scheduler is shut down if the writer created it.
+     * <p>
+     * Waits for the flush even if the thread is interrupted, whose interrupt status is then restored.
+     */
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            // the writers waiting for room fail
+            notFull.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        periodicFlush.cancel(false);
+        boolean interrupted = false;
+        try {
+            while (true) {
+                try {
+                    flush();
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        } finally {
+            if (ownsScheduler) {
+                scheduler.shutdownNow();
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Sends the pending values, unless a flush is in flight: the next one starts when it completes.
+     */
+    private void flushPending() {
+        Map<String, byte[]> batch;
+        lock.lock();
+        try {
+            batch = takeBatch();
+        } finally {
+            lock.unlock();
+        }
+        if (batch != null) {
+            send(batch);
+        }
+    }
+
+    /**
+     * Takes the pending values to flush, under the lock, unless a flush is in flight.
+     *
+     * @return the values to send, or null if there is nothing to send now.
+     */
+    private Map<String, byte[]> takeBatch() {
+        if (flushing || pending.isEmpty()) {
+            return null;
+        }
+        Map<String, byte[]> batch = pending;
+        pending = new LinkedHashMap<>();
+        startedFlushes++;
+        flushRequested = false;
+        flushing = true;
+        notFull.signalAll();
+        return batch;
+    }
+
+    /**
+     * Sends the values taken by {@link #takeBatch()}, without holding the lock: the flush may complete in the
+     * calling thread, e.g. if the client is destroyed, and the failure listener must not run under the lock.
+     */
+    private void send(Map<String, byte[]> batch) {
+        CompletableFuture<Void> future;
+        try {
+            future = kvClient.putValuesAsync(batch, transactionOptions);
+        } catch (RuntimeException e) {
+            future = new CompletableFuture<>();
+            future.completeExceptionally(e);
+        }
+        future.whenComplete((done, throwable) -> onFlushed(batch, throwable));
+    }
+
+    private void onFlushed(Map<String, byte[]> batch, Throwable throwable) {
+        if (throwable != null) {
+            Throwable cause = throwable instanceof CompletionException && throwable.getCause() != null
+                    ? throwable.getCause()
+                    : throwable;
+            if (cause instanceof BulkOperationException) {
+                reportFailedTransactions(batch, ((BulkOperationException) cause).getFailures());
+            } else {
+                reportFailure(batch, cause);
+            }
+        }
+        Map<String, byte[]> next = null;
+        lock.lock();
+        try {
+            flushing = false;
+            completedFlushes++;
+            flushed.signalAll();
+            // the values buffered meanwhile are sent now if they make a batch, or are flushed
+            if (pending.size() >= batchSize || flushRequested || closed) {
+                next = takeBatch();
+            }
+        } finally {
+            lock.unlock();
+        }
+        if (next != null) {
+            send(next);
+        }
+    }
+
+    /**
+     * Reports the values of each failed transaction of a flush with its failure, the values of the transactions
+     * which succeeded being written.
+     */
+    private void reportFailedTransactions(Map<String, byte[]> batch, Map<String, Throwable> failures) {
+        Map<String, byte[]> values = new LinkedHashMap<>();
+        Throwable failure = null;
+        for (Map.Entry<String, byte[]> entry : batch.entrySet()) {
+            Throwable keyFailure = failures.get(trimLeadingSlash(entry.getKey()));
+            if (keyFailure == null) {
+                continue;
+            }
+            // the keys of a transaction are consecutive
+            if (failure != null && keyFailure != failure) {
+                reportFailure(values, failure);
+                values = new LinkedHashMap<>();
+            }
+            failure = keyFailure;
+            values.put(entry.getKey(), entry.getValue());
+        }
+        if (failure != null) {
+            reportFailure(values, failure);
+        }
+    }
+
+    private void reportFailure(Map<String, byte[]> values, Throwable failure) {
+        LOGGER.warn("Failed to write {} keys", values.size(), failure);
+        try {
+            failureListener.onFailure(Collections.unmodifiableMap(values), failure);
+        } catch (RuntimeException e) {
+            LOGGER.error("Failure listener failed", e);
+        }
+    }
+
+    /**
+     * Creates a new {@link BufferedKeyValueWriter.Builder} object.
+     *
+     * @param kvClient The client sending the transactions.
+     * @return A new writer builder.
+     */
+    public static Builder builder(KeyValueClient kvClient) {
+        return new Builder(kvClient);
+    }
+
+    /**
+     * Notified of the values which could not be written, once per failed transaction.
+     */
+    @FunctionalInterface
+    public interface FailureListener {
+        void onFailure(Map<String, byte[]> values, Throwable throwable);
+    }
+
+    public static class Builder {
+        private final KeyValueClient kvClient;
+        private TransactionOptions transactionOptions = TransactionOptions.BLANK;
+        private Duration flushInterval = Duration.ofMillis(100);
+        private int batchSize = 512;
+        private int maxPendingKeys = 10_000;
+        private FailureListener failureListener = (values, throwable) -> { };
+        private ScheduledExecutorService scheduler;
+
+        private Builder(KeyValueClient kvClient) {
+            this.kvClient = Preconditions.checkNotNull(kvClient, "Client cannot be null");
+        }
+
+        /**
+         * Sets the transaction options (e.g. dc) of the flushes.
+         */
+        public Builder withTransactionOptions(TransactionOptions transactionOptions) {
+            this.transactionOptions = Preconditions.checkNotNull(transactionOptions, "Options cannot be null");
+            return this;
+        }
+
+        /**
+         * Sets the maximum time a value is buffered, 100ms by default.
+         * @throws IllegalArgumentException if {@code interval} is not positive.
+         */
+        public Builder withFlushInterval(Duration interval) {
+            this.flushInterval = Preconditions.checkNotNull(interval, "Interval cannot be null");
+            Preconditions.checkArgument(interval.toMillis() > 0, "Interval must be positive");
+            return this;
+        }
+
+        /**
+         * Sets the number of buffered keys which starts a flush without waiting for the interval, 512 by default.
+         * @throws IllegalArgumentException if {@code batchSize} is not positive.
+         */
+        public Builder withBatchSize(int batchSize) {
+            Preconditions.checkArgument(batchSize > 0, "Batch size must be positive");
+            this.batchSize = batchSize;
+            return this;
+        }
+
+        /**
+         * Sets the maximum number of keys buffered while a flush is in flight, 10000 by default.
+         * @throws IllegalArgumentException if {@code maxPendingKeys} is not positive.
+         */
+        public Builder withMaxPendingKeys(int maxPendingKeys) {
+            Preconditions.checkArgument(maxPendingKeys > 0, "Maximum pending keys must be positive");
+            this.maxPendingKeys = maxPendingKeys;
+            return this;
+        }
+
+        /**
+         * Sets the listener of the values which could not be written.
+         */
+        public Builder withFailureListener(FailureListener failureListener) {
+            this.failureListener = Preconditions.checkNotNull(failureListener, "Listener cannot be null");
+            return this;
+        }
+
+        /**
+         * Sets the scheduler of the periodic flushes, which is not shut down with the writer. By default, the writer
+         * creates a scheduler with a single daemon thread.
+         */
+        public Builder withScheduler(ScheduledExecutorService scheduler) {
+            this.scheduler = scheduler;
+            return this;
+        }
+
+        public BufferedKeyValueWriter build() {
+            Preconditions.checkArgument(batchSize <= maxPendingKeys, "Batch size must not exceed the maximum pending keys");
+            return new BufferedKeyValueWriter(kvClient, transactionOptions, flushInterval, batchSize, maxPendingKeys,
+                    failureListener, scheduler);
+        }
+    }
+}
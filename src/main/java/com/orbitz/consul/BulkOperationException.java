@@ -0,0 +1,34 @@
+package com.orbitz.consul;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Thrown when some transactions of a bulk operation of the {@link KeyValueClient} failed. Each transaction is
+ * atomic, so the keys of the transactions which succeeded are applied, and only the keys of
+ * {@link #getFailures()} are not.
+ */
+public class BulkOperationException extends ConsulException {
+
+    private final Map<String, Throwable> failures;
+
+    /**
+     * Constructs an instance of this class.
+     *
+     * @param failures The keys which failed, in the order of the operations, with the failure of their transaction.
+     * @param operationCount The number of operations of the bulk operation.
+     */
+    public BulkOperationException(Map<String, Throwable> failures, int operationCount) {
+        super(String.format("%d of %d keys failed", failures.size(), operationCount),
+                failures.values().iterator().next());
+        this.failures = Collections.unmodifiableMap(failures);
+    }
+
+    /**
+     * Gets the keys which failed, without their leading slashes, in the order of the operations. The keys of a
+     * transaction share its failure.
+     */
+    public Map<String, Throwable> getFailures() {
+        return failures;
+    }
+}
@@ -1,6 +1,7 @@
 package com.orbitz.consul;
 
 import com.orbitz.consul.async.ConsulResponseCallback;
+import com.orbitz.consul.cache.CacheScheduler;
 import com.orbitz.consul.config.ClientConfig;
 import com.orbitz.consul.model.ConsulResponse;
 import com.orbitz.consul.model.catalog.CatalogDeregistration;
@@ -16,6 +17,7 @@ import retrofit2.http.*;
 
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * HTTP Client for /v1/catalog/ endpoints.
@@ -31,8 +33,9 @@ public class CatalogClient extends BaseCacheableClient {
      *
      * @param retrofit The {@link Retrofit} to build a client from.
      */
-    CatalogClient(Retrofit retrofit, ClientConfig config, ClientEventCallback eventCallback, Consul.NetworkTimeoutConfig networkTimeoutConfig) {
-        super(CLIENT_NAME, config, eventCallback, networkTimeoutConfig);
+    CatalogClient(Retrofit retrofit, ClientConfig config, ClientEventCallback eventCallback, Consul.NetworkTimeoutConfig networkTimeoutConfig,
+                  CacheScheduler cacheScheduler) {
+        super(CLIENT_NAME, config, eventCallback, networkTimeoutConfig, cacheScheduler);
         this.api = retrofit.create(Api.class);
     }
 
@@ -269,6 +272,98 @@ public class CatalogClient extends BaseCacheableClient {
         http.handle(api.deregister(deregistration, options.toQuery()));
     }
 
+    /**
+     * Asynchronously retrieves all datacenters.
+     * <p/>
+     * GET /v1/catalog/datacenters
+     *
+     * @param queryOptions The Query Options to use.
+     * @return A future completed with a {@link com.orbitz.consul.model.ConsulResponse} containing the datacenter names.
+     */
+    public CompletableFuture<ConsulResponse<List<String>>> getDatacentersAsync(QueryOptions queryOptions) {
+        return http.extractConsulResponseAsync(api.getDatacenters(queryOptions.toHeaders()));
+    }
+
+    /**
+     * Asynchronously retrieves the nodes for a given datacenter with {@link com.orbitz.consul.option.QueryOptions}.
+     * <p/>
+     * GET /v1/catalog/nodes?dc={datacenter}
+     *
+     * @param queryOptions The Query Options to use.
+     * @return A future completed with a {@link com.orbitz.consul.model.ConsulResponse} containing a list of
+     * {@link com.orbitz.consul.model.health.Node} objects.
+     */
+    public CompletableFuture<ConsulResponse<List<Node>>> getNodesAsync(QueryOptions queryOptions) {
+        return http.extractConsulResponseAsync(api.getNodes(queryOptions.toQuery(),
+                queryOptions.getTag(), queryOptions.getNodeMeta(), queryOptions.toHeaders()));
+    }
+
+    /**
+     * Asynchronously retrieves the services for a given datacenter.
+     * <p/>
+     * GET /v1/catalog/services?dc={datacenter}
+     *
+     * @param queryOptions The Query Options to use.
+     * @return A future completed with a {@link com.orbitz.consul.model.ConsulResponse} containing a map of
+     * service name to list of tags.
+     */
+    public CompletableFuture<ConsulResponse<Map<String, List<String>>>> getServicesAsync(QueryOptions queryOptions) {
+        return http.extractConsulResponseAsync(api.getServices(queryOptions.toQuery(),
+                queryOptions.getTag(), queryOptions.getNodeMeta(), queryOptions.toHeaders()));
+    }
+
+    /**
+     * Asynchronously retrieves a single service for a given datacenter with {@link com.orbitz.consul.option.QueryOptions}.
+     * <p/>
+     * GET /v1/catalog/service/{service}?dc={datacenter}
+     *
+     * @param queryOptions The Query Options to use.
+     * @return A future completed with a {@link com.orbitz.consul.model.ConsulResponse} containing
+     * {@link com.orbitz.consul.model.catalog.CatalogService} objects.
+     */
+    public CompletableFuture<ConsulResponse<List<CatalogService>>> getServiceAsync(String service, QueryOptions queryOptions) {
+        return http.extractConsulResponseAsync(api.getService(service, queryOptions.toQuery(),
+                queryOptions.getTag(), queryOptions.getNodeMeta(), queryOptions.toHeaders()));
+    }
+
+    /**
+     * Asynchronously retrieves a single node for a given datacenter with {@link com.orbitz.consul.option.QueryOptions}.
+     * <p/>
+     * GET /v1/catalog/node/{node}?dc={datacenter}
+     *
+     * @param queryOptions The Query Options to use.
+     * @return A future completed with a {@link com.orbitz.consul.model.ConsulResponse} containing the
+     * {@link com.orbitz.consul.model.catalog.CatalogNode}.
+     */
+    public CompletableFuture<ConsulResponse<CatalogNode>> getNodeAsync(String node, QueryOptions queryOptions) {
+        return http.extractConsulResponseAsync(api.getNode(node, queryOptions.toQuery(),
+                queryOptions.getTag(), queryOptions.getNodeMeta(), queryOptions.toHeaders()));
+    }
+
+    /**
+     * Asynchronously registers a service or node.
+     * <p/>
+     * PUT /v1/catalog/register
+     *
+     * @param registration A {@link CatalogRegistration}
+     * @return A future completed once the registration is acknowledged.
+     */
+    public CompletableFuture<ConsulResponse<Void>> registerAsync(CatalogRegistration registration, QueryOptions options) {
+        return http.extractConsulResponseAsync(api.register(registration, options.toQuery()));
+    }
+
+    /**
+     * Asynchronously deregisters a service or node.
+     * <p/>
+     * PUT /v1/catalog/deregister
+     *
+     * @param deregistration A {@link CatalogDeregistration}
+     * @return A future completed once the deregistration is acknowledged.
+     */
+    public CompletableFuture<ConsulResponse<Void>> deregisterAsync(CatalogDeregistration deregistration, QueryOptions options) {
+        return http.extractConsulResponseAsync(api.deregister(deregistration, options.toQuery()));
+    }
+
     /**
      * Retrofit API interface.
      */
@@ -3,7 +3,10 @@ package com.orbitz.consul;
 import java.net.MalformedURLException;
 import java.net.Proxy;
 import java.net.URL;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.SynchronousQueue;
@@ -18,11 +21,19 @@ import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Preconditions;
 import com.google.common.io.BaseEncoding;
 import com.google.common.net.HostAndPort;
+import com.orbitz.consul.cache.CacheScheduler;
 import com.orbitz.consul.cache.TimeoutInterceptor;
 import com.orbitz.consul.config.ClientConfig;
+import com.orbitz.consul.config.HedgingConfig;
 import com.orbitz.consul.monitoring.ClientEventCallback;
+import com.orbitz.consul.monitoring.ClientEventDispatcher;
+import com.orbitz.consul.monitoring.ConnectionMetricsListener;
+import com.orbitz.consul.monitoring.ConsulMetrics;
+import com.orbitz.consul.monitoring.MetricsInterceptor;
 import com.orbitz.consul.util.Jackson;
+import com.orbitz.consul.util.RequestCoalescer;
 import com.orbitz.consul.util.TrustManagerUtils;
+import com.orbitz.consul.util.VirtualThreads;
 import com.orbitz.consul.util.bookend.ConsulBookend;
 import com.orbitz.consul.util.bookend.ConsulBookendInterceptor;
 import com.orbitz.consul.util.failover.ConsulFailoverInterceptor;
@@ -33,8 +44,11 @@ import okhttp3.Dispatcher;
 import okhttp3.HttpUrl;
 import okhttp3.Interceptor;
 import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
 import okhttp3.Request;
 import okhttp3.internal.Util;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import retrofit2.Retrofit;
 import retrofit2.converter.jackson.JacksonConverterFactory;
 
@@ -55,6 +69,8 @@ public class Consul {
     */
     public static final int DEFAULT_HTTP_PORT = 8500;
 
+    private static final Logger LOGGER = LoggerFactory.getLogger(Consul.class);
+
     private final AgentClient agentClient;
     private final AclClient aclClient;
     private final HealthClient healthClient;
@@ -71,6 +87,8 @@ public class Consul {
     private final ExecutorService executorService;
     private final ConnectionPool connectionPool;
     private final OkHttpClient okHttpClient;
+    private final CacheScheduler cacheScheduler;
+    private final ConsulMetrics metrics;
 
     /**
     * Private constructor.
@@ -84,6 +102,40 @@ public class Consul {
                 ExecutorService executorService, ConnectionPool connectionPool, 
                 AclClient aclClient, SnapshotClient snapshotClient,
                 OkHttpClient okHttpClient) {
+        this(agentClient, healthClient, keyValueClient, catalogClient, statusClient, sessionClient, eventClient,
+                preparedQueryClient, coordinateClient, operatorClient, executorService, connectionPool, aclClient,
+                snapshotClient, okHttpClient, null);
+    }
+
+    /**
+    * Private constructor.
+    *
+    */
+    protected Consul(AgentClient agentClient, HealthClient healthClient,
+                KeyValueClient keyValueClient, CatalogClient catalogClient,
+                StatusClient statusClient, SessionClient sessionClient,
+                EventClient eventClient, PreparedQueryClient preparedQueryClient,
+                CoordinateClient coordinateClient, OperatorClient operatorClient,
+                ExecutorService executorService, ConnectionPool connectionPool,
+                AclClient aclClient, SnapshotClient snapshotClient,
+                OkHttpClient okHttpClient, CacheScheduler cacheScheduler) {
+        this(agentClient, healthClient, keyValueClient, catalogClient, statusClient, sessionClient, eventClient,
+                preparedQueryClient, coordinateClient, operatorClient, executorService, connectionPool, aclClient,
+                snapshotClient, okHttpClient, cacheScheduler, new ConsulMetrics());
+    }
+
+    /**
+    * Private constructor.
+    *
+    */
+    protected Consul(AgentClient agentClient, HealthClient healthClient,
+                KeyValueClient keyValueClient, CatalogClient catalogClient,
+                StatusClient statusClient, SessionClient sessionClient,
+                EventClient eventClient, PreparedQueryClient preparedQueryClient,
+                CoordinateClient coordinateClient, OperatorClient operatorClient,
+                ExecutorService executorService, ConnectionPool connectionPool,
+                AclClient aclClient, SnapshotClient snapshotClient,
+                OkHttpClient okHttpClient, CacheScheduler cacheScheduler, ConsulMetrics metrics) {
         this.agentClient = agentClient;
         this.healthClient = healthClient;
         this.keyValueClient = keyValueClient;
@@ -99,6 +151,8 @@ public class Consul {
         this.aclClient = aclClient;
         this.snapshotClient = snapshotClient;
         this.okHttpClient = okHttpClient;
+        this.cacheScheduler = cacheScheduler;
+        this.metrics = metrics;
     }
 
     /**
@@ -108,6 +162,24 @@ public class Consul {
         this.okHttpClient.dispatcher().cancelAll();
         this.executorService.shutdownNow();
         this.connectionPool.evictAll();
+        if (this.metrics != null) {
+            this.metrics.getConnectionMetrics().removeConnectionPool(this.connectionPool);
+        }
+        if (this.cacheScheduler != null) {
+            this.cacheScheduler.shutdownNow();
+        }
+    }
+
+    /**
+    * Get the request metrics of the clients: latency histograms, request, error and byte counters
+    * per client and endpoint.
+    * <p>
+    * The registry stays empty when the metrics are disabled, see {@link Builder#withMetricsEnabled(boolean)}.
+    *
+    * @return The metrics registry.
+    */
+    public ConsulMetrics metrics() {
+        return metrics;
     }
 
     /**
@@ -276,12 +348,24 @@ public class Consul {
         private Interceptor aclTokenInterceptor;
         private Interceptor headerInterceptor;
         private Interceptor consulBookendInterceptor;
-        private Interceptor consulFailoverInterceptor;
+        private ConsulFailoverInterceptor consulFailoverInterceptor;
+        private HedgingConfig hedgingConfig;
         private final NetworkTimeoutConfig.Builder networkTimeoutConfigBuilder = new NetworkTimeoutConfig.Builder();
         private ExecutorService executorService;
         private ConnectionPool connectionPool;
+        private int maxIdleConnections = -1;
+        private long keepAliveMillis;
+        private int maxRequestsPerHost = Integer.MAX_VALUE;
+        private boolean http2;
         private ClientConfig clientConfig;
         private ClientEventCallback clientEventCallback;
+        private CacheScheduler cacheScheduler;
+        private boolean sharedCacheScheduler = true;
+        private boolean virtualThreads;
+        private RequestCoalescer requestCoalescer;
+        private ClientEventDispatcher clientEventDispatcher;
+        private ConsulMetrics metrics;
+        private boolean metricsEnabled = true;
 
         {
             try {
@@ -501,6 +585,26 @@ public class Consul {
         	return this;
         }
 
+        /**
+         * Enables the hedging of the idempotent reads, e.g. {@link KeyValueClient#getValue(String)}, when several
+         * agents are given with {@link #withMultipleHostAndPort(Collection, long)} or
+         * {@link #withFailoverInterceptor(ConsulFailoverStrategy)}: a read which did not complete after a percentile
+         * of the latency of the previous reads is sent to another agent too, the first response winning. The blocking
+         * queries are never hedged.
+         * <p>
+         * The caller of a hedged read waits while its attempts run on an unbounded executor of their own, made of
+         * virtual threads with {@link #withVirtualThreads(boolean)}, never on the executor given by
+         * {@link #withExecutorService(ExecutorService)}, which could be exhausted by the waiting callers.
+         *
+         * @param hedgingConfig The hedging configuration, or null to disable hedging.
+         * @return The builder.
+         */
+        public Builder withHedging(HedgingConfig hedgingConfig) {
+            this.hedgingConfig = hedgingConfig;
+
+            return this;
+        }
+
         /**
         * Sets the URL from a string.
         *
@@ -639,6 +743,61 @@ public class Consul {
             return this;
         }
 
+        /**
+        * Sets the size of the ConnectionPool created internally, ignored when a ConnectionPool is provided
+        * with {@link #withConnectionPool(ConnectionPool)}.
+        *
+        * By default, the pool keeps up to 5 idle connections for 5 minutes.
+        *
+        * @param maxIdleConnections The maximum number of idle connections kept in the pool.
+        * @param keepAliveMillis The time an idle connection is kept in the pool.
+        * @return The builder.
+        */
+        public Builder withConnectionPoolSize(int maxIdleConnections, long keepAliveMillis) {
+            Preconditions.checkArgument(maxIdleConnections >= 0, "Negative value");
+            Preconditions.checkArgument(keepAliveMillis > 0, "Keep alive must be positive");
+            this.maxIdleConnections = maxIdleConnections;
+            this.keepAliveMillis = keepAliveMillis;
+
+            return this;
+        }
+
+        /**
+        * Limits the number of requests in flight to the Consul agent, blocking queries included. The requests
+        * over the limit wait in the dispatcher until a request in flight completes.
+        *
+        * By default, the number of requests is not limited. Over HTTP/1.1, each request in flight holds a
+        * connection; over HTTP/2, this bounds the number of concurrent streams of the connections, which the
+        * agent also bounds per connection (250 streams by default), OkHttp opening a new connection when
+        * the streams of the existing ones are exhausted.
+        *
+        * @param maxRequestsPerHost The maximum number of requests in flight per host.
+        * @return The builder.
+        */
+        public Builder withMaxRequestsPerHost(int maxRequestsPerHost) {
+            Preconditions.checkArgument(maxRequestsPerHost > 0, "Maximum requests must be positive");
+            this.maxRequestsPerHost = maxRequestsPerHost;
+
+            return this;
+        }
+
+        /**
+        * Enables/Disables HTTP/2, so that the requests, and notably the blocking queries of the caches, are
+        * multiplexed over a few connections instead of holding one connection each.
+        *
+        * Over HTTPS, HTTP/2 is negotiated with ALPN and the client falls back on HTTP/1.1 if the agent does not
+        * support it. Over HTTP, the client uses HTTP/2 with prior knowledge (h2c) and cannot fall back:
+        * the agent itself only serves HTTP/2 over TLS, so h2c requires a proxy supporting it in front of it.
+        *
+        * @param enabled Set to true to use HTTP/2.
+        * @return The builder.
+        */
+        public Builder withHttp2(boolean enabled) {
+            this.http2 = enabled;
+
+            return this;
+        }
+
         /**
         * Sets the configuration for the clients.
         * The configuration will fallback on the library default configuration if elements are not set.
@@ -652,6 +811,19 @@ public class Consul {
             return this;
         }
 
+        /**
+        * Shares a single HTTP call between identical GET requests in flight at the same time.
+        * The coalescer holds the coalescing metrics, and overrides the one of the client configuration.
+        *
+        * @param requestCoalescer the coalescer shared by all the clients.
+        * @return The Builder
+        */
+        public Builder withRequestCoalescer(RequestCoalescer requestCoalescer) {
+            this.requestCoalescer = requestCoalescer;
+
+            return this;
+        }
+
         /**
         * Sets the event callback for the clients.
         * The callback will be called by the consul client after each event.
@@ -665,6 +837,98 @@ public class Consul {
             return this;
         }
 
+        /**
+        * Sets the dispatcher delivering the client events to the {@link ClientEventCallback}.
+        * The dispatcher holds the dropped events counter, and overrides the one of the client configuration.
+        *
+        * By default, all the clients share a dispatcher which drops the events when 16384 of them are pending.
+        *
+        * @param clientEventDispatcher the dispatcher used by all the clients.
+        * @return The Builder
+        */
+        public Builder withClientEventDispatcher(ClientEventDispatcher clientEventDispatcher) {
+            this.clientEventDispatcher = clientEventDispatcher;
+
+            return this;
+        }
+
+        /**
+        * Sets the registry recording the request metrics, to share it between several Consul instances.
+        *
+        * By default, each Consul instance records its metrics in its own registry, see {@link Consul#metrics()}.
+        *
+        * @param metrics the metrics registry.
+        * @return The Builder
+        */
+        public Builder withMetrics(ConsulMetrics metrics) {
+            this.metrics = metrics;
+
+            return this;
+        }
+
+        /**
+        * Enables/Disables the recording of the request metrics.
+        *
+        * @param enabled Set to false to not record the request metrics.
+        * @return The Builder
+        */
+        public Builder withMetricsEnabled(boolean enabled) {
+            this.metricsEnabled = enabled;
+
+            return this;
+        }
+
+        /**
+        * Sets the {@link CacheScheduler} shared by the caches created from the clients.
+        *
+        * By default, a CacheScheduler with one thread per available processor is created internally.
+        * It can only be shutdown by the {@link Consul#destroy()} method.
+        *
+        * When an application needs to share the same scheduler between several Consul instances, and/or manage its lifecycle,
+        * it can provide an instance of CacheScheduler to the Builder. In that case, this CacheScheduler will be used instead of creating one internally.
+        *
+        * @param cacheScheduler The CacheScheduler to be used by the caches.
+        * @return The Builder
+        */
+        public Builder withCacheScheduler(CacheScheduler cacheScheduler) {
+            this.cacheScheduler = cacheScheduler;
+            this.sharedCacheScheduler = cacheScheduler != null;
+
+            return this;
+        }
+
+        /**
+        * Enables/Disables the {@link CacheScheduler} shared by the caches created from the clients.
+        *
+        * When disabled, each cache creates its own single-thread scheduler, as before the shared scheduler was introduced.
+        *
+        * @param enabled Set to false to give each cache its own scheduler thread.
+        * @return The Builder
+        */
+        public Builder withSharedCacheScheduler(boolean enabled) {
+            this.sharedCacheScheduler = enabled;
+
+            return this;
+        }
+
+        /**
+        * Runs the HTTP calls and the shared cache scheduler on virtual threads, on Java 21 and later.
+        *
+        * The internal tasks dispatcher starts a virtual thread per call instead of a platform thread, so that the
+        * blocking queries of the caches waiting for a change do not hold platform threads. The asynchronous callbacks
+        * run on these virtual threads, they should not hold monitors while blocking.
+        * An ExecutorService or a CacheScheduler provided to the Builder is used as is.
+        * On older JVMs, the platform threads are used and a warning is logged.
+        *
+        * @param enabled Set to true to use virtual threads when the JVM supports them.
+        * @return The Builder
+        */
+        public Builder withVirtualThreads(boolean enabled) {
+            this.virtualThreads = enabled;
+
+            return this;
+        }
+
         /**
         * Constructs a new {@link Consul} client.
         *
@@ -675,6 +939,14 @@ public class Consul {
 
             // if an ExecutorService is provided to the Builder, we use it, otherwise, we create one
             ExecutorService executorService = this.executorService;
+            boolean useVirtualThreads = virtualThreads && VirtualThreads.isAvailable();
+            if (virtualThreads && !useVirtualThreads) {
+                LOGGER.warn("Virtual threads are not supported by Java {}, using platform threads",
+                        System.getProperty("java.version"));
+            }
+            if (executorService == null && useVirtualThreads) {
+                executorService = VirtualThreads.newThreadPerTaskExecutor("OkHttp Dispatcher-").get();
+            }
             if (executorService == null) {
                 /**
                 * mimics okhttp3.Dispatcher#executorService implementation, except
@@ -685,10 +957,33 @@ public class Consul {
             }
 
             if (connectionPool == null) {
-                connectionPool = new ConnectionPool();
+                connectionPool = maxIdleConnections >= 0
+                        ? new ConnectionPool(maxIdleConnections, keepAliveMillis, TimeUnit.MILLISECONDS)
+                        : new ConnectionPool();
             }
 
             ClientConfig config = (clientConfig != null) ? clientConfig : new ClientConfig();
+            if (requestCoalescer != null || clientEventDispatcher != null) {
+                config = new ClientConfig(config.getCacheConfig(),
+                        requestCoalescer != null ? requestCoalescer : config.getRequestCoalescer().orElse(null),
+                        clientEventDispatcher != null ? clientEventDispatcher : config.getClientEventDispatcher().orElse(null));
+            }
+
+            // if a CacheScheduler is provided to the Builder, we use it, otherwise, we create one
+            CacheScheduler cacheScheduler = this.cacheScheduler;
+            boolean ownsCacheScheduler = false;
+            if (cacheScheduler == null && sharedCacheScheduler) {
+                cacheScheduler = useVirtualThreads
+                        ? new CacheScheduler(Runtime.getRuntime().availableProcessors(),
+                                VirtualThreads.newThreadFactory("consulCacheSharedScheduler-").get())
+                        : new CacheScheduler();
+                ownsCacheScheduler = true;
+            }
+
+            ConsulMetrics metrics = this.metrics != null ? this.metrics : new ConsulMetrics();
+            if (metricsEnabled) {
+                metrics.getConnectionMetrics().addConnectionPool(connectionPool);
+            }
 
             OkHttpClient okHttpClient = createOkHttpClient(
                     this.sslContext,
@@ -697,7 +992,14 @@ public class Consul {
                     this.proxy,
                     executorService,
                     connectionPool,
-                    config);
+                    config,
+                    metricsEnabled ? metrics : null);
+            if (hedgingConfig != null) {
+                Preconditions.checkState(consulFailoverInterceptor != null, "Hedging requires multiple agents");
+                consulFailoverInterceptor.enableHedging(hedgingConfig,
+                        createHedgingClient(okHttpClient, consulFailoverInterceptor),
+                        createHedgingExecutor(useVirtualThreads));
+            }
             NetworkTimeoutConfig networkTimeoutConfig = new NetworkTimeoutConfig.Builder()
                 .withConnectTimeout(okHttpClient::connectTimeoutMillis)
                 .withReadTimeout(okHttpClient::readTimeoutMillis)
@@ -717,15 +1019,15 @@ public class Consul {
                     clientEventCallback :
                     new ClientEventCallback(){};
 
-            AgentClient agentClient = new AgentClient(retrofit, config, eventCallback);
-            HealthClient healthClient = new HealthClient(retrofit, config, eventCallback, networkTimeoutConfig);
-            KeyValueClient keyValueClient = new KeyValueClient(retrofit, config, eventCallback, networkTimeoutConfig);
-            CatalogClient catalogClient = new CatalogClient(retrofit, config, eventCallback, networkTimeoutConfig);
+            AgentClient agentClient = new AgentClient(retrofit, config, eventCallback, networkTimeoutConfig, cacheScheduler);
+            HealthClient healthClient = new HealthClient(retrofit, config, eventCallback, networkTimeoutConfig, cacheScheduler);
+            KeyValueClient keyValueClient = new KeyValueClient(retrofit, config, eventCallback, networkTimeoutConfig, cacheScheduler);
+            CatalogClient catalogClient = new CatalogClient(retrofit, config, eventCallback, networkTimeoutConfig, cacheScheduler);
             StatusClient statusClient = new StatusClient(retrofit, config, eventCallback);
             SessionClient sessionClient = new SessionClient(retrofit, config, eventCallback);
             EventClient eventClient = new EventClient(retrofit, config, eventCallback);
             PreparedQueryClient preparedQueryClient = new PreparedQueryClient(retrofit, config, eventCallback);
-            CoordinateClient coordinateClient = new CoordinateClient(retrofit, config, eventCallback);
+            CoordinateClient coordinateClient = new CoordinateClient(retrofit, config, eventCallback, networkTimeoutConfig, cacheScheduler);
             OperatorClient operatorClient = new OperatorClient(retrofit, config, eventCallback);
             AclClient aclClient = new AclClient(retrofit, config, eventCallback);
             SnapshotClient snapshotClient = new SnapshotClient(retrofit, config, eventCallback);
@@ -736,7 +1038,33 @@ public class Consul {
             return new Consul(agentClient, healthClient, keyValueClient,
                     catalogClient, statusClient, sessionClient, eventClient,
                     preparedQueryClient, coordinateClient, operatorClient,
-                    executorService, connectionPool, aclClient, snapshotClient, okHttpClient);
+                    executorService, connectionPool, aclClient, snapshotClient, okHttpClient,
+                    ownsCacheScheduler ? cacheScheduler : null, metrics);
+        }
+
+        /**
+         * Creates a client sharing the connections of the given one, without the interceptors already applied to the
+         * requests when they reach the failover interceptor.
+         */
+        private OkHttpClient createHedgingClient(OkHttpClient okHttpClient, Interceptor failoverInterceptor) {
+            OkHttpClient.Builder builder = okHttpClient.newBuilder();
+            List<Interceptor> interceptors = builder.interceptors();
+            interceptors.subList(0, interceptors.indexOf(failoverInterceptor) + 1).clear();
+            return builder.build();
+        }
+
+        /**
+         * Creates the executor running the attempts of the hedged reads. Their caller waits for them, so they never
+         * run on the executor of the dispatcher: a bounded one given by {@link #withExecutorService(ExecutorService)}
+         * would be exhausted by the waiting callers, or by the blocking queries. The threads are daemons ending after
+         * a minute of inactivity, so the executor needs no shutdown.
+         */
+        private ExecutorService createHedgingExecutor(boolean useVirtualThreads) {
+            if (useVirtualThreads) {
+                return VirtualThreads.newThreadPerTaskExecutor("consulHedging-").get();
+            }
+            return new ThreadPoolExecutor(0, Integer.MAX_VALUE, 60, TimeUnit.SECONDS,
+                    new SynchronousQueue<>(), Util.threadFactory("consulHedging", true));
         }
 
         private String buildUrl(URL url) {
@@ -744,10 +1072,22 @@ public class Consul {
         }
 
         private OkHttpClient createOkHttpClient(SSLContext sslContext, X509TrustManager trustManager, HostnameVerifier hostnameVerifier,
-                                                Proxy proxy, ExecutorService executorService, ConnectionPool connectionPool, ClientConfig clientConfig) {
+                                                Proxy proxy, ExecutorService executorService, ConnectionPool connectionPool, ClientConfig clientConfig,
+                                                ConsulMetrics metrics) {
 
             final OkHttpClient.Builder builder = new OkHttpClient.Builder();
 
+            if (metrics != null) {
+                builder.addInterceptor(new MetricsInterceptor(metrics));
+                builder.eventListener(new ConnectionMetricsListener(metrics));
+            }
+
+            if (http2) {
+                builder.protocols("https".equals(url.getProtocol())
+                        ? Arrays.asList(Protocol.HTTP_2, Protocol.HTTP_1_1)
+                        : Collections.singletonList(Protocol.H2_PRIOR_KNOWLEDGE));
+            }
+
             if (authInterceptor != null) {
                 builder.addInterceptor(authInterceptor);
             }
@@ -798,7 +1138,7 @@ public class Consul {
 
             Dispatcher dispatcher = new Dispatcher(executorService);
             dispatcher.setMaxRequests(Integer.MAX_VALUE);
-            dispatcher.setMaxRequestsPerHost(Integer.MAX_VALUE);
+            dispatcher.setMaxRequestsPerHost(maxRequestsPerHost);
             builder.dispatcher(dispatcher);
 
             if (connectionPool != null) {
@@ -1,13 +1,18 @@
 package com.orbitz.consul;
 
 import com.google.common.collect.ImmutableMap;
+import com.orbitz.consul.async.ConsulResponseCallback;
+import com.orbitz.consul.cache.CacheScheduler;
 import com.orbitz.consul.config.ClientConfig;
+import com.orbitz.consul.model.ConsulResponse;
 import com.orbitz.consul.model.coordinate.Coordinate;
 import com.orbitz.consul.model.coordinate.Datacenter;
 import com.orbitz.consul.monitoring.ClientEventCallback;
+import com.orbitz.consul.option.QueryOptions;
 import retrofit2.Call;
 import retrofit2.Retrofit;
 import retrofit2.http.GET;
+import retrofit2.http.HeaderMap;
 import retrofit2.http.QueryMap;
 
 import java.util.Collections;
@@ -19,7 +24,7 @@ import java.util.Map;
  *
  * @see <a href="http://www.consul.io/docs/agent/http.html#agent">The Consul API Docs</a>
  */
-public class CoordinateClient extends BaseClient {
+public class CoordinateClient extends BaseCacheableClient {
 
     private static String CLIENT_NAME = "coordinate";
 
@@ -30,8 +35,9 @@ public class CoordinateClient extends BaseClient {
      *
      * @param retrofit The {@link Retrofit} to build a client from.
      */
-    CoordinateClient(Retrofit retrofit, ClientConfig config, ClientEventCallback eventCallback) {
-        super(CLIENT_NAME, config, eventCallback);
+    CoordinateClient(Retrofit retrofit, ClientConfig config, ClientEventCallback eventCallback,
+                     Consul.NetworkTimeoutConfig networkTimeoutConfig, CacheScheduler cacheScheduler) {
+        super(CLIENT_NAME, config, eventCallback, networkTimeoutConfig, cacheScheduler);
         this.api = retrofit.create(Api.class);
     }
 
@@ -40,14 +46,38 @@ public class CoordinateClient extends BaseClient {
     }
 
     public List<Coordinate> getNodes(String dc) {
-        return http.extract(api.getNodes(dcQuery(dc)));
+        return http.extract(api.getNodes(dcQuery(dc), Collections.emptyMap()));
     }
 
     public List<Coordinate> getNodes() {
         return getNodes(null);
     }
 
-    private Map<String, String> dcQuery(String dc) {
+    /**
+     * Retrieves the network coordinates of the nodes with {@link QueryOptions}, which allows blocking queries.
+     * <p/>
+     * GET /v1/coordinate/nodes
+     *
+     * @param queryOptions The Query Options to use.
+     * @return A {@link ConsulResponse} containing the coordinates of the nodes.
+     */
+    public ConsulResponse<List<Coordinate>> getConsulResponseWithNodes(QueryOptions queryOptions) {
+        return http.extractConsulResponse(api.getNodes(queryOptions.toQuery(), queryOptions.toHeaders()));
+    }
+
+    /**
+     * Asynchronously retrieves the network coordinates of the nodes with {@link QueryOptions}.
+     * <p/>
+     * GET /v1/coordinate/nodes
+     *
+     * @param queryOptions The Query Options to use.
+     * @param callback     Callback implemented by callee to handle results.
+     */
+    public void getNodes(QueryOptions queryOptions, ConsulResponseCallback<List<Coordinate>> callback) {
+        http.extractConsulResponse(api.getNodes(queryOptions.toQuery(), queryOptions.toHeaders()), callback);
+    }
+
+    private Map<String, Object> dcQuery(String dc) {
         return dc != null ? ImmutableMap.of("dc", dc) : Collections.emptyMap();
     }
 
@@ -60,7 +90,8 @@ public class CoordinateClient extends BaseClient {
         Call<List<Datacenter>> getDatacenters();
 
         @GET("coordinate/nodes")
-        Call<List<Coordinate>> getNodes(@QueryMap Map<String, String> query);
+        Call<List<Coordinate>> getNodes(@QueryMap Map<String, Object> query,
+                                        @HeaderMap Map<String, String> headers);
 
     }
 }
@@ -19,6 +19,7 @@ import retrofit2.http.*;
 
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * HTTP Client for /v1/event/ endpoints.
@@ -207,6 +208,43 @@ public class EventClient extends BaseClient {
     public void listEvents(EventResponseCallback callback) {
         listEvents(null, QueryOptions.BLANK, callback);
     }
+    /**
+     * Asynchronously fires a Consul event.
+     *
+     * PUT /v1/event/fire/{name}
+     *
+     * @param name The name of the event.
+     * @param eventOptions The event specific options to use.
+     * @param payload Optional string payload, may be <code>null</code>.
+     * @return A future completed with a {@link ConsulResponse} containing the newly created
+     * {@link com.orbitz.consul.model.event.Event}.
+     */
+    public CompletableFuture<ConsulResponse<Event>> fireEventAsync(String name, EventOptions eventOptions, String payload) {
+        Call<Event> call = payload == null
+                ? api.fireEvent(name, eventOptions.toQuery())
+                : api.fireEvent(name, RequestBody.create(payload, MediaType.parse("text/plain")), eventOptions.toQuery());
+        return http.extractConsulResponseAsync(call);
+    }
+
+    /**
+     * Asynchronously lists events for the Consul agent.
+     *
+     * GET /v1/event/list?name={name}
+     *
+     * @param name Event name to filter, may be <code>null</code>.
+     * @param queryOptions The query options to use.
+     * @return A future completed with a {@link ConsulResponse} containing a list of
+     * {@link com.orbitz.consul.model.event.Event} objects.
+     */
+    public CompletableFuture<ConsulResponse<List<Event>>> listEventsAsync(String name, QueryOptions queryOptions) {
+        final Map<String, Object> query = queryOptions.toQuery();
+        if (StringUtils.isNotEmpty(name)) {
+            query.put("name", name);
+        }
+
+        return http.extractConsulResponseAsync(api.listEvents(query));
+    }
+
     /**
      * Retrofit API interface.
      */
@@ -2,6 +2,7 @@ package com.orbitz.consul;
 
 import com.google.common.collect.ImmutableMap;
 import com.orbitz.consul.async.ConsulResponseCallback;
+import com.orbitz.consul.cache.CacheScheduler;
 import com.orbitz.consul.config.ClientConfig;
 import com.orbitz.consul.model.ConsulResponse;
 import com.orbitz.consul.model.State;
@@ -20,6 +21,7 @@ import retrofit2.http.QueryMap;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * HTTP Client for /v1/health/ endpoints.
@@ -35,8 +37,9 @@ public class HealthClient extends BaseCacheableClient {
      *
      * @param retrofit The {@link Retrofit} to build a client from.
      */
-    HealthClient(Retrofit retrofit, ClientConfig config, ClientEventCallback eventCallback, Consul.NetworkTimeoutConfig networkTimeoutConfig) {
-        super(CLIENT_NAME, config, eventCallback, networkTimeoutConfig);
+    HealthClient(Retrofit retrofit, ClientConfig config, ClientEventCallback eventCallback, Consul.NetworkTimeoutConfig networkTimeoutConfig,
+                 CacheScheduler cacheScheduler) {
+        super(CLIENT_NAME, config, eventCallback, networkTimeoutConfig, cacheScheduler);
         this.api = retrofit.create(Api.class);
     }
 
@@ -258,6 +261,82 @@ public class HealthClient extends BaseCacheableClient {
                 queryOptions.getTag(), queryOptions.getNodeMeta(), queryOptions.toHeaders()), callback);
     }
 
+    /**
+     * Asynchronously retrieves the healthchecks for a node in a given datacenter with {@link com.orbitz.consul.option.QueryOptions}.
+     * <p/>
+     * GET /v1/health/node/{node}?dc={datacenter}
+     *
+     * @param node         The node to return checks for
+     * @param queryOptions The Query Options to use.
+     * @return A future completed with a list of {@link com.orbitz.consul.model.health.HealthCheck} objects.
+     */
+    public CompletableFuture<ConsulResponse<List<HealthCheck>>> getNodeChecksAsync(String node, QueryOptions queryOptions) {
+        return http.extractConsulResponseAsync(api.getNodeChecks(node, queryOptions.toQuery(),
+                queryOptions.getTag(), queryOptions.getNodeMeta(), queryOptions.toHeaders()));
+    }
+
+    /**
+     * Asynchronously retrieves the healthchecks for a service in a given datacenter with {@link com.orbitz.consul.option.QueryOptions}.
+     * <p/>
+     * GET /v1/health/checks/{service}?dc={datacenter}
+     *
+     * @param service      The service to query.
+     * @param queryOptions The Query Options to use.
+     * @return A future completed with a list of {@link com.orbitz.consul.model.health.HealthCheck} objects.
+     */
+    public CompletableFuture<ConsulResponse<List<HealthCheck>>> getServiceChecksAsync(String service, QueryOptions queryOptions) {
+        return http.extractConsulResponseAsync(api.getServiceChecks(service, queryOptions.toQuery(),
+                queryOptions.getTag(), queryOptions.getNodeMeta(), queryOptions.toHeaders()));
+    }
+
+    /**
+     * Asynchronously retrieves the healthchecks for a state in a given datacenter with {@link com.orbitz.consul.option.QueryOptions}.
+     * <p/>
+     * GET /v1/health/state/{state}?dc={datacenter}
+     *
+     * @param state        The state to query.
+     * @param queryOptions The Query Options to use.
+     * @return A future completed with a list of {@link com.orbitz.consul.model.health.HealthCheck} objects.
+     */
+    public CompletableFuture<ConsulResponse<List<HealthCheck>>> getChecksByStateAsync(State state, QueryOptions queryOptions) {
+        return http.extractConsulResponseAsync(api.getChecksByState(state.getName(), queryOptions.toQuery(),
+                queryOptions.getTag(), queryOptions.getNodeMeta(), queryOptions.toHeaders()));
+    }
+
+    /**
+     * Asynchronously retrieves the healthchecks for all healthy service instances in a given
+     * datacenter with {@link com.orbitz.consul.option.QueryOptions}.
+     * <p/>
+     * GET /v1/health/service/{service}?dc={datacenter}&amp;passing
+     *
+     * @param service      The service to query.
+     * @param queryOptions The Query Options to use.
+     * @return A future completed with a list of {@link com.orbitz.consul.model.health.ServiceHealth} objects.
+     */
+    public CompletableFuture<ConsulResponse<List<ServiceHealth>>> getHealthyServiceInstancesAsync(String service,
+                                                                                                 QueryOptions queryOptions) {
+        return http.extractConsulResponseAsync(api.getServiceInstances(service,
+                optionsFrom(ImmutableMap.of("passing", "true"), queryOptions.toQuery()),
+                queryOptions.getTag(), queryOptions.getNodeMeta(), queryOptions.toHeaders()));
+    }
+
+    /**
+     * Asynchronously retrieves the healthchecks for all nodes in a given
+     * datacenter with {@link com.orbitz.consul.option.QueryOptions}.
+     * <p/>
+     * GET /v1/health/service/{service}?dc={datacenter}
+     *
+     * @param service      The service to query.
+     * @param queryOptions The Query Options to use.
+     * @return A future completed with a list of {@link com.orbitz.consul.model.health.ServiceHealth} objects.
+     */
+    public CompletableFuture<ConsulResponse<List<ServiceHealth>>> getAllServiceInstancesAsync(String service,
+                                                                                             QueryOptions queryOptions) {
+        return http.extractConsulResponseAsync(api.getServiceInstances(service, queryOptions.toQuery(),
+                queryOptions.getTag(), queryOptions.getNodeMeta(), queryOptions.toHeaders()));
+    }
+
+    @SafeVarargs
     private static Map<String, Object> optionsFrom(Map<String, ?>... options) {
         Map<String, Object> result = new HashMap<>();
 
@@ -1,19 +1,23 @@
 package com.orbitz.consul;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonNode;
 
 import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.util.Optional;
 
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.primitives.UnsignedLongs;
 import com.orbitz.consul.async.ConsulResponseCallback;
+import com.orbitz.consul.cache.CacheScheduler;
 import com.orbitz.consul.config.ClientConfig;
 import com.orbitz.consul.model.ConsulResponse;
 import com.orbitz.consul.model.kv.Operation;
 import com.orbitz.consul.model.kv.TxResponse;
 import com.orbitz.consul.model.kv.Value;
+import com.orbitz.consul.model.kv.Verb;
 import com.orbitz.consul.model.session.SessionInfo;
 import com.orbitz.consul.monitoring.ClientEventCallback;
 import com.orbitz.consul.option.ConsistencyMode;
@@ -26,6 +30,8 @@ import com.orbitz.consul.option.TransactionOptions;
 import com.orbitz.consul.util.Jackson;
 import okhttp3.MediaType;
 import okhttp3.RequestBody;
+import okhttp3.ResponseBody;
+import okio.BufferedSink;
 import org.apache.commons.lang3.StringUtils;
 import retrofit2.Call;
 import retrofit2.Retrofit;
@@ -37,11 +43,23 @@ import retrofit2.http.Headers;
 import retrofit2.http.PUT;
 import retrofit2.http.Path;
 import retrofit2.http.QueryMap;
+import retrofit2.http.Streaming;
 
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+import java.util.function.Function;
 
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.orbitz.consul.util.Strings.trimLeadingSlash;
@@ -53,6 +71,14 @@ public class KeyValueClient extends BaseCacheableClient {
 
     private static String CLIENT_NAME = "keyvalue";
     public static final int NOT_FOUND_404 = 404;
+    private static final int CONFLICT_409 = 409;
+
+    // Consul rejects the transactions of more than 64 operations
+    private static final int MAX_TRANSACTION_OPERATIONS = 64;
+    // Consul rejects the transaction bodies larger than txn_max_req_len, 512 KB by default
+    private static final int MAX_TRANSACTION_BYTES = 512 * 1024;
+    // The number of transactions of a bulk operation in flight at once
+    private static final int MAX_CONCURRENT_TRANSACTIONS = 8;
 
     private final Api api;
 
@@ -61,8 +87,9 @@ public class KeyValueClient extends BaseCacheableClient {
      *
      * @param retrofit The {@link Retrofit} to build a client from.
      */
-    KeyValueClient(Retrofit retrofit, ClientConfig config, ClientEventCallback eventCallback, Consul.NetworkTimeoutConfig networkTimeoutConfig) {
-        super(CLIENT_NAME, config, eventCallback, networkTimeoutConfig);
+    KeyValueClient(Retrofit retrofit, ClientConfig config, ClientEventCallback eventCallback, Consul.NetworkTimeoutConfig networkTimeoutConfig,
+                   CacheScheduler cacheScheduler) {
+        super(CLIENT_NAME, config, eventCallback, networkTimeoutConfig, cacheScheduler);
         this.api = retrofit.create(Api.class);
     }
 
@@ -268,6 +295,53 @@ public class KeyValueClient extends BaseCacheableClient {
         http.extractConsulResponse(api.getValue(trimLeadingSlash(key), query), callback, NOT_FOUND_404);
     }
 
+    /**
+     * Streams the {@link com.orbitz.consul.model.kv.Value} objects for a specific key
+     * from the key/value store. Each value is handed to the consumer as soon as it is decoded,
+     * so the whole list is never held in memory.
+     * A blocking query which returns without any change, i.e. with the index given in the query options,
+     * does not hand any value to the consumer.
+     *
+     * GET /v1/kv/{key}?recurse
+     *
+     * @param key The key to retrieve.
+     * @param queryOptions The query options.
+     * @param consumer The consumer receiving each value.
+     * @return A {@link ConsulResponse} with the consul response headers, without body.
+     */
+    public ConsulResponse<Void> streamValues(String key, QueryOptions queryOptions, Consumer<Value> consumer) {
+        Map<String, Object> query = queryOptions.toQuery();
+
+        query.put("recurse", "true");
+
+        return http.streamConsulResponse(api.streamValues(trimLeadingSlash(key), query), Value.class, consumer,
+                NOT_FOUND_404);
+    }
+
+    /**
+     * Asynchronously streams the {@link com.orbitz.consul.model.kv.Value} objects for a specific key
+     * from the key/value store. Each value is handed to the consumer as soon as it is decoded,
+     * then the callback is completed with the consul response headers.
+     * A blocking query which returns without any change, i.e. with the index given in the query options,
+     * does not hand any value to the consumer.
+     *
+     * GET /v1/kv/{key}?recurse
+     *
+     * @param key The key to retrieve.
+     * @param queryOptions The query options.
+     * @param consumer The consumer receiving each value.
+     * @param callback Callback implemented by callee to handle results.
+     */
+    public void streamValues(String key, QueryOptions queryOptions, Consumer<Value> consumer,
+                             ConsulResponseCallback<Void> callback) {
+        Map<String, Object> query = queryOptions.toQuery();
+
+        query.put("recurse", "true");
+
+        http.streamConsulResponse(api.streamValues(trimLeadingSlash(key), query), Value.class, consumer, callback,
+                NOT_FOUND_404);
+    }
+
     /**
      * Retrieves a string value for a specific key from the key/value store.
      *
@@ -405,21 +479,8 @@ public class KeyValueClient extends BaseCacheableClient {
      * @return <code>true</code> if the value was successfully indexed.
      */
     public boolean putValue(String key, String value, long flags, PutOptions putOptions, Charset charset) {
-
-        checkArgument(StringUtils.isNotEmpty(key), "Key must be defined");
-        Map<String, Object> query = putOptions.toQuery();
-
-        if (flags != 0) {
-            query.put("flags", UnsignedLongs.toString(flags));
-        }
-
-        if (value == null) {
-            return http.extract(api.putValue(trimLeadingSlash(key),
-                    query));
-        } else {
-            return http.extract(api.putValue(trimLeadingSlash(key),
-                    RequestBody.create(MediaType.parse("text/plain; charset=" + charset.name()), value), query));
-        }
+        return http.extract(putValueCall(key, value == null ? null
+                : RequestBody.create(value, MediaType.parse("text/plain; charset=" + charset.name())), flags, putOptions));
     }
 
     /**
@@ -431,7 +492,11 @@ public class KeyValueClient extends BaseCacheableClient {
      * @return <code>true</code> if the value was successfully indexed.
      */
     public boolean putValue(String key, byte[] value, long flags, PutOptions putOptions) {
+        return http.extract(putValueCall(key, value == null ? null
+                : RequestBody.create(value, MediaType.parse("application/octet-stream")), flags, putOptions));
+    }
 
+    private Call<Boolean> putValueCall(String key, RequestBody body, long flags, PutOptions putOptions) {
         checkArgument(StringUtils.isNotEmpty(key), "Key must be defined");
         Map<String, Object> query = putOptions.toQuery();
 
@@ -439,12 +504,10 @@ public class KeyValueClient extends BaseCacheableClient {
             query.put("flags", UnsignedLongs.toString(flags));
         }
 
-        if (value == null) {
-            return http.extract(api.putValue(trimLeadingSlash(key),
-                    query));
+        if (body == null) {
+            return api.putValue(trimLeadingSlash(key), query);
         } else {
-            return http.extract(api.putValue(trimLeadingSlash(key),
-                    RequestBody.create(MediaType.parse("application/octet-stream"), value), query));
+            return api.putValue(trimLeadingSlash(key), body, query);
         }
     }
 
@@ -631,12 +694,7 @@ public class KeyValueClient extends BaseCacheableClient {
                 ? ImmutableMap.of()
                 : ImmutableMap.of(consistency.toParam().get(), "true");
 
-        try {
-            return http.extractConsulResponse(api.performTransaction(RequestBody.create(MediaType.parse("application/json"),
-                    Jackson.MAPPER.writeValueAsString(kv(operations))), query));
-        } catch (JsonProcessingException e) {
-            throw new ConsulException(e);
-        }
+        return http.extractConsulResponse(api.performTransaction(transactionBody(operations), query));
     }
 
     /**
@@ -649,13 +707,59 @@ public class KeyValueClient extends BaseCacheableClient {
      * @return A {@link ConsulResponse} containing results and potential errors.
      */
     public ConsulResponse<TxResponse> performTransaction(TransactionOptions transactionOptions, Operation... operations) {
-        Map<String, Object> query = transactionOptions.toQuery();
+        return http.extractConsulResponse(performTransactionCall(transactionOptions, operations));
+    }
+
+    private Call<TxResponse> performTransactionCall(TransactionOptions transactionOptions, Operation... operations) {
+        return api.performTransaction(transactionBody(operations), transactionOptions.toQuery());
+    }
+
+    /**
+     * Retrieves the values of many keys, with read-only transactions of up to 64 keys sent concurrently.
+     *
+     * PUT /v1/txn
+     *
+     * @param keys The keys to retrieve.
+     * @return The values of the keys which exist, by key, in the order of the keys.
+     */
+    public Map<String, Value> getValues(Collection<String> keys) {
+        return join(getValuesAsync(keys, TransactionOptions.BLANK));
+    }
+
+    /**
+     * Puts many values into the key/value store, with transactions of up to 64 keys sent concurrently. Each
+     * transaction is atomic, but not the whole operation: if a transaction fails, the others may have succeeded.
+     *
+     * PUT /v1/txn
+     *
+     * @param values The values to index, by key.
+     * @throws BulkOperationException holding the keys of the transactions which failed.
+     */
+    public void putValues(Map<String, byte[]> values) {
+        join(putValuesAsync(values, TransactionOptions.BLANK));
+    }
+
+    /**
+     * Deletes many keys, with transactions of up to 64 keys sent concurrently. Each transaction is atomic, but
+     * not the whole operation: if a transaction fails, the others may have succeeded.
+     *
+     * PUT /v1/txn
+     *
+     * @param keys The keys to delete.
+     * @throws BulkOperationException holding the keys of the transactions which failed.
+     */
+    public void deleteKeys(Collection<String> keys) {
+        join(deleteKeysAsync(keys, TransactionOptions.BLANK));
+    }
 
+    private static <T> T join(CompletableFuture<T> future) {
         try {
-            return http.extractConsulResponse(api.performTransaction(RequestBody.create(MediaType.parse("application/json"),
-                Jackson.MAPPER.writeValueAsString(kv(operations))), query));
-        } catch (JsonProcessingException e) {
-            throw new ConsulException(e);
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof ConsulException) {
+                throw (ConsulException) e.getCause();
+            }
+            throw new ConsulException(e.getCause());
         }
     }
 
@@ -674,6 +778,317 @@ public class KeyValueClient extends BaseCacheableClient {
         return kvs;
     }
 
+    /**
+     * Asynchronously retrieves a {@link com.orbitz.consul.model.kv.Value} for a specific key
+     * from the key/value store.
+     *
+     * GET /v1/kv/{key}
+     *
+     * @param key The key to retrieve.
+     * @param queryOptions The query options.
+     * @return A future completed with the value, or {@link Optional#empty()} if the key does not exist.
+     */
+    public CompletableFuture<ConsulResponse<Optional<Value>>> getValueAsync(String key, QueryOptions queryOptions) {
+        return http.extractConsulResponseAsync(api.getValue(trimLeadingSlash(key), queryOptions.toQuery()), NOT_FOUND_404)
+                .thenApply(response -> response.withResponse(getSingleValue(response.getResponse())));
+    }
+
+    /**
+     * Asynchronously retrieves a list of {@link com.orbitz.consul.model.kv.Value} objects for a specific key
+     * from the key/value store.
+     *
+     * GET /v1/kv/{key}?recurse
+     *
+     * @param key The key to retrieve.
+     * @param queryOptions The query options.
+     * @return A future completed with zero to many {@link com.orbitz.consul.model.kv.Value} objects.
+     */
+    public CompletableFuture<ConsulResponse<List<Value>>> getValuesAsync(String key, QueryOptions queryOptions) {
+        Map<String, Object> query = queryOptions.toQuery();
+
+        query.put("recurse", "true");
+
+        return http.extractConsulResponseAsync(api.getValue(trimLeadingSlash(key), query), NOT_FOUND_404)
+                .thenApply(response -> response.getResponse() == null
+                        ? response.withResponse(Collections.<Value>emptyList())
+                        : response);
+    }
+
+    /**
+     * Asynchronously retrieves a list of matching keys for the given key.
+     *
+     * GET /v1/kv/{key}?keys&separator={separator}
+     *
+     * @param key The key to retrieve.
+     * @param separator The separator used to limit the prefix of keys returned, may be null.
+     * @param queryOptions The query options.
+     * @return A future completed with zero to many keys.
+     */
+    public CompletableFuture<ConsulResponse<List<String>>> getKeysAsync(String key, String separator, QueryOptions queryOptions) {
+        Map<String, Object> query = queryOptions.toQuery();
+        query.put("keys", "true");
+        if (separator != null) {
+            query.put("separator", separator);
+        }
+
+        return http.extractConsulResponseAsync(api.getKeys(trimLeadingSlash(key), query), NOT_FOUND_404)
+                .thenApply(response -> response.getResponse() == null
+                        ? response.withResponse(Collections.<String>emptyList())
+                        : response);
+    }
+
+    /**
+     * Asynchronously puts a value into the key/value store.
+     *
+     * @param key The key to use as index.
+     * @param value The value to index, may be null.
+     * @param flags The flags for this key.
+     * @param putOptions PUT options (e.g. wait, acquire).
+     * @param charset The charset of the value.
+     * @return A future completed with <code>true</code> if the value was successfully indexed.
+     */
+    public CompletableFuture<ConsulResponse<Boolean>> putValueAsync(String key, String value, long flags, PutOptions putOptions,
+                                                                    Charset charset) {
+        return http.extractConsulResponseAsync(putValueCall(key, value == null ? null
+                : RequestBody.create(value, MediaType.parse("text/plain; charset=" + charset.name())), flags, putOptions));
+    }
+
+    /**
+     * Asynchronously puts a value into the key/value store.
+     *
+     * @param key The key to use as index.
+     * @param value The value to index, may be null.
+     * @param flags The flags for this key.
+     * @param putOptions PUT options (e.g. wait, acquire).
+     * @return A future completed with <code>true</code> if the value was successfully indexed.
+     */
+    public CompletableFuture<ConsulResponse<Boolean>> putValueAsync(String key, byte[] value, long flags, PutOptions putOptions) {
+        return http.extractConsulResponseAsync(putValueCall(key, value == null ? null
+                : RequestBody.create(value, MediaType.parse("application/octet-stream")), flags, putOptions));
+    }
+
+    /**
+     * Asynchronously deletes a specified key.
+     *
+     * DELETE /v1/kv/{key}
+     *
+     * @param key The key to delete.
+     * @param deleteOptions DELETE options (e.g. recurse, cas)
+     * @return A future completed when the key is deleted.
+     */
+    public CompletableFuture<ConsulResponse<Void>> deleteKeyAsync(String key, DeleteOptions deleteOptions) {
+        checkArgument(StringUtils.isNotEmpty(key), "Key must be defined");
+        return http.extractConsulResponseAsync(api.deleteValues(trimLeadingSlash(key), deleteOptions.toQuery()));
+    }
+
+    /**
+     * Asynchronously performs a Consul transaction.
+     *
+     * PUT /v1/tx
+     *
+     * @param transactionOptions transaction options (e.g. dc, consistency).
+     * @param operations A list of KV operations.
+     * @return A future completed with the results and potential errors.
+     */
+    public CompletableFuture<ConsulResponse<TxResponse>> performTransactionAsync(TransactionOptions transactionOptions,
+                                                                                 Operation... operations) {
+        return http.extractConsulResponseAsync(performTransactionCall(transactionOptions, operations));
+    }
+
+    /**
+     * Asynchronously retrieves the values of many keys, with read-only transactions of up to 64 keys sent
+     * concurrently.
+     *
+     * PUT /v1/txn
+     *
+     * @param keys The keys to retrieve.
+     * @param transactionOptions transaction options (e.g. dc, consistency).
+     * @return A future completed with the values of the keys which exist, by key, in the order of the keys.
+     */
+    public CompletableFuture<Map<String, Value>> getValuesAsync(Collection<String> keys,
+                                                                TransactionOptions transactionOptions) {
+        List<BulkOperation> operations = new ArrayList<>(keys.size());
+        for (String key : keys) {
+            operations.add(new BulkOperation(Verb.GET, key, null));
+        }
+        Map<String, Value> values = new ConcurrentHashMap<>();
+        return performConcurrently(operations, chunk -> readChunk(chunk, transactionOptions, values))
+                .thenApply(done -> {
+                    Map<String, Value> ordered = new LinkedHashMap<>();
+                    for (BulkOperation operation : operations) {
+                        Value value = values.get(operation.key);
+                        if (value != null) {
+                            ordered.put(operation.key, value);
+                        }
+                    }
+                    return ordered;
+                });
+    }
+
+    /**
+     * Asynchronously puts many values into the key/value store, with transactions of up to 64 keys sent
+     * concurrently. Each transaction is atomic, but not the whole operation.
+     *
+     * PUT /v1/txn
+     *
+     * @param values The values to index, by key.
+     * @param transactionOptions transaction options (e.g. dc).
+     * @return A future completed once all the values are indexed, or failed with a {@link BulkOperationException}
+     * holding the keys of the transactions which failed.
+     */
+    public CompletableFuture<Void> putValuesAsync(Map<String, byte[]> values, TransactionOptions transactionOptions) {
+        List<BulkOperation> operations = new ArrayList<>(values.size());
+        for (Map.Entry<String, byte[]> entry : values.entrySet()) {
+            operations.add(new BulkOperation(Verb.SET, entry.getKey(), entry.getValue()));
+        }
+        return performConcurrently(operations, chunk -> writeChunk(chunk, transactionOptions));
+    }
+
+    /**
+     * Asynchronously deletes many keys, with transactions of up to 64 keys sent concurrently. Each transaction is
+     * atomic, but not the whole operation.
+     *
+     * PUT /v1/txn
+     *
+     * @param keys The keys to delete.
+     * @param transactionOptions transaction options (e.g. dc).
+     * @return A future completed once all the keys are deleted, or failed with a {@link BulkOperationException}
+     * holding the keys of the transactions which failed.
+     */
+    public CompletableFuture<Void> deleteKeysAsync(Collection<String> keys, TransactionOptions transactionOptions) {
+        List<BulkOperation> operations = new ArrayList<>(keys.size());
+        for (String key : keys) {
+            checkArgument(StringUtils.isNotEmpty(key), "Key must be defined");
+            operations.add(new BulkOperation(Verb.DELETE, key, null));
+        }
+        return performConcurrently(operations, chunk -> writeChunk(chunk, transactionOptions));
+    }
+
+    /**
+     * Splits the operations in transactions of up to 64 operations and of an estimated body of up to
+     * {@link #MAX_TRANSACTION_BYTES}, and sends them over as many concurrent lanes as
+     * {@link #MAX_CONCURRENT_TRANSACTIONS}, each lane sending its next transaction when the previous completes.
+     * An operation larger than the limit on its own is sent alone, for Consul to reject it.
+     * <p>
+     * The future fails with a {@link BulkOperationException} holding the keys of the transactions which failed.
+     */
+    private static CompletableFuture<Void> performConcurrently(List<BulkOperation> operations,
+                                                               Function<List<BulkOperation>, CompletableFuture<Void>> transaction) {
+        List<List<BulkOperation>> chunks = new ArrayList<>();
+        int start = 0;
+        long bytes = 2;
+        for (int index = 0; index < operations.size(); index++) {
+            long size = operations.get(index).estimatedSize();
+            if (index > start && (index - start == MAX_TRANSACTION_OPERATIONS || bytes + size > MAX_TRANSACTION_BYTES)) {
+                chunks.add(operations.subList(start, index));
+                start = index;
+                bytes = 2;
+            }
+            bytes += size;
+        }
+        if (start < operations.size()) {
+            chunks.add(operations.subList(start, operations.size()));
+        }
+        int lanes = Math.min(MAX_CONCURRENT_TRANSACTIONS, chunks.size());
+        AtomicReferenceArray<Throwable> failures = new AtomicReferenceArray<>(chunks.size());
+        CompletableFuture<?>[] futures = new CompletableFuture<?>[lanes];
+        for (int lane = 0; lane < lanes; lane++) {
+            CompletableFuture<Void> future = CompletableFuture.completedFuture(null);
+            for (int index = lane; index < chunks.size(); index += lanes) {
+                List<BulkOperation> chunk = chunks.get(index);
+                int chunkIndex = index;
+                // a failed transaction does not stop the next ones of its lane
+                future = future.thenCompose(done -> transaction.apply(chunk))
+                        .handle((done, throwable) -> {
+                            if (throwable != null) {
+                                failures.set(chunkIndex, throwable instanceof CompletionException
+                                        && throwable.getCause() != null ? throwable.getCause() : throwable);
+                            }
+                            return null;
+                        });
+            }
+            futures[lane] = future;
+        }
+        return CompletableFuture.allOf(futures).thenApply(done -> {
+            Map<String, Throwable> failed = new LinkedHashMap<>();
+            for (int index = 0; index < chunks.size(); index++) {
+                Throwable failure = failures.get(index);
+                if (failure != null) {
+                    for (BulkOperation operation : chunks.get(index)) {
+                        failed.put(operation.key, failure);
+                    }
+                }
+            }
+            if (!failed.isEmpty()) {
+                throw new BulkOperationException(failed, operations.size());
+            }
+            return null;
+        });
+    }
+
+    private CompletableFuture<retrofit2.Response<TxResponse>> performBulkTransaction(List<BulkOperation> operations,
+                                                                                     TransactionOptions transactionOptions) {
+        return http.executeAsync(api.performTransaction(new TransactionBody(generator -> {
+            generator.writeStartArray();
+            for (BulkOperation operation : operations) {
+                operation.write(generator);
+            }
+            generator.writeEndArray();
+        }), transactionOptions.toQuery()), CONFLICT_409);
+    }
+
+    private CompletableFuture<Void> writeChunk(List<BulkOperation> operations, TransactionOptions transactionOptions) {
+        return performBulkTransaction(operations, transactionOptions).thenAccept(response -> {
+            if (!response.isSuccessful()) {
+                throw new ConsulException(response.code(), response);
+            }
+        });
+    }
+
+    /**
+     * Reads the values of a transaction. A missing key fails the whole transaction, which is sent again without
+     * the keys reported missing.
+     */
+    private CompletableFuture<Void> readChunk(List<BulkOperation> operations, TransactionOptions transactionOptions,
+                                              Map<String, Value> values) {
+        return performBulkTransaction(operations, transactionOptions).thenCompose(response -> {
+            if (response.isSuccessful()) {
+                for (Map<String, Value> result : response.body().results()) {
+                    Value value = result.get("KV");
+                    if (value != null) {
+                        values.put(value.getKey(), value);
+                    }
+                }
+                return CompletableFuture.completedFuture(null);
+            }
+
+            Set<Integer> missing = new HashSet<>();
+            try (ResponseBody errorBody = response.errorBody()) {
+                JsonNode errors = Jackson.MAPPER.readTree(errorBody.byteStream()).path("Errors");
+                for (JsonNode error : errors) {
+                    if (!error.has("OpIndex") || !error.path("What").asText().endsWith("doesn't exist")) {
+                        throw new ConsulException("Transaction failed: " + error.path("What").asText());
+                    }
+                    missing.add(error.path("OpIndex").asInt());
+                }
+            } catch (IOException e) {
+                throw new ConsulException(e);
+            }
+            if (missing.isEmpty()) {
+                throw new ConsulException("Transaction failed without errors");
+            }
+            List<BulkOperation> remaining = new ArrayList<>(operations.size() - missing.size());
+            for (int index = 0; index < operations.size(); index++) {
+                if (!missing.contains(index)) {
+                    remaining.add(operations.get(index));
+                }
+            }
+            return remaining.isEmpty()
+                    ? CompletableFuture.completedFuture(null)
+                    : readChunk(remaining, transactionOptions, values);
+        });
+    }
+
     /**
      * Retrofit API interface.
      */
@@ -684,6 +1099,11 @@ public class KeyValueClient extends BaseCacheableClient {
         Call<List<Value>> getValue(@Path("key") String key,
                                    @QueryMap Map<String, Object> query);
 
+        @Streaming
+        @GET("kv/{key}")
+        Call<ResponseBody> streamValues(@Path("key") String key,
+                                        @QueryMap Map<String, Object> query);
+
         @GET("kv/{key}")
         Call<List<String>> getKeys(@Path("key") String key,
                                    @QueryMap Map<String, Object> query);
@@ -720,4 +1140,84 @@ public class KeyValueClient extends BaseCacheableClient {
             return kv;
         }
     }
+
+    private static RequestBody transactionBody(Operation... operations) {
+        Kv[] kvs = kv(operations);
+        return new TransactionBody(generator -> generator.writeObject(kvs));
+    }
+
+    /**
+     * A KV operation of a bulk transaction, whose value is written as is, without an intermediate string.
+     */
+    private static final class BulkOperation {
+        // {"KV":{"Verb":"delete-tree","Key":"","Value":""}}, and the comma separating the operations
+        private static final int OPERATION_ENVELOPE_BYTES = 50;
+
+        private final Verb verb;
+        private final String key;
+        private final byte[] value;
+
+        private BulkOperation(Verb verb, String key, byte[] value) {
+            this.verb = verb;
+            this.key = trimLeadingSlash(key);
+            this.value = value;
+        }
+
+        /**
+         * Estimates the size of the operation in the body of a transaction: its JSON envelope, its key and its
+         * Base64 encoded value, ignoring the escaping of the key.
+         */
+        private long estimatedSize() {
+            long size = OPERATION_ENVELOPE_BYTES + key.getBytes(StandardCharsets.UTF_8).length;
+            if (value != null) {
+                size += 4L * ((value.length + 2) / 3);
+            }
+            return size;
+        }
+
+        private void write(JsonGenerator generator) throws IOException {
+            generator.writeStartObject();
+            generator.writeObjectFieldStart("KV");
+            generator.writeStringField("Verb", verb.toValue());
+            generator.writeStringField("Key", key);
+            if (value != null) {
+                generator.writeFieldName("Value");
+                generator.writeBinary(value);
+            }
+            generator.writeEndObject();
+            generator.writeEndObject();
+        }
+    }
+
+    /**
+     * The JSON body of a transaction, serialized straight to the connection when the request is sent.
+     */
+    private static final class TransactionBody extends RequestBody {
+        private static final MediaType JSON = MediaType.parse("application/json");
+
+        private final JsonWriter writer;
+
+        private TransactionBody(JsonWriter writer) {
+            this.writer = writer;
+        }
+
+        @Override
+        public MediaType contentType() {
+            return JSON;
+        }
+
+        @Override
+        public void writeTo(BufferedSink sink) throws IOException {
+            JsonGenerator generator = Jackson.MAPPER.getFactory().createGenerator(sink.outputStream());
+            // the sink belongs to OkHttp
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            writer.write(generator);
+            generator.close();
+        }
+    }
+
+    @FunctionalInterface
+    private interface JsonWriter {
+        void write(JsonGenerator generator) throws IOException;
+    }
 }
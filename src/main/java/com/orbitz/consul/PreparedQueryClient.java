@@ -3,6 +3,7 @@ package com.orbitz.consul;
 import com.google.common.collect.ImmutableMap;
 import com.orbitz.consul.async.Callback;
 import com.orbitz.consul.config.ClientConfig;
+import com.orbitz.consul.model.ConsulResponse;
 import com.orbitz.consul.model.query.PreparedQuery;
 import com.orbitz.consul.model.query.QueryId;
 import com.orbitz.consul.model.query.QueryResults;
@@ -17,6 +18,7 @@ import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 
 public class PreparedQueryClient extends BaseClient {
 
@@ -134,6 +136,60 @@ public class PreparedQueryClient extends BaseClient {
         http.extractBasicResponse(api.execute(nameOrId, options.toQuery()), callback);
     }
 
+    /**
+     * Asynchronously creates a prepared query.
+     *
+     * POST /v1/query
+     *
+     * @param preparedQuery The prepared query to create.
+     * @param dc The data center.
+     * @return A future completed with a {@link ConsulResponse} containing the ID of the created query.
+     */
+    public CompletableFuture<ConsulResponse<String>> createPreparedQueryAsync(PreparedQuery preparedQuery,
+                                                                             final String dc) {
+        return http.extractConsulResponseAsync(api.createPreparedQuery(preparedQuery, dcQuery(dc)))
+                .thenApply(response -> response.withResponse(response.getResponse().getId()));
+    }
+
+    /**
+     * Asynchronously retrieves the list of prepared queries.
+     *
+     * GET /v1/query
+     *
+     * @param dc The data center.
+     * @return A future completed with a {@link ConsulResponse} containing a list of stored prepared queries.
+     */
+    public CompletableFuture<ConsulResponse<List<StoredQuery>>> getPreparedQueriesAsync(final String dc) {
+        return http.extractConsulResponseAsync(api.getPreparedQueries(dcQuery(dc)));
+    }
+
+    /**
+     * Asynchronously retrieves a prepared query by its ID.
+     *
+     * GET /v1/query/{id}
+     *
+     * @param id The query ID.
+     * @param dc The data center.
+     * @return A future completed with a {@link ConsulResponse} containing the stored prepared query.
+     */
+    public CompletableFuture<ConsulResponse<Optional<StoredQuery>>> getPreparedQueryAsync(String id, final String dc) {
+        return http.extractConsulResponseAsync(api.getPreparedQuery(id, dcQuery(dc)))
+                .thenApply(response -> response.withResponse(response.getResponse().isEmpty()
+                        ? Optional.<StoredQuery>empty() : Optional.of(response.getResponse().get(0))));
+    }
+
+    /**
+     * Asynchronously executes a prepared query by its name or ID.
+     *
+     * @param nameOrId The query name or ID.
+     * @param options Query options.
+     * @return A future completed with a {@link ConsulResponse} containing a {@link QueryResults} object
+     * with the service instances.
+     */
+    public CompletableFuture<ConsulResponse<QueryResults>> executeAsync(String nameOrId, QueryOptions options) {
+        return http.extractConsulResponseAsync(api.execute(nameOrId, options.toQuery()));
+    }
+
     /**
      * Retrofit API interface.
      */
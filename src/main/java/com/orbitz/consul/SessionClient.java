@@ -2,6 +2,7 @@ package com.orbitz.consul;
 
 import com.google.common.collect.ImmutableMap;
 import com.orbitz.consul.config.ClientConfig;
+import com.orbitz.consul.model.ConsulResponse;
 import com.orbitz.consul.model.session.Session;
 import com.orbitz.consul.model.session.SessionCreatedResponse;
 import com.orbitz.consul.model.session.SessionInfo;
@@ -14,6 +15,7 @@ import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * HTTP Client for /v1/session/ endpoints.
@@ -158,6 +160,79 @@ public class SessionClient extends BaseClient {
         return listSessions(null);
     }
 
+    /**
+     * Asynchronously creates a session.
+     *
+     * PUT /v1/session/create
+     *
+     * @param value The session to create.
+     * @param dc    The data center.
+     * @return A future completed with a {@link ConsulResponse} containing the ID of the newly created session.
+     */
+    public CompletableFuture<ConsulResponse<SessionCreatedResponse>> createSessionAsync(final Session value,
+                                                                                      final String dc) {
+        return http.extractConsulResponseAsync(api.createSession(value, dcQuery(dc)));
+    }
+
+    /**
+     * Asynchronously renews a session.
+     *
+     * @param dc        The datacenter.
+     * @param sessionId The session ID to renew.
+     * @return A future completed with a {@link ConsulResponse} containing the {@link SessionInfo} object
+     * for the renewed session.
+     */
+    public CompletableFuture<ConsulResponse<Optional<SessionInfo>>> renewSessionAsync(final String dc,
+                                                                                    final String sessionId) {
+        return http.extractConsulResponseAsync(api.renewSession(sessionId, ImmutableMap.of(), dcQuery(dc)))
+                .thenApply(response -> response.withResponse(firstSessionInfo(response.getResponse())));
+    }
+
+    /**
+     * Asynchronously destroys a session.
+     *
+     * PUT /v1/session/destroy/{sessionId}
+     *
+     * @param sessionId The session ID to destroy.
+     * @param dc        The data center.
+     * @return A future completed with a {@link ConsulResponse} once the session is destroyed.
+     */
+    public CompletableFuture<ConsulResponse<Void>> destroySessionAsync(final String sessionId, final String dc) {
+        return http.extractConsulResponseAsync(api.destroySession(sessionId, dcQuery(dc)));
+    }
+
+    /**
+     * Asynchronously retrieves session info.
+     *
+     * GET /v1/session/info/{sessionId}
+     *
+     * @param sessionId
+     * @param dc        Data center
+     * @return A future completed with a {@link ConsulResponse} containing the {@link SessionInfo}.
+     */
+    public CompletableFuture<ConsulResponse<Optional<SessionInfo>>> getSessionInfoAsync(final String sessionId,
+                                                                                      final String dc) {
+        return http.extractConsulResponseAsync(api.getSessionInfo(sessionId, dcQuery(dc)))
+                .thenApply(response -> response.withResponse(firstSessionInfo(response.getResponse())));
+    }
+
+    /**
+     * Asynchronously lists all sessions.
+     *
+     * GET /v1/session/list
+     *
+     * @param dc The data center.
+     * @return A future completed with a {@link ConsulResponse} containing the list of available sessions.
+     */
+    public CompletableFuture<ConsulResponse<List<SessionInfo>>> listSessionsAsync(final String dc) {
+        return http.extractConsulResponseAsync(api.listSessions(dcQuery(dc)));
+    }
+
+    private static Optional<SessionInfo> firstSessionInfo(List<SessionInfo> sessionInfo) {
+        return sessionInfo == null || sessionInfo.isEmpty() ? Optional.empty() :
+                Optional.of(sessionInfo.get(0));
+    }
+
     /**
      * Retrofit API interface.
      */
@@ -0,0 +1,92 @@
+package com.orbitz.consul.cache;
+
+import com.google.common.primitives.Ints;
+import com.orbitz.consul.AgentClient;
+import com.orbitz.consul.ConsulException;
+import com.orbitz.consul.async.ConsulResponseCallback;
+import com.orbitz.consul.config.CacheConfig;
+import com.orbitz.consul.model.ConsulResponse;
+import com.orbitz.consul.model.agent.FullService;
+import com.orbitz.consul.option.QueryOptions;
+
+import java.math.BigInteger;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+
+/**
+ * Watches the definition of a service registered on the local agent, with hash-based blocking queries.
+ * <p>
+ * The map holds a single entry keyed by the service id, and is empty while the service is not registered.
+ */
+public class AgentServiceCache extends ConsulCache<String, FullService> {
+
+    private AgentServiceCache(AgentClient agentClient,
+                              String serviceId,
+                              QueryOptions queryOptions,
+                              int watchSeconds,
+                              Scheduler callbackScheduler) {
+
+        super(FullService::getId,
+            (HashCallbackConsumer<FullService>) (hash, callback) -> {
+                checkWatch(agentClient.getNetworkTimeoutConfig().getClientReadTimeoutMillis(), watchSeconds);
+                agentClient.getService(serviceId, watchHashParams(hash, watchSeconds, queryOptions), toListCallback(callback));
+            },
+            agentClient.getConfig().getCacheConfig(),
+            agentClient.getEventHandler(),
+            new CacheDescriptor("agent.service", serviceId),
+            callbackScheduler);
+    }
+
+    /**
+     * Agent endpoints are served locally: they do not return X-Consul-KnownLeader and answer 404
+     * for a service which is not registered.
+     */
+    private static ConsulResponseCallback<FullService> toListCallback(ConsulResponseCallback<List<FullService>> callback) {
+        return new ConsulResponseCallback<FullService>() {
+            @Override
+            public void onComplete(ConsulResponse<FullService> consulResponse) {
+                List<FullService> services = consulResponse.getResponse() == null
+                        ? Collections.emptyList()
+                        : Collections.singletonList(consulResponse.getResponse());
+                callback.onComplete(new ConsulResponse<>(services, consulResponse.getLastContact(), true,
+                        consulResponse.getIndex(), null, null, consulResponse.getContentHash().orElse(null)));
+            }
+
+            @Override
+            public void onFailure(Throwable throwable) {
+                if (throwable instanceof ConsulException && ((ConsulException) throwable).getCode() == 404) {
+                    callback.onComplete(new ConsulResponse<>(Collections.emptyList(), 0, true, BigInteger.ZERO, null, null));
+                } else {
+                    callback.onFailure(throwable);
+                }
+            }
+        };
+    }
+
+    public static AgentServiceCache newCache(
+            final AgentClient agentClient,
+            final String serviceId,
+            final QueryOptions queryOptions,
+            final int watchSeconds,
+            final ScheduledExecutorService callbackExecutorService) {
+
+        Scheduler scheduler = createExternal(callbackExecutorService);
+        return new AgentServiceCache(agentClient, serviceId, queryOptions, watchSeconds, scheduler);
+    }
+
+    public static AgentServiceCache newCache(
+            final AgentClient agentClient,
+            final String serviceId,
+            final QueryOptions queryOptions,
+            final int watchSeconds) {
+
+        return new AgentServiceCache(agentClient, serviceId, queryOptions, watchSeconds, createDefault(agentClient.getCacheScheduler()));
+    }
+
+    public static AgentServiceCache newCache(final AgentClient agentClient, final String serviceId) {
+        CacheConfig cacheConfig = agentClient.getConfig().getCacheConfig();
+        int watchSeconds = Ints.checkedCast(cacheConfig.getWatchDuration().getSeconds());
+        return newCache(agentClient, serviceId, QueryOptions.BLANK, watchSeconds);
+    }
+}
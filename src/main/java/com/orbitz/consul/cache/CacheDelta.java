@@ -0,0 +1,57 @@
+package com.orbitz.consul.cache;
+
+import com.google.common.collect.ImmutableMap;
+
+/**
+ * The difference between two successive states of a {@link ConsulCache}.
+ * It is computed once per poll and shared by all the {@link ConsulCache.DeltaListener}s.
+ *
+ * @param <K> the type of the keys of the cache
+ * @param <V> the type of the values of the cache
+ */
+public class CacheDelta<K, V> {
+
+    private final ImmutableMap<K, V> added;
+    private final ImmutableMap<K, V> removed;
+    private final ImmutableMap<K, V> modified;
+
+    public CacheDelta(ImmutableMap<K, V> added, ImmutableMap<K, V> removed, ImmutableMap<K, V> modified) {
+        this.added = added;
+        this.removed = removed;
+        this.modified = modified;
+    }
+
+    /**
+     * Gets the entries which were not in the cache before this change.
+     */
+    public ImmutableMap<K, V> getAdded() {
+        return added;
+    }
+
+    /**
+     * Gets the entries which are no longer in the cache, with their last known value.
+     */
+    public ImmutableMap<K, V> getRemoved() {
+        return removed;
+    }
+
+    /**
+     * Gets the entries whose value changed, with their new value.
+     */
+    public ImmutableMap<K, V> getModified() {
+        return modified;
+    }
+
+    public boolean isEmpty() {
+        return added.isEmpty() && removed.isEmpty() && modified.isEmpty();
+    }
+
+    @Override
+    public String toString() {
+        return "CacheDelta{" +
+                "added=" + added.keySet() +
+                ", removed=" + removed.keySet() +
+                ", modified=" + modified.keySet() +
+                '}';
+    }
+}
@@ -0,0 +1,127 @@
+package com.orbitz.consul.cache;
+
+import com.google.common.base.Preconditions;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * A scheduler shared by many {@link ConsulCache} instances.
+ * <p>
+ * By default, every cache owns a dedicated single-thread executor which stays idle while its blocking query
+ * is in flight. A {@link CacheScheduler} multiplexes the delayed callbacks of all caches on a pool sized
+ * to the number of available processors, so the number of threads no longer grows with the number of caches.
+ * <p>
+ * Each cache still computes its own delays (minimum delay between requests, back-off on error), only the
+ * threads executing the callbacks are shared. Stopping a cache cancels its pending callbacks but does not
+ * shut down the shared pool, which is only shut down by {@link #shutdownNow()}.
+ */
+public class CacheScheduler implements AutoCloseable {
+
+    private final ScheduledThreadPoolExecutor executor;
+
+    /**
+     * Creates a scheduler with one thread per available processor.
+     */
+    public CacheScheduler() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Creates a scheduler backed by the given number of threads.
+     *
+     * @param threads the number of threads shared by all the caches.
+     */
+    public CacheScheduler(int threads) {
+        this(threads, new ThreadFactoryBuilder()
+                .setNameFormat("consulCacheSharedScheduler-%d")
+                .setDaemon(true)
+                .build());
+    }
+
+    /**
+     * Creates a scheduler backed by the given number of threads, created by a factory, e.g. of virtual threads.
+     *
+     * @param threads the number of threads shared by all the caches.
+     * @param threadFactory the factory of the threads, which should be daemon threads.
+     */
+    public CacheScheduler(int threads, ThreadFactory threadFactory) {
+        Preconditions.checkArgument(threads > 0, "Number of threads must be positive");
+        Preconditions.checkNotNull(threadFactory, "Thread factory cannot be null");
+        this.executor = new ScheduledThreadPoolExecutor(threads, threadFactory);
+        // cancelled callbacks of stopped caches must not stay in the queue until their delay expires
+        this.executor.setRemoveOnCancelPolicy(true);
+    }
+
+    /**
+     * Creates a {@link ConsulCache.Scheduler} for a single cache, backed by this shared scheduler.
+     */
+    ConsulCache.Scheduler newScheduler() {
+        return new SharedScheduler(executor);
+    }
+
+    /**
+     * Gets the number of callbacks currently waiting to be executed.
+     */
+    public int getPendingCallbacks() {
+        return executor.getQueue().size();
+    }
+
+    public void shutdownNow() {
+        executor.shutdownNow();
+    }
+
+    @Override
+    public void close() {
+        shutdownNow();
+    }
+
+    private static class SharedScheduler extends ConsulCache.Scheduler {
+
+        private final ScheduledExecutorService executor;
+        // a cache may have several callbacks pending, e.g. the retry of a read and a resync
+        private final Set<ScheduledFuture<?>> pending = ConcurrentHashMap.newKeySet();
+
+        SharedScheduler(ScheduledExecutorService executor) {
+            super(executor);
+            this.executor = executor;
+        }
+
+        @Override
+        void schedule(Runnable r, long delay, TimeUnit unit) {
+            AtomicReference<ScheduledFuture<?>> self = new AtomicReference<>();
+            ScheduledFuture<?> future = executor.schedule(() -> {
+                try {
+                    r.run();
+                } finally {
+                    ScheduledFuture<?> done = self.get();
+                    if (done != null) {
+                        pending.remove(done);
+                    }
+                }
+            }, delay, unit);
+            self.set(future);
+            pending.add(future);
+            // the callback may have run before it was tracked
+            if (future.isDone()) {
+                pending.remove(future);
+            }
+        }
+
+        @Override
+        void shutdownNow() {
+            // the executor is shared with other caches: only the callbacks of this cache are cancelled
+            for (ScheduledFuture<?> future : pending) {
+                future.cancel(false);
+                pending.remove(future);
+            }
+        }
+    }
+}
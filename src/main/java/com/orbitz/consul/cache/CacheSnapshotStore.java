@@ -0,0 +1,254 @@
+package com.orbitz.consul.cache;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.orbitz.consul.ConsulException;
+import com.orbitz.consul.util.Jackson;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigInteger;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Persists the content of a {@link ConsulCache} in a file, so that a restarted process can serve the last
+ * known values immediately and resume with a blocking query from the persisted index, instead of fetching
+ * everything again.
+ * <p>
+ * The values are written as JSON, in the same format as the Consul API, streamed to a temporary file which
+ * then atomically replaces the previous one, so a crash never leaves a truncated snapshot.
+ * <p>
+ * The cache hands its changes to {@link #saveLater(BigInteger, Collection)}: they are written on a background
+ * thread shared by all the stores, at most once per delay, so that the responses of Consul are not delayed by
+ * the disk and a burst of changes is written once.
+ *
+ * @param <V> the type of the values of the cache
+ */
+public class CacheSnapshotStore<V> {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(CacheSnapshotStore.class);
+
+    private static final int VERSION = 1;
+    static final Duration DEFAULT_SAVE_DELAY = Duration.ofSeconds(1);
+
+    private final Path file;
+    private final Path temporaryFile;
+    private final ObjectMapper mapper;
+    private final ObjectReader reader;
+    private final long saveDelayMillis;
+
+    // the last snapshot handed to saveLater and not written yet
+    private final AtomicReference<Pending<V>> pending = new AtomicReference<>();
+    // guards the temporary file, rather than a monitor which would pin the virtual threads
+    private final ReentrantLock writeLock = new ReentrantLock();
+
+    /**
+     * @param file the file holding the snapshot, created on the first change of the cache
+     * @param valueType the type of the values of the cache
+     */
+    public CacheSnapshotStore(Path file, Class<V> valueType) {
+        this(file, valueType, DEFAULT_SAVE_DELAY);
+    }
+
+    /**
+     * @param file the file holding the snapshot, created on the first change of the cache
+     * @param valueType the type of the values of the cache
+     * @param saveDelay the delay after a change before the snapshot is written, the changes received
+     *                  in the meantime being written at once
+     */
+    public CacheSnapshotStore(Path file, Class<V> valueType, Duration saveDelay) {
+        this.file = file;
+        this.saveDelayMillis = saveDelay.toMillis();
+        this.temporaryFile = file.resolveSibling(file.getFileName() + ".tmp");
+        // empty strings are kept: they are mandatory attributes of some values
+        this.mapper = Jackson.MAPPER.copy()
+                .setSerializationInclusion(JsonInclude.Include.NON_ABSENT);
+        this.reader = mapper.readerFor(valueType);
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    /**
+     * Writes a snapshot, replacing the previous one.
+     *
+     * @param index the index of the Consul response holding the values
+     * @param values the values of the cache
+     */
+    public void save(BigInteger index, Collection<V> values) throws IOException {
+        writeLock.lock();
+        try {
+            try (FileChannel channel = FileChannel.open(temporaryFile, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                // the generator buffers the JSON and flushes it to the file as it goes
+                try (JsonGenerator generator = mapper.getFactory().createGenerator(Channels.newOutputStream(channel))
+                        .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET)) {
+                    generator.writeStartObject();
+                    generator.writeNumberField("Version", VERSION);
+                    generator.writeStringField("Index", index.toString());
+                    generator.writeArrayFieldStart("Values");
+                    for (V value : values) {
+                        generator.writeObject(value);
+                    }
+                    generator.writeEndArray();
+                    generator.writeEndObject();
+                }
+                channel.force(false);
+            }
+            Files.move(temporaryFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Writes a snapshot on the background thread, after the delay of this store. A snapshot handed
+     * before the previous one was written replaces it.
+     *
+     * @param index the index of the Consul response holding the values
+     * @param values the values of the cache, which must not change afterwards
+     */
+    public void saveLater(BigInteger index, Collection<V> values) {
+        if (pending.getAndSet(new Pending<>(index, values)) == null) {
+            Writer.EXECUTOR.schedule(this::flushQuietly, saveDelayMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Writes the snapshot handed to {@link #saveLater(BigInteger, Collection)} now, if it was not written yet.
+     */
+    public void flush() throws IOException {
+        // taken under the lock, so that a concurrent flush cannot write an older snapshot over this one
+        writeLock.lock();
+        try {
+            Pending<V> snapshot = pending.getAndSet(null);
+            if (snapshot != null) {
+                save(snapshot.index, snapshot.values);
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (IOException | RuntimeException e) {
+            LOGGER.warn("Unable to save the cache snapshot to {}", file, e);
+        }
+    }
+
+    /**
+     * Reads the last snapshot.
+     *
+     * @return the snapshot, or empty if none was written yet
+     */
+    public Optional<Snapshot<V>> load() throws IOException {
+        if (!Files.isRegularFile(file)) {
+            return Optional.empty();
+        }
+        try (InputStream input = Files.newInputStream(file);
+             JsonParser parser = mapper.getFactory().createParser(input)) {
+            return Optional.of(read(parser));
+        }
+    }
+
+    private Snapshot<V> read(JsonParser parser) throws IOException {
+        if (parser.nextToken() != JsonToken.START_OBJECT) {
+            throw new ConsulException("Invalid cache snapshot " + file);
+        }
+        int version = 0;
+        BigInteger index = null;
+        List<V> values = Collections.emptyList();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            parser.nextToken();
+            switch (field) {
+                case "Version":
+                    version = parser.getIntValue();
+                    break;
+                case "Index":
+                    index = new BigInteger(parser.getText());
+                    break;
+                case "Values":
+                    values = new ArrayList<>();
+                    while (parser.nextToken() == JsonToken.START_OBJECT) {
+                        values.add(reader.readValue(parser));
+                    }
+                    break;
+                default:
+                    parser.skipChildren();
+            }
+        }
+        if (version != VERSION || index == null) {
+            throw new ConsulException("Unsupported cache snapshot " + file);
+        }
+        return new Snapshot<>(index, values);
+    }
+
+    public static class Snapshot<V> {
+
+        private final BigInteger index;
+        private final List<V> values;
+
+        Snapshot(BigInteger index, List<V> values) {
+            this.index = index;
+            this.values = values;
+        }
+
+        public BigInteger getIndex() {
+            return index;
+        }
+
+        public List<V> getValues() {
+            return values;
+        }
+    }
+
+    private static final class Pending<V> {
+
+        private final BigInteger index;
+        private final Collection<V> values;
+
+        Pending(BigInteger index, Collection<V> values) {
+            this.index = index;
+            this.values = values;
+        }
+    }
+
+    /**
+     * The thread writing the snapshots of all the stores, created on the first change of a cache.
+     */
+    private static final class Writer {
+
+        static final ScheduledExecutorService EXECUTOR = Executors.newSingleThreadScheduledExecutor(
+                new ThreadFactoryBuilder()
+                        .setNameFormat("consulCacheSnapshotWriter-%d")
+                        .setDaemon(true)
+                        .build());
+    }
+}
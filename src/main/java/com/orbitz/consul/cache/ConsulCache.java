@@ -15,8 +15,10 @@ import org.apache.commons.lang3.Validate;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
 import java.math.BigInteger;
 import java.time.Duration;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
@@ -33,7 +35,9 @@ import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
 import java.util.function.Function;
+import java.util.function.Supplier;
 
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkState;
@@ -50,6 +54,7 @@ public class ConsulCache<K, V> implements AutoCloseable {
     private final static Logger LOGGER = LoggerFactory.getLogger(ConsulCache.class);
 
     private final AtomicReference<BigInteger> latestIndex = new AtomicReference<>(null);
+    private final AtomicReference<String> latestContentHash = new AtomicReference<>(null);
     private final AtomicLong lastContact = new AtomicLong();
     private final AtomicBoolean isKnownLeader = new AtomicBoolean();
     private final AtomicReference<ConsulResponse.CacheResponseInfo> lastCacheInfo = new AtomicReference<>(null);
@@ -58,12 +63,14 @@ public class ConsulCache<K, V> implements AutoCloseable {
     private final CountDownLatch initLatch = new CountDownLatch(1);
     private final Scheduler scheduler;
     private final CopyOnWriteArrayList<Listener<K, V>> listeners = new CopyOnWriteArrayList<>();
+    private final CopyOnWriteArrayList<DeltaListener<K, V>> deltaListeners = new CopyOnWriteArrayList<>();
     private final ReentrantLock listenersStartingLock = new ReentrantLock();
     private final Stopwatch stopWatch = Stopwatch.createUnstarted();
 
     private final Function<V, K> keyConversion;
     private final CallbackConsumer<V> callBackConsumer;
-    private final ConsulResponseCallback<List<V>> responseCallback;
+    private final ResponseCallback responseCallback;
+    private volatile CacheSnapshotStore<V> snapshotStore;
     private final ClientEventHandler eventHandler;
     private final CacheDescriptor cacheDescriptor;
 
@@ -114,88 +121,145 @@ public class ConsulCache<K, V> implements AutoCloseable {
         this.cacheDescriptor = cacheDescriptor;
         this.scheduler = callbackScheduler;
 
-        this.responseCallback = new ConsulResponseCallback<List<V>>() {
-            @Override
-            public void onComplete(ConsulResponse<List<V>> consulResponse) {
+        this.responseCallback = new ResponseCallback(cacheConfig);
+    }
 
-                if (consulResponse.isKnownLeader()) {
-                    if (!isRunning()) {
-                        return;
-                    }
-                    long elapsedTime = stopWatch.elapsed(TimeUnit.MILLISECONDS);
-                    updateIndex(consulResponse);
-                    LOGGER.debug("Consul cache updated for {} (index={}), request duration: {} ms",
-                            cacheDescriptor, latestIndex, elapsedTime);
+    /**
+     * Handles the responses of the blocking queries and schedules the next one.
+     */
+    private class ResponseCallback implements ConsulResponseCallback<List<V>> {
 
-                    ImmutableMap<K, V> full = convertToMap(consulResponse);
+        private final CacheConfig cacheConfig;
 
-                    boolean changed = !full.equals(lastResponse.get());
-                    eventHandler.cachePollingSuccess(cacheDescriptor, changed, elapsedTime);
+        ResponseCallback(CacheConfig cacheConfig) {
+            this.cacheConfig = cacheConfig;
+        }
 
-                    if (changed) {
-                        // changes
-                        lastResponse.set(full);
-                        // metadata changes
-                        lastContact.set(consulResponse.getLastContact());
-                        isKnownLeader.set(consulResponse.isKnownLeader());
-                    }
+        @Override
+        public void onComplete(ConsulResponse<List<V>> consulResponse) {
+            List<V> values = consulResponse.getResponse();
+            onResponse(consulResponse, () -> convertToMap(consulResponse), values == null || values.isEmpty());
+        }
 
-                    if (changed) {
-                        Boolean locked = false;
-                        if (state.get() == State.starting) {
-                            listenersStartingLock.lock();
-                            locked = true;
-                        }
-                        try {
-                            for (Listener<K, V> l : listeners) {
-                                try {
-                                    l.notify(full);
-                                } catch (RuntimeException e) {
-                                    LOGGER.warn("ConsulCache Listener's notify method threw an exception.", e);
-                                }
+        /**
+         * @param consulResponse the response, only its metadata is used
+         * @param mapSupplier supplies the new content of the cache, not called if the index did not change
+         * @param emptyResult whether the response contained no value
+         */
+        void onResponse(ConsulResponse<?> consulResponse, Supplier<ImmutableMap<K, V>> mapSupplier, boolean emptyResult) {
+
+            if (consulResponse.isKnownLeader()) {
+                if (!isRunning()) {
+                    return;
+                }
+                long elapsedTime = stopWatch.elapsed(TimeUnit.MILLISECONDS);
+                BigInteger previousIndex = latestIndex.get();
+                String previousContentHash = latestContentHash.get();
+                updateIndex(consulResponse);
+
+                if (isIndexUnchanged(previousIndex, consulResponse)
+                        || isContentHashUnchanged(previousContentHash, consulResponse)) {
+                    // the blocking query timed out without any change: nothing to convert nor to compare
+                    LOGGER.debug("Consul cache unchanged for {} (index={}), request duration: {} ms",
+                            cacheDescriptor, latestIndex, elapsedTime);
+                    eventHandler.cachePollingUnchangedIndex(cacheDescriptor, elapsedTime);
+                    scheduleNextRequest(emptyResult, elapsedTime);
+                    return;
+                }
+                LOGGER.debug("Consul cache updated for {} (index={}), request duration: {} ms",
+                        cacheDescriptor, latestIndex, elapsedTime);
+
+                ImmutableMap<K, V> full = mapSupplier.get();
+                ImmutableMap<K, V> previous = lastResponse.get();
+                CacheDelta<K, V> delta = computeDelta(previous, full);
+
+                boolean changed = previous == null || !delta.isEmpty();
+                eventHandler.cachePollingSuccess(cacheDescriptor, changed, elapsedTime);
+
+                if (changed) {
+                    // changes
+                    lastResponse.set(full);
+                    onUpdate(delta);
+                    // metadata changes
+                    lastContact.set(consulResponse.getLastContact());
+                    isKnownLeader.set(consulResponse.isKnownLeader());
+                    saveSnapshot(full);
+                }
+
+                if (changed) {
+                    Boolean locked = false;
+                    if (state.get() == State.starting) {
+                        listenersStartingLock.lock();
+                        locked = true;
+                    }
+                    try {
+                        for (Listener<K, V> l : listeners) {
+                            try {
+                                l.notify(full);
+                            } catch (RuntimeException e) {
+                                LOGGER.warn("ConsulCache Listener's notify method threw an exception.", e);
                             }
                         }
-                        finally {
-                            if (locked) {
-                                listenersStartingLock.unlock();
+                        for (DeltaListener<K, V> l : deltaListeners) {
+                            try {
+                                l.notify(delta);
+                            } catch (RuntimeException e) {
+                                LOGGER.warn("ConsulCache DeltaListener's notify method threw an exception.", e);
                             }
                         }
                     }
-
-                    if (state.compareAndSet(State.starting, State.started)) {
-                        initLatch.countDown();
+                    finally {
+                        if (locked) {
+                            listenersStartingLock.unlock();
+                        }
                     }
+                }
 
-                    Duration timeToWait = cacheConfig.getMinimumDurationBetweenRequests();
-                    if ((consulResponse.getResponse() == null || consulResponse.getResponse().isEmpty()) &&
-                            cacheConfig.getMinimumDurationDelayOnEmptyResult().compareTo(timeToWait) > 0) {
-                        timeToWait = cacheConfig.getMinimumDurationDelayOnEmptyResult();
-                    }
-                    timeToWait = timeToWait.minusMillis(elapsedTime);
+                if (state.compareAndSet(State.starting, State.started)) {
+                    initLatch.countDown();
+                }
 
-                    scheduler.schedule(ConsulCache.this::runCallback,
-                            timeToWait.toMillis(), TimeUnit.MILLISECONDS);
+                scheduleNextRequest(emptyResult, elapsedTime);
 
-                } else {
-                    onFailure(new ConsulException("Consul cluster has no elected leader"));
-                }
+            } else {
+                onFailure(new ConsulException("Consul cluster has no elected leader"));
             }
+        }
 
-            @Override
-            public void onFailure(Throwable throwable) {
-                if (!isRunning()) {
-                    return;
+        private void scheduleNextRequest(boolean emptyResult, long elapsedTime) {
+            Duration timeToWait = cacheConfig.getMinimumDurationBetweenRequests();
+            if (emptyResult &&
+                    cacheConfig.getMinimumDurationDelayOnEmptyResult().compareTo(timeToWait) > 0) {
+                timeToWait = cacheConfig.getMinimumDurationDelayOnEmptyResult();
+            }
+            if (callBackConsumer instanceof HashCallbackConsumer && latestContentHash.get() == null) {
+                // without a hash the next query cannot block, e.g. on a service which is not registered:
+                // it would be answered at once, so wait as after an error instead of polling in a loop
+                Duration backOffDelay = Duration.ofMillis(computeBackOffDelayMs(cacheConfig));
+                if (backOffDelay.compareTo(timeToWait) > 0) {
+                    timeToWait = backOffDelay;
                 }
-                eventHandler.cachePollingError(cacheDescriptor, throwable);
-                long delayMs = computeBackOffDelayMs(cacheConfig);
-                String message = String.format("Error getting response from consul for %s, will retry in %d %s",
-                        cacheDescriptor, delayMs, TimeUnit.MILLISECONDS);
+            }
+            timeToWait = timeToWait.minusMillis(elapsedTime);
 
-                cacheConfig.getRefreshErrorLoggingConsumer().accept(LOGGER, message, throwable);
+            scheduler.schedule(ConsulCache.this::runCallback,
+                    timeToWait.toMillis(), TimeUnit.MILLISECONDS);
+        }
 
-                scheduler.schedule(ConsulCache.this::runCallback, delayMs, TimeUnit.MILLISECONDS);
+        @Override
+        public void onFailure(Throwable throwable) {
+            if (!isRunning()) {
+                return;
             }
-        };
+            eventHandler.cachePollingError(cacheDescriptor, throwable);
+            long delayMs = computeBackOffDelayMs(cacheConfig);
+            String message = String.format("Error getting response from consul for %s, will retry in %d %s",
+                    cacheDescriptor, delayMs, TimeUnit.MILLISECONDS);
+
+            cacheConfig.getRefreshErrorLoggingConsumer().accept(LOGGER, message, throwable);
+
+            scheduler.schedule(ConsulCache.this::runCallback, delayMs, TimeUnit.MILLISECONDS);
+        }
     }
 
     static long computeBackOffDelayMs(CacheConfig cacheConfig) {
@@ -206,9 +270,91 @@ public class ConsulCache<K, V> implements AutoCloseable {
     public void start() {
         checkState(state.compareAndSet(State.latent, State.starting),"Cannot transition from state %s to %s", state.get(), State.starting);
         eventHandler.cacheStart(cacheDescriptor);
+        loadSnapshot();
         runCallback();
     }
 
+    /**
+     * Persists the content of this cache after its changes, and restores it when the cache is started.
+     * The restored values are served immediately, and the first request is a blocking query from the
+     * persisted index instead of a full read.
+     * Must be called before {@link #start()}.
+     *
+     * @param snapshotStore the store holding the snapshot of this cache
+     */
+    public void setSnapshotStore(CacheSnapshotStore<V> snapshotStore) {
+        checkState(state.get() == State.latent, "Snapshot store must be set before the cache is started");
+        this.snapshotStore = snapshotStore;
+    }
+
+    private void loadSnapshot() {
+        final CacheSnapshotStore<V> store = snapshotStore;
+        if (store == null) {
+            return;
+        }
+        final Optional<CacheSnapshotStore.Snapshot<V>> snapshot;
+        try {
+            snapshot = store.load();
+        } catch (IOException | RuntimeException e) {
+            LOGGER.warn("Unable to load the snapshot of {} from {}, starting without it", cacheDescriptor, store.getFile(), e);
+            return;
+        }
+        if (!snapshot.isPresent()) {
+            return;
+        }
+        final MapCollector collector = new MapCollector();
+        snapshot.get().getValues().forEach(collector);
+        final ImmutableMap<K, V> restored = collector.build();
+        LOGGER.debug("Consul cache restored for {} (index={}) from {}", cacheDescriptor, snapshot.get().getIndex(), store.getFile());
+
+        latestIndex.set(snapshot.get().getIndex());
+        final CacheDelta<K, V> delta = computeDelta(lastResponse.getAndSet(restored), restored);
+        onUpdate(delta);
+        listenersStartingLock.lock();
+        try {
+            for (Listener<K, V> l : listeners) {
+                try {
+                    l.notify(restored);
+                } catch (RuntimeException e) {
+                    LOGGER.warn("ConsulCache Listener's notify method threw an exception.", e);
+                }
+            }
+            for (DeltaListener<K, V> l : deltaListeners) {
+                try {
+                    l.notify(delta);
+                } catch (RuntimeException e) {
+                    LOGGER.warn("ConsulCache DeltaListener's notify method threw an exception.", e);
+                }
+            }
+        } finally {
+            listenersStartingLock.unlock();
+        }
+        if (state.compareAndSet(State.starting, State.started)) {
+            initLatch.countDown();
+        }
+    }
+
+    private void saveSnapshot(ImmutableMap<K, V> values) {
+        final CacheSnapshotStore<V> store = snapshotStore;
+        if (store == null) {
+            return;
+        }
+        // written on the thread of the store, so that the response is not delayed by the disk
+        store.saveLater(latestIndex.get(), values.values());
+    }
+
+    private void flushSnapshot() {
+        final CacheSnapshotStore<V> store = snapshotStore;
+        if (store == null) {
+            return;
+        }
+        try {
+            store.flush();
+        } catch (IOException | RuntimeException e) {
+            LOGGER.warn("Unable to save the snapshot of {} to {}", cacheDescriptor, store.getFile(), e);
+        }
+    }
+
     public void stop() {
         try {
             eventHandler.cacheStop(cacheDescriptor);
@@ -222,6 +368,8 @@ public class ConsulCache<K, V> implements AutoCloseable {
         }
         if (previous != State.stopped) {
             scheduler.shutdownNow();
+            // the last change is persisted before the cache is released
+            flushSnapshot();
         }
     }
 
@@ -233,10 +381,38 @@ public class ConsulCache<K, V> implements AutoCloseable {
     private void runCallback() {
         if (isRunning()) {
             stopWatch.reset().start();
-            callBackConsumer.consume(latestIndex.get(), responseCallback);
+            if (callBackConsumer instanceof StreamingCallbackConsumer) {
+                runStreamingCallback((StreamingCallbackConsumer<V>) callBackConsumer);
+            } else if (callBackConsumer instanceof HashCallbackConsumer) {
+                ((HashCallbackConsumer<V>) callBackConsumer).consumeByHash(latestContentHash.get(), responseCallback);
+            } else {
+                callBackConsumer.consume(latestIndex.get(), responseCallback);
+            }
         }
     }
 
+    private void runStreamingCallback(StreamingCallbackConsumer<V> streamingConsumer) {
+        final MapCollector collector = new MapCollector();
+        final BigInteger index = latestIndex.get();
+        streamingConsumer.stream(index, collector, new ConsulResponseCallback<Void>() {
+            @Override
+            public void onComplete(ConsulResponse<Void> consulResponse) {
+                // the values of a response with an unchanged index are not read: the content is the previous one
+                boolean emptyResult = collector.isEmpty();
+                if (index != null && index.equals(consulResponse.getIndex())) {
+                    ImmutableMap<K, V> previous = lastResponse.get();
+                    emptyResult = previous == null || previous.isEmpty();
+                }
+                responseCallback.onResponse(consulResponse, collector::build, emptyResult);
+            }
+
+            @Override
+            public void onFailure(Throwable throwable) {
+                responseCallback.onFailure(throwable);
+            }
+        });
+    }
+
     private boolean isRunning() {
         return state.get() == State.started || state.get() == State.starting;
     }
@@ -258,9 +434,23 @@ public class ConsulCache<K, V> implements AutoCloseable {
         if (response == null || response.getResponse() == null || response.getResponse().isEmpty()) {
             return ImmutableMap.of();
         }
-        final ImmutableMap.Builder<K, V> builder = ImmutableMap.builder();
-        final Set<K> keySet = new HashSet<>();
-        for (final V v : response.getResponse()) {
+        final MapCollector collector = new MapCollector();
+        response.getResponse().forEach(collector);
+        return collector.build();
+    }
+
+    /**
+     * Builds the content of the cache from the values, in the order they are received.
+     */
+    private class MapCollector implements Consumer<V> {
+
+        private final ImmutableMap.Builder<K, V> builder = ImmutableMap.builder();
+        private final Set<K> keySet = new HashSet<>();
+        private boolean empty = true;
+
+        @Override
+        public void accept(V v) {
+            empty = false;
             final K key = keyConversion.apply(v);
             if (key != null) {
                 if (!keySet.contains(key)) {
@@ -271,13 +461,103 @@ public class ConsulCache<K, V> implements AutoCloseable {
             }
             keySet.add(key);
         }
-        return builder.build();
+
+        boolean isEmpty() {
+            return empty;
+        }
+
+        ImmutableMap<K, V> build() {
+            return builder.build();
+        }
+    }
+
+    /**
+     * Computes the entries added, removed and modified between two states of the cache.
+     * Values present in both states are compared with {@link #isModified(Object, Object)}.
+     */
+    @VisibleForTesting
+    CacheDelta<K, V> computeDelta(ImmutableMap<K, V> previous, ImmutableMap<K, V> current) {
+        if (previous == null) {
+            previous = ImmutableMap.of();
+        }
+        final ImmutableMap.Builder<K, V> added = ImmutableMap.builder();
+        final ImmutableMap.Builder<K, V> modified = ImmutableMap.builder();
+        int kept = 0;
+        for (Map.Entry<K, V> entry : current.entrySet()) {
+            final V old = previous.get(entry.getKey());
+            if (old == null) {
+                added.put(entry);
+            } else {
+                kept++;
+                if (old != entry.getValue() && isModified(old, entry.getValue())) {
+                    modified.put(entry);
+                }
+            }
+        }
+        final ImmutableMap.Builder<K, V> removed = ImmutableMap.builder();
+        if (kept < previous.size()) {
+            for (Map.Entry<K, V> entry : previous.entrySet()) {
+                if (!current.containsKey(entry.getKey())) {
+                    removed.put(entry);
+                }
+            }
+        }
+        return new CacheDelta<>(added.build(), removed.build(), modified.build());
+    }
+
+    /**
+     * Called with the changes of the cache, right after {@link #getMap()} reflects them and before the listeners are
+     * notified. The calls are serialized. Caches maintaining an index of their values should override this method
+     * to update it incrementally.
+     *
+     * @param delta the entries added, removed and modified
+     */
+    protected void onUpdate(CacheDelta<K, V> delta) {
+    }
+
+    /**
+     * Tells whether a value has changed between two polls.
+     * Caches whose values carry a modification index should override this method
+     * to compare the indexes instead of relying on a deep equality.
+     *
+     * @param previous the value returned by the previous poll
+     * @param current the value returned by the last poll, for the same key
+     * @return true if the value has changed
+     */
+    protected boolean isModified(V previous, V current) {
+        return !previous.equals(current);
+    }
+
+    /**
+     * A blocking query returns the same X-Consul-Index when it times out without any change.
+     * Endpoints which do not return an index are reported with a zero index and are never considered unchanged.
+     */
+    @VisibleForTesting
+    boolean isIndexUnchanged(BigInteger previousIndex, ConsulResponse<?> consulResponse) {
+        return lastResponse.get() != null
+                && previousIndex != null
+                && previousIndex.signum() > 0
+                && previousIndex.equals(consulResponse.getIndex());
+    }
+
+    /**
+     * A hash-based blocking query returns the same X-Consul-ContentHash when it times out without any change.
+     */
+    @VisibleForTesting
+    boolean isContentHashUnchanged(String previousContentHash, ConsulResponse<?> consulResponse) {
+        return lastResponse.get() != null
+                && previousContentHash != null
+                && consulResponse.getContentHash().map(previousContentHash::equals).orElse(false);
     }
 
-    private void updateIndex(ConsulResponse<List<V>> consulResponse) {
+    private void updateIndex(ConsulResponse<?> consulResponse) {
         if (consulResponse != null && consulResponse.getIndex() != null) {
             this.latestIndex.set(consulResponse.getIndex());
         }
+        if (consulResponse != null) {
+            // a response without hash must not be followed by a query blocking on an outdated hash
+            this.latestContentHash.set(consulResponse.getContentHash().orElse(null));
+        }
     }
 
     protected static QueryOptions watchParams(final BigInteger index, final int blockSeconds,
@@ -297,6 +577,28 @@ public class ConsulCache<K, V> implements AutoCloseable {
         return builder.build();
     }
 
+    /**
+     * Builds the options of a hash-based blocking query, for the endpoints returning an X-Consul-ContentHash
+     * instead of an X-Consul-Index.
+     */
+    protected static QueryOptions watchHashParams(final String hash, final int blockSeconds,
+                                                  QueryOptions queryOptions) {
+        checkArgument(!queryOptions.getIndex().isPresent() && !queryOptions.getHash().isPresent()
+                        && !queryOptions.getWait().isPresent(),
+                "Index, hash and wait cannot be overridden");
+
+        ImmutableQueryOptions.Builder builder =  ImmutableQueryOptions.builder()
+                .from(hash == null ? QueryOptions.BLANK : QueryOptions.blockSeconds(blockSeconds, hash).build())
+                .token(queryOptions.getToken())
+                .consistencyMode(queryOptions.getConsistencyMode())
+                .near(queryOptions.getNear())
+                .datacenter(queryOptions.getDatacenter());
+        for (String tag : queryOptions.getTag()) {
+            builder.addTag(tag);
+        }
+        return builder.build();
+    }
+
     private static QueryOptions watchDefaultParams(final BigInteger index, final int blockSeconds) {
         if (index == null) {
             return QueryOptions.BLANK;
@@ -309,6 +611,14 @@ public class ConsulCache<K, V> implements AutoCloseable {
         return new DefaultScheduler();
     }
 
+    /**
+     * Creates the scheduler used when none is provided by the caller: the shared {@link CacheScheduler}
+     * if the client has one, otherwise a dedicated single-thread scheduler.
+     */
+    protected static Scheduler createDefault(CacheScheduler cacheScheduler) {
+        return cacheScheduler == null ? createDefault() : cacheScheduler.newScheduler();
+    }
+
     protected static Scheduler createExternal(ScheduledExecutorService executor) {
         return new ExternalScheduler(executor);
     }
@@ -322,6 +632,52 @@ public class ConsulCache<K, V> implements AutoCloseable {
         void consume(BigInteger index, ConsulResponseCallback<List<V>> callback);
     }
 
+    /**
+     * A {@link CallbackConsumer} for the endpoints supporting hash-based blocking queries:
+     * it is given the X-Consul-ContentHash of the last response instead of its index.
+     *
+     * @param <V>
+     */
+    protected interface HashCallbackConsumer<V> extends CallbackConsumer<V> {
+
+        /**
+         * @param hash the content hash of the last response, null before the first one
+         */
+        void consumeByHash(String hash, ConsulResponseCallback<List<V>> callback);
+
+        @Override
+        default void consume(BigInteger index, ConsulResponseCallback<List<V>> callback) {
+            consumeByHash(null, callback);
+        }
+    }
+
+    /**
+     * A {@link CallbackConsumer} which hands each value to the cache as soon as it is decoded,
+     * instead of decoding the whole response into a list first.
+     *
+     * @param <V>
+     */
+    protected interface StreamingCallbackConsumer<V> extends CallbackConsumer<V> {
+
+        void stream(BigInteger index, Consumer<V> valueConsumer, ConsulResponseCallback<Void> callback);
+
+        @Override
+        default void consume(BigInteger index, ConsulResponseCallback<List<V>> callback) {
+            final List<V> values = new ArrayList<>();
+            stream(index, values::add, new ConsulResponseCallback<Void>() {
+                @Override
+                public void onComplete(ConsulResponse<Void> consulResponse) {
+                    callback.onComplete(consulResponse.withResponse(values));
+                }
+
+                @Override
+                public void onFailure(Throwable throwable) {
+                    callback.onFailure(throwable);
+                }
+            });
+        }
+    }
+
     /**
      * Implementers can register a listener to receive
      * a new map when it changes
@@ -365,6 +721,54 @@ public class ConsulCache<K, V> implements AutoCloseable {
         return listeners.remove(listener);
     }
 
+    /**
+     * Implementers can register a delta listener to receive
+     * only the entries which were added, removed or modified
+     * since the previous notification.
+     *
+     * @param <V>
+     */
+    public interface DeltaListener<K, V> {
+        void notify(CacheDelta<K, V> delta);
+    }
+
+    /**
+     * Registers a {@link DeltaListener}. If the cache is already started,
+     * the listener is immediately notified with all the current entries as added.
+     */
+    public boolean addDeltaListener(DeltaListener<K, V> listener) {
+        Boolean locked = false;
+        boolean added;
+        if (state.get() == State.starting) {
+            listenersStartingLock.lock();
+            locked = true;
+        }
+        try {
+            added = deltaListeners.add(listener);
+            if (state.get() == State.started) {
+                try {
+                    listener.notify(computeDelta(ImmutableMap.of(), lastResponse.get()));
+                } catch (RuntimeException e) {
+                    LOGGER.warn("ConsulCache DeltaListener's notify method threw an exception.", e);
+                }
+            }
+        }
+        finally {
+            if (locked) {
+                listenersStartingLock.unlock();
+            }
+        }
+        return added;
+    }
+
+    public List<DeltaListener<K, V>> getDeltaListeners() {
+        return Collections.unmodifiableList(deltaListeners);
+    }
+
+    public boolean removeDeltaListener(DeltaListener<K, V> listener) {
+        return deltaListeners.remove(listener);
+    }
+
     @VisibleForTesting
     protected State getState() {
         return state.get();
@@ -0,0 +1,56 @@
+package com.orbitz.consul.cache;
+
+import com.google.common.primitives.Ints;
+import com.orbitz.consul.CoordinateClient;
+import com.orbitz.consul.config.CacheConfig;
+import com.orbitz.consul.model.coordinate.Coordinate;
+import com.orbitz.consul.option.QueryOptions;
+
+import java.util.concurrent.ScheduledExecutorService;
+
+/**
+ * Node name/{@link Coordinate} map of the network coordinates of the nodes of a datacenter.
+ *
+ * @see NearestServiceInstances
+ */
+public class CoordinateCache extends ConsulCache<String, Coordinate> {
+
+    private CoordinateCache(CoordinateClient coordinateClient,
+                            QueryOptions queryOptions,
+                            int watchSeconds,
+                            Scheduler callbackScheduler) {
+        super(Coordinate::getNode,
+              (index, callback) -> {
+                  checkWatch(coordinateClient.getNetworkTimeoutConfig().getClientReadTimeoutMillis(), watchSeconds);
+                  coordinateClient.getNodes(watchParams(index, watchSeconds, queryOptions), callback);
+              },
+              coordinateClient.getConfig().getCacheConfig(),
+              coordinateClient.getEventHandler(),
+              new CacheDescriptor("coordinate.nodes"),
+              callbackScheduler);
+    }
+
+    public static CoordinateCache newCache(
+            final CoordinateClient coordinateClient,
+            final QueryOptions queryOptions,
+            final int watchSeconds,
+            final ScheduledExecutorService callbackExecutorService) {
+
+        Scheduler scheduler = createExternal(callbackExecutorService);
+        return new CoordinateCache(coordinateClient, queryOptions, watchSeconds, scheduler);
+    }
+
+    public static CoordinateCache newCache(
+            final CoordinateClient coordinateClient,
+            final QueryOptions queryOptions,
+            final int watchSeconds) {
+        return new CoordinateCache(coordinateClient, queryOptions, watchSeconds,
+                createDefault(coordinateClient.getCacheScheduler()));
+    }
+
+    public static CoordinateCache newCache(final CoordinateClient coordinateClient) {
+        CacheConfig cacheConfig = coordinateClient.getConfig().getCacheConfig();
+        int watchSeconds = Ints.checkedCast(cacheConfig.getWatchDuration().getSeconds());
+        return newCache(coordinateClient, QueryOptions.BLANK, watchSeconds);
+    }
+}
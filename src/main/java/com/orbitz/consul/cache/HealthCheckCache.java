@@ -57,7 +57,7 @@ public class HealthCheckCache extends ConsulCache<String, HealthCheck> {
             final QueryOptions queryOptions,
             final Function<HealthCheck, String> keyExtractor) {
 
-        return new HealthCheckCache(healthClient, state, watchSeconds, queryOptions, keyExtractor, createDefault());
+        return new HealthCheckCache(healthClient, state, watchSeconds, queryOptions, keyExtractor, createDefault(healthClient.getCacheScheduler()));
     }
     public static HealthCheckCache newCache(
             final HealthClient healthClient,
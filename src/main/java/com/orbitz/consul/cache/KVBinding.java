@@ -0,0 +1,115 @@
+package com.orbitz.consul.cache;
+
+import com.orbitz.consul.ConsulException;
+import com.orbitz.consul.model.kv.Value;
+
+import java.io.IOException;
+import java.util.Optional;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A typed view of a key of a {@link KVCache}, created with {@link KVCache#bind(String, Class, Decoder)}.
+ * <p>
+ * The value of the key is decoded lazily, on the first read after each change of its
+ * {@link Value#getModifyIndex()}, and the decoded object is memoized: every read returns the same instance until
+ * the key changes again, at the cost of a volatile read. The decoded objects are shared, they should be immutable.
+ *
+ * @param <T> the type of the decoded value
+ */
+public final class KVBinding<T> {
+
+    /**
+     * Decodes the bytes of a value, e.g. {@code objectMapper::readValue} for a JSON value.
+     */
+    @FunctionalInterface
+    public interface Decoder<T> {
+        T decode(byte[] value, Class<T> type) throws IOException;
+    }
+
+    private final String key;
+    private final Class<T> type;
+    private final Decoder<T> decoder;
+    private volatile Decoded<T> current;
+
+    KVBinding(String key, Class<T> type, Decoder<T> decoder, Value value) {
+        this.key = key;
+        this.type = type;
+        this.decoder = decoder;
+        this.current = new Decoded<>(value);
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    /**
+     * Gets the decoded value of the key, decoding it if it changed since the last read.
+     *
+     * @return the decoded value, or {@link Optional#empty()} if the key does not exist or has no value
+     * @throws ConsulException if the value cannot be decoded; the failure is memoized as well
+     */
+    public Optional<T> get() {
+        return current.get(this);
+    }
+
+    /**
+     * Gets the modify index of the value, or 0 if the key does not exist.
+     */
+    public long getModifyIndex() {
+        Value value = current.value;
+        return value == null ? 0 : value.getModifyIndex();
+    }
+
+    /**
+     * Called by the cache when the key is added, modified or removed.
+     */
+    void update(Value value) {
+        current = new Decoded<>(value);
+    }
+
+    /**
+     * A version of the value, and its decoded object once read
+     */
+    private static final class Decoded<T> {
+        private final Value value;
+        private final ReentrantLock lock = new ReentrantLock();
+        private volatile Optional<T> decoded;
+        private volatile RuntimeException failure;
+
+        private Decoded(Value value) {
+            this.value = value;
+        }
+
+        private Optional<T> get(KVBinding<T> binding) {
+            Optional<T> result = decoded;
+            if (result == null) {
+                lock.lock();
+                try {
+                    result = decoded;
+                    if (result == null && failure == null) {
+                        try {
+                            decoded = result = decode(binding);
+                        } catch (IOException | RuntimeException e) {
+                            failure = new ConsulException("Unable to decode the value of " + binding.key + " as "
+                                    + binding.type.getName(), e);
+                        }
+                    }
+                } finally {
+                    lock.unlock();
+                }
+            }
+            if (result == null) {
+                throw failure;
+            }
+            return result;
+        }
+
+        private Optional<T> decode(KVBinding<T> binding) throws IOException {
+            Optional<byte[]> bytes = value == null ? Optional.empty() : value.getValueAsBytes();
+            if (!bytes.isPresent()) {
+                return Optional.empty();
+            }
+            return Optional.ofNullable(binding.type.cast(binding.decoder.decode(bytes.get(), binding.type)));
+        }
+    }
+}
@@ -7,12 +7,36 @@ import com.orbitz.consul.KeyValueClient;
 import com.orbitz.consul.config.CacheConfig;
 import com.orbitz.consul.model.kv.Value;
 import com.orbitz.consul.option.QueryOptions;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.function.Function;
 
 public class KVCache extends ConsulCache<String, Value> {
 
+    private static final Logger LOGGER = LoggerFactory.getLogger(KVCache.class);
+
+    private volatile KeyTrie<Value> trie = KeyTrie.empty();
+    private boolean updated;
+
+    // the listeners of a sub-prefix, and the lengths of the sub-prefixes to look up in the changed keys
+    private final Map<String, CopyOnWriteArrayList<Listener<String, Value>>> prefixListeners = new ConcurrentHashMap<>();
+    private volatile int[] prefixLengths = new int[0];
+    private final Map<String, CopyOnWriteArrayList<KVBinding<?>>> bindings = new ConcurrentHashMap<>();
+    // serializes the updates with the registration of the listeners and bindings
+    private final ReentrantLock updateLock = new ReentrantLock();
+
     private KVCache(KeyValueClient kvClient,
                     String rootPath,
                     String keyPath,
@@ -20,10 +44,10 @@ public class KVCache extends ConsulCache<String, Value> {
                     QueryOptions queryOptions,
                     Scheduler callbackScheduler) {
         super(getKeyExtractorFunction(keyPath),
-            (index, callback) -> {
+            (StreamingCallbackConsumer<Value>) (index, valueConsumer, callback) -> {
                 checkWatch(kvClient.getNetworkTimeoutConfig().getClientReadTimeoutMillis(), watchSeconds);
                 QueryOptions params = watchParams(index, watchSeconds, queryOptions);
-                kvClient.getValues(keyPath, params, callback);
+                kvClient.streamValues(keyPath, params, valueConsumer, callback);
             },
             kvClient.getConfig().getCacheConfig(),
             kvClient.getEventHandler(),
@@ -31,6 +55,210 @@ public class KVCache extends ConsulCache<String, Value> {
             callbackScheduler);
     }
 
+    /**
+     * Every write to a key increases its {@link Value#getModifyIndex()}, comparing the indexes is enough.
+     */
+    @Override
+    protected boolean isModified(Value previous, Value current) {
+        return previous.getModifyIndex() != current.getModifyIndex();
+    }
+
+    /**
+     * Gets the values of the cache as a prefix tree, e.g. to look up the keys under a prefix with
+     * {@link KeyTrie#subtree(String)} without scanning the whole map. The tree is immutable and reflects the same
+     * state as {@link #getMap()}: it is updated with the changes of each poll, sharing the unchanged nodes.
+     *
+     * @return the tree of the keys, relative to the root path
+     */
+    public KeyTrie<Value> getTrie() {
+        return trie;
+    }
+
+    /**
+     * Registers a listener of the keys starting with a sub-prefix, which is notified only when one of these keys
+     * is added, removed or modified, with a view of these keys. If the cache already holds values, the listener is
+     * immediately notified with the current ones.
+     * <p>
+     * The listeners of a sub-prefix are notified right before the listeners of the whole cache, on the same thread.
+     *
+     * @param subPrefix the prefix of the keys, relative to the root path, e.g. {@code app/}
+     * @param listener the listener
+     * @return true, as the listener is always added
+     */
+    public boolean addListener(String subPrefix, Listener<String, Value> listener) {
+        Preconditions.checkNotNull(subPrefix, "Sub-prefix cannot be null");
+        Preconditions.checkNotNull(listener, "Listener cannot be null");
+        updateLock.lock();
+        try {
+            prefixListeners.computeIfAbsent(subPrefix, prefix -> new CopyOnWriteArrayList<>()).add(listener);
+            updatePrefixLengths();
+            if (updated) {
+                notifyListener(listener, trie.subtree(subPrefix));
+            }
+        } finally {
+            updateLock.unlock();
+        }
+        return true;
+    }
+
+    /**
+     * Binds a key to a typed view, which decodes its value once per {@link Value#getModifyIndex()} and hands out the
+     * same decoded instance until the key changes again, e.g.
+     * <pre>
+     * KVBinding&lt;Settings&gt; settings = kvCache.bind("app/settings", Settings.class, objectMapper::readValue);
+     * ...
+     * settings.get().ifPresent(this::apply);
+     * </pre>
+     *
+     * @param key the key, relative to the root path
+     * @param type the type of the decoded value
+     * @param decoder the decoder of the bytes of the value
+     * @return the binding, kept up to date as long as the cache runs
+     */
+    public <T> KVBinding<T> bind(String key, Class<T> type, KVBinding.Decoder<T> decoder) {
+        Preconditions.checkNotNull(key, "Key cannot be null");
+        Preconditions.checkNotNull(type, "Type cannot be null");
+        Preconditions.checkNotNull(decoder, "Decoder cannot be null");
+        updateLock.lock();
+        try {
+            KVBinding<T> binding = new KVBinding<>(key, type, decoder, trie.get(key).orElse(null));
+            bindings.computeIfAbsent(key, k -> new CopyOnWriteArrayList<>()).add(binding);
+            return binding;
+        } finally {
+            updateLock.unlock();
+        }
+    }
+
+    /**
+     * Stops updating a binding.
+     *
+     * @return true if the binding was bound to this cache
+     */
+    public boolean unbind(KVBinding<?> binding) {
+        updateLock.lock();
+        try {
+            List<KVBinding<?>> bound = bindings.get(binding.getKey());
+            boolean removed = bound != null && bound.remove(binding);
+            bindings.values().removeIf(List::isEmpty);
+            return removed;
+        } finally {
+            updateLock.unlock();
+        }
+    }
+
+    /**
+     * Removes a listener, whether it listens to the whole cache or to sub-prefixes.
+     */
+    @Override
+    public boolean removeListener(Listener<String, Value> listener) {
+        boolean removed = super.removeListener(listener);
+        updateLock.lock();
+        try {
+            for (CopyOnWriteArrayList<Listener<String, Value>> listeners : prefixListeners.values()) {
+                removed |= listeners.remove(listener);
+            }
+            prefixListeners.values().removeIf(List::isEmpty);
+            updatePrefixLengths();
+        } finally {
+            updateLock.unlock();
+        }
+        return removed;
+    }
+
+    @Override
+    protected void onUpdate(CacheDelta<String, Value> delta) {
+        Map<String, Value> puts = new HashMap<>(delta.getAdded());
+        puts.putAll(delta.getModified());
+        updateLock.lock();
+        try {
+            KeyTrie<Value> current = trie.withChanges(puts, delta.getRemoved().keySet());
+            trie = current;
+            boolean initial = !updated;
+            updated = true;
+            if (!bindings.isEmpty()) {
+                updateBindings(delta.getAdded());
+                updateBindings(delta.getModified());
+                for (String key : delta.getRemoved().keySet()) {
+                    updateBinding(key, null);
+                }
+            }
+            for (String prefix : changedPrefixes(delta, initial)) {
+                List<Listener<String, Value>> listeners = prefixListeners.get(prefix);
+                if (listeners == null) {
+                    continue;
+                }
+                KeyTrie<Value> subtree = current.subtree(prefix);
+                for (Listener<String, Value> listener : listeners) {
+                    notifyListener(listener, subtree);
+                }
+            }
+        } finally {
+            updateLock.unlock();
+        }
+    }
+
+    /**
+     * Finds the sub-prefixes of the changed keys, looking up the prefixes of each key with the lengths of the
+     * registered sub-prefixes: the cost does not depend on the number of listeners.
+     */
+    private Set<String> changedPrefixes(CacheDelta<String, Value> delta, boolean initial) {
+        if (initial) {
+            // the listeners registered before the first update learn the initial state, even if empty
+            return new LinkedHashSet<>(prefixListeners.keySet());
+        }
+        int[] lengths = prefixLengths;
+        Set<String> prefixes = new LinkedHashSet<>();
+        List<Map<String, Value>> changes = new ArrayList<>(3);
+        changes.add(delta.getAdded());
+        changes.add(delta.getRemoved());
+        changes.add(delta.getModified());
+        for (Map<String, Value> change : changes) {
+            for (String key : change.keySet()) {
+                for (int length : lengths) {
+                    if (length > key.length()) {
+                        break;
+                    }
+                    String prefix = key.substring(0, length);
+                    if (prefixListeners.containsKey(prefix)) {
+                        prefixes.add(prefix);
+                    }
+                }
+            }
+        }
+        return prefixes;
+    }
+
+    private void updateBindings(Map<String, Value> values) {
+        for (Map.Entry<String, Value> entry : values.entrySet()) {
+            updateBinding(entry.getKey(), entry.getValue());
+        }
+    }
+
+    private void updateBinding(String key, Value value) {
+        List<KVBinding<?>> bound = bindings.get(key);
+        if (bound != null) {
+            for (KVBinding<?> binding : bound) {
+                binding.update(value);
+            }
+        }
+    }
+
+    private void updatePrefixLengths() {
+        Set<Integer> lengths = new TreeSet<>();
+        for (String prefix : prefixListeners.keySet()) {
+            lengths.add(prefix.length());
+        }
+        prefixLengths = lengths.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    private static void notifyListener(Listener<String, Value> listener, KeyTrie<Value> subtree) {
+        try {
+            listener.notify(subtree.asMap());
+        } catch (RuntimeException e) {
+            LOGGER.warn("KVCache Listener's notify method threw an exception.", e);
+        }
+    }
+
     @VisibleForTesting
     static Function<Value, String> getKeyExtractorFunction(final String rootPath) {
         return input -> {
@@ -64,7 +292,7 @@ public class KVCache extends ConsulCache<String, Value> {
             final String rootPath,
             final int watchSeconds,
             final QueryOptions queryOptions) {
-        return new KVCache(kvClient, rootPath, prepareRootPath(rootPath), watchSeconds, queryOptions, createDefault());
+        return new KVCache(kvClient, rootPath, prepareRootPath(rootPath), watchSeconds, queryOptions, createDefault(kvClient.getCacheScheduler()));
     }
 
     @VisibleForTesting
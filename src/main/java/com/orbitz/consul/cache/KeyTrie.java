@@ -0,0 +1,528 @@
+package com.orbitz.consul.cache;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSortedMap;
+import com.google.common.collect.Maps;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * An immutable prefix tree of the keys of the key/value store, split into segments on {@code /}.
+ * <p>
+ * The tree is persistent: an update copies the nodes on the paths of the keys it changes, and shares all the
+ * other nodes with the previous tree, so that the trees handed out before the update are unchanged. Subtrees are
+ * views sharing the nodes of their tree, as cheap to hand out as the tree itself.
+ * <p>
+ * The keys are iterated in path order, i.e. segment by segment, a key coming before the keys it is the parent of:
+ * {@code a}, {@code a/b}, {@code a-b}. Looking up the keys under a prefix costs O(depth + results), whatever the
+ * number of keys in the tree.
+ *
+ * @param <V> the type of the values
+ */
+public final class KeyTrie<V> implements Iterable<Map.Entry<String, V>> {
+
+    private static final KeyTrie<?> EMPTY = new KeyTrie<>(Node.empty(), "", 0);
+
+    /**
+     * Orders the keys segment by segment.
+     */
+    public static final Comparator<String> PATH_ORDER = (left, right) -> {
+        List<String> leftSegments = segments(left);
+        List<String> rightSegments = segments(right);
+        int length = Math.min(leftSegments.size(), rightSegments.size());
+        for (int i = 0; i < length; i++) {
+            int comparison = leftSegments.get(i).compareTo(rightSegments.get(i));
+            if (comparison != 0) {
+                return comparison;
+            }
+        }
+        return Integer.compare(leftSegments.size(), rightSegments.size());
+    };
+
+    private final Node<V> root;
+    // the key and the depth of the root, for a subtree
+    private final String rootKey;
+    private final int rootDepth;
+
+    private KeyTrie(Node<V> root, String rootKey, int rootDepth) {
+        this.root = root;
+        this.rootKey = rootKey;
+        this.rootDepth = rootDepth;
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <V> KeyTrie<V> empty() {
+        return (KeyTrie<V>) EMPTY;
+    }
+
+    /**
+     * Gets the number of keys.
+     */
+    public int size() {
+        return root.size;
+    }
+
+    public boolean isEmpty() {
+        return root.size == 0;
+    }
+
+    /**
+     * Gets the value of a key.
+     *
+     * @param key the full key, including the prefix of a subtree
+     * @return the value, or {@link Optional#empty()} if the tree has no such key
+     */
+    public Optional<V> get(String key) {
+        List<String> path = relativeSegments(key);
+        if (path == null) {
+            return Optional.empty();
+        }
+        Node<V> node = root;
+        for (String segment : path) {
+            node = node.children.get(segment);
+            if (node == null) {
+                return Optional.empty();
+            }
+        }
+        return Optional.ofNullable(node.value);
+    }
+
+    /**
+     * Gets a view of the keys starting with a prefix, e.g. {@code app/feature/}, which keeps their full keys. The
+     * prefix does not need to end with a {@code /}: {@code app/fea} matches {@code app/feature/x} too.
+     *
+     * @param prefix the prefix of the keys, including the prefix of this tree if it is a subtree
+     * @return the subtree, sharing the nodes of this tree
+     */
+    public KeyTrie<V> subtree(String prefix) {
+        List<String> path = relativeSegments(prefix);
+        if (path == null || path.isEmpty()) {
+            return path == null ? empty() : this;
+        }
+        Node<V> parent = node(path.subList(0, path.size() - 1));
+        if (parent == null) {
+            return empty();
+        }
+        String parentKey = key(path.subList(0, path.size() - 1));
+        int parentDepth = rootDepth + path.size() - 1;
+        String partial = path.get(path.size() - 1);
+        ImmutableSortedMap<String, Node<V>> matching = startingWith(parent.children, partial);
+        if (matching.isEmpty()) {
+            return empty();
+        }
+        if (matching.size() == parent.children.size() && parent.value == null) {
+            return new KeyTrie<>(parent, parentKey, parentDepth);
+        }
+        return new KeyTrie<>(new Node<>(null, matching), parentKey, parentDepth);
+    }
+
+    /**
+     * Lists the keys directly under a prefix, as the keys of the key/value store with the {@code /} separator:
+     * a key with a value is listed as is, a key with keys under it is listed once with a trailing {@code /}.
+     *
+     * @param prefix the prefix of the keys, e.g. {@code app/}
+     * @return the keys in path order
+     */
+    public List<String> children(String prefix) {
+        List<String> path = relativeSegments(prefix);
+        if (path == null) {
+            return Collections.emptyList();
+        }
+        if (path.isEmpty()) {
+            if (rootDepth > 0) {
+                return Collections.emptyList();
+            }
+            path = Collections.singletonList("");
+        }
+        List<String> parentPath = path.subList(0, path.size() - 1);
+        Node<V> parent = node(parentPath);
+        if (parent == null) {
+            return Collections.emptyList();
+        }
+        String parentKey = key(parentPath);
+        int parentDepth = rootDepth + parentPath.size();
+        ImmutableList.Builder<String> keys = ImmutableList.builder();
+        for (Map.Entry<String, Node<V>> child : startingWith(parent.children, path.get(path.size() - 1)).entrySet()) {
+            String childKey = childKey(parentKey, parentDepth, child.getKey());
+            if (child.getValue().value != null) {
+                keys.add(childKey);
+            }
+            if (!child.getValue().children.isEmpty()) {
+                keys.add(childKey + "/");
+            }
+        }
+        return keys.build();
+    }
+
+    /**
+     * Iterates over the keys and their values, in path order.
+     */
+    @Override
+    public Iterator<Map.Entry<String, V>> iterator() {
+        return new EntryIterator<>(this, null, null);
+    }
+
+    /**
+     * Iterates over the keys between two bounds, in path order, without visiting the keys before the lower bound.
+     *
+     * @param fromKey the lowest key, inclusive, or null to start from the first key
+     * @param toKey the highest key, exclusive, or null to end at the last key
+     * @return the keys and their values
+     */
+    public Iterable<Map.Entry<String, V>> range(String fromKey, String toKey) {
+        return () -> new EntryIterator<>(this, fromKey, toKey);
+    }
+
+    /**
+     * Gets an unmodifiable map view of the tree, iterated in path order, e.g. to hand a subtree to a
+     * {@link ConsulCache.Listener} without copying it.
+     */
+    public Map<String, V> asMap() {
+        return new AbstractMap<String, V>() {
+            @Override
+            public Set<Entry<String, V>> entrySet() {
+                return new AbstractSet<Entry<String, V>>() {
+                    @Override
+                    public Iterator<Entry<String, V>> iterator() {
+                        return KeyTrie.this.iterator();
+                    }
+
+                    @Override
+                    public int size() {
+                        return KeyTrie.this.size();
+                    }
+                };
+            }
+
+            @Override
+            public V get(Object key) {
+                return key instanceof String ? KeyTrie.this.get((String) key).orElse(null) : null;
+            }
+
+            @Override
+            public boolean containsKey(Object key) {
+                return get(key) != null;
+            }
+
+            @Override
+            public int size() {
+                return KeyTrie.this.size();
+            }
+        };
+    }
+
+    /**
+     * Copies the keys and their values in a map, in path order.
+     */
+    public Map<String, V> toMap() {
+        Map<String, V> map = Maps.newLinkedHashMapWithExpectedSize(size());
+        for (Map.Entry<String, V> entry : this) {
+            map.put(entry.getKey(), entry.getValue());
+        }
+        return map;
+    }
+
+    /**
+     * Creates a tree with the given changes, sharing the nodes they do not affect. Each changed node is copied once,
+     * whatever the number of changes under it.
+     *
+     * @param puts the values to add or replace, by full key
+     * @param removals the keys to remove
+     * @return the new tree
+     * @throws IllegalArgumentException if a key is not under the prefix of this subtree
+     */
+    public KeyTrie<V> withChanges(Map<String, ? extends V> puts, Collection<String> removals) {
+        if (puts.isEmpty() && removals.isEmpty()) {
+            return this;
+        }
+        List<Change<V>> changes = new ArrayList<>(puts.size() + removals.size());
+        for (String key : removals) {
+            changes.add(new Change<>(checkedSegments(key), null));
+        }
+        for (Map.Entry<String, ? extends V> put : puts.entrySet()) {
+            changes.add(new Change<>(checkedSegments(put.getKey()), put.getValue()));
+        }
+        return new KeyTrie<>(root.apply(changes, 0), rootKey, rootDepth);
+    }
+
+    public KeyTrie<V> with(String key, V value) {
+        return withChanges(Collections.singletonMap(key, value), Collections.emptyList());
+    }
+
+    public KeyTrie<V> without(String key) {
+        return withChanges(Collections.emptyMap(), Collections.singletonList(key));
+    }
+
+    @Override
+    public String toString() {
+        return toMap().toString();
+    }
+
+    private Node<V> node(List<String> path) {
+        Node<V> node = root;
+        for (String segment : path) {
+            node = node.children.get(segment);
+            if (node == null) {
+                return null;
+            }
+        }
+        return node;
+    }
+
+    private String key(List<String> path) {
+        String key = rootKey;
+        int depth = rootDepth;
+        for (String segment : path) {
+            key = childKey(key, depth++, segment);
+        }
+        return key;
+    }
+
+    private List<String> checkedSegments(String key) {
+        List<String> path = relativeSegments(key);
+        if (path == null) {
+            throw new IllegalArgumentException("Key " + key + " is not under " + rootKey);
+        }
+        return path;
+    }
+
+    /**
+     * Gets the segments of a key under the root of this tree, or null if the key is not under it
+     */
+    private List<String> relativeSegments(String key) {
+        List<String> segments = segments(key);
+        if (segments.size() < rootDepth) {
+            return null;
+        }
+        List<String> rootSegments = segments(rootKey);
+        if (!segments.subList(0, rootDepth).equals(rootSegments.subList(0, rootDepth))) {
+            return null;
+        }
+        return segments.subList(rootDepth, segments.size());
+    }
+
+    private static List<String> segments(String key) {
+        if (key.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<String> segments = new ArrayList<>();
+        int start = 0;
+        int slash;
+        while ((slash = key.indexOf('/', start)) >= 0) {
+            segments.add(key.substring(start, slash));
+            start = slash + 1;
+        }
+        segments.add(key.substring(start));
+        return segments;
+    }
+
+    private static String childKey(String parentKey, int parentDepth, String segment) {
+        return parentDepth == 0 ? segment : parentKey + "/" + segment;
+    }
+
+    private static <V> ImmutableSortedMap<String, Node<V>> startingWith(ImmutableSortedMap<String, Node<V>> children,
+                                                                        String prefix) {
+        if (prefix.isEmpty()) {
+            return children;
+        }
+        ImmutableSortedMap<String, Node<V>> tail = children.tailMap(prefix, true);
+        String end = null;
+        for (String name : tail.keySet()) {
+            if (!name.startsWith(prefix)) {
+                end = name;
+                break;
+            }
+        }
+        return end == null ? tail : tail.headMap(end, false);
+    }
+
+    private static final class Change<V> {
+        private final List<String> path;
+        private final V value;
+
+        private Change(List<String> path, V value) {
+            this.path = path;
+            this.value = value;
+        }
+    }
+
+    private static final class Node<V> {
+
+        private static final Node<?> EMPTY = new Node<>(null, ImmutableSortedMap.of());
+
+        private final V value;
+        private final ImmutableSortedMap<String, Node<V>> children;
+        private final int size;
+
+        private Node(V value, ImmutableSortedMap<String, Node<V>> children) {
+            this.value = value;
+            this.children = children;
+            int size = value != null ? 1 : 0;
+            for (Node<V> child : children.values()) {
+                size += child.size;
+            }
+            this.size = size;
+        }
+
+        @SuppressWarnings("unchecked")
+        private static <V> Node<V> empty() {
+            return (Node<V>) EMPTY;
+        }
+
+        /**
+         * Copies this node with the changes of the keys under it, the last change of a key winning
+         */
+        private Node<V> apply(List<Change<V>> changes, int depth) {
+            V value = this.value;
+            TreeMap<String, List<Change<V>>> byChild = new TreeMap<>();
+            for (Change<V> change : changes) {
+                if (change.path.size() == depth) {
+                    value = change.value;
+                } else {
+                    byChild.computeIfAbsent(change.path.get(depth), segment -> new ArrayList<>()).add(change);
+                }
+            }
+
+            ImmutableSortedMap<String, Node<V>> children = this.children;
+            if (!byChild.isEmpty()) {
+                TreeMap<String, Node<V>> updated = new TreeMap<>(this.children);
+                for (Map.Entry<String, List<Change<V>>> child : byChild.entrySet()) {
+                    Node<V> previous = this.children.getOrDefault(child.getKey(), empty());
+                    Node<V> next = previous.apply(child.getValue(), depth + 1);
+                    if (next.size == 0) {
+                        updated.remove(child.getKey());
+                    } else {
+                        updated.put(child.getKey(), next);
+                    }
+                }
+                children = ImmutableSortedMap.copyOfSorted(updated);
+            }
+            if (value == null && children.isEmpty()) {
+                return empty();
+            }
+            return new Node<>(value, children);
+        }
+    }
+
+    /**
+     * Walks the tree depth first, with a frame per node on the path to the current key.
+     */
+    private static final class EntryIterator<V> implements Iterator<Map.Entry<String, V>> {
+
+        private final Deque<Frame<V>> stack = new ArrayDeque<>();
+        private final String toKey;
+        private Map.Entry<String, V> next;
+
+        EntryIterator(KeyTrie<V> trie, String fromKey, String toKey) {
+            this.toKey = toKey;
+            List<String> from = fromKey == null ? null : trie.relativeSegments(fromKey);
+            if (fromKey != null && from == null) {
+                // the lower bound is not under this subtree: all its keys are either before or after it
+                if (PATH_ORDER.compare(fromKey, trie.rootKey) > 0) {
+                    return;
+                }
+                from = Collections.emptyList();
+            }
+            if (from == null) {
+                stack.push(new Frame<>(trie.root, trie.rootKey, trie.rootDepth, trie.root.children, true));
+                return;
+            }
+            // descend along the lower bound, the keys on its left being skipped
+            Node<V> node = trie.root;
+            String key = trie.rootKey;
+            int depth = trie.rootDepth;
+            for (int i = 0; i <= from.size(); i++) {
+                boolean last = i == from.size();
+                ImmutableSortedMap<String, Node<V>> children = last
+                        ? node.children
+                        : node.children.tailMap(from.get(i), false);
+                stack.push(new Frame<>(node, key, depth, children, last));
+                if (last) {
+                    break;
+                }
+                node = node.children.get(from.get(i));
+                if (node == null) {
+                    break;
+                }
+                key = childKey(key, depth++, from.get(i));
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (next == null) {
+                next = advance();
+            }
+            return next != null;
+        }
+
+        @Override
+        public Map.Entry<String, V> next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            Map.Entry<String, V> entry = next;
+            next = null;
+            return entry;
+        }
+
+        private Map.Entry<String, V> advance() {
+            while (!stack.isEmpty()) {
+                Frame<V> frame = stack.peek();
+                if (frame.emitValue) {
+                    frame.emitValue = false;
+                    if (frame.node.value != null) {
+                        return bounded(new AbstractMap.SimpleImmutableEntry<>(frame.key, frame.node.value));
+                    }
+                }
+                if (frame.children.hasNext()) {
+                    Map.Entry<String, Node<V>> child = frame.children.next();
+                    stack.push(new Frame<>(child.getValue(), childKey(frame.key, frame.depth, child.getKey()),
+                            frame.depth + 1, child.getValue().children, true));
+                } else {
+                    stack.pop();
+                }
+            }
+            return null;
+        }
+
+        private Map.Entry<String, V> bounded(Map.Entry<String, V> entry) {
+            if (toKey != null && PATH_ORDER.compare(entry.getKey(), toKey) >= 0) {
+                stack.clear();
+                return null;
+            }
+            return entry;
+        }
+
+        private static final class Frame<V> {
+            private final Node<V> node;
+            private final String key;
+            private final int depth;
+            private final Iterator<Map.Entry<String, Node<V>>> children;
+            private boolean emitValue;
+
+            private Frame(Node<V> node, String key, int depth, ImmutableSortedMap<String, Node<V>> children,
+                          boolean emitValue) {
+                this.node = node;
+                this.key = key;
+                this.depth = depth;
+                this.children = children.entrySet().iterator();
+                this.emitValue = emitValue;
+            }
+        }
+    }
+}
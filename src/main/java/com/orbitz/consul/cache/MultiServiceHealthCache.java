@@ -0,0 +1,585 @@
+package com.orbitz.consul.cache;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.primitives.Ints;
+import com.orbitz.consul.CatalogClient;
+import com.orbitz.consul.HealthClient;
+import com.orbitz.consul.async.ConsulResponseCallback;
+import com.orbitz.consul.config.CacheConfig;
+import com.orbitz.consul.model.ConsulResponse;
+import com.orbitz.consul.model.health.HealthCheck;
+import com.orbitz.consul.model.health.ServiceHealth;
+import com.orbitz.consul.option.QueryOptions;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkState;
+
+/**
+ * Service name/instances map of many services, watched with a single blocking query.
+ * <p>
+ * A {@link ServiceHealthCache} per service keeps one blocking query in flight per service. This cache only blocks
+ * on {@code /v1/catalog/services}, and reads the instances of a service when it appears in the catalog or when its
+ * tags change, so that an idle datacenter costs one blocking query whatever the number of services.
+ * <p>
+ * The catalog of services does not change when a check changes its status, nor when an instance registers with
+ * the tags of the existing ones: such changes are only seen on the next resync, which reads all the services again
+ * at a fixed interval, or when {@link #refresh(String)} is called. With {@code watchChecks}, the cache also blocks on
+ * {@code /v1/health/state/any} and reads the services whose checks changed their status, a node check reading the
+ * services with an instance on that node. That query returns every check of the datacenter, whatever the services
+ * tracked, and wakes on every write of a check: each change of any check downloads the whole list again.
+ * <pre>
+ * MultiServiceHealthCache cache = MultiServiceHealthCache.newCache(catalogClient, healthClient, true,
+ *         services::contains, 10, QueryOptions.BLANK, Duration.ofMinutes(1));
+ * cache.start();
+ * </pre>
+ */
+public class MultiServiceHealthCache implements AutoCloseable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(MultiServiceHealthCache.class);
+
+    private final HealthClient healthClient;
+    private final boolean passing;
+    private final QueryOptions queryOptions;
+    private final Predicate<String> serviceFilter;
+    private final long resyncIntervalMillis;
+    private final CacheConfig cacheConfig;
+    private final ServicesCache servicesCache;
+    // null unless the checks are watched
+    private final ChecksCache checksCache;
+    private final ConsulCache.Scheduler scheduler;
+    private final AtomicBoolean running = new AtomicBoolean();
+    private final CountDownLatch initLatch = new CountDownLatch(1);
+    private final CopyOnWriteArrayList<ConsulCache.Listener<String, ImmutableMap<ServiceHealthKey, ServiceHealth>>>
+            listeners = new CopyOnWriteArrayList<>();
+
+    // guarded by lock, rather than a monitor which would pin the virtual threads running the callbacks
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Map<String, TrackedService> services = new HashMap<>();
+    private final Set<String> failed = new TreeSet<>();
+    private boolean catalogLoaded;
+    private boolean checksLoaded;
+
+    private volatile ImmutableMap<String, ImmutableMap<ServiceHealthKey, ServiceHealth>> view = ImmutableMap.of();
+
+    private MultiServiceHealthCache(CatalogClient catalogClient,
+                                    HealthClient healthClient,
+                                    boolean passing,
+                                    Predicate<String> serviceFilter,
+                                    int watchSeconds,
+                                    QueryOptions queryOptions,
+                                    Duration resyncInterval,
+                                    ConsulCache.Scheduler catalogScheduler,
+                                    Supplier<ConsulCache.Scheduler> checksScheduler,
+                                    ConsulCache.Scheduler scheduler,
+                                    boolean watchChecks) {
+        checkArgument(!resyncInterval.isNegative(), "Resync interval must not be negative");
+        this.healthClient = healthClient;
+        this.passing = passing;
+        this.queryOptions = queryOptions;
+        this.serviceFilter = serviceFilter;
+        this.resyncIntervalMillis = resyncInterval.toMillis();
+        this.cacheConfig = healthClient.getConfig().getCacheConfig();
+        this.scheduler = scheduler;
+        this.servicesCache = new ServicesCache(catalogClient, watchSeconds, queryOptions, catalogScheduler);
+        this.servicesCache.addDeltaListener(this::onCatalog);
+        if (watchChecks) {
+            this.checksCache = new ChecksCache(healthClient, watchSeconds, queryOptions, checksScheduler.get());
+            this.checksCache.addDeltaListener(this::onChecks);
+        } else {
+            this.checksCache = null;
+        }
+    }
+
+    /**
+     * Factory method to construct a service name/instances map of the services of the catalog.
+     *
+     * @param catalogClient the {@link CatalogClient} watching the services
+     * @param healthClient the {@link HealthClient} reading the instances
+     * @param passing include only passing instances?
+     * @param serviceFilter the names of the services to include
+     * @param watchSeconds the duration of the blocking queries on the catalog and on the checks
+     * @param queryOptions the options of the queries, e.g. the datacenter
+     * @param resyncInterval the interval between two reads of all the services, zero to never read them again
+     * @param watchChecks also watch all the checks of the datacenter, to read the services whose health changed
+     *                    without waiting for the resync
+     * @param callbackExecutorService the executor scheduling the queries
+     * @return a cache object
+     */
+    public static MultiServiceHealthCache newCache(
+            final CatalogClient catalogClient,
+            final HealthClient healthClient,
+            final boolean passing,
+            final Predicate<String> serviceFilter,
+            final int watchSeconds,
+            final QueryOptions queryOptions,
+            final Duration resyncInterval,
+            final boolean watchChecks,
+            final ScheduledExecutorService callbackExecutorService) {
+
+        return new MultiServiceHealthCache(catalogClient, healthClient, passing, serviceFilter, watchSeconds,
+                queryOptions, resyncInterval, ConsulCache.createExternal(callbackExecutorService),
+                () -> ConsulCache.createExternal(callbackExecutorService),
+                ConsulCache.createExternal(callbackExecutorService), watchChecks);
+    }
+
+    public static MultiServiceHealthCache newCache(
+            final CatalogClient catalogClient,
+            final HealthClient healthClient,
+            final boolean passing,
+            final Predicate<String> serviceFilter,
+            final int watchSeconds,
+            final QueryOptions queryOptions,
+            final Duration resyncInterval,
+            final ScheduledExecutorService callbackExecutorService) {
+
+        return newCache(catalogClient, healthClient, passing, serviceFilter, watchSeconds, queryOptions,
+                resyncInterval, false, callbackExecutorService);
+    }
+
+    public static MultiServiceHealthCache newCache(
+            final CatalogClient catalogClient,
+            final HealthClient healthClient,
+            final boolean passing,
+            final Predicate<String> serviceFilter,
+            final int watchSeconds,
+            final QueryOptions queryOptions,
+            final Duration resyncInterval,
+            final boolean watchChecks) {
+
+        return new MultiServiceHealthCache(catalogClient, healthClient, passing, serviceFilter, watchSeconds,
+                queryOptions, resyncInterval, ConsulCache.createDefault(catalogClient.getCacheScheduler()),
+                () -> ConsulCache.createDefault(healthClient.getCacheScheduler()),
+                ConsulCache.createDefault(healthClient.getCacheScheduler()), watchChecks);
+    }
+
+    public static MultiServiceHealthCache newCache(
+            final CatalogClient catalogClient,
+            final HealthClient healthClient,
+            final boolean passing,
+            final Predicate<String> serviceFilter,
+            final int watchSeconds,
+            final QueryOptions queryOptions,
+            final Duration resyncInterval) {
+
+        return newCache(catalogClient, healthClient, passing, serviceFilter, watchSeconds, queryOptions,
+                resyncInterval, false);
+    }
+
+    /**
+     * Factory method to construct a map of the passing instances of the services of the catalog, read again every
+     * watch duration of the {@link CacheConfig}: a change which leaves the catalog unchanged, e.g. an instance
+     * turning critical, is seen within that interval.
+     *
+     * @param catalogClient the {@link CatalogClient} watching the services
+     * @param healthClient the {@link HealthClient} reading the instances
+     * @param serviceFilter the names of the services to include
+     * @return a cache object
+     */
+    public static MultiServiceHealthCache newCache(
+            final CatalogClient catalogClient,
+            final HealthClient healthClient,
+            final Predicate<String> serviceFilter) {
+        CacheConfig cacheConfig = catalogClient.getConfig().getCacheConfig();
+        int watchSeconds = Ints.checkedCast(cacheConfig.getWatchDuration().getSeconds());
+        return newCache(catalogClient, healthClient, true, serviceFilter, watchSeconds, QueryOptions.BLANK,
+                cacheConfig.getWatchDuration());
+    }
+
+    public void start() {
+        checkState(running.compareAndSet(false, true), "Cache already started");
+        servicesCache.start();
+        if (checksCache != null) {
+            checksCache.start();
+        }
+        if (resyncIntervalMillis > 0) {
+            scheduler.schedule(this::resync, resyncIntervalMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    public void stop() {
+        running.set(false);
+        servicesCache.stop();
+        if (checksCache != null) {
+            checksCache.stop();
+        }
+        scheduler.shutdownNow();
+    }
+
+    @Override
+    public void close() {
+        stop();
+    }
+
+    /**
+     * Waits until the services of the catalog and the instances of each of them were read once.
+     */
+    public boolean awaitInitialized(long timeout, TimeUnit unit) throws InterruptedException {
+        return initLatch.await(timeout, unit);
+    }
+
+    /**
+     * Gets the instances of the services, by service name. A service without instance maps to an empty map.
+     */
+    public ImmutableMap<String, ImmutableMap<ServiceHealthKey, ServiceHealth>> getMap() {
+        return view;
+    }
+
+    /**
+     * Gets the instances of a service, empty if the service is unknown.
+     */
+    public ImmutableMap<ServiceHealthKey, ServiceHealth> getInstances(String service) {
+        return view.getOrDefault(service, ImmutableMap.of());
+    }
+
+    /**
+     * Reads the instances of a service again, e.g. after a change which is not visible in the catalog.
+     *
+     * @return false if the service is not in the catalog
+     */
+    public boolean refresh(String service) {
+        TrackedService tracked;
+        lock.lock();
+        try {
+            tracked = services.get(service);
+        } finally {
+            lock.unlock();
+        }
+        if (tracked == null) {
+            return false;
+        }
+        fetch(service, tracked);
+        return true;
+    }
+
+    /**
+     * Registers a listener notified with all the services when the instances of one of them change.
+     * If the cache is already initialized, the listener is immediately notified.
+     */
+    public void addListener(ConsulCache.Listener<String, ImmutableMap<ServiceHealthKey, ServiceHealth>> listener) {
+        listeners.add(listener);
+        if (initLatch.getCount() == 0) {
+            notifyListener(listener, view);
+        }
+    }
+
+    public boolean removeListener(ConsulCache.Listener<String, ImmutableMap<ServiceHealthKey, ServiceHealth>> listener) {
+        return listeners.remove(listener);
+    }
+
+    private void onCatalog(CacheDelta<String, Map.Entry<String, List<String>>> delta) {
+        List<String> changed = new ArrayList<>();
+        List<TrackedService> fetches = new ArrayList<>();
+        boolean removed = false;
+        lock.lock();
+        try {
+            for (String service : delta.getRemoved().keySet()) {
+                removed |= services.remove(service) != null;
+                failed.remove(service);
+            }
+            for (Map.Entry<String, List<String>> entry : delta.getAdded().values()) {
+                track(entry.getKey(), changed, fetches);
+            }
+            // the tags of the service changed
+            for (Map.Entry<String, List<String>> entry : delta.getModified().values()) {
+                track(entry.getKey(), changed, fetches);
+            }
+            catalogLoaded = true;
+        } finally {
+            lock.unlock();
+        }
+        LOGGER.debug("Catalog changed, reading the instances of {}", changed);
+        for (int i = 0; i < changed.size(); i++) {
+            fetch(changed.get(i), fetches.get(i));
+        }
+        if (removed || changed.isEmpty()) {
+            publish();
+        }
+    }
+
+    /**
+     * Reads the services whose checks changed their status. The first read of the checks is skipped, the services
+     * being read when they appear in the catalog.
+     */
+    private void onChecks(CacheDelta<String, HealthCheck> delta) {
+        Set<HealthCheck> checks = new HashSet<>();
+        checks.addAll(delta.getAdded().values());
+        checks.addAll(delta.getRemoved().values());
+        checks.addAll(delta.getModified().values());
+        Map<String, TrackedService> fetches = new HashMap<>();
+        lock.lock();
+        try {
+            if (!checksLoaded) {
+                checksLoaded = true;
+                return;
+            }
+            for (HealthCheck check : checks) {
+                String service = check.getServiceName().orElse("");
+                if (!service.isEmpty()) {
+                    if (services.containsKey(service)) {
+                        fetches.put(service, services.get(service));
+                    }
+                    continue;
+                }
+                // a node check changes the health of all the instances of the node
+                services.forEach((name, tracked) -> {
+                    if (tracked.instances != null && tracked.instances.values().stream()
+                            .anyMatch(health -> health.getNode().getNode().equals(check.getNode()))) {
+                        fetches.put(name, tracked);
+                    }
+                });
+            }
+        } finally {
+            lock.unlock();
+        }
+        LOGGER.debug("Checks changed, reading the instances of {}", fetches.keySet());
+        fetches.forEach(this::fetch);
+    }
+
+    private void track(String service, List<String> changed, List<TrackedService> fetches) {
+        if (!serviceFilter.test(service)) {
+            return;
+        }
+        TrackedService tracked = services.computeIfAbsent(service, name -> new TrackedService());
+        changed.add(service);
+        fetches.add(tracked);
+    }
+
+    private void fetch(String service, TrackedService tracked) {
+        long generation;
+        lock.lock();
+        try {
+            generation = ++tracked.generation;
+        } finally {
+            lock.unlock();
+        }
+        ConsulResponseCallback<List<ServiceHealth>> callback = new ConsulResponseCallback<List<ServiceHealth>>() {
+            @Override
+            public void onComplete(ConsulResponse<List<ServiceHealth>> consulResponse) {
+                ImmutableMap.Builder<ServiceHealthKey, ServiceHealth> instances = ImmutableMap.builder();
+                Set<ServiceHealthKey> keys = new HashSet<>();
+                for (ServiceHealth health : consulResponse.getResponse()) {
+                    ServiceHealthKey key = ServiceHealthKey.fromServiceHealth(health);
+                    if (keys.add(key)) {
+                        instances.put(key, health);
+                    }
+                }
+                onInstances(service, tracked, generation, instances.build());
+            }
+
+            @Override
+            public void onFailure(Throwable throwable) {
+                onFetchFailure(service, tracked, generation, throwable);
+            }
+        };
+        if (passing) {
+            healthClient.getHealthyServiceInstances(service, queryOptions, callback);
+        } else {
+            healthClient.getAllServiceInstances(service, queryOptions, callback);
+        }
+    }
+
+    private void onInstances(String service, TrackedService tracked, long generation,
+                             ImmutableMap<ServiceHealthKey, ServiceHealth> instances) {
+        lock.lock();
+        try {
+            // a later read of the service, or its removal, wins over this one
+            if (!running.get() || services.get(service) != tracked || tracked.generation != generation) {
+                return;
+            }
+            failed.remove(service);
+            if (instances.equals(tracked.instances)) {
+                return;
+            }
+            tracked.instances = instances;
+        } finally {
+            lock.unlock();
+        }
+        publish();
+    }
+
+    private void onFetchFailure(String service, TrackedService tracked, long generation, Throwable throwable) {
+        lock.lock();
+        try {
+            if (!running.get() || services.get(service) != tracked || tracked.generation != generation) {
+                return;
+            }
+            failed.add(service);
+        } finally {
+            lock.unlock();
+        }
+        long delayMs = ConsulCache.computeBackOffDelayMs(cacheConfig);
+        cacheConfig.getRefreshErrorLoggingConsumer().accept(LOGGER, String.format(
+                "Error getting the instances of %s from consul, will retry in %d %s",
+                service, delayMs, TimeUnit.MILLISECONDS), throwable);
+        scheduler.schedule(this::retryFailed, delayMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Reads all the services, then schedules the next resync whatever the outcome.
+     */
+    private void resync() {
+        if (!running.get()) {
+            return;
+        }
+        try {
+            Map<String, TrackedService> fetches;
+            lock.lock();
+            try {
+                fetches = new HashMap<>(services);
+                failed.clear();
+            } finally {
+                lock.unlock();
+            }
+            fetches.forEach(this::fetch);
+        } finally {
+            if (running.get()) {
+                scheduler.schedule(this::resync, resyncIntervalMillis, TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    /**
+     * Reads the services whose last read failed.
+     */
+    private void retryFailed() {
+        if (!running.get()) {
+            return;
+        }
+        Map<String, TrackedService> fetches = new HashMap<>();
+        lock.lock();
+        try {
+            for (String service : failed) {
+                fetches.put(service, services.get(service));
+            }
+            failed.clear();
+        } finally {
+            lock.unlock();
+        }
+        fetches.forEach(this::fetch);
+    }
+
+    private void publish() {
+        ImmutableMap<String, ImmutableMap<ServiceHealthKey, ServiceHealth>> current;
+        lock.lock();
+        try {
+            if (!catalogLoaded) {
+                return;
+            }
+            ImmutableMap.Builder<String, ImmutableMap<ServiceHealthKey, ServiceHealth>> builder =
+                    ImmutableMap.builder();
+            for (Map.Entry<String, TrackedService> entry : services.entrySet()) {
+                if (entry.getValue().instances == null) {
+                    // not read yet: the previous view is kept until all the services are read
+                    if (initLatch.getCount() > 0) {
+                        return;
+                    }
+                    continue;
+                }
+                builder.put(entry.getKey(), entry.getValue().instances);
+            }
+            current = builder.build();
+            if (!current.equals(view) || initLatch.getCount() > 0) {
+                view = current;
+                // the notifications are delivered under the lock, so that listeners see the views in order
+                for (ConsulCache.Listener<String, ImmutableMap<ServiceHealthKey, ServiceHealth>> listener : listeners) {
+                    notifyListener(listener, current);
+                }
+            }
+            initLatch.countDown();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static void notifyListener(
+            ConsulCache.Listener<String, ImmutableMap<ServiceHealthKey, ServiceHealth>> listener,
+            ImmutableMap<String, ImmutableMap<ServiceHealthKey, ServiceHealth>> services) {
+        try {
+            listener.notify(services);
+        } catch (RuntimeException e) {
+            LOGGER.warn("MultiServiceHealthCache Listener's notify method threw an exception.", e);
+        }
+    }
+
+    private static final class TrackedService {
+
+        private long generation;
+        private ImmutableMap<ServiceHealthKey, ServiceHealth> instances;
+    }
+
+    /**
+     * Checks of the datacenter, by node and check id. Only a change of status or of service counts.
+     */
+    private static final class ChecksCache extends ConsulCache<String, HealthCheck> {
+
+        ChecksCache(HealthClient healthClient, int watchSeconds, QueryOptions queryOptions, Scheduler scheduler) {
+            super(check -> check.getNode() + "/" + check.getCheckId(),
+                  (index, callback) -> {
+                      checkWatch(healthClient.getNetworkTimeoutConfig().getClientReadTimeoutMillis(), watchSeconds);
+                      healthClient.getChecksByState(com.orbitz.consul.model.State.ANY,
+                              watchParams(index, watchSeconds, queryOptions), callback);
+                  },
+                  healthClient.getConfig().getCacheConfig(),
+                  healthClient.getEventHandler(),
+                  new CacheDescriptor("health.state", com.orbitz.consul.model.State.ANY.getName()),
+                  scheduler);
+        }
+
+        @Override
+        protected boolean isModified(HealthCheck previous, HealthCheck current) {
+            return !previous.getStatus().equals(current.getStatus())
+                    || !previous.getServiceName().equals(current.getServiceName());
+        }
+    }
+
+    /**
+     * Service name/tags map of the catalog, whose values are entries so that they carry their key.
+     */
+    private static final class ServicesCache extends ConsulCache<String, Map.Entry<String, List<String>>> {
+
+        ServicesCache(CatalogClient catalogClient, int watchSeconds, QueryOptions queryOptions, Scheduler scheduler) {
+            super(Map.Entry::getKey,
+                  (index, callback) -> {
+                      checkWatch(catalogClient.getNetworkTimeoutConfig().getClientReadTimeoutMillis(), watchSeconds);
+                      catalogClient.getServices(watchParams(index, watchSeconds, queryOptions),
+                              new ConsulResponseCallback<Map<String, List<String>>>() {
+                                  @Override
+                                  public void onComplete(ConsulResponse<Map<String, List<String>>> consulResponse) {
+                                      Map<String, List<String>> services = consulResponse.getResponse();
+                                      callback.onComplete(consulResponse.withResponse(services == null
+                                              ? Collections.emptyList() : new ArrayList<>(services.entrySet())));
+                                  }
+
+                                  @Override
+                                  public void onFailure(Throwable throwable) {
+                                      callback.onFailure(throwable);
+                                  }
+                              });
+                  },
+                  catalogClient.getConfig().getCacheConfig(),
+                  catalogClient.getEventHandler(),
+                  new CacheDescriptor("catalog.services"),
+                  scheduler);
+        }
+    }
+}
@@ -0,0 +1,270 @@
+package com.orbitz.consul.cache;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import com.orbitz.consul.model.coordinate.Coord;
+import com.orbitz.consul.model.coordinate.Coordinate;
+import com.orbitz.consul.model.health.ServiceHealth;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * View of the N instances of a service nearest to the local node, by the round trip time estimated from the
+ * Vivaldi network coordinates of the nodes, as {@code ?near=} does for a single query.
+ * <p>
+ * The view follows a {@link CoordinateCache} and a {@link ServiceHealthCache}, and updates incrementally: only the
+ * instances which changed, or whose node moved, are measured again, unless the local node itself moved. Instances
+ * whose node has no coordinate come after the others.
+ * <pre>
+ * String localNode = consul.agentClient().getAgent().getConfig().getNodeName();
+ * NearestServiceInstances nearest = NearestServiceInstances.newView(coordinateCache, serviceHealthCache, localNode, 3);
+ * </pre>
+ */
+public class NearestServiceInstances implements AutoCloseable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(NearestServiceInstances.class);
+
+    private static final Comparator<Candidate> NEAREST_FIRST = Comparator
+            .comparingDouble((Candidate candidate) -> candidate.rtt)
+            .thenComparing(candidate -> candidate.key.getServiceId())
+            .thenComparing(candidate -> candidate.key.getHost())
+            .thenComparing(candidate -> candidate.key.getPort());
+
+    private final String localNode;
+    private final int limit;
+    private final CoordinateCache coordinateCache;
+    private final ServiceHealthCache serviceHealthCache;
+    private final ConsulCache.DeltaListener<String, Coordinate> coordinateListener = this::onCoordinates;
+    private final ConsulCache.DeltaListener<ServiceHealthKey, ServiceHealth> serviceListener = this::onInstances;
+    private final CopyOnWriteArrayList<Consumer<List<ServiceHealth>>> listeners = new CopyOnWriteArrayList<>();
+
+    // guarded by lock, as the listeners notified under it may block a virtual thread
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Map<String, NodeCoordinate> coordinates = new HashMap<>();
+    private final Map<ServiceHealthKey, Candidate> candidates = new HashMap<>();
+
+    private volatile List<ServiceHealth> nearest = ImmutableList.of();
+
+    @VisibleForTesting
+    NearestServiceInstances(CoordinateCache coordinateCache, ServiceHealthCache serviceHealthCache,
+                                    String localNode, int limit) {
+        Preconditions.checkArgument(limit > 0, "Limit must be positive");
+        this.coordinateCache = coordinateCache;
+        this.serviceHealthCache = serviceHealthCache;
+        this.localNode = Preconditions.checkNotNull(localNode, "localNode");
+        this.limit = limit;
+    }
+
+    /**
+     * Creates a view following the given caches until it is closed.
+     *
+     * @param coordinateCache the coordinates of the nodes of the datacenter
+     * @param serviceHealthCache the instances of the service
+     * @param localNode the name of the node the requests are sent from
+     * @param limit the maximum number of instances of the view
+     * @return the view, which is up to date if the caches are started
+     */
+    public static NearestServiceInstances newView(CoordinateCache coordinateCache,
+                                                  ServiceHealthCache serviceHealthCache,
+                                                  String localNode, int limit) {
+        NearestServiceInstances view = new NearestServiceInstances(coordinateCache, serviceHealthCache,
+                localNode, limit);
+        coordinateCache.addDeltaListener(view.coordinateListener);
+        serviceHealthCache.addDeltaListener(view.serviceListener);
+        return view;
+    }
+
+    /**
+     * Gets the nearest instances, nearest first.
+     */
+    public List<ServiceHealth> getNearest() {
+        return nearest;
+    }
+
+    /**
+     * Gets the estimated round trip time between the local node and a node.
+     *
+     * @return the estimation, or empty if one of the nodes has no coordinate
+     */
+    public Optional<Duration> getEstimatedRtt(String node) {
+        double rtt;
+        lock.lock();
+        try {
+            rtt = rttFromLocalNode(node);
+        } finally {
+            lock.unlock();
+        }
+        return Double.isInfinite(rtt) ? Optional.empty() : Optional.of(Duration.ofNanos((long) (rtt * 1e9)));
+    }
+
+    /**
+     * Registers a listener notified with the nearest instances when they change.
+     */
+    public void addListener(Consumer<List<ServiceHealth>> listener) {
+        listeners.add(listener);
+    }
+
+    public boolean removeListener(Consumer<List<ServiceHealth>> listener) {
+        return listeners.remove(listener);
+    }
+
+    /**
+     * Stops following the caches.
+     */
+    @Override
+    public void close() {
+        coordinateCache.removeDeltaListener(coordinateListener);
+        serviceHealthCache.removeDeltaListener(serviceListener);
+    }
+
+    @VisibleForTesting
+    void onCoordinates(CacheDelta<String, Coordinate> delta) {
+        lock.lock();
+        try {
+            delta.getRemoved().keySet().forEach(coordinates::remove);
+            delta.getAdded().values().forEach(this::putCoordinate);
+            delta.getModified().values().forEach(this::putCoordinate);
+
+            boolean localNodeMoved = isChanged(delta, localNode);
+            for (Candidate candidate : candidates.values()) {
+                String node = candidate.health.getNode().getNode();
+                if (localNodeMoved || isChanged(delta, node)) {
+                    candidate.rtt = rttFromLocalNode(node);
+                }
+            }
+            publish();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static boolean isChanged(CacheDelta<String, Coordinate> delta, String node) {
+        return delta.getModified().containsKey(node)
+                || delta.getAdded().containsKey(node)
+                || delta.getRemoved().containsKey(node);
+    }
+
+    @VisibleForTesting
+    void onInstances(CacheDelta<ServiceHealthKey, ServiceHealth> delta) {
+        lock.lock();
+        try {
+            delta.getRemoved().keySet().forEach(candidates::remove);
+            delta.getAdded().forEach(this::putCandidate);
+            delta.getModified().forEach(this::putCandidate);
+            publish();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void putCoordinate(Coordinate coordinate) {
+        Coord coord = coordinate.getCoord();
+        coordinates.put(coordinate.getNode(),
+                new NodeCoordinate(coord.getVec(), coord.getHeight(), coord.getAdjustment()));
+    }
+
+    private void putCandidate(ServiceHealthKey key, ServiceHealth health) {
+        candidates.put(key, new Candidate(key, health, rttFromLocalNode(health.getNode().getNode())));
+    }
+
+    private double rttFromLocalNode(String node) {
+        NodeCoordinate local = coordinates.get(localNode);
+        NodeCoordinate remote = coordinates.get(node);
+        if (local == null || remote == null) {
+            return Double.POSITIVE_INFINITY;
+        }
+        double rtt = estimateRttSeconds(local.vec, local.height, local.adjustment,
+                remote.vec, remote.height, remote.adjustment);
+        return Double.isNaN(rtt) ? Double.POSITIVE_INFINITY : rtt;
+    }
+
+    private void publish() {
+        Candidate[] sorted = candidates.values().toArray(new Candidate[0]);
+        Arrays.sort(sorted, NEAREST_FIRST);
+        List<ServiceHealth> selected = new ArrayList<>(Math.min(limit, sorted.length));
+        for (int i = 0; i < sorted.length && i < limit; i++) {
+            selected.add(sorted[i].health);
+        }
+        if (selected.equals(nearest)) {
+            return;
+        }
+        nearest = ImmutableList.copyOf(selected);
+        for (Consumer<List<ServiceHealth>> listener : listeners) {
+            try {
+                listener.accept(nearest);
+            } catch (RuntimeException e) {
+                LOGGER.warn("NearestServiceInstances listener threw an exception.", e);
+            }
+        }
+    }
+
+    /**
+     * Estimates the round trip time between two nodes from their coordinates.
+     *
+     * @return the estimation in seconds, or NaN if the coordinates do not have the same dimensions
+     */
+    public static double estimateRttSeconds(Coord a, Coord b) {
+        return estimateRttSeconds(a.getVec(), a.getHeight(), a.getAdjustment(),
+                b.getVec(), b.getHeight(), b.getAdjustment());
+    }
+
+    /**
+     * Estimates the round trip time between two nodes as Consul does: the Euclidean distance between the vectors
+     * plus the heights, plus the adjustments unless that makes the estimation negative.
+     *
+     * @return the estimation in seconds, or NaN if the vectors do not have the same dimensions
+     */
+    public static double estimateRttSeconds(double[] vecA, double heightA, double adjustmentA,
+                                            double[] vecB, double heightB, double adjustmentB) {
+        if (vecA.length != vecB.length) {
+            return Double.NaN;
+        }
+        double sum = 0;
+        for (int i = 0; i < vecA.length; i++) {
+            double diff = vecA[i] - vecB[i];
+            sum += diff * diff;
+        }
+        double rtt = Math.sqrt(sum) + heightA + heightB;
+        double adjusted = rtt + adjustmentA + adjustmentB;
+        return adjusted > 0 ? adjusted : rtt;
+    }
+
+    private static final class NodeCoordinate {
+
+        private final double[] vec;
+        private final double height;
+        private final double adjustment;
+
+        NodeCoordinate(double[] vec, double height, double adjustment) {
+            this.vec = vec;
+            this.height = height;
+            this.adjustment = adjustment;
+        }
+    }
+
+    private static final class Candidate {
+
+        private final ServiceHealthKey key;
+        private final ServiceHealth health;
+        private double rtt;
+
+        Candidate(ServiceHealthKey key, ServiceHealth health, double rtt) {
+            this.key = key;
+            this.health = health;
+            this.rtt = rtt;
+        }
+    }
+}
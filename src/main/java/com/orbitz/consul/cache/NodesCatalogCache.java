@@ -39,7 +39,7 @@ public class NodesCatalogCache extends ConsulCache<String, Node> {
             final CatalogClient catalogClient,
             final QueryOptions queryOptions,
             final int watchSeconds) {
-        return new NodesCatalogCache(catalogClient, queryOptions, watchSeconds, createDefault());
+        return new NodesCatalogCache(catalogClient, queryOptions, watchSeconds, createDefault(catalogClient.getCacheScheduler()));
     }
 
     public static NodesCatalogCache newCache(final CatalogClient catalogClient) {
@@ -43,7 +43,7 @@ public class ServiceCatalogCache extends ConsulCache<String, CatalogService> {
             final QueryOptions queryOptions,
             final int watchSeconds) {
 
-        return new ServiceCatalogCache(catalogClient, serviceName, queryOptions, watchSeconds, createDefault());
+        return new ServiceCatalogCache(catalogClient, serviceName, queryOptions, watchSeconds, createDefault(catalogClient.getCacheScheduler()));
     }
 
     public static ServiceCatalogCache newCache(final CatalogClient catalogClient, final String serviceName) {
@@ -4,9 +4,11 @@ import com.google.common.net.HostAndPort;
 import com.google.common.primitives.Ints;
 import com.orbitz.consul.HealthClient;
 import com.orbitz.consul.config.CacheConfig;
+import com.orbitz.consul.model.health.HealthCheck;
 import com.orbitz.consul.model.health.ServiceHealth;
 import com.orbitz.consul.option.QueryOptions;
 
+import java.util.Optional;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.function.Function;
 
@@ -35,6 +37,38 @@ public class ServiceHealthCache extends ConsulCache<ServiceHealthKey, ServiceHea
               callbackScheduler);
     }
 
+    /**
+     * Compares the modification indexes of the service and of its checks.
+     * Falls back on a deep equality if Consul did not return the indexes.
+     */
+    @Override
+    protected boolean isModified(ServiceHealth previous, ServiceHealth current) {
+        if (!previous.getNode().equals(current.getNode())
+                || previous.getChecks().size() != current.getChecks().size()) {
+            return true;
+        }
+        Optional<Long> previousIndex = previous.getService().getModifyIndex();
+        Optional<Long> currentIndex = current.getService().getModifyIndex();
+        if (!previousIndex.isPresent() || !currentIndex.isPresent()) {
+            return !previous.equals(current);
+        }
+        if (!previousIndex.equals(currentIndex)) {
+            return true;
+        }
+        for (int i = 0; i < previous.getChecks().size(); i++) {
+            HealthCheck previousCheck = previous.getChecks().get(i);
+            HealthCheck currentCheck = current.getChecks().get(i);
+            if (!previousCheck.getModifyIndex().isPresent() || !currentCheck.getModifyIndex().isPresent()) {
+                return !previous.equals(current);
+            }
+            if (!previousCheck.getCheckId().equals(currentCheck.getCheckId())
+                    || !previousCheck.getModifyIndex().equals(currentCheck.getModifyIndex())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     /**
      * Factory method to construct a string/{@link ServiceHealth} map for a particular service.
      * <p/>
@@ -66,7 +100,7 @@ public class ServiceHealthCache extends ConsulCache<ServiceHealthKey, ServiceHea
             final QueryOptions queryOptions,
             final Function<ServiceHealth, ServiceHealthKey> keyExtractor) {
 
-        return new ServiceHealthCache(healthClient, serviceName, passing, watchSeconds, queryOptions, keyExtractor, createDefault());
+        return new ServiceHealthCache(healthClient, serviceName, passing, watchSeconds, queryOptions, keyExtractor, createDefault(healthClient.getCacheScheduler()));
     }
 
     public static ServiceHealthCache newCache(
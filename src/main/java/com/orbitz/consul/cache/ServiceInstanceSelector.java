@@ -0,0 +1,327 @@
+package com.orbitz.consul.cache;
+
+import com.google.common.base.Preconditions;
+import com.google.common.net.HostAndPort;
+import com.orbitz.consul.model.catalog.ServiceWeights;
+import com.orbitz.consul.model.health.HealthCheck;
+import com.orbitz.consul.model.health.ServiceHealth;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Client-side load balancer over the instances of a {@link ServiceHealthCache}.
+ * <p>
+ * Every notification of the cache is flattened into an immutable array of the selectable instances, with their
+ * weight taken from {@link com.orbitz.consul.model.health.Service#getWeights()}: the passing weight when all their
+ * checks pass, the warning weight when one of them warns, and none (the instance is skipped) when one of them is
+ * critical or when the weight is 0. Consul defaults both weights to 1.
+ * <p>
+ * {@link #select()} does not allocate, whatever the strategy, so that it can run on every outbound request.
+ * Each selection counts as an outstanding request of the instance until {@link Instance#release()} is called:
+ * <pre>
+ * ServiceInstanceSelector selector = ServiceInstanceSelector.newSelector(cache, Strategy.LEAST_OUTSTANDING);
+ * ServiceInstanceSelector.Instance instance = selector.select();
+ * try {
+ *     call(instance.getHostAndPort());
+ * } finally {
+ *     instance.release();
+ * }
+ * </pre>
+ */
+public class ServiceInstanceSelector implements ConsulCache.Listener<ServiceHealthKey, ServiceHealth>, AutoCloseable {
+
+    /**
+     * As this prime exceeds the total weights below 2^31, multiplying by it permutes the positions of a round,
+     * which spreads the selections of an instance over the round instead of making them consecutive.
+     */
+    private static final long ROUND_ROBIN_STRIDE = 2654435761L;
+
+    private static final Snapshot EMPTY = new Snapshot(new Instance[0]);
+
+    public enum Strategy {
+        /**
+         * Goes through the instances in turn, each being selected as many times per round as its weight.
+         */
+        ROUND_ROBIN,
+        /**
+         * Selects an instance at random, with a probability proportional to its weight.
+         */
+        WEIGHTED_RANDOM,
+        /**
+         * Draws two instances at random, in proportion to their weight, and selects the one with the fewer
+         * outstanding requests relative to its weight.
+         */
+        POWER_OF_TWO_CHOICES,
+        /**
+         * Selects the instance with the fewest outstanding requests relative to its weight.
+         */
+        LEAST_OUTSTANDING
+    }
+
+    private final Strategy strategy;
+    private final ServiceHealthCache cache;
+    private final AtomicLong counter = new AtomicLong();
+    private volatile Snapshot snapshot = EMPTY;
+
+    /**
+     * Creates a selector to be notified by a cache, see {@link #newSelector(ServiceHealthCache, Strategy)}.
+     */
+    public ServiceInstanceSelector(Strategy strategy) {
+        this(strategy, null);
+    }
+
+    private ServiceInstanceSelector(Strategy strategy, ServiceHealthCache cache) {
+        this.strategy = Preconditions.checkNotNull(strategy, "strategy");
+        this.cache = cache;
+    }
+
+    /**
+     * Creates a selector following the instances of a cache, until it is closed.
+     *
+     * @param cache the cache of the instances of a service
+     * @param strategy how to select the instances
+     * @return the selector, which has the current instances if the cache is started
+     */
+    public static ServiceInstanceSelector newSelector(ServiceHealthCache cache, Strategy strategy) {
+        ServiceInstanceSelector selector = new ServiceInstanceSelector(strategy, cache);
+        cache.addListener(selector);
+        return selector;
+    }
+
+    @Override
+    public void notify(Map<ServiceHealthKey, ServiceHealth> newValues) {
+        Map<ServiceHealthKey, Instance> previous = snapshot.byKey;
+        Instance[] instances = new Instance[newValues.size()];
+        int count = 0;
+        for (Map.Entry<ServiceHealthKey, ServiceHealth> entry : newValues.entrySet()) {
+            int weight = weight(entry.getValue());
+            if (weight <= 0) {
+                continue;
+            }
+            Instance existing = previous.get(entry.getKey());
+            // the outstanding requests of an instance outlive its updates
+            AtomicInteger outstanding = existing != null ? existing.outstanding : new AtomicInteger();
+            instances[count++] = new Instance(entry.getKey(), entry.getValue(), weight, outstanding);
+        }
+        snapshot = new Snapshot(Arrays.copyOf(instances, count));
+    }
+
+    /**
+     * Gets the weight of an instance given its checks, 0 if it must not be selected.
+     */
+    static int weight(ServiceHealth health) {
+        boolean warning = false;
+        for (HealthCheck check : health.getChecks()) {
+            String status = check.getStatus();
+            if ("critical".equals(status)) {
+                return 0;
+            }
+            warning |= "warning".equals(status);
+        }
+        Optional<ServiceWeights> weights = health.getService().getWeights();
+        if (!weights.isPresent()) {
+            return 1;
+        }
+        return warning ? weights.get().getWarning() : weights.get().getPassing();
+    }
+
+    /**
+     * Selects an instance, which must be {@link Instance#release() released} once the request completed.
+     *
+     * @return the instance, or null if there is no selectable instance
+     */
+    public Instance select() {
+        Snapshot current = snapshot;
+        Instance[] instances = current.instances;
+        if (instances.length == 0) {
+            return null;
+        }
+        Instance selected;
+        if (instances.length == 1) {
+            selected = instances[0];
+        } else {
+            switch (strategy) {
+                case ROUND_ROBIN:
+                    long position = counter.getAndIncrement() % current.totalWeight;
+                    selected = current.byWeight((position * current.stride) % current.totalWeight);
+                    break;
+                case WEIGHTED_RANDOM:
+                    selected = current.byWeight(ThreadLocalRandom.current().nextLong(current.totalWeight));
+                    break;
+                case POWER_OF_TWO_CHOICES:
+                    selected = powerOfTwoChoices(current);
+                    break;
+                case LEAST_OUTSTANDING:
+                    selected = leastOutstanding(instances);
+                    break;
+                default:
+                    throw new IllegalStateException("Unknown strategy " + strategy);
+            }
+        }
+        selected.outstanding.incrementAndGet();
+        return selected;
+    }
+
+    private static Instance powerOfTwoChoices(Snapshot current) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        Instance first = current.byWeight(random.nextLong(current.totalWeight));
+        Instance second = current.byWeight(random.nextLong(current.totalWeight));
+        if (first == second) {
+            // draw the second one among the others, whatever their weight, to still compare two instances
+            int index = random.nextInt(current.instances.length - 1);
+            second = current.instances[index < first.index ? index : index + 1];
+        }
+        return second.isLessLoadedThan(first) ? second : first;
+    }
+
+    private Instance leastOutstanding(Instance[] instances) {
+        // starting at a rotating offset spreads the ties over the instances
+        int start = (int) (counter.getAndIncrement() % instances.length);
+        Instance selected = instances[start];
+        for (int i = 1; i < instances.length; i++) {
+            Instance candidate = instances[(start + i) % instances.length];
+            if (candidate.isLessLoadedThan(selected)) {
+                selected = candidate;
+            }
+        }
+        return selected;
+    }
+
+    /**
+     * Gets the number of selectable instances.
+     */
+    public int getInstanceCount() {
+        return snapshot.instances.length;
+    }
+
+    public Strategy getStrategy() {
+        return strategy;
+    }
+
+    /**
+     * Stops following the cache the selector was created with, if any.
+     */
+    @Override
+    public void close() {
+        if (cache != null) {
+            cache.removeListener(this);
+        }
+    }
+
+    /**
+     * A selectable instance of the service.
+     */
+    public static final class Instance {
+
+        private final ServiceHealthKey key;
+        private final ServiceHealth serviceHealth;
+        private final HostAndPort hostAndPort;
+        private final int weight;
+        private final AtomicInteger outstanding;
+        private int index;
+
+        private Instance(ServiceHealthKey key, ServiceHealth serviceHealth, int weight, AtomicInteger outstanding) {
+            this.key = key;
+            this.serviceHealth = serviceHealth;
+            String address = serviceHealth.getService().getAddress();
+            this.hostAndPort = HostAndPort.fromParts(
+                    address.isEmpty() ? serviceHealth.getNode().getAddress() : address,
+                    serviceHealth.getService().getPort());
+            this.weight = weight;
+            this.outstanding = outstanding;
+        }
+
+        public ServiceHealthKey getKey() {
+            return key;
+        }
+
+        public ServiceHealth getServiceHealth() {
+            return serviceHealth;
+        }
+
+        /**
+         * Gets the address of the service, or of its node when the service has none, and the port of the service.
+         */
+        public HostAndPort getHostAndPort() {
+            return hostAndPort;
+        }
+
+        public int getWeight() {
+            return weight;
+        }
+
+        /**
+         * Gets the number of selections of this instance which were not released yet.
+         */
+        public int getOutstanding() {
+            return outstanding.get();
+        }
+
+        /**
+         * Ends a request to this instance. Must be called exactly once per selection.
+         */
+        public void release() {
+            outstanding.decrementAndGet();
+        }
+
+        private boolean isLessLoadedThan(Instance other) {
+            return (long) outstanding.get() * other.weight < (long) other.outstanding.get() * weight;
+        }
+
+        @Override
+        public String toString() {
+            return "Instance{" +
+                    "hostAndPort=" + hostAndPort +
+                    ", weight=" + weight +
+                    ", outstanding=" + outstanding +
+                    '}';
+        }
+    }
+
+    private static final class Snapshot {
+
+        private final Instance[] instances;
+        private final long[] cumulativeWeights;
+        private final long totalWeight;
+        private final long stride;
+        private final Map<ServiceHealthKey, Instance> byKey;
+
+        Snapshot(Instance[] instances) {
+            this.instances = instances;
+            this.cumulativeWeights = new long[instances.length];
+            this.byKey = new HashMap<>(instances.length * 2);
+            long total = 0;
+            for (int i = 0; i < instances.length; i++) {
+                instances[i].index = i;
+                total += instances[i].weight;
+                cumulativeWeights[i] = total;
+                byKey.put(instances[i].key, instances[i]);
+            }
+            this.totalWeight = total;
+            this.stride = total > 0 && total < Integer.MAX_VALUE ? ROUND_ROBIN_STRIDE % total : 1;
+        }
+
+        /**
+         * Gets the instance at a position of the total weight, each instance spanning as many positions as its weight.
+         */
+        Instance byWeight(long position) {
+            int low = 0;
+            int high = cumulativeWeights.length - 1;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (cumulativeWeights[middle] <= position) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            return instances[low];
+        }
+    }
+}
@@ -1,20 +1,63 @@
 package com.orbitz.consul.config;
 
 import com.google.common.base.Preconditions;
+import com.orbitz.consul.monitoring.ClientEventDispatcher;
+import com.orbitz.consul.util.RequestCoalescer;
+
+import java.util.Optional;
 
 public class ClientConfig {
 
     private final CacheConfig cacheConfig;
+    private final RequestCoalescer requestCoalescer;
+    private final ClientEventDispatcher clientEventDispatcher;
 
     public ClientConfig() {
         this(CacheConfig.builder().build());
     }
 
     public ClientConfig(CacheConfig cacheConfig) {
+        this(cacheConfig, null);
+    }
+
+    /**
+     * @param cacheConfig the configuration of the caches
+     * @param requestCoalescer shares the identical GET requests in flight between all the clients,
+     *                         or null to send every request
+     */
+    public ClientConfig(CacheConfig cacheConfig, RequestCoalescer requestCoalescer) {
+        this(cacheConfig, requestCoalescer, null);
+    }
+
+    /**
+     * @param cacheConfig the configuration of the caches
+     * @param requestCoalescer shares the identical GET requests in flight between all the clients,
+     *                         or null to send every request
+     * @param clientEventDispatcher delivers the client events to the {@link com.orbitz.consul.monitoring.ClientEventCallback},
+     *                              or null to use the default dispatcher
+     */
+    public ClientConfig(CacheConfig cacheConfig, RequestCoalescer requestCoalescer,
+                        ClientEventDispatcher clientEventDispatcher) {
         this.cacheConfig = Preconditions.checkNotNull(cacheConfig, "Cache configuration is mandatory");
+        this.requestCoalescer = requestCoalescer;
+        this.clientEventDispatcher = clientEventDispatcher;
     }
 
     public CacheConfig getCacheConfig() {
         return cacheConfig;
     }
+
+    /**
+     * Gets the request coalescer, which also holds the coalescing metrics.
+     */
+    public Optional<RequestCoalescer> getRequestCoalescer() {
+        return Optional.ofNullable(requestCoalescer);
+    }
+
+    /**
+     * Gets the dispatcher of the client events, which also holds the dropped events counter.
+     */
+    public Optional<ClientEventDispatcher> getClientEventDispatcher() {
+        return Optional.ofNullable(clientEventDispatcher);
+    }
 }
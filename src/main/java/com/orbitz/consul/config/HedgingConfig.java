@@ -0,0 +1,131 @@
+package com.orbitz.consul.config;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Preconditions;
+
+import java.time.Duration;
+
+/**
+ * Configures the hedging of the idempotent reads sent to several agents: when a read did not complete after the
+ * given percentile of the latency of the previous reads, the same read is sent to another agent, and the first
+ * response wins.
+ * <p>
+ * Only the reads of the KV store, the health, the catalog and the executions of prepared queries are hedged, except
+ * the blocking queries: the reads of the agent endpoints and the snapshots are never hedged.
+ */
+public class HedgingConfig {
+
+    @VisibleForTesting
+    static final double DEFAULT_PERCENTILE = 95;
+    @VisibleForTesting
+    static final Duration DEFAULT_MIN_DELAY = Duration.ofMillis(10);
+    @VisibleForTesting
+    static final double DEFAULT_BUDGET_RATIO = 0.1;
+    @VisibleForTesting
+    static final int DEFAULT_MIN_SAMPLES = 64;
+
+    private final double percentile;
+    private final Duration minDelay;
+    private final double budgetRatio;
+    private final int minSamples;
+
+    private HedgingConfig(double percentile, Duration minDelay, double budgetRatio, int minSamples) {
+        this.percentile = percentile;
+        this.minDelay = minDelay;
+        this.budgetRatio = budgetRatio;
+        this.minSamples = minSamples;
+    }
+
+    /**
+     * Gets the percentile of the latency of the reads after which a read is hedged.
+     */
+    public double getPercentile() {
+        return percentile;
+    }
+
+    /**
+     * Gets the minimum delay before a read is hedged, whatever the latency of the previous reads.
+     */
+    public Duration getMinimumDelay() {
+        return minDelay;
+    }
+
+    /**
+     * Gets the maximum number of hedges per read, e.g. 0.1 for at most 10% of additional reads.
+     */
+    public double getBudgetRatio() {
+        return budgetRatio;
+    }
+
+    /**
+     * Gets the number of reads whose latency is measured before the first hedge.
+     */
+    public int getMinimumSamples() {
+        return minSamples;
+    }
+
+    /**
+     * Creates a new {@link HedgingConfig.Builder} object.
+     *
+     * @return A new hedging config builder.
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public static class Builder {
+        private double percentile = DEFAULT_PERCENTILE;
+        private Duration minDelay = DEFAULT_MIN_DELAY;
+        private double budgetRatio = DEFAULT_BUDGET_RATIO;
+        private int minSamples = DEFAULT_MIN_SAMPLES;
+
+        private Builder() {
+
+        }
+
+        /**
+         * Sets the percentile of the latency of the reads after which a read is hedged, 95 by default.
+         * @throws IllegalArgumentException if {@code percentile} is not between 0 and 100.
+         */
+        public Builder withPercentile(double percentile) {
+            Preconditions.checkArgument(percentile >= 0 && percentile <= 100, "Percentile must be between 0 and 100");
+            this.percentile = percentile;
+            return this;
+        }
+
+        /**
+         * Sets the minimum delay before a read is hedged, 10ms by default.
+         * @throws IllegalArgumentException if {@code delay} is negative.
+         */
+        public Builder withMinDelay(Duration delay) {
+            this.minDelay = Preconditions.checkNotNull(delay, "Delay cannot be null");
+            Preconditions.checkArgument(!delay.isNegative(), "Delay must be positive");
+            return this;
+        }
+
+        /**
+         * Sets the maximum number of hedges per read, 0.1 by default. Unused budget is kept for bursts of up to
+         * 10 hedges.
+         * @throws IllegalArgumentException if {@code ratio} is not between 0 and 1.
+         */
+        public Builder withBudgetRatio(double ratio) {
+            Preconditions.checkArgument(ratio >= 0 && ratio <= 1, "Budget ratio must be between 0 and 1");
+            this.budgetRatio = ratio;
+            return this;
+        }
+
+        /**
+         * Sets the number of reads whose latency is measured before the first hedge, 64 by default.
+         * @throws IllegalArgumentException if {@code samples} is not positive.
+         */
+        public Builder withMinSamples(int samples) {
+            Preconditions.checkArgument(samples > 0, "Samples must be positive");
+            this.minSamples = samples;
+            return this;
+        }
+
+        public HedgingConfig build() {
+            return new HedgingConfig(percentile, minDelay, budgetRatio, minSamples);
+        }
+    }
+}
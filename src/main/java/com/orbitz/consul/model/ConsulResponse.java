@@ -52,6 +52,7 @@ public class ConsulResponse<T> {
     private final boolean knownLeader;
     private final BigInteger index;
     private final Optional<CacheResponseInfo> cacheResponseInfo;
+    private final Optional<String> contentHash;
 
     @VisibleForTesting
     static CacheResponseInfo buildCacheReponseInfo(String headerHitMiss, String headerAge) throws NumberFormatException {
@@ -66,12 +67,31 @@ public class ConsulResponse<T> {
         this(response, lastContact, knownLeader, index, Optional.ofNullable(buildCacheReponseInfo(headerHitMiss, headerAge)));
     }
 
+    public ConsulResponse(T response, long lastContact, boolean knownLeader, BigInteger index, String headerHitMiss, String headerAge,
+                          String contentHash) throws NumberFormatException {
+        this(response, lastContact, knownLeader, index, Optional.ofNullable(buildCacheReponseInfo(headerHitMiss, headerAge)),
+             Optional.ofNullable(contentHash));
+    }
+
     public ConsulResponse(T response, long lastContact, boolean knownLeader, BigInteger index, Optional<CacheResponseInfo> cacheInfo) {
+        this(response, lastContact, knownLeader, index, cacheInfo, Optional.empty());
+    }
+
+    private ConsulResponse(T response, long lastContact, boolean knownLeader, BigInteger index, Optional<CacheResponseInfo> cacheInfo,
+                           Optional<String> contentHash) {
         this.response = response;
         this.lastContact = lastContact;
         this.knownLeader = knownLeader;
         this.index = index;
         this.cacheResponseInfo = cacheInfo;
+        this.contentHash = contentHash;
+    }
+
+    /**
+     * Creates a response with the same metadata as this one, holding another content.
+     */
+    public <U> ConsulResponse<U> withResponse(U response) {
+        return new ConsulResponse<>(response, lastContact, knownLeader, index, cacheResponseInfo, contentHash);
     }
 
     public T getResponse() {
@@ -97,6 +117,15 @@ public class ConsulResponse<T> {
         return cacheResponseInfo;
     }
 
+    /**
+     * Gets the hash of the content, returned by the endpoints supporting hash-based blocking queries.
+     *
+     * @see https://www.consul.io/api/features/blocking.html#hash-based-blocking-queries
+     */
+    public Optional<String> getContentHash() {
+        return contentHash;
+    }
+
     @Override
     public String toString() {
         return "ConsulResponse{" +
@@ -105,6 +134,7 @@ public class ConsulResponse<T> {
                 ", knownLeader=" + knownLeader +
                 ", index=" + index +
                 ", cache=" + cacheResponseInfo +
+                ", contentHash=" + contentHash +
                 '}';
     }
 
@@ -118,11 +148,12 @@ public class ConsulResponse<T> {
         return Objects.equal(this.response, that.response) &&
                 Objects.equal(this.lastContact, that.lastContact) &&
                 Objects.equal(this.knownLeader, that.knownLeader) &&
-                Objects.equal(this.index, that.index);
+                Objects.equal(this.index, that.index) &&
+                Objects.equal(this.contentHash, that.contentHash);
     }
 
     @Override
     public int hashCode() {
-        return Objects.hashCode(response, lastContact, knownLeader, index);
+        return Objects.hashCode(response, lastContact, knownLeader, index, contentHash);
     }
 }
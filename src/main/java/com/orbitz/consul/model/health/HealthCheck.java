@@ -44,4 +44,12 @@ public abstract class HealthCheck {
     @JsonDeserialize(as = ImmutableList.class, contentAs = String.class)
     public abstract List<String> getServiceTags();
 
+    @JsonProperty("CreateIndex")
+    @Value.Auxiliary
+    public abstract Optional<Long> getCreateIndex();
+
+    @JsonProperty("ModifyIndex")
+    @Value.Auxiliary
+    public abstract Optional<Long> getModifyIndex();
+
 }
@@ -42,4 +42,12 @@ public abstract class Service {
 
     @JsonProperty("Weights")
     public abstract Optional<ServiceWeights> getWeights();
+
+    @JsonProperty("CreateIndex")
+    @Value.Auxiliary
+    public abstract Optional<Long> getCreateIndex();
+
+    @JsonProperty("ModifyIndex")
+    @Value.Auxiliary
+    public abstract Optional<Long> getModifyIndex();
 }
@@ -5,12 +5,23 @@ import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
 import com.fasterxml.jackson.databind.annotation.JsonSerialize;
-import com.google.common.io.BaseEncoding;
+import com.fasterxml.jackson.databind.util.ByteBufferBackedInputStream;
+import com.orbitz.consul.util.Base64ByteBufferDeserializer;
+import com.orbitz.consul.util.Base64ByteBufferSerializer;
 import com.orbitz.consul.util.UnsignedLongDeserializer;
 
+import java.io.InputStream;
+import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
+import java.util.Base64;
 import java.util.Optional;
 
+/**
+ * An entry of the key/value store.
+ * <p>
+ * The payload is Base 64 encoded by Consul. It is decoded once during deserialization and kept
+ * as a read-only {@link ByteBuffer}, the encoded text is not retained.
+ */
 @org.immutables.value.Value.Immutable
 @JsonDeserialize(as = ImmutableValue.class)
 @JsonSerialize(as = ImmutableValue.class)
@@ -33,27 +44,100 @@ public abstract class Value {
     @JsonDeserialize(using = UnsignedLongDeserializer.class)
     public abstract long getFlags();
 
+    /**
+     * The decoded payload, shared by all the readers: use {@link #getValueAsByteBuffer()} to read it.
+     */
     @JsonProperty("Value")
-    public abstract Optional<String> getValue();
+    @JsonDeserialize(using = Base64ByteBufferDeserializer.class)
+    @JsonSerialize(using = Base64ByteBufferSerializer.class)
+    abstract Optional<ByteBuffer> getDecodedValue();
 
     @JsonProperty("Session")
     public abstract Optional<String> getSession();
 
+    /**
+     * The payload Base 64 encoded, only given to the builder: it is decoded into {@link #getDecodedValue()}
+     * and cleared by {@link #normalize()}.
+     *
+     * @deprecated build the value from the decoded payload with {@code decodedValue(ByteBuffer)} instead.
+     */
+    @Deprecated
+    @JsonIgnore
+    @org.immutables.value.Value.Auxiliary
+    abstract Optional<String> value();
+
+    /**
+     * Gets the payload Base 64 encoded, as returned by Consul. The text is encoded on each call and not
+     * retained: prefer the decoded accessors, which do not copy the payload.
+     */
+    @JsonIgnore
+    public Optional<String> getValue() {
+        return getDecodedValue().map(buffer -> Base64.getEncoder().encodeToString(toBytes(buffer)));
+    }
+
     @JsonIgnore
-    @org.immutables.value.Value.Lazy
     public Optional<String> getValueAsString() {
         return getValueAsString(Charset.defaultCharset());
     }
 
     @JsonIgnore
-    @org.immutables.value.Value.Lazy
     public Optional<String> getValueAsString(Charset charset) {
-        return getValue().map(s -> new String(BaseEncoding.base64().decode(s), charset));
+        return getDecodedValue().map(buffer -> charset.decode(buffer.duplicate()).toString());
     }
 
+    /**
+     * Gets a copy of the payload.
+     */
     @JsonIgnore
-    @org.immutables.value.Value.Lazy
     public Optional<byte[]> getValueAsBytes() {
-        return getValue().map(s -> BaseEncoding.base64().decode(s));
+        return getDecodedValue().map(Value::toBytes);
+    }
+
+    /**
+     * Gets a read-only view of the payload, without copying it.
+     * Each call returns a new buffer, so its position can be changed freely.
+     */
+    @JsonIgnore
+    public Optional<ByteBuffer> getValueAsByteBuffer() {
+        return getDecodedValue().map(ByteBuffer::duplicate);
+    }
+
+    /**
+     * Gets a stream reading the payload, without copying it.
+     */
+    @JsonIgnore
+    public Optional<InputStream> getValueAsInputStream() {
+        return getValueAsByteBuffer().map(ByteBufferBackedInputStream::new);
+    }
+
+    /**
+     * A buffer given to the builder is copied once, so that the payload can neither be modified
+     * nor have its position changed through the reference kept by the caller. A Base 64 encoded
+     * payload given to the deprecated builder is decoded once.
+     */
+    @org.immutables.value.Value.Check
+    @SuppressWarnings("deprecation")
+    protected Value normalize() {
+        if (value().isPresent()) {
+            return ImmutableValue.builder()
+                    .from(this)
+                    .value(Optional.empty())
+                    .decodedValue(ByteBuffer.wrap(Base64.getDecoder().decode(value().get())).asReadOnlyBuffer())
+                    .build();
+        }
+        Optional<ByteBuffer> decodedValue = getDecodedValue();
+        if (decodedValue.isPresent() && !decodedValue.get().isReadOnly()) {
+            return ImmutableValue.builder()
+                    .from(this)
+                    .decodedValue(ByteBuffer.wrap(toBytes(decodedValue.get())).asReadOnlyBuffer())
+                    .build();
+        }
+        return this;
+    }
+
+    private static byte[] toBytes(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.duplicate().get(bytes);
+        return bytes;
     }
 }
@@ -19,4 +19,12 @@ public interface ClientEventCallback {
     default void onCachePollingError(String clientName, CacheDescriptor cacheDescriptor, Throwable throwable) { }
 
     default void onCachePollingSuccess(String clientName, CacheDescriptor cacheDescriptor, boolean withNotification, Duration duration) { }
+
+    /**
+     * Called when a blocking query of a cache returned the index it was waiting on, meaning nothing changed.
+     * By default, it is reported as a polling success without notification.
+     */
+    default void onCachePollingUnchangedIndex(String clientName, CacheDescriptor cacheDescriptor, Duration duration) {
+        onCachePollingSuccess(clientName, cacheDescriptor, false, duration);
+    }
 }
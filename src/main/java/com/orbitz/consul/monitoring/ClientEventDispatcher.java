@@ -0,0 +1,378 @@
+package com.orbitz.consul.monitoring;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Preconditions;
+import com.orbitz.consul.cache.CacheDescriptor;
+import okhttp3.Request;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Delivers the events of the {@link ClientEventHandler}s to their {@link ClientEventCallback} on a dedicated thread.
+ * <p>
+ * The events are published in a bounded ring buffer of pre-allocated slots, claimed with a compare-and-set,
+ * so publishing an event neither allocates nor locks. The dispatcher thread drains the buffer by batches,
+ * and is only woken up when it was waiting for events.
+ * <p>
+ * When the callbacks do not keep up and the buffer fills up, the {@link OverflowPolicy} decides what happens
+ * to new events. The events which are not delivered are counted by {@link #getDroppedEvents()}.
+ */
+public class ClientEventDispatcher {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ClientEventDispatcher.class);
+
+    @VisibleForTesting
+    static final int DEFAULT_CAPACITY = 16384;
+    @VisibleForTesting
+    static final int DEFAULT_BATCH_SIZE = 256;
+    @VisibleForTesting
+    static final OverflowPolicy DEFAULT_OVERFLOW_POLICY = OverflowPolicy.DROP;
+    @VisibleForTesting
+    static final int DEFAULT_SAMPLE_RATE = 10;
+
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+    private static final long BLOCKED_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+    private static final AtomicInteger THREAD_COUNTER = new AtomicInteger();
+
+    static final int HTTP_REQUEST_SUCCESS = 0;
+    static final int HTTP_REQUEST_INVALID = 1;
+    static final int HTTP_REQUEST_FAILURE = 2;
+    static final int CACHE_START = 3;
+    static final int CACHE_STOP = 4;
+    static final int CACHE_POLLING_ERROR = 5;
+    static final int CACHE_POLLING_SUCCESS = 6;
+    static final int CACHE_POLLING_UNCHANGED_INDEX = 7;
+
+    /**
+     * What happens to an event published while the dispatcher is behind.
+     */
+    public enum OverflowPolicy {
+        /**
+         * The event is dropped when the buffer is full.
+         */
+        DROP,
+        /**
+         * Once the buffer is half full, only one event out of the sample rate is kept, the others are dropped.
+         * The events are dropped when the buffer is full.
+         */
+        SAMPLE,
+        /**
+         * The publishing thread waits for a free slot. Events published from a callback are dropped instead,
+         * as the dispatcher thread cannot wait for itself, as well as events published once that thread died.
+         */
+        BLOCK
+    }
+
+    private final Slot[] slots;
+    private final int mask;
+    private final int batchSize;
+    private final OverflowPolicy overflowPolicy;
+    private final int sampleRate;
+    private final int sampleThreshold;
+
+    private final AtomicLong tail = new AtomicLong();
+    private volatile long head;
+    private volatile boolean waiting;
+    private volatile boolean stopped;
+
+    private final AtomicLong sampleCounter = new AtomicLong();
+    private final LongAdder droppedEvents = new LongAdder();
+    private final LongAdder dispatchedEvents = new LongAdder();
+
+    private final Thread thread;
+
+    private ClientEventDispatcher(int capacity, int batchSize, OverflowPolicy overflowPolicy, int sampleRate) {
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity) {
+            size <<= 1;
+        }
+        this.slots = new Slot[size];
+        for (int i = 0; i < size; i++) {
+            slots[i] = new Slot(i);
+        }
+        this.mask = size - 1;
+        this.batchSize = batchSize;
+        this.overflowPolicy = overflowPolicy;
+        this.sampleRate = sampleRate;
+        this.sampleThreshold = size / 2;
+
+        this.thread = new Thread(this::run, "client-event-dispatcher-" + THREAD_COUNTER.getAndIncrement());
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    /**
+     * Gets the dispatcher used by the {@link ClientEventHandler}s which are not given one.
+     */
+    public static ClientEventDispatcher getDefault() {
+        return DefaultHolder.INSTANCE;
+    }
+
+    public static ClientEventDispatcher.Builder builder() {
+        return new Builder();
+    }
+
+    void publish(int kind, ClientEventHandler handler, Request request, Throwable throwable,
+                 CacheDescriptor cacheDescriptor, boolean withNotification, Duration duration) {
+        if (stopped) {
+            droppedEvents.increment();
+            return;
+        }
+        if (overflowPolicy == OverflowPolicy.SAMPLE
+                && tail.get() - head >= sampleThreshold
+                && sampleCounter.incrementAndGet() % sampleRate != 0) {
+            droppedEvents.increment();
+            return;
+        }
+
+        long position = claim();
+        if (position < 0) {
+            droppedEvents.increment();
+            return;
+        }
+        Slot slot = slots[(int) position & mask];
+        slot.kind = kind;
+        slot.handler = handler;
+        slot.request = request;
+        slot.throwable = throwable;
+        slot.cacheDescriptor = cacheDescriptor;
+        slot.withNotification = withNotification;
+        slot.duration = duration;
+        slot.sequence = position + 1;
+
+        if (waiting) {
+            LockSupport.unpark(thread);
+        }
+    }
+
+    /**
+     * Claims the next slot of the buffer.
+     *
+     * @return the position of the claimed slot, or -1 if the event must be dropped
+     */
+    private long claim() {
+        while (true) {
+            long position = tail.get();
+            long difference = slots[(int) position & mask].sequence - position;
+            if (difference == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    return position;
+                }
+            } else if (difference < 0) {
+                // the slot still holds the event of the previous lap: the buffer is full
+                if (overflowPolicy != OverflowPolicy.BLOCK || stopped || Thread.currentThread() == thread
+                        || !thread.isAlive()) {
+                    return -1;
+                }
+                LockSupport.unpark(thread);
+                LockSupport.parkNanos(this, BLOCKED_PARK_NANOS);
+            }
+        }
+    }
+
+    private void run() {
+        while (true) {
+            if (drain() > 0) {
+                continue;
+            }
+            if (stopped) {
+                return;
+            }
+            waiting = true;
+            if (drain() == 0 && !stopped) {
+                LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+            }
+            waiting = false;
+        }
+    }
+
+    /**
+     * Dispatches at most one batch of events.
+     *
+     * @return the number of dispatched events
+     */
+    private int drain() {
+        long position = head;
+        int count = 0;
+        while (count < batchSize) {
+            Slot slot = slots[(int) position & mask];
+            if (slot.sequence != position + 1) {
+                break;
+            }
+            dispatch(slot);
+            slot.clear();
+            slot.sequence = position + slots.length;
+            position++;
+            count++;
+        }
+        if (count > 0) {
+            head = position;
+            dispatchedEvents.add(count);
+        }
+        return count;
+    }
+
+    private void dispatch(Slot slot) {
+        ClientEventCallback callback = slot.handler.getCallback();
+        String clientName = slot.handler.getClientName();
+        try {
+            switch (slot.kind) {
+                case HTTP_REQUEST_SUCCESS:
+                    callback.onHttpRequestSuccess(clientName, slot.request.method(), slot.request.url().query());
+                    break;
+                case HTTP_REQUEST_INVALID:
+                    callback.onHttpRequestInvalid(clientName, slot.request.method(), slot.request.url().query(), slot.throwable);
+                    break;
+                case HTTP_REQUEST_FAILURE:
+                    callback.onHttpRequestFailure(clientName, slot.request.method(), slot.request.url().query(), slot.throwable);
+                    break;
+                case CACHE_START:
+                    callback.onCacheStart(clientName, slot.cacheDescriptor);
+                    break;
+                case CACHE_STOP:
+                    callback.onCacheStop(clientName, slot.cacheDescriptor);
+                    break;
+                case CACHE_POLLING_ERROR:
+                    callback.onCachePollingError(clientName, slot.cacheDescriptor, slot.throwable);
+                    break;
+                case CACHE_POLLING_SUCCESS:
+                    callback.onCachePollingSuccess(clientName, slot.cacheDescriptor, slot.withNotification, slot.duration);
+                    break;
+                case CACHE_POLLING_UNCHANGED_INDEX:
+                    callback.onCachePollingUnchangedIndex(clientName, slot.cacheDescriptor, slot.duration);
+                    break;
+                default:
+                    throw new IllegalStateException("Unknown event " + slot.kind);
+            }
+        } catch (Throwable e) {
+            // an error thrown by a callback must not kill the thread: the events of all the clients would pile up
+            LOGGER.warn("Client event callback of {} failed", clientName, e);
+        }
+    }
+
+    /**
+     * Stops the dispatcher thread once the pending events are dispatched.
+     * The events published afterwards are dropped.
+     */
+    public void stop() {
+        stopped = true;
+        LockSupport.unpark(thread);
+    }
+
+    /**
+     * Gets the number of events which were not delivered to the callbacks.
+     */
+    public long getDroppedEvents() {
+        return droppedEvents.sum();
+    }
+
+    /**
+     * Gets the number of events delivered to the callbacks.
+     */
+    public long getDispatchedEvents() {
+        return dispatchedEvents.sum();
+    }
+
+    /**
+     * Gets the number of events waiting to be dispatched.
+     */
+    public long getPendingEvents() {
+        return Math.max(0, tail.get() - head);
+    }
+
+    public int getCapacity() {
+        return slots.length;
+    }
+
+    public OverflowPolicy getOverflowPolicy() {
+        return overflowPolicy;
+    }
+
+    private static final class Slot {
+        volatile long sequence;
+        int kind;
+        ClientEventHandler handler;
+        Request request;
+        Throwable throwable;
+        CacheDescriptor cacheDescriptor;
+        boolean withNotification;
+        Duration duration;
+
+        Slot(long sequence) {
+            this.sequence = sequence;
+        }
+
+        void clear() {
+            handler = null;
+            request = null;
+            throwable = null;
+            cacheDescriptor = null;
+            duration = null;
+        }
+    }
+
+    private static final class DefaultHolder {
+        static final ClientEventDispatcher INSTANCE = builder().build();
+    }
+
+    public static class Builder {
+        private int capacity = DEFAULT_CAPACITY;
+        private int batchSize = DEFAULT_BATCH_SIZE;
+        private OverflowPolicy overflowPolicy = DEFAULT_OVERFLOW_POLICY;
+        private int sampleRate = DEFAULT_SAMPLE_RATE;
+
+        private Builder() {
+
+        }
+
+        /**
+         * Sets the number of events the buffer can hold, rounded up to a power of two.
+         * @throws IllegalArgumentException if {@code capacity} is not positive.
+         */
+        public Builder withCapacity(int capacity) {
+            Preconditions.checkArgument(capacity > 0 && capacity <= 1 << 30, "Capacity must be positive");
+            this.capacity = capacity;
+            return this;
+        }
+
+        /**
+         * Sets the maximum number of events dispatched before the buffer is released to the producers.
+         * @throws IllegalArgumentException if {@code batchSize} is not positive.
+         */
+        public Builder withBatchSize(int batchSize) {
+            Preconditions.checkArgument(batchSize > 0, "Batch size must be positive");
+            this.batchSize = batchSize;
+            return this;
+        }
+
+        /**
+         * Sets what happens to the events published while the buffer is full.
+         */
+        public Builder withOverflowPolicy(OverflowPolicy overflowPolicy) {
+            this.overflowPolicy = Preconditions.checkNotNull(overflowPolicy, "Overflow policy cannot be null");
+            return this;
+        }
+
+        /**
+         * Sets the overflow policy to {@link OverflowPolicy#SAMPLE}, keeping one event out of {@code sampleRate}.
+         * @throws IllegalArgumentException if {@code sampleRate} is not positive.
+         */
+        public Builder withSampling(int sampleRate) {
+            Preconditions.checkArgument(sampleRate > 0, "Sample rate must be positive");
+            this.overflowPolicy = OverflowPolicy.SAMPLE;
+            this.sampleRate = sampleRate;
+            return this;
+        }
+
+        public ClientEventDispatcher build() {
+            return new ClientEventDispatcher(capacity, batchSize, overflowPolicy, sampleRate);
+        }
+    }
+}
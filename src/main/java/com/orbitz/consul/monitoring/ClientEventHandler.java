@@ -1,65 +1,80 @@
 package com.orbitz.consul.monitoring;
 
-import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.orbitz.consul.cache.CacheDescriptor;
 import okhttp3.Request;
 
 import java.time.Duration;
 import java.time.temporal.ChronoUnit;
-import java.time.temporal.TemporalUnit;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.TimeUnit;
 
-public class ClientEventHandler {
+import static com.orbitz.consul.monitoring.ClientEventDispatcher.*;
 
-    private static final ScheduledExecutorService EVENT_EXECUTOR = Executors.newSingleThreadScheduledExecutor(
-            new ThreadFactoryBuilder().setNameFormat("event-executor-%s").setDaemon(true).build());
+public class ClientEventHandler {
 
     private final String clientName;
     private final ClientEventCallback callback;
+    private final ClientEventDispatcher dispatcher;
 
     public ClientEventHandler(String clientName, ClientEventCallback callback) {
+        this(clientName, callback, ClientEventDispatcher.getDefault());
+    }
+
+    public ClientEventHandler(String clientName, ClientEventCallback callback, ClientEventDispatcher dispatcher) {
         this.clientName = clientName;
         this.callback = callback;
+        this.dispatcher = dispatcher;
+    }
+
+    String getClientName() {
+        return clientName;
+    }
+
+    ClientEventCallback getCallback() {
+        return callback;
+    }
+
+    public ClientEventDispatcher getDispatcher() {
+        return dispatcher;
     }
 
     public void httpRequestSuccess(Request request) {
-        EVENT_EXECUTOR.submit(() -> callback.onHttpRequestSuccess(clientName, request.method(), request.url().query()));
+        dispatcher.publish(HTTP_REQUEST_SUCCESS, this, request, null, null, false, null);
     }
 
     public void httpRequestInvalid(Request request, Throwable throwable) {
-        EVENT_EXECUTOR.submit(() ->
-                callback.onHttpRequestInvalid(clientName, request.method(), request.url().query(), throwable));
+        dispatcher.publish(HTTP_REQUEST_INVALID, this, request, throwable, null, false, null);
     }
 
     public void httpRequestFailure(Request request, Throwable throwable) {
-        EVENT_EXECUTOR.submit(() ->
-                callback.onHttpRequestFailure(clientName, request.method(), request.url().query(), throwable));
+        dispatcher.publish(HTTP_REQUEST_FAILURE, this, request, throwable, null, false, null);
     }
 
     public void cacheStart(CacheDescriptor cacheDescriptor) {
-        EVENT_EXECUTOR.submit(() -> callback.onCacheStart(clientName, cacheDescriptor));
+        dispatcher.publish(CACHE_START, this, null, null, cacheDescriptor, false, null);
     }
 
     public void cacheStop(CacheDescriptor cacheDescriptor) {
-        EVENT_EXECUTOR.submit(() -> callback.onCacheStop(clientName, cacheDescriptor));
+        dispatcher.publish(CACHE_STOP, this, null, null, cacheDescriptor, false, null);
     }
 
     public void cachePollingError(CacheDescriptor cacheDescriptor, Throwable throwable) {
-        EVENT_EXECUTOR.submit(() -> callback.onCachePollingError(clientName, cacheDescriptor, throwable));
+        dispatcher.publish(CACHE_POLLING_ERROR, this, null, throwable, cacheDescriptor, false, null);
     }
 
     public void cachePollingSuccess(CacheDescriptor cacheDescriptor, boolean withNotification, Duration duration) {
-        EVENT_EXECUTOR.submit(() -> callback.onCachePollingSuccess(clientName, cacheDescriptor, withNotification, duration));
+        dispatcher.publish(CACHE_POLLING_SUCCESS, this, null, null, cacheDescriptor, withNotification, duration);
     }
 
     public void cachePollingSuccess(CacheDescriptor cacheDescriptor, boolean withNotification, long duration) {
-        EVENT_EXECUTOR.submit(() -> callback.onCachePollingSuccess(clientName, cacheDescriptor, withNotification, Duration.of(duration, ChronoUnit.MILLIS)));
+        cachePollingSuccess(cacheDescriptor, withNotification, Duration.of(duration, ChronoUnit.MILLIS));
+    }
+
+    public void cachePollingUnchangedIndex(CacheDescriptor cacheDescriptor, long duration) {
+        dispatcher.publish(CACHE_POLLING_UNCHANGED_INDEX, this, null, null, cacheDescriptor, false,
+                Duration.of(duration, ChronoUnit.MILLIS));
     }
 
     public void stop() {
-        EVENT_EXECUTOR.shutdownNow();
+        dispatcher.stop();
     }
 
 }
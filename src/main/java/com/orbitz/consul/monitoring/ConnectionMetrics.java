@@ -0,0 +1,144 @@
+package com.orbitz.consul.monitoring;
+
+import okhttp3.ConnectionPool;
+
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Connection-level metrics of the HTTP transport, fed by a {@link ConnectionMetricsListener}: the connections
+ * opened per protocol, the time to open them, and how many requests were sent over them.
+ * <p>
+ * Over HTTP/1.1 each request in flight, blocking queries included, holds a connection of its own, whereas over
+ * HTTP/2 the requests are multiplexed as streams of a few connections: comparing {@link #getInUse()} with
+ * {@link #getOpenConnections()} tells how many requests share a connection.
+ */
+public class ConnectionMetrics {
+
+    private final LongAdder opened = new LongAdder();
+    private final LongAdder openedHttp2 = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder acquired = new LongAdder();
+    // not reset, as the requests in flight release their connection after the reset
+    private final LongAdder inUse = new LongAdder();
+    private volatile LatencyHistogram connectLatency = new LatencyHistogram();
+    private final CopyOnWriteArrayList<ConnectionPool> connectionPools = new CopyOnWriteArrayList<>();
+
+    void recordConnected(boolean http2, long nanos) {
+        opened.increment();
+        if (http2) {
+            openedHttp2.increment();
+        }
+        connectLatency.record(nanos);
+    }
+
+    void recordConnectFailed() {
+        failed.increment();
+    }
+
+    void recordAcquired() {
+        acquired.increment();
+        inUse.increment();
+    }
+
+    void recordReleased() {
+        inUse.decrement();
+    }
+
+    /**
+     * Reports the connections of a pool in {@link #getOpenConnections()} and {@link #getIdleConnections()},
+     * until it is removed.
+     */
+    public void addConnectionPool(ConnectionPool connectionPool) {
+        connectionPools.addIfAbsent(connectionPool);
+    }
+
+    public void removeConnectionPool(ConnectionPool connectionPool) {
+        connectionPools.remove(connectionPool);
+    }
+
+    /**
+     * Gets the number of connections opened, whatever their protocol.
+     */
+    public long getOpened() {
+        return opened.sum();
+    }
+
+    /**
+     * Gets the number of connections opened over HTTP/2, negotiated with ALPN or with prior knowledge.
+     */
+    public long getOpenedHttp2() {
+        return openedHttp2.sum();
+    }
+
+    /**
+     * Gets the number of connection attempts which failed.
+     */
+    public long getFailed() {
+        return failed.sum();
+    }
+
+    /**
+     * Gets the number of requests sent over a connection, pooled or not.
+     */
+    public long getAcquired() {
+        return acquired.sum();
+    }
+
+    /**
+     * Gets the number of requests currently holding a connection, or a stream of an HTTP/2 connection.
+     */
+    public long getInUse() {
+        return inUse.sum();
+    }
+
+    /**
+     * Gets the number of connections currently open in the pools, idle or not.
+     */
+    public int getOpenConnections() {
+        int count = 0;
+        for (ConnectionPool connectionPool : connectionPools) {
+            count += connectionPool.connectionCount();
+        }
+        return count;
+    }
+
+    /**
+     * Gets the number of idle connections currently in the pools.
+     */
+    public int getIdleConnections() {
+        int count = 0;
+        for (ConnectionPool connectionPool : connectionPools) {
+            count += connectionPool.idleConnectionCount();
+        }
+        return count;
+    }
+
+    /**
+     * Gets the time taken to open the connections, TLS handshake included.
+     */
+    public LatencyHistogram.Snapshot getConnectLatency() {
+        return connectLatency.snapshot();
+    }
+
+    void reset() {
+        opened.reset();
+        openedHttp2.reset();
+        failed.reset();
+        acquired.reset();
+        connectLatency = new LatencyHistogram();
+    }
+
+    @Override
+    public String toString() {
+        return "ConnectionMetrics{" +
+                "opened=" + opened +
+                ", openedHttp2=" + openedHttp2 +
+                ", failed=" + failed +
+                ", acquired=" + acquired +
+                ", inUse=" + getInUse() +
+                ", openConnections=" + getOpenConnections() +
+                ", idleConnections=" + getIdleConnections() +
+                '}';
+    }
+}
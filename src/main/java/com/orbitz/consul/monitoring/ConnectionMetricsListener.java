@@ -0,0 +1,56 @@
+package com.orbitz.consul.monitoring;
+
+import okhttp3.Call;
+import okhttp3.Connection;
+import okhttp3.EventListener;
+import okhttp3.Protocol;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Records the connection events of the OkHttp client in the {@link ConnectionMetrics} of a {@link ConsulMetrics}.
+ * <p>
+ * A single listener is shared by all the calls: only the connection attempts, which are rare, are tracked per call.
+ */
+public class ConnectionMetricsListener extends EventListener {
+
+    private final ConnectionMetrics metrics;
+    private final ConcurrentMap<Call, Long> connectStarts = new ConcurrentHashMap<>();
+
+    public ConnectionMetricsListener(ConsulMetrics metrics) {
+        this.metrics = metrics.getConnectionMetrics();
+    }
+
+    @Override
+    public void connectStart(Call call, InetSocketAddress inetSocketAddress, Proxy proxy) {
+        connectStarts.put(call, System.nanoTime());
+    }
+
+    @Override
+    public void connectEnd(Call call, InetSocketAddress inetSocketAddress, Proxy proxy, Protocol protocol) {
+        Long start = connectStarts.remove(call);
+        metrics.recordConnected(protocol == Protocol.HTTP_2 || protocol == Protocol.H2_PRIOR_KNOWLEDGE,
+                start != null ? System.nanoTime() - start : 0);
+    }
+
+    @Override
+    public void connectFailed(Call call, InetSocketAddress inetSocketAddress, Proxy proxy, Protocol protocol,
+                              IOException ioe) {
+        connectStarts.remove(call);
+        metrics.recordConnectFailed();
+    }
+
+    @Override
+    public void connectionAcquired(Call call, Connection connection) {
+        metrics.recordAcquired();
+    }
+
+    @Override
+    public void connectionReleased(Call call, Connection connection) {
+        metrics.recordReleased();
+    }
+}
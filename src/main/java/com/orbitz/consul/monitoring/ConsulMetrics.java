@@ -0,0 +1,151 @@
+package com.orbitz.consul.monitoring;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Registry of the request metrics of the clients, per client name and endpoint template (e.g. {@code kv/{key}}),
+ * fed by a {@link MetricsInterceptor}.
+ * <p>
+ * Blocking queries are recorded apart from the other requests of the same endpoint, as their latency
+ * mostly measures how long Consul waited for a change.
+ * <p>
+ * The metrics of the connections carrying the requests are recorded in {@link #getConnectionMetrics()}.
+ */
+public class ConsulMetrics {
+
+    private final ConcurrentMap<EndpointKey, EndpointMetrics> endpoints = new ConcurrentHashMap<>();
+    private final ConnectionMetrics connectionMetrics = new ConnectionMetrics();
+
+    EndpointMetrics endpoint(String clientName, String method, String endpoint, boolean blocking) {
+        EndpointKey key = new EndpointKey(clientName, method, endpoint, blocking);
+        EndpointMetrics metrics = endpoints.get(key);
+        return metrics != null ? metrics : endpoints.computeIfAbsent(key, k -> new EndpointMetrics());
+    }
+
+    /**
+     * Gets the metrics of every endpoint which received a request, sorted by client name and endpoint.
+     */
+    public List<EndpointMetricsSnapshot> getSnapshots() {
+        List<EndpointMetricsSnapshot> snapshots = new ArrayList<>(endpoints.size());
+        endpoints.forEach((key, metrics) -> snapshots.add(metrics.snapshot(key)));
+        snapshots.sort(Comparator.comparing(EndpointMetricsSnapshot::getClientName)
+                .thenComparing(EndpointMetricsSnapshot::getEndpoint)
+                .thenComparing(EndpointMetricsSnapshot::getMethod)
+                .thenComparing(EndpointMetricsSnapshot::isBlocking));
+        return snapshots;
+    }
+
+    /**
+     * Gets the metrics of the non-blocking requests of an endpoint.
+     *
+     * @param clientName the name of the client, e.g. {@code keyvalue}
+     * @param method the HTTP method
+     * @param endpoint the endpoint template, e.g. {@code kv/{key}}
+     * @return the metrics, or empty if the endpoint did not receive a request
+     */
+    public Optional<EndpointMetricsSnapshot> getSnapshot(String clientName, String method, String endpoint) {
+        EndpointKey key = new EndpointKey(clientName, method, endpoint, false);
+        return Optional.ofNullable(endpoints.get(key)).map(metrics -> metrics.snapshot(key));
+    }
+
+    /**
+     * Gets the metrics of the connections, fed by a {@link ConnectionMetricsListener}.
+     */
+    public ConnectionMetrics getConnectionMetrics() {
+        return connectionMetrics;
+    }
+
+    /**
+     * Forgets all the recorded metrics.
+     */
+    public void reset() {
+        endpoints.clear();
+        connectionMetrics.reset();
+    }
+
+    static class EndpointMetrics {
+
+        private final LongAdder requests = new LongAdder();
+        private final LongAdder errors = new LongAdder();
+        private final LongAdder clientErrors = new LongAdder();
+        private final LongAdder bytesSent = new LongAdder();
+        private final LongAdder bytesReceived = new LongAdder();
+        private final LatencyHistogram latency = new LatencyHistogram();
+
+        void recordResponse(int code, long nanos, long sent) {
+            requests.increment();
+            if (code >= 500) {
+                errors.increment();
+            } else if (code >= 400) {
+                clientErrors.increment();
+            }
+            if (sent > 0) {
+                bytesSent.add(sent);
+            }
+            latency.record(nanos);
+        }
+
+        void recordFailure(long nanos, long sent) {
+            requests.increment();
+            errors.increment();
+            if (sent > 0) {
+                bytesSent.add(sent);
+            }
+            latency.record(nanos);
+        }
+
+        void recordBytesReceived(long bytes) {
+            bytesReceived.add(bytes);
+        }
+
+        EndpointMetricsSnapshot snapshot(EndpointKey key) {
+            return new EndpointMetricsSnapshot(key.clientName, key.method, key.endpoint, key.blocking,
+                    requests.sum(), errors.sum(), clientErrors.sum(), bytesSent.sum(), bytesReceived.sum(),
+                    latency.snapshot());
+        }
+    }
+
+    private static final class EndpointKey {
+
+        private final String clientName;
+        private final String method;
+        private final String endpoint;
+        private final boolean blocking;
+        private final int hashCode;
+
+        EndpointKey(String clientName, String method, String endpoint, boolean blocking) {
+            this.clientName = clientName;
+            this.method = method;
+            this.endpoint = endpoint;
+            this.blocking = blocking;
+            this.hashCode = Objects.hash(clientName, method, endpoint, blocking);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof EndpointKey)) {
+                return false;
+            }
+            EndpointKey that = (EndpointKey) o;
+            return blocking == that.blocking
+                    && clientName.equals(that.clientName)
+                    && method.equals(that.method)
+                    && endpoint.equals(that.endpoint);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package com.orbitz.consul.monitoring;
+
+/**
+ * The request metrics of an endpoint at a point in time, see {@link ConsulMetrics}.
+ */
+public class EndpointMetricsSnapshot {
+
+    private final String clientName;
+    private final String method;
+    private final String endpoint;
+    private final boolean blocking;
+    private final long requests;
+    private final long errors;
+    private final long clientErrors;
+    private final long bytesSent;
+    private final long bytesReceived;
+    private final LatencyHistogram.Snapshot latency;
+
+    EndpointMetricsSnapshot(String clientName, String method, String endpoint, boolean blocking, long requests,
+                            long errors, long clientErrors, long bytesSent, long bytesReceived,
+                            LatencyHistogram.Snapshot latency) {
+        this.clientName = clientName;
+        this.method = method;
+        this.endpoint = endpoint;
+        this.blocking = blocking;
+        this.requests = requests;
+        this.errors = errors;
+        this.clientErrors = clientErrors;
+        this.bytesSent = bytesSent;
+        this.bytesReceived = bytesReceived;
+        this.latency = latency;
+    }
+
+    /**
+     * Gets the name of the client, e.g. {@code keyvalue}, as given to the {@link ClientEventCallback}.
+     */
+    public String getClientName() {
+        return clientName;
+    }
+
+    public String getMethod() {
+        return method;
+    }
+
+    /**
+     * Gets the endpoint template, relative to {@code /v1/}, e.g. {@code kv/{key}}.
+     */
+    public String getEndpoint() {
+        return endpoint;
+    }
+
+    /**
+     * Tells whether these are the metrics of the blocking queries of the endpoint.
+     */
+    public boolean isBlocking() {
+        return blocking;
+    }
+
+    /**
+     * Gets the number of requests, failed or not.
+     */
+    public long getRequests() {
+        return requests;
+    }
+
+    /**
+     * Gets the number of requests which failed without a response, or with a 5xx response.
+     */
+    public long getErrors() {
+        return errors;
+    }
+
+    /**
+     * Gets the number of requests which received a 4xx response.
+     */
+    public long getClientErrors() {
+        return clientErrors;
+    }
+
+    /**
+     * Gets the number of bytes of the request bodies whose length was known.
+     */
+    public long getBytesSent() {
+        return bytesSent;
+    }
+
+    /**
+     * Gets the number of bytes of the response bodies which were read.
+     */
+    public long getBytesReceived() {
+        return bytesReceived;
+    }
+
+    /**
+     * Gets the distribution of the time until the response headers were received.
+     */
+    public LatencyHistogram.Snapshot getLatency() {
+        return latency;
+    }
+
+    @Override
+    public String toString() {
+        return "EndpointMetricsSnapshot{" +
+                "clientName='" + clientName + '\'' +
+                ", method='" + method + '\'' +
+                ", endpoint='" + endpoint + '\'' +
+                ", blocking=" + blocking +
+                ", requests=" + requests +
+                ", errors=" + errors +
+                ", clientErrors=" + clientErrors +
+                ", bytesSent=" + bytesSent +
+                ", bytesReceived=" + bytesReceived +
+                ", latency=" + latency +
+                '}';
+    }
+}
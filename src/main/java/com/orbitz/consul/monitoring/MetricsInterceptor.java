@@ -0,0 +1,195 @@
+package com.orbitz.consul.monitoring;
+
+import com.google.common.annotations.VisibleForTesting;
+import okhttp3.Interceptor;
+import okhttp3.MediaType;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.Buffer;
+import okio.BufferedSource;
+import okio.ForwardingSource;
+import okio.Okio;
+import retrofit2.Invocation;
+import retrofit2.http.DELETE;
+import retrofit2.http.GET;
+import retrofit2.http.HEAD;
+import retrofit2.http.HTTP;
+import retrofit2.http.OPTIONS;
+import retrofit2.http.PATCH;
+import retrofit2.http.POST;
+import retrofit2.http.PUT;
+
+import java.io.IOException;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Method;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Records the latency, the outcome and the size of every request in a {@link ConsulMetrics}.
+ * <p>
+ * The endpoint template and the client name come from the Retrofit method which created the request,
+ * e.g. {@code kv/{key}} of the {@code keyvalue} client, so that the raw paths do not multiply the metrics.
+ */
+public class MetricsInterceptor implements Interceptor {
+
+    private static final String API_PREFIX = "/v1/";
+
+    private final ConsulMetrics metrics;
+    private final ConcurrentMap<Method, Endpoint> endpoints = new ConcurrentHashMap<>();
+
+    public MetricsInterceptor(ConsulMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        Request request = chain.request();
+        Endpoint endpoint = endpoint(request);
+        boolean blocking = request.url().queryParameter("index") != null
+                || request.url().queryParameter("hash") != null;
+        ConsulMetrics.EndpointMetrics endpointMetrics =
+                metrics.endpoint(endpoint.clientName, request.method(), endpoint.template, blocking);
+        long sent = request.body() != null ? request.body().contentLength() : 0;
+
+        long start = System.nanoTime();
+        Response response;
+        try {
+            response = chain.proceed(request);
+        } catch (IOException | RuntimeException e) {
+            endpointMetrics.recordFailure(System.nanoTime() - start, sent);
+            throw e;
+        }
+        endpointMetrics.recordResponse(response.code(), System.nanoTime() - start, sent);
+
+        if (response.body() == null) {
+            return response;
+        }
+        return response.newBuilder()
+                .body(new CountingResponseBody(response.body(), endpointMetrics))
+                .build();
+    }
+
+    private Endpoint endpoint(Request request) {
+        Invocation invocation = request.tag(Invocation.class);
+        if (invocation != null) {
+            return endpoints.computeIfAbsent(invocation.method(), MetricsInterceptor::endpoint);
+        }
+        return endpoint(request.url().encodedPath());
+    }
+
+    private static Endpoint endpoint(Method method) {
+        String template = null;
+        for (Annotation annotation : method.getAnnotations()) {
+            template = template(annotation);
+            if (template != null) {
+                break;
+            }
+        }
+        Class<?> client = method.getDeclaringClass().getEnclosingClass();
+        if (template == null || client == null) {
+            return endpoint(template != null ? template : method.getName());
+        }
+        return new Endpoint(clientName(client), template);
+    }
+
+    private static String template(Annotation annotation) {
+        if (annotation instanceof GET) {
+            return ((GET) annotation).value();
+        } else if (annotation instanceof PUT) {
+            return ((PUT) annotation).value();
+        } else if (annotation instanceof POST) {
+            return ((POST) annotation).value();
+        } else if (annotation instanceof DELETE) {
+            return ((DELETE) annotation).value();
+        } else if (annotation instanceof HEAD) {
+            return ((HEAD) annotation).value();
+        } else if (annotation instanceof PATCH) {
+            return ((PATCH) annotation).value();
+        } else if (annotation instanceof OPTIONS) {
+            return ((OPTIONS) annotation).value();
+        } else if (annotation instanceof HTTP) {
+            return ((HTTP) annotation).path();
+        }
+        return null;
+    }
+
+    /**
+     * The name given by the clients to their {@link ClientEventHandler}, e.g. {@code keyvalue} for the KeyValueClient.
+     */
+    @VisibleForTesting
+    static String clientName(Class<?> client) {
+        String name = client.getSimpleName();
+        if (name.endsWith("Client")) {
+            name = name.substring(0, name.length() - "Client".length());
+        }
+        return name.toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Requests which were not created by a client are recorded under the first segment of their path,
+     * the other segments being replaced by a wildcard.
+     */
+    @VisibleForTesting
+    static Endpoint endpoint(String path) {
+        int start = path.startsWith(API_PREFIX) ? API_PREFIX.length() : path.startsWith("/") ? 1 : 0;
+        int end = path.indexOf('/', start);
+        String clientName = end < 0 ? path.substring(start) : path.substring(start, end);
+        boolean hasSegments = end >= 0 && end < path.length() - 1;
+        return new Endpoint(clientName, hasSegments ? clientName + "/*" : clientName);
+    }
+
+    @VisibleForTesting
+    static final class Endpoint {
+
+        final String clientName;
+        final String template;
+
+        Endpoint(String clientName, String template) {
+            this.clientName = clientName;
+            this.template = template;
+        }
+    }
+
+    private static final class CountingResponseBody extends ResponseBody {
+
+        private final ResponseBody delegate;
+        private final BufferedSource source;
+
+        CountingResponseBody(ResponseBody delegate, ConsulMetrics.EndpointMetrics endpointMetrics) {
+            this.delegate = delegate;
+            this.source = Okio.buffer(new ForwardingSource(delegate.source()) {
+                @Override
+                public long read(Buffer sink, long byteCount) throws IOException {
+                    long read = super.read(sink, byteCount);
+                    if (read > 0) {
+                        endpointMetrics.recordBytesReceived(read);
+                    }
+                    return read;
+                }
+            });
+        }
+
+        @Override
+        public MediaType contentType() {
+            return delegate.contentType();
+        }
+
+        @Override
+        public long contentLength() {
+            return delegate.contentLength();
+        }
+
+        @Override
+        public BufferedSource source() {
+            return source;
+        }
+
+        @Override
+        public void close() {
+            delegate.close();
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package com.orbitz.consul.util;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.JsonDeserializer;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Base64;
+import java.util.Optional;
+
+/**
+ * For use with JSON fields that Consul Base 64 encodes, when the decoded payload
+ * should be kept instead of the encoded text. The payload is decoded once
+ * and wrapped in a read-only {@link ByteBuffer}.
+ */
+public class Base64ByteBufferDeserializer extends JsonDeserializer<Optional<ByteBuffer>> {
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Optional<ByteBuffer> deserialize(JsonParser p, DeserializationContext ctxt) throws IOException {
+        String value = p.getValueAsString();
+
+        if (value == null) {
+            return Optional.empty();
+        }
+        return Optional.of(ByteBuffer.wrap(Base64.getDecoder().decode(value)).asReadOnlyBuffer());
+    }
+
+    @Override
+    public Optional<ByteBuffer> getNullValue(DeserializationContext ctxt) {
+        return Optional.empty();
+    }
+}
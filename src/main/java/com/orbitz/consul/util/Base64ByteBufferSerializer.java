@@ -0,0 +1,32 @@
+package com.orbitz.consul.util;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.SerializerProvider;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Optional;
+
+/**
+ * Writes a payload as the Base 64 text expected by Consul, counterpart of {@link Base64ByteBufferDeserializer}.
+ */
+public class Base64ByteBufferSerializer extends JsonSerializer<Optional<ByteBuffer>> {
+
+    @Override
+    public void serialize(Optional<ByteBuffer> buffer, JsonGenerator jsonGenerator, SerializerProvider serializerProvider) throws IOException {
+        if (buffer.isPresent()) {
+            ByteBuffer encoded = Base64.getEncoder().encode(buffer.get().duplicate());
+            jsonGenerator.writeString(new String(encoded.array(), encoded.arrayOffset(), encoded.remaining(), StandardCharsets.ISO_8859_1));
+        } else {
+            jsonGenerator.writeNull();
+        }
+    }
+
+    @Override
+    public boolean isEmpty(SerializerProvider provider, Optional<ByteBuffer> value) {
+        return value == null || !value.isPresent();
+    }
+}
@@ -1,5 +1,9 @@
 package com.orbitz.consul.util;
 
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectReader;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Optional;
 import com.google.common.collect.Sets;
@@ -9,19 +13,36 @@ import com.orbitz.consul.async.ConsulResponseCallback;
 import com.orbitz.consul.model.ConsulResponse;
 import com.orbitz.consul.monitoring.ClientEventHandler;
 import okhttp3.Headers;
+import okhttp3.ResponseBody;
 import org.apache.commons.lang3.math.NumberUtils;
 import retrofit2.Call;
 import retrofit2.Response;
 
 import java.io.IOException;
 import java.math.BigInteger;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
 
 public class Http {
 
     private final ClientEventHandler eventHandler;
+    private final RequestCoalescer requestCoalescer;
 
     public Http(ClientEventHandler eventHandler) {
+        this(eventHandler, null);
+    }
+
+    /**
+     * @param eventHandler the handler of the HTTP events
+     * @param requestCoalescer shares the identical GET requests in flight, or null to send every request
+     */
+    public Http(ClientEventHandler eventHandler, RequestCoalescer requestCoalescer) {
         this.eventHandler = eventHandler;
+        this.requestCoalescer = requestCoalescer;
+    }
+
+    private boolean isCoalescable(Call<?> call) {
+        return requestCoalescer != null && RequestCoalescer.isCoalescable(call.request());
     }
 
     private static boolean isSuccessful(Response<?> response, Integer... okCodes) {
@@ -29,6 +50,14 @@ public class Http {
     }
 
     public <T> T extract(Call<T> call, Integer... okCodes) {
+        if (isCoalescable(call)) {
+            return requestCoalescer.execute(RequestCoalescer.key("body", call.request(), okCodes),
+                    () -> doExtract(call, okCodes));
+        }
+        return doExtract(call, okCodes);
+    }
+
+    private <T> T doExtract(Call<T> call, Integer... okCodes) {
         Response<T> response = executeCall(call);
         ensureResponseSuccessful(call, response, okCodes);
         return response.body();
@@ -40,6 +69,14 @@ public class Http {
     }
 
     public <T> ConsulResponse<T> extractConsulResponse(Call<T> call, Integer... okCodes) {
+        if (isCoalescable(call)) {
+            return requestCoalescer.execute(RequestCoalescer.key("response", call.request(), okCodes),
+                    () -> doExtractConsulResponse(call, okCodes));
+        }
+        return doExtractConsulResponse(call, okCodes);
+    }
+
+    private <T> ConsulResponse<T> doExtractConsulResponse(Call<T> call, Integer... okCodes) {
         Response<T> response = executeCall(call);
         ensureResponseSuccessful(call, response, okCodes);
         return consulResponse(response);
@@ -66,7 +103,60 @@ public class Http {
 
     public <T> void extractConsulResponse(Call<T> call, final ConsulResponseCallback<T> callback,
                                                  final Integer... okCodes) {
-        call.enqueue(createCallback(call, callback, okCodes));
+        if (isCoalescable(call)) {
+            requestCoalescer.execute(RequestCoalescer.key("response", call.request(), okCodes),
+                    coalescedCallback -> call.enqueue(createCallback(call, coalescedCallback, okCodes)), callback);
+        } else {
+            call.enqueue(createCallback(call, callback, okCodes));
+        }
+    }
+
+    /**
+     * Asynchronously executes a call. The future is completed with the response,
+     * or exceptionally with the failure, from the OkHttp dispatcher thread.
+     */
+    public <T> CompletableFuture<ConsulResponse<T>> extractConsulResponseAsync(Call<T> call, Integer... okCodes) {
+        CompletableFuture<ConsulResponse<T>> future = new CompletableFuture<>();
+        extractConsulResponse(call, new ConsulResponseCallback<T>() {
+            @Override
+            public void onComplete(ConsulResponse<T> consulResponse) {
+                future.complete(consulResponse);
+            }
+
+            @Override
+            public void onFailure(Throwable throwable) {
+                future.completeExceptionally(throwable);
+            }
+        }, okCodes);
+        return future;
+    }
+
+    /**
+     * Asynchronously executes a call. The future is completed with the raw response when its status is successful
+     * or one of the given codes, so that the error body of the latter can be read, or exceptionally otherwise.
+     */
+    public <T> CompletableFuture<Response<T>> executeAsync(Call<T> call, Integer... okCodes) {
+        CompletableFuture<Response<T>> future = new CompletableFuture<>();
+        call.enqueue(new retrofit2.Callback<T>() {
+            @Override
+            public void onResponse(Call<T> call, Response<T> response) {
+                if (isSuccessful(response, okCodes)) {
+                    eventHandler.httpRequestSuccess(call.request());
+                    future.complete(response);
+                } else {
+                    ConsulException exception = new ConsulException(response.code(), response);
+                    eventHandler.httpRequestInvalid(call.request(), exception);
+                    future.completeExceptionally(exception);
+                }
+            }
+
+            @Override
+            public void onFailure(Call<T> call, Throwable t) {
+                eventHandler.httpRequestFailure(call.request(), t);
+                future.completeExceptionally(t);
+            }
+        });
+        return future;
     }
 
     @VisibleForTesting
@@ -112,9 +202,132 @@ public class Http {
         };
     }
 
+    /**
+     * Executes a call returning a JSON array, and hands each element to the consumer as soon as it is decoded,
+     * without materializing the whole list. The body of a blocking query returning its own index is not read.
+     *
+     * @return the {@link ConsulResponse} holding the response headers, without body.
+     */
+    public <T> ConsulResponse<Void> streamConsulResponse(Call<ResponseBody> call, Class<T> type, Consumer<T> consumer,
+                                                         Integer... okCodes) {
+        Response<ResponseBody> response = executeCall(call);
+        if (!isSuccessful(response, okCodes)) {
+            ConsulException exception = new ConsulException(response.code(), response);
+            eventHandler.httpRequestInvalid(call.request(), exception);
+            throw exception;
+        }
+        // the request succeeded once its body is read
+        ConsulResponse<Void> consulResponse;
+        try {
+            consulResponse = streamedConsulResponse(response, type, consumer);
+        } catch (IOException | RuntimeException e) {
+            streamingFailed(call, e);
+            throw e instanceof IOException ? new ConsulException(e) : (RuntimeException) e;
+        }
+        eventHandler.httpRequestSuccess(call.request());
+        return consulResponse;
+    }
+
+    /**
+     * Asynchronously executes a call returning a JSON array, and hands each element to the consumer as soon as
+     * it is decoded, without materializing the whole list. The consumer is called from the OkHttp dispatcher thread,
+     * before the callback is completed. The body of a blocking query returning its own index is not read.
+     */
+    public <T> void streamConsulResponse(Call<ResponseBody> call, Class<T> type, Consumer<T> consumer,
+                                         final ConsulResponseCallback<Void> callback, final Integer... okCodes) {
+        call.enqueue(createStreamingCallback(call, type, consumer, callback, okCodes));
+    }
+
+    @VisibleForTesting
+    <T> retrofit2.Callback<ResponseBody> createStreamingCallback(Call<ResponseBody> call, Class<T> type, Consumer<T> consumer,
+                                                                 final ConsulResponseCallback<Void> callback,
+                                                                 final Integer... okCodes) {
+        return new retrofit2.Callback<ResponseBody>() {
+            @Override
+            public void onResponse(Call<ResponseBody> call, Response<ResponseBody> response) {
+                if (isSuccessful(response, okCodes)) {
+                    ConsulResponse<Void> consulResponse;
+                    try {
+                        consulResponse = streamedConsulResponse(response, type, consumer);
+                    } catch (IOException | RuntimeException e) {
+                        streamingFailed(call, e);
+                        callback.onFailure(e);
+                        return;
+                    }
+                    eventHandler.httpRequestSuccess(call.request());
+                    callback.onComplete(consulResponse);
+                } else {
+                    ConsulException exception = new ConsulException(response.code(), response);
+                    eventHandler.httpRequestInvalid(call.request(), exception);
+                    callback.onFailure(exception);
+                }
+            }
+
+            @Override
+            public void onFailure(Call<ResponseBody> call, Throwable t) {
+                eventHandler.httpRequestFailure(call.request(), t);
+                callback.onFailure(t);
+            }
+        };
+    }
+
+    /**
+     * Publishes the failure of a streamed body: a body which could not be read is a failure of the request,
+     * an unexpected body makes it invalid.
+     */
+    private void streamingFailed(Call<ResponseBody> call, Exception e) {
+        if (e instanceof IOException && !(e instanceof JsonProcessingException)) {
+            eventHandler.httpRequestFailure(call.request(), e);
+        } else {
+            eventHandler.httpRequestInvalid(call.request(), e);
+        }
+    }
+
+    /**
+     * The headers are read first: when a blocking query returns the index it was sent with, nothing changed
+     * and the body is closed without being parsed, the consumer is not called.
+     */
+    private static <T> ConsulResponse<Void> streamedConsulResponse(Response<ResponseBody> response, Class<T> type,
+                                                                   Consumer<T> consumer) throws IOException {
+        ConsulResponse<Void> consulResponse = consulResponse(response.headers(), null);
+        try (ResponseBody body = response.body()) {
+            if (body != null && !isIndexUnchanged(response, consulResponse)) {
+                readArray(body, type, consumer);
+            }
+        }
+        return consulResponse;
+    }
+
+    private static boolean isIndexUnchanged(Response<?> response, ConsulResponse<?> consulResponse) {
+        String requestedIndex = response.raw().request().url().queryParameter("index");
+        return requestedIndex != null
+                && consulResponse.getIndex().signum() > 0
+                && requestedIndex.equals(consulResponse.getIndex().toString());
+    }
+
+    @VisibleForTesting
+    static <T> void readArray(ResponseBody body, Class<T> type, Consumer<T> consumer) throws IOException {
+        ObjectReader reader = Jackson.MAPPER.readerFor(type);
+        try (JsonParser parser = Jackson.MAPPER.getFactory().createParser(body.byteStream())) {
+            JsonToken token = parser.nextToken();
+            if (token == null || token == JsonToken.VALUE_NULL) {
+                return;
+            }
+            if (token != JsonToken.START_ARRAY) {
+                throw new ConsulException("Expected a JSON array but got " + token);
+            }
+            while (parser.nextToken() == JsonToken.START_OBJECT) {
+                consumer.accept(reader.readValue(parser));
+            }
+        }
+    }
+
     @VisibleForTesting
     static <T> ConsulResponse<T> consulResponse(Response<T> response) {
-        Headers headers = response.headers();
+        return consulResponse(response.headers(), response.body());
+    }
+
+    private static <T> ConsulResponse<T> consulResponse(Headers headers, T body) {
         String indexHeaderValue = headers.get("X-Consul-Index");
         String lastContactHeaderValue = headers.get("X-Consul-Lastcontact");
         String knownLeaderHeaderValue = headers.get("X-Consul-Knownleader");
@@ -122,7 +335,7 @@ public class Http {
         BigInteger index = indexHeaderValue == null ? BigInteger.ZERO : new BigInteger(indexHeaderValue);
         long lastContact = lastContactHeaderValue == null ? 0 : NumberUtils.toLong(lastContactHeaderValue);
         boolean knownLeader = knownLeaderHeaderValue == null ? false : Boolean.valueOf(knownLeaderHeaderValue);
-        return new ConsulResponse<>(response.body(), lastContact, knownLeader, index,
-                                    headers.get("X-Cache"), headers.get("Age"));
+        return new ConsulResponse<>(body, lastContact, knownLeader, index,
+                                    headers.get("X-Cache"), headers.get("Age"), headers.get("X-Consul-ContentHash"));
     }
 }
@@ -0,0 +1,168 @@
+package com.orbitz.consul.util;
+
+import com.orbitz.consul.async.ConsulResponseCallback;
+import com.orbitz.consul.model.ConsulResponse;
+import okhttp3.Request;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Shares a single HTTP call between identical GET requests in flight at the same time (single-flight).
+ * <p>
+ * Requests are identical when they have the same method, URL (path and query parameters) and headers.
+ * The first request is sent to Consul, the concurrent ones wait for its outcome and receive the same
+ * deserialized response, or the same exception. A request issued after the response was received
+ * is sent again.
+ * <p>
+ * The coalesced requests share the very same response object: a caller must not modify it, e.g. a list of
+ * values must be copied before being sorted or filtered in place.
+ * <p>
+ * An instance can be shared by all the clients of a {@link com.orbitz.consul.Consul}, see
+ * {@link com.orbitz.consul.config.ClientConfig}.
+ */
+public class RequestCoalescer {
+
+    private final ConcurrentMap<String, CompletableFuture<Object>> inFlight = new ConcurrentHashMap<>();
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder coalescedRequests = new LongAdder();
+
+    static boolean isCoalescable(Request request) {
+        return "GET".equals(request.method());
+    }
+
+    static String key(String kind, Request request, Integer... okCodes) {
+        StringBuilder key = new StringBuilder(kind)
+                .append(' ').append(request.url())
+                .append('\n').append(request.headers());
+        for (Integer okCode : okCodes) {
+            key.append(okCode).append(',');
+        }
+        return key.toString();
+    }
+
+    /**
+     * Runs the supplier, unless an identical request is in flight, in which case its outcome is returned.
+     */
+    @SuppressWarnings("unchecked")
+    <T> T execute(String key, Supplier<T> supplier) {
+        requests.increment();
+        CompletableFuture<Object> future = new CompletableFuture<>();
+        CompletableFuture<Object> existing = inFlight.putIfAbsent(key, future);
+        if (existing != null) {
+            coalescedRequests.increment();
+            try {
+                return (T) existing.join();
+            } catch (CompletionException e) {
+                throw unwrap(e);
+            }
+        }
+        try {
+            T result = supplier.get();
+            inFlight.remove(key, future);
+            future.complete(result);
+            return result;
+        } catch (RuntimeException | Error e) {
+            inFlight.remove(key, future);
+            future.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    /**
+     * Starts an asynchronous request, unless an identical request is in flight, in which case the callback
+     * is completed with its outcome.
+     */
+    @SuppressWarnings("unchecked")
+    <T> void execute(String key, Consumer<ConsulResponseCallback<T>> request, ConsulResponseCallback<T> callback) {
+        requests.increment();
+        CompletableFuture<Object> future = new CompletableFuture<>();
+        CompletableFuture<Object> existing = inFlight.putIfAbsent(key, future);
+        if (existing != null) {
+            coalescedRequests.increment();
+            existing.whenComplete((response, throwable) -> {
+                if (throwable == null) {
+                    callback.onComplete((ConsulResponse<T>) response);
+                } else {
+                    callback.onFailure(throwable);
+                }
+            });
+            return;
+        }
+        try {
+            request.accept(new ConsulResponseCallback<T>() {
+                @Override
+                public void onComplete(ConsulResponse<T> consulResponse) {
+                    inFlight.remove(key, future);
+                    // the waiters are completed even if the callback of the first request throws
+                    try {
+                        callback.onComplete(consulResponse);
+                    } finally {
+                        future.complete(consulResponse);
+                    }
+                }
+
+                @Override
+                public void onFailure(Throwable throwable) {
+                    inFlight.remove(key, future);
+                    try {
+                        callback.onFailure(throwable);
+                    } finally {
+                        future.completeExceptionally(throwable);
+                    }
+                }
+            });
+        } catch (RuntimeException e) {
+            // the request was never sent (e.g. the call was already executed): it is rethrown to the caller
+            // like an uncoalesced request, and the waiters fail instead of waiting for it forever
+            inFlight.remove(key, future);
+            future.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    private static RuntimeException unwrap(CompletionException e) {
+        Throwable cause = e.getCause();
+        if (cause instanceof RuntimeException) {
+            return (RuntimeException) cause;
+        }
+        if (cause instanceof Error) {
+            throw (Error) cause;
+        }
+        return e;
+    }
+
+    /**
+     * Gets the number of requests which could have been coalesced.
+     */
+    public long getRequests() {
+        return requests.sum();
+    }
+
+    /**
+     * Gets the number of requests which shared the call of an identical request instead of reaching Consul.
+     */
+    public long getCoalescedRequests() {
+        return coalescedRequests.sum();
+    }
+
+    /**
+     * Gets the ratio of coalesced requests, between 0 (no request coalesced) and 1.
+     */
+    public double getCoalescingRatio() {
+        long total = getRequests();
+        return total == 0 ? 0 : (double) getCoalescedRequests() / total;
+    }
+
+    /**
+     * Gets the number of distinct requests currently in flight.
+     */
+    public int getInFlightRequests() {
+        return inFlight.size();
+    }
+}
@@ -0,0 +1,89 @@
+package com.orbitz.consul.util;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Creates virtual threads when the JVM supports them (Java 21 and later), through reflection so that the library
+ * still runs on Java 8.
+ * <p>
+ * A virtual thread is cheap to park: a blocking query waiting for a change in Consul holds a virtual thread rather
+ * than a platform thread and its stack, so that thousands of watches do not need thousands of platform threads.
+ */
+public final class VirtualThreads {
+
+    private static final Method OF_VIRTUAL;
+    private static final Method NAME;
+    private static final Method FACTORY;
+    private static final Method NEW_THREAD_PER_TASK_EXECUTOR;
+
+    static {
+        Method ofVirtual = null;
+        Method name = null;
+        Method factory = null;
+        Method newThreadPerTaskExecutor = null;
+        try {
+            ofVirtual = Thread.class.getMethod("ofVirtual");
+            Class<?> builder = Class.forName("java.lang.Thread$Builder");
+            name = builder.getMethod("name", String.class, long.class);
+            factory = builder.getMethod("factory");
+            newThreadPerTaskExecutor = Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class);
+            // a preview of virtual threads which is not enabled fails here
+            factory.invoke(ofVirtual.invoke(null));
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            ofVirtual = null;
+        }
+        OF_VIRTUAL = ofVirtual;
+        NAME = name;
+        FACTORY = factory;
+        NEW_THREAD_PER_TASK_EXECUTOR = newThreadPerTaskExecutor;
+    }
+
+    private VirtualThreads() {
+    }
+
+    /**
+     * Tells whether the JVM supports virtual threads.
+     */
+    public static boolean isAvailable() {
+        return OF_VIRTUAL != null;
+    }
+
+    /**
+     * Creates a factory of virtual threads.
+     *
+     * @param prefix the prefix of the names of the threads, followed by a counter
+     * @return the factory, or {@link Optional#empty()} if the JVM does not support virtual threads
+     */
+    public static Optional<ThreadFactory> newThreadFactory(String prefix) {
+        if (!isAvailable()) {
+            return Optional.empty();
+        }
+        try {
+            Object builder = NAME.invoke(OF_VIRTUAL.invoke(null), prefix, 0L);
+            return Optional.of((ThreadFactory) FACTORY.invoke(builder));
+        } catch (IllegalAccessException | InvocationTargetException e) {
+            throw new IllegalStateException("Unable to create a factory of virtual threads", e);
+        }
+    }
+
+    /**
+     * Creates an executor starting a virtual thread per task.
+     *
+     * @param prefix the prefix of the names of the threads, followed by a counter
+     * @return the executor, or {@link Optional#empty()} if the JVM does not support virtual threads
+     */
+    public static Optional<ExecutorService> newThreadPerTaskExecutor(String prefix) {
+        return newThreadFactory(prefix).map(threadFactory -> {
+            try {
+                return (ExecutorService) NEW_THREAD_PER_TASK_EXECUTOR.invoke(null, threadFactory);
+            } catch (IllegalAccessException | InvocationTargetException e) {
+                throw new IllegalStateException("Unable to create an executor of virtual threads", e);
+            }
+        });
+    }
+}
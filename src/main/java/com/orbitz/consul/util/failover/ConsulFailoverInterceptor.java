@@ -2,9 +2,11 @@ package com.orbitz.consul.util.failover;
 
 import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.Executor;
 
 import com.google.common.net.HostAndPort;
 import com.orbitz.consul.ConsulException;
+import com.orbitz.consul.config.HedgingConfig;
 import com.orbitz.consul.util.failover.strategy.*;
 
 import okhttp3.*;
@@ -17,6 +19,9 @@ public class ConsulFailoverInterceptor implements Interceptor {
 	// The consul failover strategy
 	private ConsulFailoverStrategy strategy;
 
+	// The hedger of the idempotent reads, if hedging is enabled
+	private volatile RequestHedger hedger;
+
 	/**
 	 * Default constructor for a set of hosts and ports
 	 * @param targets
@@ -33,6 +38,19 @@ public class ConsulFailoverInterceptor implements Interceptor {
 		this.strategy = strategy;
 	}
 
+	/**
+	 * Enables the hedging of the idempotent reads, sent to the targets of the strategy
+	 * @param config The hedging configuration
+	 * @param callFactory The factory of the calls sending the requests to the targets, which must not go through
+	 *        this interceptor again
+	 * @param executor The executor on which the requests are sent, while the calling thread waits for the first
+	 *        response. It must not be bounded nor run the calling threads, e.g. be the executor of the dispatcher,
+	 *        or the callers could wait for requests queued behind them
+	 */
+	public void enableHedging(HedgingConfig config, Call.Factory callFactory, Executor executor) {
+		this.hedger = new RequestHedger(config, strategy, callFactory, executor);
+	}
+
 	@Override
 	public Response intercept(Chain chain) throws IOException {
 
@@ -49,6 +67,19 @@ public class ConsulFailoverInterceptor implements Interceptor {
 
 			Optional<Request> nextRequest;
 
+			// The first attempt of an idempotent read may be hedged
+			final RequestHedger hedger = this.hedger;
+			if (hedger != null && RequestHedger.isHedgeable(originalRequest)) {
+				nextRequest = strategy.computeNextStage(previousRequest, previousResponse);
+				if (nextRequest.isPresent()) {
+					final RequestHedger.Outcome outcome = hedger.execute(chain.call(), nextRequest.get());
+					if (outcome.getResponse().isPresent()) {
+						return outcome.getResponse().get();
+					}
+					previousRequest = outcome.getLastRequest();
+				}
+			}
+
 			// Get the next viable request
 			while ((nextRequest = strategy.computeNextStage(previousRequest, previousResponse)).isPresent())
 				// Get the response from the last viable request
@@ -60,7 +91,10 @@ public class ConsulFailoverInterceptor implements Interceptor {
 
 					// Anything other than an exception is valid here.
 					// This is because a 400 series error is a valid code (Permission Denied/Key Not Found)
-					return chain.proceed(next);
+					final long start = System.nanoTime();
+					final Response response = chain.proceed(next);
+					strategy.markRequestCompleted(next, response, System.nanoTime() - start);
+					return response;
 				} catch (Exception ex) {
 					LOGGER.debug("Failed to connect to {}", nextRequest.get().url(), ex);
 					strategy.markRequestFailed(nextRequest.get());
@@ -0,0 +1,312 @@
+package com.orbitz.consul.util.failover;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+import com.orbitz.consul.config.HedgingConfig;
+import com.orbitz.consul.monitoring.LatencyHistogram;
+import com.orbitz.consul.util.failover.strategy.ConsulFailoverStrategy;
+
+import okhttp3.Call;
+import okhttp3.HttpUrl;
+import okhttp3.Request;
+import okhttp3.Response;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Hedges the idempotent reads: a read is sent to the target chosen by the strategy, and if it did not complete
+ * after a percentile of the latency of the previous reads, to another target too. The first response wins and
+ * the other request is cancelled.
+ * <p>
+ * Both requests are executed synchronously on an executor of their own, bypassing the limits of the dispatcher
+ * which the blocking queries of the caches may exhaust, while the calling thread waits for the winner. The number of
+ * hedges is capped by a budget, replenished by each read.
+ */
+class RequestHedger {
+	private final static Logger LOGGER = LoggerFactory.getLogger(RequestHedger.class);
+
+	// The budget is counted in thousandths of hedge
+	private static final long HEDGE_COST = 1000;
+	private static final long MAX_BUDGET = 10 * HEDGE_COST;
+
+	// The latency is measured over windows of reads, so that the delay follows the changes of latency
+	private static final int WINDOW_SIZE = 1024;
+
+	// The interval at which the cancellation of the call is checked while waiting
+	private static final long CANCEL_CHECK_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+	private final ConsulFailoverStrategy strategy;
+	private final Call.Factory callFactory;
+	private final Executor executor;
+	private final double percentile;
+	private final long minDelayNanos;
+	private final int minSamples;
+	private final long budgetPerRead;
+
+	private final AtomicLong budget = new AtomicLong();
+	private final AtomicLong samples = new AtomicLong();
+	private final LongAdder hedges = new LongAdder();
+	private volatile LatencyHistogram latencies = new LatencyHistogram();
+	private volatile long delayNanos = Long.MAX_VALUE;
+
+	RequestHedger(HedgingConfig config, ConsulFailoverStrategy strategy, Call.Factory callFactory, Executor executor) {
+		this.strategy = strategy;
+		this.callFactory = callFactory;
+		this.executor = executor;
+		this.percentile = config.getPercentile();
+		this.minDelayNanos = config.getMinimumDelay().toNanos();
+		this.minSamples = config.getMinimumSamples();
+		this.budgetPerRead = Math.round(config.getBudgetRatio() * HEDGE_COST);
+	}
+
+	/**
+	 * Tells whether a request is an idempotent read of the replicated state which completes without waiting for a
+	 * change, i.e. a GET of the KV store, the health, the catalog or a prepared query execution which is not a
+	 * blocking query. The reads of the agent describe the agent they are sent to, and a snapshot is too large to
+	 * be read twice: they are not hedged
+	 */
+	static boolean isHedgeable(Request request) {
+		final HttpUrl url = request.url();
+		return "GET".equals(request.method())
+				&& isReplicatedRead(url.pathSegments())
+				&& url.queryParameter("index") == null
+				&& url.queryParameter("hash") == null;
+	}
+
+	private static boolean isReplicatedRead(List<String> segments) {
+		if (segments.size() < 2 || !"v1".equals(segments.get(0))) {
+			return false;
+		}
+		switch (segments.get(1)) {
+			case "kv":
+			case "health":
+			case "catalog":
+				return true;
+			case "query":
+				return segments.size() == 4 && "execute".equals(segments.get(3));
+			default:
+				return false;
+		}
+	}
+
+	/**
+	 * Sends the request, and a hedge of it if it is slow
+	 * @param call The call the request belongs to, whose cancellation is propagated
+	 * @param request The request to the first target
+	 * @return The outcome, without response if all the requests sent failed
+	 * @throws IOException if the call was cancelled or the thread interrupted
+	 */
+	Outcome execute(Call call, Request request) throws IOException {
+		final long start = System.nanoTime();
+		budget.accumulateAndGet(budgetPerRead, (current, added) -> Math.min(MAX_BUDGET, current + added));
+
+		final Race race = new Race();
+		race.start(request);
+		Request last = request;
+		if (!race.await(call, delayNanos)) {
+			Optional<Request> hedge = Optional.empty();
+			if (withdrawHedge()) {
+				hedge = strategy.computeHedge(request);
+				if (!hedge.isPresent()) {
+					budget.addAndGet(HEDGE_COST);
+				}
+			}
+			if (hedge.isPresent() && race.start(hedge.get())) {
+				LOGGER.debug("Hedging {} to {}", request.url(), hedge.get().url());
+				hedges.increment();
+				last = hedge.get();
+			}
+			race.await(call, Long.MAX_VALUE);
+		}
+
+		final Response response = race.winner.getNow(null);
+		if (response != null) {
+			record(System.nanoTime() - start);
+		}
+		return new Outcome(response, last);
+	}
+
+	/**
+	 * Gets the number of hedges sent
+	 */
+	long getHedgeCount() {
+		return hedges.sum();
+	}
+
+	private boolean withdrawHedge() {
+		long current;
+		do {
+			current = budget.get();
+			if (current < HEDGE_COST) {
+				return false;
+			}
+		} while (!budget.compareAndSet(current, current - HEDGE_COST));
+		return true;
+	}
+
+	private void record(long nanos) {
+		final LatencyHistogram current = latencies;
+		current.record(nanos);
+		final long count = samples.incrementAndGet();
+		if (count >= minSamples && count % Math.min(minSamples, WINDOW_SIZE) == 0) {
+			final long percentileNanos = current.snapshot().getValueAtPercentile(percentile).toNanos();
+			delayNanos = Math.max(minDelayNanos, percentileNanos);
+		}
+		if (count % WINDOW_SIZE == 0) {
+			latencies = new LatencyHistogram();
+		}
+	}
+
+	/**
+	 * The result of a hedged read: the winning response, and the last request sent, from which the failover
+	 * goes on if there is no response
+	 */
+	static final class Outcome {
+
+		private final Response response;
+		private final Request lastRequest;
+
+		Outcome(Response response, Request lastRequest) {
+			this.response = response;
+			this.lastRequest = lastRequest;
+		}
+
+		Optional<Response> getResponse() {
+			return Optional.ofNullable(response);
+		}
+
+		Request getLastRequest() {
+			return lastRequest;
+		}
+	}
+
+	/**
+	 * The requests sent for a read, the first response completing the winner, or null once they all failed
+	 */
+	private final class Race {
+
+		private final CompletableFuture<Response> winner = new CompletableFuture<>();
+		private final ReentrantLock lock = new ReentrantLock();
+		private final List<Call> calls = new ArrayList<>();
+		private int running;
+
+		/**
+		 * Sends a request, unless the race is over
+		 * @return false if the race is over
+		 */
+		boolean start(Request request) {
+			final Call call;
+			lock.lock();
+			try {
+				if (winner.isDone()) {
+					return false;
+				}
+				call = callFactory.newCall(request);
+				calls.add(call);
+				running++;
+			} finally {
+				lock.unlock();
+			}
+			executor.execute(() -> run(call, request));
+			return true;
+		}
+
+		private void run(Call call, Request request) {
+			final long start = System.nanoTime();
+			final Response response;
+			try {
+				response = call.execute();
+			} catch (IOException | RuntimeException ex) {
+				if (!call.isCanceled()) {
+					LOGGER.debug("Failed to connect to {}", request.url(), ex);
+					strategy.markRequestFailed(request);
+				}
+				lock.lock();
+				try {
+					if (--running == 0) {
+						winner.complete(null);
+					}
+				} finally {
+					lock.unlock();
+				}
+				return;
+			}
+			strategy.markRequestCompleted(request, response, System.nanoTime() - start);
+			if (winner.complete(response)) {
+				cancel(call);
+			} else {
+				response.close();
+			}
+		}
+
+		/**
+		 * Waits for the winner
+		 * @return true if the race is over, false if the delay elapsed first
+		 */
+		boolean await(Call call, long nanos) throws IOException {
+			final long deadline = System.nanoTime() + nanos;
+			long remaining = nanos;
+			while (true) {
+				try {
+					winner.get(Math.min(remaining, CANCEL_CHECK_NANOS), TimeUnit.NANOSECONDS);
+					return true;
+				} catch (TimeoutException e) {
+					if (call.isCanceled()) {
+						cancel(null);
+						throw new IOException("Canceled");
+					}
+					if (nanos != Long.MAX_VALUE) {
+						remaining = deadline - System.nanoTime();
+						if (remaining <= 0) {
+							return false;
+						}
+					}
+				} catch (InterruptedException e) {
+					cancel(null);
+					Thread.currentThread().interrupt();
+					throw new InterruptedIOException();
+				} catch (ExecutionException e) {
+					// The winner is never completed exceptionally
+					throw new IllegalStateException(e);
+				}
+			}
+		}
+
+		/**
+		 * Cancels the requests other than the winning one, or all of them and the race if there is none
+		 */
+		private void cancel(Call won) {
+			final List<Call> others;
+			lock.lock();
+			try {
+				others = new ArrayList<>(calls);
+			} finally {
+				lock.unlock();
+			}
+			for (Call other : others) {
+				if (other != won) {
+					other.cancel();
+				}
+			}
+			// A response which won in the meantime is not read
+			if (won == null && !winner.complete(null)) {
+				final Response response = winner.getNow(null);
+				if (response != null) {
+					response.close();
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,286 @@
+package com.orbitz.consul.util.failover.strategy;
+
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.google.common.base.Preconditions;
+import com.google.common.net.HostAndPort;
+
+import okhttp3.HttpUrl;
+import okhttp3.Request;
+import okhttp3.Response;
+
+/**
+ * Routes each request to the agent with the lowest expected latency, tracked per agent as an exponentially weighted
+ * moving average (EWMA) of the latency and of the error rate of its requests.
+ * <p>
+ * The expected latency of an agent is its average latency divided by its success rate. An agent whose last request
+ * failed, or which fails half of its requests, is down: instead of being blacklisted for a fixed time, it keeps
+ * receiving a small share of the requests, as do the agents which are up but slower than the best one, so that
+ * their statistics reflect their recovery. A request which fails is retried on the best agent it was not sent to.
+ * <p>
+ * The latency of blocking queries, which mostly measures how long the agent waited for a change, is not recorded.
+ * The state of the agents is updated with compare-and-set operations, so that concurrent requests never wait on a
+ * lock.
+ * <p>
+ * A hedged read is sent to the best agent other than the one of the read.
+ */
+public class AdaptiveConsulFailoverStrategy implements ConsulFailoverStrategy {
+
+	// The default share of the requests sent to another agent than the best one
+	public static final double DEFAULT_PROBE_RATIO = 0.05;
+
+	// The weight of the last sample in the moving averages
+	private static final double LATENCY_WEIGHT = 0.2;
+	private static final double ERROR_WEIGHT = 0.25;
+
+	// The error rate above which an agent is down
+	private static final double DOWN_ERROR_RATE = 0.5;
+
+	private final Target[] targets;
+	private final Map<HostAndPort, Target> targetsByHostAndPort;
+	private final double probeRatio;
+
+	/**
+	 * Constructs an adaptive strategy probing the other agents with {@link #DEFAULT_PROBE_RATIO} of the requests
+	 * @param targets
+	 *        A set of viable hosts
+	 */
+	public AdaptiveConsulFailoverStrategy(Collection<HostAndPort> targets) {
+		this(targets, DEFAULT_PROBE_RATIO);
+	}
+
+	/**
+	 * Constructs an adaptive strategy
+	 * @param targets
+	 *        A set of viable hosts
+	 * @param probeRatio
+	 *        The share of the requests sent to another agent than the best one, between 0 and 1
+	 */
+	public AdaptiveConsulFailoverStrategy(Collection<HostAndPort> targets, double probeRatio) {
+		Preconditions.checkArgument(!targets.isEmpty(), "At least one target is required");
+		Preconditions.checkArgument(probeRatio >= 0 && probeRatio <= 1, "Probe ratio must be between 0 and 1");
+		this.targets = new Target[targets.size()];
+		this.targetsByHostAndPort = new HashMap<>();
+		int index = 0;
+		for (HostAndPort hostAndPort : targets) {
+			Target target = new Target(index, hostAndPort);
+			this.targets[index++] = target;
+			this.targetsByHostAndPort.put(hostAndPort, target);
+		}
+		this.probeRatio = probeRatio;
+	}
+
+	@Override
+	public Optional<Request> computeNextStage(Request previousRequest, Response previousResponse) {
+		// The agents the request was already sent to, if it is a retry
+		final Attempts attempts = previousRequest.tag(Attempts.class);
+		final Target next = select(attempts);
+		if (next == null) {
+			return Optional.empty();
+		}
+
+		final BitSet tried = attempts != null ? (BitSet) attempts.tried.clone() : new BitSet(targets.length);
+		tried.set(next.index);
+		final HttpUrl nextURL = previousRequest.url().newBuilder()
+				.host(next.hostAndPort.getHost())
+				.port(next.hostAndPort.getPort())
+				.build();
+		return Optional.of(previousRequest.newBuilder()
+				.url(nextURL)
+				.tag(Attempts.class, new Attempts(tried))
+				.build());
+	}
+
+	/**
+	 * Selects the agent with the lowest expected latency, or another one with the probe ratio
+	 * @param attempts The agents already tried for this request, or null
+	 * @return The agent, or null if the request was sent to all of them
+	 */
+	private Target select(Attempts attempts) {
+		Target best = null;
+		double bestCost = Double.POSITIVE_INFINITY;
+		int candidates = 0;
+		for (Target target : targets) {
+			if (attempts != null && attempts.tried.get(target.index)) {
+				continue;
+			}
+			candidates++;
+			double cost = target.cost();
+			if (best == null || cost < bestCost) {
+				best = target;
+				bestCost = cost;
+			}
+		}
+		if (candidates <= 1 || probeRatio <= 0) {
+			return best;
+		}
+		final ThreadLocalRandom random = ThreadLocalRandom.current();
+		if (random.nextDouble() >= probeRatio) {
+			return best;
+		}
+		// Probe one of the other candidates, at random
+		int probe = random.nextInt(candidates - 1);
+		for (Target target : targets) {
+			if (target == best || (attempts != null && attempts.tried.get(target.index))) {
+				continue;
+			}
+			if (probe-- == 0) {
+				return target;
+			}
+		}
+		return best;
+	}
+
+	@Override
+	public Optional<Request> computeHedge(Request current) {
+		// The request carries the agent it was sent to, which is excluded
+		final HostAndPort currentTarget = fromRequest(current);
+		return computeNextStage(current, null).filter(hedge -> !fromRequest(hedge).equals(currentTarget));
+	}
+
+	@Override
+	public boolean isRequestViable(Request current) {
+		// Down agents are still probed, so there is always a candidate
+		return true;
+	}
+
+	@Override
+	public void markRequestFailed(Request current) {
+		final Target target = targetsByHostAndPort.get(fromRequest(current));
+		if (target != null) {
+			target.recordFailure();
+		}
+	}
+
+	@Override
+	public void markRequestCompleted(Request current, Response response, long elapsedNanos) {
+		final Target target = targetsByHostAndPort.get(fromRequest(current));
+		if (target == null) {
+			return;
+		}
+		// A 4xx status is a valid answer of the agent (Permission Denied/Key Not Found)
+		if (response.code() >= 500) {
+			target.recordFailure();
+			return;
+		}
+		final HttpUrl url = current.url();
+		final boolean blocking = url.queryParameter("index") != null || url.queryParameter("hash") != null;
+		target.recordSuccess(blocking || elapsedNanos < 0 ? -1 : elapsedNanos);
+	}
+
+	/**
+	 * Gets the average latency of an agent, in nanoseconds
+	 * @return The average, NaN if no request completed yet, or empty if the agent is not a target
+	 */
+	public Optional<Double> getAverageLatencyNanos(HostAndPort hostAndPort) {
+		return Optional.ofNullable(targetsByHostAndPort.get(hostAndPort)).map(target -> target.latency());
+	}
+
+	/**
+	 * Gets the error rate of an agent, between 0 and 1
+	 * @return The error rate, or empty if the agent is not a target
+	 */
+	public Optional<Double> getErrorRate(HostAndPort hostAndPort) {
+		return Optional.ofNullable(targetsByHostAndPort.get(hostAndPort)).map(target -> target.errorRate());
+	}
+
+	/**
+	 * Tells whether an agent is down, and only receives probes
+	 */
+	public boolean isDown(HostAndPort hostAndPort) {
+		final Target target = targetsByHostAndPort.get(hostAndPort);
+		return target != null && target.isDown();
+	}
+
+	/**
+	 * Reconstructs a HostAndPort instance from the request object
+	 * @param request
+	 * @return
+	 */
+	private HostAndPort fromRequest(Request request) {
+		return HostAndPort.fromParts(request.url().host(), request.url().port());
+	}
+
+	/**
+	 * The agents a request was sent to, carried by the request from one attempt to the next
+	 */
+	private static final class Attempts {
+
+		private final BitSet tried;
+
+		Attempts(BitSet tried) {
+			this.tried = tried;
+		}
+	}
+
+	/**
+	 * The state of an agent, whose moving averages are doubles stored as their bits
+	 */
+	private static final class Target {
+
+		private final int index;
+		private final HostAndPort hostAndPort;
+		private final AtomicLong latencyBits = new AtomicLong(Double.doubleToRawLongBits(Double.NaN));
+		private final AtomicLong errorRateBits = new AtomicLong(Double.doubleToRawLongBits(0));
+		private final AtomicInteger consecutiveFailures = new AtomicInteger();
+
+		Target(int index, HostAndPort hostAndPort) {
+			this.index = index;
+			this.hostAndPort = hostAndPort;
+		}
+
+		double latency() {
+			return Double.longBitsToDouble(latencyBits.get());
+		}
+
+		double errorRate() {
+			return Double.longBitsToDouble(errorRateBits.get());
+		}
+
+		boolean isDown() {
+			return consecutiveFailures.get() > 0 || errorRate() >= DOWN_ERROR_RATE;
+		}
+
+		/**
+		 * Gets the expected latency of a successful request, infinite if the agent is down
+		 */
+		double cost() {
+			if (isDown()) {
+				return Double.POSITIVE_INFINITY;
+			}
+			final double latency = latency();
+			// An agent which did not answer yet is tried first, to measure it
+			return Double.isNaN(latency) ? 0 : latency / (1 - errorRate());
+		}
+
+		void recordSuccess(long latencyNanos) {
+			consecutiveFailures.set(0);
+			update(errorRateBits, 0, ERROR_WEIGHT);
+			if (latencyNanos >= 0) {
+				update(latencyBits, latencyNanos, LATENCY_WEIGHT);
+			}
+		}
+
+		void recordFailure() {
+			consecutiveFailures.incrementAndGet();
+			update(errorRateBits, 1, ERROR_WEIGHT);
+		}
+
+		private static void update(AtomicLong average, double sample, double weight) {
+			long current;
+			double next;
+			do {
+				current = average.get();
+				final double value = Double.longBitsToDouble(current);
+				next = Double.isNaN(value) ? sample : value + weight * (sample - value);
+			} while (!average.compareAndSet(current, Double.doubleToRawLongBits(next)));
+		}
+	}
+}
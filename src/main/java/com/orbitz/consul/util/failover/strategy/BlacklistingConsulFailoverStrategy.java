@@ -2,6 +2,7 @@ package com.orbitz.consul.util.failover.strategy;
 
 import java.time.*;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 import com.google.common.net.HostAndPort;
 
@@ -12,8 +13,8 @@ import okhttp3.*;
  */
 public class BlacklistingConsulFailoverStrategy implements ConsulFailoverStrategy {
 
-	// The map of blacklisted addresses
-	private Map<HostAndPort, Instant> blacklist = Collections.synchronizedMap(new HashMap<>());
+	// The map of blacklisted addresses, lock-free as it is read by every request
+	private Map<HostAndPort, Instant> blacklist = new ConcurrentHashMap<>();
 
 	// The map of viable targets
 	private Collection<HostAndPort> targets;
@@ -57,7 +58,7 @@ public class BlacklistingConsulFailoverStrategy implements ConsulFailoverStrateg
 					// If !(Duration(then, now) - timeout >=0) means that we remove this blacklist
 					// entry when the duration between
 					// the blacklist marker and now is greater than the timeout duration
-					if (!Duration.between(blacklistWhen, Instant.now()).minusMillis(timeout).isNegative()) {
+					if (blacklistWhen == null || !Duration.between(blacklistWhen, Instant.now()).minusMillis(timeout).isNegative()) {
 						blacklist.remove(target);
 						return true;
 					} else
@@ -89,6 +90,19 @@ public class BlacklistingConsulFailoverStrategy implements ConsulFailoverStrateg
 
 	}
 
+	@Override
+	public Optional<Request> computeHedge(Request current) {
+
+		// Find the first other target that isn't blacklisted
+		final HostAndPort currentTarget = fromRequest(current);
+		return targets.stream()
+				.filter(target -> !target.equals(currentTarget) && !blacklist.containsKey(target))
+				.findFirst()
+				.map(next -> current.newBuilder()
+						.url(current.url().newBuilder().host(next.getHost()).port(next.getPort()).build())
+						.build());
+	}
+
 	@Override
 	public boolean isRequestViable(Request current) {
 		return (targets.size() > blacklist.size()) || !blacklist.containsKey(fromRequest(current));
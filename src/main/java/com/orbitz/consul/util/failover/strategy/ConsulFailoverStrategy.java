@@ -37,5 +37,25 @@ public interface ConsulFailoverStrategy {
 	 * @param current The current request object representing a request that failed
 	 */
 	public void markRequestFailed(@Nonnull Request current);
+
+	/**
+	 * Reports the response received for the specified request, whatever its status code, so that the strategy can
+	 * take the latency and the errors of the targets into account. Does nothing by default.
+	 * @param current The request object which was sent
+	 * @param response The response received for the request
+	 * @param elapsedNanos The time elapsed between sending the request and receiving the response headers
+	 */
+	public default void markRequestCompleted(@Nonnull Request current, @Nonnull Response response, long elapsedNanos) {
+	}
+
+	/**
+	 * Computes a hedge of the specified request, i.e. the same request sent to another target while it is still in
+	 * flight, the first response winning. Returns an empty optional by default, disabling hedging.
+	 * @param current The request in flight
+	 * @return An optional request to another target. This may return an empty optional if there is none.
+	 */
+	public default Optional<Request> computeHedge(@Nonnull Request current) {
+		return Optional.empty();
+	}
 	
 }
@@ -0,0 +1,181 @@
+package com.orbitz.consul;
+
+import com.orbitz.consul.fake.FakeConsulServer;
+import com.orbitz.consul.model.ConsulResponse;
+import com.orbitz.consul.model.agent.Member;
+import com.orbitz.consul.model.catalog.CatalogService;
+import com.orbitz.consul.model.catalog.ImmutableCatalogRegistration;
+import com.orbitz.consul.model.event.Event;
+import com.orbitz.consul.model.health.ImmutableService;
+import com.orbitz.consul.model.health.ServiceHealth;
+import com.orbitz.consul.model.kv.Value;
+import com.orbitz.consul.model.query.ImmutablePreparedQuery;
+import com.orbitz.consul.model.query.ImmutableServiceQuery;
+import com.orbitz.consul.model.session.ImmutableSession;
+import com.orbitz.consul.model.session.SessionCreatedResponse;
+import com.orbitz.consul.model.session.SessionInfo;
+import com.orbitz.consul.option.EventOptions;
+import com.orbitz.consul.option.PutOptions;
+import com.orbitz.consul.option.QueryOptions;
+import com.orbitz.consul.option.QueryParameterOptions;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class AsyncClientsTest {
+
+    private FakeConsulServer server;
+    private Consul consul;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new FakeConsulServer().start();
+        consul = Consul.builder()
+                .withHostAndPort(server.getHostAndPort())
+                .withPing(false)
+                .build();
+    }
+
+    @After
+    public void tearDown() {
+        consul.destroy();
+        server.close();
+    }
+
+    @Test
+    public void shouldPutAndGetValuesAsync() throws Exception {
+        KeyValueClient kv = consul.keyValueClient();
+        ConsulResponse<Boolean> put = get(kv.putValueAsync("async/a", "1", 0, PutOptions.BLANK,
+                StandardCharsets.UTF_8));
+        assertTrue(put.getResponse());
+        assertTrue(put.isKnownLeader());
+
+        ConsulResponse<Optional<Value>> value = get(kv.getValueAsync("async/a", QueryOptions.BLANK));
+        assertEquals(Optional.of("1"), value.getResponse().get().getValueAsString());
+        assertEquals(BigInteger.valueOf(value.getResponse().get().getModifyIndex()), value.getIndex());
+        assertTrue(value.isKnownLeader());
+    }
+
+    @Test
+    public void shouldRegisterAndReadTheCatalogAsync() throws Exception {
+        CatalogClient catalog = consul.catalogClient();
+        BigInteger before = get(catalog.getServiceAsync("web", QueryOptions.BLANK)).getIndex();
+
+        assertTrue(get(catalog.registerAsync(registration("node1", "web-1", "web"), QueryOptions.BLANK))
+                .isKnownLeader());
+
+        ConsulResponse<List<CatalogService>> service = get(catalog.getServiceAsync("web", QueryOptions.BLANK));
+        assertEquals(1, service.getResponse().size());
+        assertEquals("web-1", service.getResponse().get(0).getServiceId());
+        assertTrue(service.getIndex().compareTo(before) > 0);
+    }
+
+    @Test
+    public void shouldReadTheHealthAsync() throws Exception {
+        consul.catalogClient().register(registration("node1", "web-1", "web"));
+
+        ConsulResponse<List<ServiceHealth>> healthy =
+                get(consul.healthClient().getHealthyServiceInstancesAsync("web", QueryOptions.BLANK));
+        assertEquals("web-1", healthy.getResponse().get(0).getService().getId());
+        assertEquals(consul.catalogClient().getService("web").getIndex(), healthy.getIndex());
+        assertTrue(healthy.isKnownLeader());
+    }
+
+    @Test
+    public void shouldReadTheMembersAsync() throws Exception {
+        consul.catalogClient().register(registration("node1", "web-1", "web"));
+
+        ConsulResponse<List<Member>> members = get(consul.agentClient().getMembersAsync(QueryOptions.BLANK));
+        assertEquals("node1", members.getResponse().get(0).getName());
+        assertEquals(consul.catalogClient().getNodes().getIndex(), members.getIndex());
+        assertTrue(members.isKnownLeader());
+    }
+
+    @Test
+    public void shouldPingJoinAndLeaveAsync() throws Exception {
+        AgentClient agent = consul.agentClient();
+        assertTrue(get(agent.pingAsync()).isKnownLeader());
+        assertTrue(get(agent.joinAsync("10.0.0.2", QueryOptions.BLANK)).isKnownLeader());
+        assertTrue(get(agent.forceLeaveAsync("node2", QueryParameterOptions.BLANK)).isKnownLeader());
+
+        try {
+            get(agent.toggleMaintenanceModeAsync("unknown", true, "upgrade"));
+            fail();
+        } catch (ExecutionException e) {
+            assertEquals(404, ((ConsulException) e.getCause()).getCode());
+        }
+    }
+
+    @Test
+    public void shouldCreateRenewAndDestroySessionsAsync() throws Exception {
+        SessionClient sessions = consul.sessionClient();
+        ConsulResponse<SessionCreatedResponse> created =
+                get(sessions.createSessionAsync(ImmutableSession.builder().name("async").build(), null));
+        String id = created.getResponse().getId();
+        assertTrue(created.isKnownLeader());
+
+        ConsulResponse<Optional<SessionInfo>> renewed = get(sessions.renewSessionAsync(null, id));
+        assertEquals(id, renewed.getResponse().get().getId());
+
+        ConsulResponse<Optional<SessionInfo>> info = get(sessions.getSessionInfoAsync(id, null));
+        assertEquals("async", info.getResponse().get().getName().get());
+        assertEquals(BigInteger.valueOf(info.getResponse().get().getCreateIndex()), info.getIndex());
+
+        assertTrue(get(sessions.destroySessionAsync(id, null)).isKnownLeader());
+        assertTrue(get(sessions.listSessionsAsync(null)).getResponse().isEmpty());
+    }
+
+    @Test
+    public void shouldFireAndListEventsAsync() throws Exception {
+        EventClient events = consul.eventClient();
+        ConsulResponse<Event> fired = get(events.fireEventAsync("deploy", EventOptions.BLANK, "v2"));
+        assertEquals(Optional.of("v2"), fired.getResponse().getPayload());
+        assertTrue(fired.isKnownLeader());
+
+        ConsulResponse<List<Event>> listed = get(events.listEventsAsync("deploy", QueryOptions.BLANK));
+        assertEquals(fired.getResponse().getId(), listed.getResponse().get(0).getId());
+        assertTrue(listed.getIndex().compareTo(BigInteger.ONE) > 0);
+    }
+
+    @Test
+    public void shouldCreatePreparedQueriesAsync() throws Exception {
+        // only the creation is checked: a StoredQuery cannot be read back, as Failover#datacenters() does not deserialize
+        ConsulResponse<String> created = get(consul.preparedQueryClient().createPreparedQueryAsync(
+                ImmutablePreparedQuery.builder()
+                        .name("nearest-web")
+                        .service(ImmutableServiceQuery.builder().service("web").build())
+                        .build(), null));
+        assertEquals(36, created.getResponse().length());
+        assertTrue(created.isKnownLeader());
+        assertEquals(BigInteger.ONE, created.getIndex());
+    }
+
+    private static ImmutableCatalogRegistration registration(String node, String id, String service) {
+        return ImmutableCatalogRegistration.builder()
+                .node(node)
+                .address("10.0.0.1")
+                .service(ImmutableService.builder()
+                        .id(id)
+                        .service(service)
+                        .address("10.0.0.1")
+                        .port(8080)
+                        .build())
+                .build();
+    }
+
+    private static <T> T get(CompletableFuture<T> future) throws Exception {
+        return future.get(5, TimeUnit.SECONDS);
+    }
+}
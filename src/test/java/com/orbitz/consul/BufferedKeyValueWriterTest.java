@@ -0,0 +1,200 @@
+package com.orbitz.consul;
+
+import com.orbitz.consul.fake.FakeConsulServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class BufferedKeyValueWriterTest {
+
+    private FakeConsulServer server;
+    private Consul consul;
+    private KeyValueClient kv;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new FakeConsulServer().start();
+        consul = Consul.builder().withHostAndPort(server.getHostAndPort()).withPing(false).build();
+        kv = consul.keyValueClient();
+    }
+
+    @After
+    public void tearDown() {
+        consul.destroy();
+        server.close();
+    }
+
+    @Test
+    public void shouldCoalesceTheWritesToAKey() throws Exception {
+        long requests = server.getRequestCount();
+        try (BufferedKeyValueWriter writer = BufferedKeyValueWriter.builder(kv)
+                .withFlushInterval(Duration.ofMinutes(1))
+                .build()) {
+            for (int i = 0; i < 1000; i++) {
+                writer.put("state/" + (i % 10), Integer.toString(i));
+            }
+            assertEquals(10, writer.getPendingCount());
+
+            writer.flush();
+            assertEquals(0, writer.getPendingCount());
+        }
+
+        assertEquals(1, server.getRequestCount() - requests);
+        assertEquals(Optional.of("999"), kv.getValueAsString("state/9"));
+        assertEquals(Optional.of("990"), kv.getValueAsString("state/0"));
+    }
+
+    @Test
+    public void shouldFlushABatchWithoutWaitingForTheInterval() throws Exception {
+        try (BufferedKeyValueWriter writer = BufferedKeyValueWriter.builder(kv)
+                .withFlushInterval(Duration.ofMinutes(1))
+                .withBatchSize(100)
+                .build()) {
+            for (int i = 0; i < 100; i++) {
+                writer.put("batch/" + i, "value");
+            }
+            long deadline = System.currentTimeMillis() + 5000;
+            while (kv.getKeys("batch/").size() < 100 && System.currentTimeMillis() < deadline) {
+                TimeUnit.MILLISECONDS.sleep(10);
+            }
+            assertEquals(100, kv.getKeys("batch/").size());
+        }
+    }
+
+    @Test
+    public void shouldFlushOnCloseEvenIfInterrupted() throws Exception {
+        BufferedKeyValueWriter writer = BufferedKeyValueWriter.builder(kv)
+                .withFlushInterval(Duration.ofMinutes(1))
+                .build();
+        writer.put("closed/key", "value");
+
+        Thread.currentThread().interrupt();
+        try {
+            writer.close();
+            assertTrue(Thread.currentThread().isInterrupted());
+        } finally {
+            Thread.interrupted();
+        }
+        assertEquals(Optional.of("value"), kv.getValueAsString("closed/key"));
+    }
+
+    @Test
+    public void shouldFlushPeriodically() throws Exception {
+        try (BufferedKeyValueWriter writer = BufferedKeyValueWriter.builder(kv)
+                .withFlushInterval(Duration.ofMillis(20))
+                .build()) {
+            writer.put("periodic", "value");
+            long deadline = System.currentTimeMillis() + 5000;
+            while (!kv.getValue("periodic").isPresent() && System.currentTimeMillis() < deadline) {
+                TimeUnit.MILLISECONDS.sleep(10);
+            }
+            assertEquals(Optional.of("value"), kv.getValueAsString("periodic"));
+        }
+    }
+
+    @Test
+    public void shouldApplyBackPressureWhileAFlushIsInFlight() throws Exception {
+        server.setResponseDelay(500, TimeUnit.MILLISECONDS);
+        try (BufferedKeyValueWriter writer = BufferedKeyValueWriter.builder(kv)
+                .withFlushInterval(Duration.ofMinutes(1))
+                .withBatchSize(2)
+                .withMaxPendingKeys(2)
+                .build()) {
+            writer.put("a", new byte[]{1});
+            writer.put("b", new byte[]{2});
+            // the first batch is in flight
+            writer.put("c", new byte[]{3});
+            writer.put("d", new byte[]{4});
+            assertFalse(writer.offer("e", new byte[]{5}, 10, TimeUnit.MILLISECONDS));
+            assertTrue(writer.offer("d", new byte[]{6}, 0, TimeUnit.MILLISECONDS));
+            assertTrue(writer.offer("e", new byte[]{5}, 5, TimeUnit.SECONDS));
+        }
+        server.setResponseDelay(0, TimeUnit.MILLISECONDS);
+        assertEquals(5, kv.getKeys("").size());
+        assertEquals(6, kv.getValue("d").get().getValueAsBytes().get()[0]);
+    }
+
+    @Test
+    public void shouldReportTheValuesWhichCouldNotBeWritten() throws Exception {
+        CompletableFuture<Map<String, byte[]>> failed = new CompletableFuture<>();
+        BufferedKeyValueWriter writer = BufferedKeyValueWriter.builder(kv)
+                .withFlushInterval(Duration.ofMinutes(1))
+                .withFailureListener((values, throwable) -> failed.complete(values))
+                .build();
+        server.close();
+
+        writer.put("lost", "value");
+        writer.close();
+
+        assertTrue(failed.get(5, TimeUnit.SECONDS).containsKey("lost"));
+        try {
+            writer.put("closed", "value");
+            fail();
+        } catch (IllegalStateException expected) {
+        }
+    }
+
+    @Test
+    public void shouldOnlyReportTheValuesOfTheFailedTransactions() throws Exception {
+        Map<String, byte[]> failed = new ConcurrentHashMap<>();
+        AtomicInteger failures = new AtomicInteger();
+        try (BufferedKeyValueWriter writer = BufferedKeyValueWriter.builder(kv)
+                .withFlushInterval(Duration.ofMinutes(1))
+                .withFailureListener((values, throwable) -> {
+                    failures.incrementAndGet();
+                    failed.putAll(values);
+                })
+                .build()) {
+            writer.put("before", "value");
+            // larger than a transaction on its own once encoded: the transaction is rejected with a 413
+            writer.put("huge", new byte[600 * 1024]);
+            writer.put("after", "value");
+        }
+
+        assertEquals(1, failures.get());
+        assertEquals(Collections.singleton("huge"), failed.keySet());
+        assertEquals(Optional.of("value"), kv.getValueAsString("before"));
+        assertEquals(Optional.of("value"), kv.getValueAsString("after"));
+    }
+
+    @Test
+    public void shouldNotReportTheFailuresUnderTheLock() throws Exception {
+        AtomicReference<BufferedKeyValueWriter> writer = new AtomicReference<>();
+        CompletableFuture<Integer> pendingCount = new CompletableFuture<>();
+        writer.set(BufferedKeyValueWriter.builder(kv)
+                .withFlushInterval(Duration.ofMinutes(1))
+                .withFailureListener((values, throwable) -> {
+                    // the writer is used from another thread while the failure is reported
+                    try {
+                        pendingCount.complete(CompletableFuture.supplyAsync(writer.get()::getPendingCount)
+                                .get(5, TimeUnit.SECONDS));
+                    } catch (Exception e) {
+                        pendingCount.completeExceptionally(e);
+                    }
+                })
+                .build());
+        // the requests of a destroyed client fail in the thread sending them
+        consul.destroy();
+
+        writer.get().put("lost", "value");
+        writer.get().flush();
+
+        assertEquals(Integer.valueOf(0), pendingCount.get(5, TimeUnit.SECONDS));
+        writer.get().close();
+    }
+}
@@ -0,0 +1,152 @@
+package com.orbitz.consul;
+
+import com.orbitz.consul.fake.FakeConsulServer;
+import com.orbitz.consul.model.kv.Value;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class KeyValueClientBulkTest {
+
+    private FakeConsulServer server;
+    private Consul consul;
+    private KeyValueClient kv;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new FakeConsulServer().start();
+        consul = Consul.builder().withHostAndPort(server.getHostAndPort()).withPing(false).build();
+        kv = consul.keyValueClient();
+    }
+
+    @After
+    public void tearDown() {
+        consul.destroy();
+        server.close();
+    }
+
+    @Test
+    public void shouldPutAndGetMoreValuesThanATransactionHolds() {
+        Map<String, byte[]> values = new LinkedHashMap<>();
+        for (int i = 0; i < 1000; i++) {
+            values.put("bulk/" + i, ("value" + i).getBytes(StandardCharsets.UTF_8));
+        }
+        long requests = server.getRequestCount();
+
+        kv.putValues(values);
+
+        // 16 transactions of up to 64 operations
+        assertEquals(16, server.getRequestCount() - requests);
+        assertEquals(1000, kv.getKeys("bulk/").size());
+        assertEquals(Optional.of("value999"), kv.getValueAsString("bulk/999"));
+
+        Map<String, Value> read = kv.getValues(new ArrayList<>(values.keySet()));
+        assertEquals(new ArrayList<>(values.keySet()), new ArrayList<>(read.keySet()));
+        assertEquals(Optional.of("value0"), read.get("bulk/0").getValueAsString());
+    }
+
+    @Test
+    public void shouldSplitTheTransactionsOfLargeValues() {
+        Map<String, byte[]> values = new LinkedHashMap<>();
+        for (int i = 0; i < 64; i++) {
+            byte[] value = new byte[100 * 1024];
+            Arrays.fill(value, (byte) i);
+            values.put("large/" + i, value);
+        }
+        long requests = server.getRequestCount();
+
+        // the 64 values would make a body of 8.5 MB in a single transaction, rejected with a 413
+        kv.putValues(values);
+
+        // 22 transactions of up to 3 values of 133 KB once encoded, under the 512 KB of a transaction
+        assertEquals(22, server.getRequestCount() - requests);
+        Map<String, Value> read = kv.getValues(new ArrayList<>(values.keySet()));
+        assertEquals(64, read.size());
+        assertArrayEquals(values.get("large/63"), read.get("large/63").getValueAsBytes().get());
+    }
+
+    @Test
+    public void shouldReportTheKeysOfTheFailedTransactions() {
+        Map<String, byte[]> values = new LinkedHashMap<>();
+        for (int i = 0; i < 100; i++) {
+            values.put("/failed/" + i, new byte[]{(byte) i});
+        }
+        // larger than a transaction on its own once encoded: its transaction is rejected with a 413
+        values.put("failed/huge", new byte[600 * 1024]);
+        for (int i = 100; i < 200; i++) {
+            values.put("failed/" + i, new byte[]{(byte) i});
+        }
+
+        try {
+            kv.putValues(values);
+            fail();
+        } catch (BulkOperationException e) {
+            assertEquals(Collections.singleton("failed/huge"), e.getFailures().keySet());
+            assertEquals(413, ((ConsulException) e.getCause()).getCode());
+        }
+
+        // the other transactions are applied, including the ones after the failed one in its lane
+        assertEquals(200, kv.getKeys("failed/").size());
+    }
+
+    @Test
+    public void shouldKeepBinaryValues() {
+        byte[] binary = {0, (byte) 0xff, (byte) 0xc3, 0x28, 10};
+        Map<String, byte[]> values = new LinkedHashMap<>();
+        values.put("binary", binary);
+
+        kv.putValues(values);
+
+        assertArrayEquals(binary, kv.getValues(Arrays.asList("binary")).get("binary").getValueAsBytes().get());
+    }
+
+    @Test
+    public void shouldSkipMissingKeys() {
+        kv.putValue("present/1", "1");
+        kv.putValue("present/2", "2");
+        List<String> keys = new ArrayList<>();
+        keys.add("missing/0");
+        keys.add("present/1");
+        for (int i = 1; i < 100; i++) {
+            keys.add("missing/" + i);
+        }
+        keys.add("/present/2");
+
+        Map<String, Value> read = kv.getValues(keys);
+
+        assertEquals(Arrays.asList("present/1", "present/2"), new ArrayList<>(read.keySet()));
+        assertTrue(kv.getValues(Arrays.asList("missing/0")).isEmpty());
+    }
+
+    @Test
+    public void shouldDeleteKeys() {
+        Map<String, byte[]> values = new LinkedHashMap<>();
+        List<String> keys = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            values.put("delete/" + i, new byte[]{(byte) i});
+            keys.add("delete/" + i);
+        }
+        kv.putValues(values);
+        kv.putValue("delete/kept", "kept");
+
+        kv.deleteKeys(keys);
+
+        assertEquals(Arrays.asList("delete/kept"), kv.getKeys("delete/"));
+        assertFalse(kv.getValue("delete/0").isPresent());
+    }
+}
@@ -3,7 +3,9 @@ package com.orbitz.consul;
 import com.orbitz.consul.model.kv.TxResponse;
 import com.orbitz.consul.model.kv.Value;
 import okhttp3.Headers;
+import okhttp3.MediaType;
 import okhttp3.RequestBody;
+import okhttp3.ResponseBody;
 import retrofit2.Call;
 import retrofit2.Response;
 import retrofit2.mock.BehaviorDelegate;
@@ -30,6 +32,14 @@ public class MockApiService implements KeyValueClient.Api {
         return delegate.returning(call).getValue(key, query);
     }
 
+    @Override
+    public Call<ResponseBody> streamValues(String key, Map<String, Object> query) {
+        final Headers headers = Headers.of("X-Consul-Knownleader", "true");
+        final ResponseBody body = ResponseBody.create("[]", MediaType.get("application/json"));
+        final Call<ResponseBody> call = Calls.response(Response.success(body, headers));
+        return delegate.returning(call).streamValues(key, query);
+    }
+
     @Override
     public Call<List<String>> getKeys(String key, Map<String, Object> query) {
         return delegate.returningResponse(Collections.emptyList()).getKeys(key, query);
@@ -0,0 +1,57 @@
+package com.orbitz.consul.cache;
+
+import com.orbitz.consul.Consul;
+import com.orbitz.consul.config.CacheConfig;
+import com.orbitz.consul.config.ClientConfig;
+import com.orbitz.consul.fake.FakeConsulServer;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class AgentServiceCacheTest {
+
+    @Test
+    public void testUnregisteredServiceIsNotPolledInALoop() throws Exception {
+        try (FakeConsulServer server = new FakeConsulServer().start()) {
+            final CacheConfig cacheConfig = CacheConfig.builder()
+                    .withBackOffDelay(Duration.ofMillis(500))
+                    .build();
+            final Consul consul = Consul.builder()
+                    .withHostAndPort(server.getHostAndPort())
+                    .withClientConfiguration(new ClientConfig(cacheConfig))
+                    .withReadTimeoutMillis(TimeUnit.SECONDS.toMillis(15))
+                    .withPing(false)
+                    .build();
+
+            try (AgentServiceCache cache = AgentServiceCache.newCache(consul.agentClient(), "unknown")) {
+                cache.start();
+                assertTrue(cache.awaitInitialized(10, TimeUnit.SECONDS));
+                assertTrue(cache.getMap().isEmpty());
+
+                // the 404 cannot block: each request waits for the back-off delay instead of polling in a loop
+                long requests = server.getRequestCount();
+                long previous = System.nanoTime();
+                long deadline = previous + TimeUnit.SECONDS.toNanos(10);
+                for (int i = 0; i < 2; i++) {
+                    while (server.getRequestCount() == requests) {
+                        assertTrue("Timed out waiting for the next request", System.nanoTime() < deadline);
+                        TimeUnit.MILLISECONDS.sleep(5);
+                    }
+                    long now = System.nanoTime();
+                    long elapsed = TimeUnit.NANOSECONDS.toMillis(now - previous);
+                    // the time of the request before the first one seen is unknown
+                    assertTrue("Next request after " + elapsed + "ms", i == 0 || elapsed >= 400);
+                    assertEquals(1, server.getRequestCount() - requests);
+                    requests = server.getRequestCount();
+                    previous = now;
+                }
+            } finally {
+                consul.destroy();
+            }
+        }
+    }
+}
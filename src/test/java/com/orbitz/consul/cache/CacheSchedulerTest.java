@@ -0,0 +1,71 @@
+package com.orbitz.consul.cache;
+
+import com.orbitz.consul.config.CacheConfig;
+import com.orbitz.consul.model.kv.ImmutableValue;
+import com.orbitz.consul.model.kv.Value;
+import com.orbitz.consul.monitoring.ClientEventHandler;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.mock;
+
+public class CacheSchedulerTest {
+
+    @Test
+    public void testCachesShareScheduler() {
+        final CacheConfig cacheConfig = CacheConfig.builder()
+                .withMinDelayBetweenRequests(Duration.ofSeconds(10))
+                .build();
+        final ClientEventHandler eventHandler = mock(ClientEventHandler.class);
+        final Value value = ImmutableValue.builder()
+                .createIndex(1)
+                .modifyIndex(2)
+                .lockIndex(2)
+                .key("foo")
+                .flags(0)
+                .build();
+
+        try (CacheScheduler cacheScheduler = new CacheScheduler(1)) {
+            ConsulCache<String, Value> first = new ConsulCache<>(Value::getKey,
+                    new StubCallbackConsumer(Collections.singletonList(value)), cacheConfig, eventHandler,
+                    new CacheDescriptor("first"), cacheScheduler.newScheduler());
+            ConsulCache<String, Value> second = new ConsulCache<>(Value::getKey,
+                    new StubCallbackConsumer(Collections.singletonList(value)), cacheConfig, eventHandler,
+                    new CacheDescriptor("second"), cacheScheduler.newScheduler());
+
+            first.start();
+            second.start();
+            assertEquals(2, cacheScheduler.getPendingCallbacks());
+
+            // stopping a cache only cancels its own callback
+            first.stop();
+            assertEquals(1, cacheScheduler.getPendingCallbacks());
+            assertEquals(ConsulCache.State.started, second.getState());
+
+            second.stop();
+            assertEquals(0, cacheScheduler.getPendingCallbacks());
+        }
+    }
+
+    @Test
+    public void testStopCancelsAllTheCallbacksOfACache() {
+        try (CacheScheduler cacheScheduler = new CacheScheduler(1)) {
+            ConsulCache.Scheduler first = cacheScheduler.newScheduler();
+            ConsulCache.Scheduler second = cacheScheduler.newScheduler();
+            first.schedule(() -> { }, 1, TimeUnit.MINUTES);
+            first.schedule(() -> { }, 2, TimeUnit.MINUTES);
+            second.schedule(() -> { }, 1, TimeUnit.MINUTES);
+            assertEquals(3, cacheScheduler.getPendingCallbacks());
+
+            first.shutdownNow();
+            assertEquals(1, cacheScheduler.getPendingCallbacks());
+
+            second.shutdownNow();
+            assertEquals(0, cacheScheduler.getPendingCallbacks());
+        }
+    }
+}
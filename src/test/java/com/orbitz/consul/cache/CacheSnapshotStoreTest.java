@@ -0,0 +1,123 @@
+package com.orbitz.consul.cache;
+
+import com.orbitz.consul.config.CacheConfig;
+import com.orbitz.consul.model.ConsulResponse;
+import com.orbitz.consul.model.kv.ImmutableValue;
+import com.orbitz.consul.model.kv.Value;
+import com.orbitz.consul.monitoring.ClientEventHandler;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+
+public class CacheSnapshotStoreTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testSaveAndLoad() throws IOException {
+        final CacheSnapshotStore<Value> store = new CacheSnapshotStore<>(folder.getRoot().toPath().resolve("kv.json"), Value.class);
+        assertFalse(store.load().isPresent());
+
+        final List<Value> values = Arrays.asList(createValue("a", "foo"), createValue("b", ""), createValue("c", null));
+        store.save(BigInteger.valueOf(42), values);
+
+        final CacheSnapshotStore.Snapshot<Value> snapshot = store.load().get();
+        assertEquals(BigInteger.valueOf(42), snapshot.getIndex());
+        assertEquals(values, snapshot.getValues());
+
+        store.save(BigInteger.valueOf(43), Collections.emptyList());
+        assertEquals(BigInteger.valueOf(43), store.load().get().getIndex());
+        assertTrue(store.load().get().getValues().isEmpty());
+    }
+
+    @Test
+    public void testSaveLaterWritesTheLastSnapshot() throws Exception {
+        final CacheSnapshotStore<Value> store = new CacheSnapshotStore<>(folder.getRoot().toPath().resolve("kv.json"),
+                Value.class, Duration.ofMillis(100));
+
+        store.saveLater(BigInteger.valueOf(42), Collections.singletonList(createValue("a", "foo")));
+        store.saveLater(BigInteger.valueOf(43), Collections.singletonList(createValue("a", "bar")));
+        // written after the delay, not on the calling thread
+        assertFalse(store.load().isPresent());
+
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!store.load().isPresent()) {
+            assertTrue("Timed out", System.nanoTime() < deadline);
+            Thread.sleep(10);
+        }
+        assertEquals(BigInteger.valueOf(43), store.load().get().getIndex());
+        assertEquals(Optional.of("bar"), store.load().get().getValues().get(0).getValueAsString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testCacheStartsFromSnapshot() throws Exception {
+        final CacheSnapshotStore<Value> store = new CacheSnapshotStore<>(folder.getRoot().toPath().resolve("kv.json"), Value.class);
+        store.save(BigInteger.valueOf(42), Arrays.asList(createValue("a", "foo"), createValue("b", "bar")));
+
+        final AtomicReference<BigInteger> requestedIndex = new AtomicReference<>();
+        // the blocking query never returns: the cache is only initialized by the snapshot
+        final ConsulCache.CallbackConsumer<Value> callbackConsumer = (index, callback) -> requestedIndex.set(index);
+
+        try (ConsulCache<String, Value> cache = new ConsulCache<>(Value::getKey, callbackConsumer,
+                CacheConfig.builder().build(), mock(ClientEventHandler.class), new CacheDescriptor(""))) {
+            final StubListener listener = new StubListener();
+            cache.addListener(listener);
+            cache.setSnapshotStore(store);
+            cache.start();
+
+            assertTrue(cache.awaitInitialized(0, TimeUnit.MILLISECONDS));
+            assertEquals(2, cache.getMap().size());
+            assertEquals(1, listener.getCallCount());
+            assertEquals(BigInteger.valueOf(42), requestedIndex.get());
+        }
+    }
+
+    @Test
+    public void testCacheSavesSnapshotOnChange() throws Exception {
+        final CacheSnapshotStore<Value> store = new CacheSnapshotStore<>(folder.getRoot().toPath().resolve("kv.json"), Value.class);
+        final Value value = createValue("a", "foo");
+        final ConsulCache.CallbackConsumer<Value> callbackConsumer = (index, callback) ->
+                callback.onComplete(new ConsulResponse<>(Collections.singletonList(value), 0, true, BigInteger.valueOf(7), null, null));
+
+        try (ConsulCache<String, Value> cache = new ConsulCache<>(Value::getKey, callbackConsumer,
+                CacheConfig.builder().withMinDelayBetweenRequests(Duration.ofSeconds(10)).build(),
+                mock(ClientEventHandler.class), new CacheDescriptor(""))) {
+            cache.setSnapshotStore(store);
+            cache.start();
+            assertTrue(cache.awaitInitialized(1, TimeUnit.SECONDS));
+        }
+
+        final CacheSnapshotStore.Snapshot<Value> snapshot = store.load().get();
+        assertEquals(BigInteger.valueOf(7), snapshot.getIndex());
+        assertEquals(Collections.singletonList(value), snapshot.getValues());
+    }
+
+    private static Value createValue(String key, String payload) {
+        return ImmutableValue.builder()
+                .createIndex(1)
+                .modifyIndex(2)
+                .lockIndex(0)
+                .key(key)
+                .flags(0)
+                .decodedValue(Optional.ofNullable(payload).map(p -> ByteBuffer.wrap(p.getBytes(StandardCharsets.UTF_8))))
+                .build();
+    }
+}
@@ -21,18 +21,27 @@ import org.mockito.internal.matchers.LessOrEqual;
 
 import java.math.BigInteger;
 import java.time.Duration;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Function;
 
 import static org.hamcrest.CoreMatchers.allOf;
 import static org.hamcrest.CoreMatchers.is;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyLong;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
 
 @RunWith(JUnitParamsRunner.class)
 public class ConsulCacheTest {
@@ -253,4 +262,155 @@ public class ConsulCacheTest {
         }
     }
 
+    @Test
+    public void testComputeDelta() {
+        final CacheConfig cacheConfig = CacheConfig.builder().build();
+        final ClientEventHandler eventHandler = mock(ClientEventHandler.class);
+        final StubCallbackConsumer callbackConsumer = new StubCallbackConsumer(Collections.emptyList());
+        final ConsulCache<String, Value> cache = new ConsulCache<>(Value::getKey, callbackConsumer, cacheConfig,
+                eventHandler, new CacheDescriptor(""));
+
+        final Value kept = createValue("kept", 1);
+        final Value removed = createValue("removed", 1);
+        final Value modified = createValue("modified", 1);
+        final Value newlyModified = createValue("modified", 2);
+        final Value added = createValue("added", 1);
+
+        final CacheDelta<String, Value> delta = cache.computeDelta(
+                ImmutableMap.of("kept", kept, "removed", removed, "modified", modified),
+                ImmutableMap.of("kept", kept, "modified", newlyModified, "added", added));
+
+        assertEquals(ImmutableMap.of("added", added), delta.getAdded());
+        assertEquals(ImmutableMap.of("removed", removed), delta.getRemoved());
+        assertEquals(ImmutableMap.of("modified", newlyModified), delta.getModified());
+        assertTrue(cache.computeDelta(ImmutableMap.of("kept", kept), ImmutableMap.of("kept", kept)).isEmpty());
+    }
+
+    @Test
+    public void testDeltaListenerIsCalled() {
+        final CacheConfig cacheConfig = CacheConfig.builder().build();
+        final ClientEventHandler eventHandler = mock(ClientEventHandler.class);
+        final Value value = createValue("foo", 2);
+        final StubCallbackConsumer callbackConsumer = new StubCallbackConsumer(Collections.singletonList(value));
+
+        try (final ConsulCache<String, Value> cache = new ConsulCache<>(Value::getKey, callbackConsumer, cacheConfig,
+                eventHandler, new CacheDescriptor(""))) {
+            final List<CacheDelta<String, Value>> deltas = new ArrayList<>();
+            cache.addDeltaListener(deltas::add);
+            cache.start();
+
+            assertEquals(1, deltas.size());
+            assertEquals(ImmutableMap.of("foo", value), deltas.get(0).getAdded());
+            assertTrue(deltas.get(0).getRemoved().isEmpty());
+            assertTrue(deltas.get(0).getModified().isEmpty());
+
+            // Adding listener after cache is already started
+            final List<CacheDelta<String, Value>> lateDeltas = new ArrayList<>();
+            cache.addDeltaListener(lateDeltas::add);
+            assertEquals(1, lateDeltas.size());
+            assertEquals(ImmutableMap.of("foo", value), lateDeltas.get(0).getAdded());
+        }
+    }
+
+    @Test
+    public void testUnchangedIndexSkipsConversion() throws InterruptedException {
+        final CacheConfig cacheConfig = CacheConfig.builder().build();
+        final ClientEventHandler eventHandler = mock(ClientEventHandler.class);
+        final List<Value> result = Collections.singletonList(createValue("foo", 2));
+        final CountDownLatch secondResponse = new CountDownLatch(1);
+        final AtomicInteger callCount = new AtomicInteger();
+        final AtomicInteger conversionCount = new AtomicInteger();
+
+        // answers twice with the same index, then leaves the blocking query pending
+        final ConsulCache.CallbackConsumer<Value> callbackConsumer = (index, callback) -> {
+            if (callCount.incrementAndGet() <= 2) {
+                callback.onComplete(new ConsulResponse<>(result, 0, true, BigInteger.TEN, null, null));
+            }
+            if (callCount.get() == 2) {
+                secondResponse.countDown();
+            }
+        };
+
+        try (final ConsulCache<String, Value> cache = new ConsulCache<String, Value>(Value::getKey, callbackConsumer,
+                cacheConfig, eventHandler, new CacheDescriptor("")) {
+            @Override
+            ImmutableMap<String, Value> convertToMap(ConsulResponse<List<Value>> response) {
+                conversionCount.incrementAndGet();
+                return super.convertToMap(response);
+            }
+        }) {
+            final StubListener listener = new StubListener();
+            cache.addListener(listener);
+            cache.start();
+
+            assertTrue(secondResponse.await(5, TimeUnit.SECONDS));
+            verify(eventHandler, timeout(1000)).cachePollingUnchangedIndex(any(CacheDescriptor.class), anyLong());
+            assertEquals(1, conversionCount.get());
+            assertEquals(1, listener.getCallCount());
+        }
+    }
+
+    @Test
+    public void testZeroIndexIsNeverUnchanged() {
+        final ConsulCache<String, Value> cache = new ConsulCache<>(Value::getKey,
+                new StubCallbackConsumer(Collections.emptyList()), CacheConfig.builder().build(),
+                mock(ClientEventHandler.class), new CacheDescriptor(""));
+        final ConsulResponse<List<Value>> response = new ConsulResponse<>(Collections.emptyList(), 0, true, BigInteger.ZERO, null, null);
+
+        // not initialized yet
+        assertFalse(cache.isIndexUnchanged(BigInteger.TEN, new ConsulResponse<>(Collections.emptyList(), 0, true, BigInteger.TEN, null, null)));
+
+        cache.start();
+        assertFalse(cache.isIndexUnchanged(BigInteger.ZERO, response));
+        assertFalse(cache.isIndexUnchanged(null, response));
+        assertTrue(cache.isIndexUnchanged(BigInteger.TEN, new ConsulResponse<>(Collections.emptyList(), 0, true, BigInteger.TEN, null, null)));
+        cache.stop();
+    }
+
+    @Test
+    public void testHashCallbackConsumerBlocksOnContentHash() throws InterruptedException {
+        final Value value = createValue("foo", 1);
+        final List<String> hashes = Collections.synchronizedList(new ArrayList<>());
+        final CountDownLatch secondResponse = new CountDownLatch(1);
+        final ConsulCache.HashCallbackConsumer<Value> callbackConsumer = (hash, callback) -> {
+            hashes.add(hash);
+            if (hashes.size() <= 2) {
+                callback.onComplete(new ConsulResponse<>(Collections.singletonList(value), 0, true, BigInteger.ZERO,
+                        null, null, "abc"));
+            }
+            if (hashes.size() == 2) {
+                secondResponse.countDown();
+            }
+        };
+        final ClientEventHandler eventHandler = mock(ClientEventHandler.class);
+
+        try (final ConsulCache<String, Value> cache = new ConsulCache<>(Value::getKey, callbackConsumer,
+                CacheConfig.builder().build(), eventHandler, new CacheDescriptor(""))) {
+            cache.start();
+
+            assertTrue(secondResponse.await(5, TimeUnit.SECONDS));
+            assertEquals(Arrays.asList(null, "abc"), hashes.subList(0, 2));
+            verify(eventHandler, timeout(1000)).cachePollingUnchangedIndex(any(CacheDescriptor.class), anyLong());
+        }
+    }
+
+    @Test
+    public void testWatchHashParams() {
+        assertEquals(QueryOptions.BLANK.toQuery(), ConsulCache.watchHashParams(null, 10, QueryOptions.BLANK).toQuery());
+        final Map<String, Object> query = ConsulCache.watchHashParams("abc", 10, QueryOptions.BLANK).toQuery();
+        assertEquals("abc", query.get("hash"));
+        assertEquals("10s", query.get("wait"));
+        assertFalse(query.containsKey("index"));
+    }
+
+    private static Value createValue(String key, long modifyIndex) {
+        return ImmutableValue.builder()
+                .createIndex(1)
+                .modifyIndex(modifyIndex)
+                .lockIndex(0)
+                .key(key)
+                .flags(0)
+                .build();
+    }
+
 }
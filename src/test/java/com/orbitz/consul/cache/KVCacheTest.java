@@ -2,11 +2,13 @@ package com.orbitz.consul.cache;
 
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.orbitz.consul.Consul;
+import com.orbitz.consul.ConsulException;
 import com.orbitz.consul.KeyValueClient;
 import com.orbitz.consul.KeyValueClientFactory;
 import com.orbitz.consul.MockApiService;
 import com.orbitz.consul.config.CacheConfig;
 import com.orbitz.consul.config.ClientConfig;
+import com.orbitz.consul.fake.FakeConsulServer;
 import com.orbitz.consul.model.kv.ImmutableValue;
 import com.orbitz.consul.model.kv.Value;
 import com.orbitz.consul.monitoring.ClientEventCallback;
@@ -22,10 +24,13 @@ import retrofit2.mock.BehaviorDelegate;
 import retrofit2.mock.MockRetrofit;
 import retrofit2.mock.NetworkBehavior;
 
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.time.Duration;
 import java.util.*;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Function;
 
 @RunWith(JUnitParamsRunner.class)
@@ -58,6 +63,22 @@ public class KVCacheTest {
         };
     }
 
+    @Test
+    public void testValuesAreComparedByModifyIndex() {
+        final KeyValueClient kvClient = KeyValueClientFactory.create(null, new ClientConfig(),
+                new ClientEventCallback() {
+        }, new Consul.NetworkTimeoutConfig.Builder().withReadTimeout(10500).build());
+        try (final KVCache kvCache = KVCache.newCache(kvClient, "", 10)) {
+            final Value value = createValue("a");
+            final Value sameIndex = ImmutableValue.builder()
+                    .from(value)
+                    .decodedValue(ByteBuffer.wrap("something".getBytes(StandardCharsets.UTF_8)))
+                    .build();
+            Assert.assertFalse(kvCache.isModified(value, sameIndex));
+            Assert.assertTrue(kvCache.isModified(value, ImmutableValue.copyOf(value).withModifyIndex(1234567891)));
+        }
+    }
+
     private Value createValue(final String key) {
         return ImmutableValue.builder()
                 .createIndex(1234567890)
@@ -65,7 +86,6 @@ public class KVCacheTest {
                 .lockIndex(1234567890)
                 .flags(1234567890)
                 .key(key)
-                .value(Optional.empty())
                 .build();
     }
 
@@ -118,4 +138,140 @@ public class KVCacheTest {
         }
 
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testTrieFollowsTheChanges() throws Exception {
+        try (FakeConsulServer server = new FakeConsulServer().start()) {
+            final Consul consul = Consul.builder().withHostAndPort(server.getHostAndPort()).withPing(false).build();
+            final KeyValueClient kvClient = consul.keyValueClient();
+            kvClient.putValue("root/app/a", "1");
+            kvClient.putValue("root/app/b", "2");
+            kvClient.putValue("root/db", "3");
+
+            try (final KVCache kvCache = KVCache.newCache(kvClient, "root/", 5)) {
+                final List<KeyTrie<Value>> updates = Collections.synchronizedList(new ArrayList<>());
+                kvCache.addListener(values -> updates.add(kvCache.getTrie()));
+                kvCache.start();
+                Assert.assertTrue(kvCache.awaitInitialized(10, TimeUnit.SECONDS));
+
+                final KeyTrie<Value> initial = kvCache.getTrie();
+                Assert.assertEquals(Arrays.asList("app/", "db"), initial.children(""));
+                Assert.assertEquals(2, initial.subtree("app/").size());
+
+                kvClient.deleteKey("root/app/a");
+                kvClient.putValue("root/app/c", "4");
+                final StopWatch stopWatch = StopWatch.createStarted();
+                while (stopWatch.getTime() < 5000 && !updates.get(updates.size() - 1).get("app/c").isPresent()) {
+                    Thread.sleep(10);
+                }
+
+                final KeyTrie<Value> updated = kvCache.getTrie();
+                Assert.assertEquals(Arrays.asList("app/b", "app/c"), new ArrayList<>(updated.subtree("app/").toMap().keySet()));
+                Assert.assertEquals(kvCache.getMap().keySet(), updated.toMap().keySet());
+                Assert.assertEquals(Arrays.asList("app/a", "app/b"), new ArrayList<>(initial.subtree("app/").toMap().keySet()));
+                Assert.assertSame(updated, updates.get(updates.size() - 1));
+            } finally {
+                consul.destroy();
+            }
+        }
+    }
+
+    @Test
+    public void testPrefixListenersAreOnlyNotifiedOfTheirChanges() throws Exception {
+        try (FakeConsulServer server = new FakeConsulServer().start()) {
+            final Consul consul = Consul.builder().withHostAndPort(server.getHostAndPort()).withPing(false).build();
+            final KeyValueClient kvClient = consul.keyValueClient();
+            kvClient.putValue("config/app/a", "1");
+            kvClient.putValue("config/db/a", "2");
+
+            try (final KVCache kvCache = KVCache.newCache(kvClient, "config/", 5)) {
+                final List<Map<String, Value>> app = Collections.synchronizedList(new ArrayList<>());
+                final List<Map<String, Value>> db = Collections.synchronizedList(new ArrayList<>());
+                final List<Map<String, Value>> all = Collections.synchronizedList(new ArrayList<>());
+                kvCache.addListener("app/", app::add);
+                kvCache.addListener("db/", db::add);
+                kvCache.addListener(all::add);
+                kvCache.start();
+                Assert.assertTrue(kvCache.awaitInitialized(10, TimeUnit.SECONDS));
+                Assert.assertEquals(Collections.singleton("app/a"), app.get(0).keySet());
+                Assert.assertEquals(Collections.singleton("db/a"), db.get(0).keySet());
+
+                kvClient.putValue("config/app/b", "3");
+                kvClient.putValue("config/app/a", "4");
+                final StopWatch stopWatch = StopWatch.createStarted();
+                while (stopWatch.getTime() < 5000 && !"4".equals(lastValue(app, "app/a"))) {
+                    Thread.sleep(10);
+                }
+                Assert.assertEquals("4", lastValue(app, "app/a"));
+                Assert.assertEquals(new HashSet<>(Arrays.asList("app/a", "app/b")), app.get(app.size() - 1).keySet());
+                Assert.assertEquals(1, db.size());
+                Assert.assertTrue(all.size() > 1);
+
+                final List<Map<String, Value>> late = new ArrayList<>();
+                kvCache.addListener("app/b", late::add);
+                Assert.assertEquals(Collections.singleton("app/b"), late.get(0).keySet());
+
+            } finally {
+                consul.destroy();
+            }
+        }
+    }
+
+    @Test
+    public void testBindingDecodesOncePerModifyIndex() throws Exception {
+        try (FakeConsulServer server = new FakeConsulServer().start()) {
+            final Consul consul = Consul.builder().withHostAndPort(server.getHostAndPort()).withPing(false).build();
+            final KeyValueClient kvClient = consul.keyValueClient();
+            kvClient.putValue("config/port", "8080");
+
+            try (final KVCache kvCache = KVCache.newCache(kvClient, "config/", 5)) {
+                final AtomicInteger decodings = new AtomicInteger();
+                final KVBinding.Decoder<Integer> decoder = (bytes, type) -> {
+                    decodings.incrementAndGet();
+                    return Integer.valueOf(new String(bytes, StandardCharsets.UTF_8));
+                };
+                final KVBinding<Integer> early = kvCache.bind("port", Integer.class, decoder);
+                kvCache.start();
+                Assert.assertTrue(kvCache.awaitInitialized(10, TimeUnit.SECONDS));
+
+                final Integer port = early.get().get();
+                Assert.assertEquals(Integer.valueOf(8080), port);
+                Assert.assertSame(port, early.get().get());
+                Assert.assertEquals(1, decodings.get());
+
+                final KVBinding<Integer> missing = kvCache.bind("missing", Integer.class, decoder);
+                Assert.assertFalse(missing.get().isPresent());
+
+                kvClient.putValue("config/port", "not a number");
+                kvClient.putValue("config/missing", "9090");
+                final StopWatch stopWatch = StopWatch.createStarted();
+                while (stopWatch.getTime() < 5000 && missing.getModifyIndex() == 0) {
+                    Thread.sleep(10);
+                }
+                Assert.assertEquals(Optional.of(9090), missing.get());
+                for (int i = 0; i < 2; i++) {
+                    try {
+                        early.get();
+                        Assert.fail();
+                    } catch (ConsulException expected) {
+                    }
+                }
+                Assert.assertEquals(3, decodings.get());
+
+                Assert.assertTrue(kvCache.unbind(missing));
+                kvClient.deleteKey("config/missing");
+                Assert.assertFalse(kvCache.unbind(missing));
+            } finally {
+                consul.destroy();
+            }
+        }
+    }
+
+    private static String lastValue(List<Map<String, Value>> notifications, String key) {
+        if (notifications.isEmpty()) {
+            return null;
+        }
+        Value value = notifications.get(notifications.size() - 1).get(key);
+        return value == null ? null : value.getValueAsString().orElse(null);
+    }
+}
@@ -0,0 +1,102 @@
+package com.orbitz.consul.cache;
+
+import com.google.common.collect.ImmutableMap;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class KeyTrieTest {
+
+    private static final KeyTrie<Integer> TRIE = KeyTrie.<Integer>empty().withChanges(ImmutableMap.<String, Integer>builder()
+            .put("app/feature/a", 1)
+            .put("app/feature/b/c", 2)
+            .put("app/feature", 3)
+            .put("app/features", 4)
+            .put("app-b", 5)
+            .put("app/x", 6)
+            .put("db/", 7)
+            .build(), Collections.emptyList());
+
+    @Test
+    public void shouldIterateInPathOrder() {
+        assertEquals(Arrays.asList("app/feature", "app/feature/a", "app/feature/b/c", "app/features", "app/x",
+                "app-b", "db/"), keys(TRIE));
+        assertEquals(7, TRIE.size());
+        assertEquals(Optional.of(2), TRIE.get("app/feature/b/c"));
+        assertFalse(TRIE.get("app/feature/b").isPresent());
+        assertFalse(TRIE.get("db").isPresent());
+    }
+
+    @Test
+    public void shouldViewTheKeysUnderAPrefix() {
+        KeyTrie<Integer> feature = TRIE.subtree("app/feature/");
+        assertEquals(Arrays.asList("app/feature/a", "app/feature/b/c"), keys(feature));
+        assertEquals(2, feature.size());
+        assertEquals(Optional.of(1), feature.get("app/feature/a"));
+        assertFalse(feature.get("app/x").isPresent());
+
+        assertEquals(Arrays.asList("app/feature", "app/feature/a", "app/feature/b/c", "app/features"),
+                keys(TRIE.subtree("app/fea")));
+        assertEquals(Arrays.asList("app/feature/b/c"), keys(feature.subtree("app/feature/b")));
+        assertEquals(Arrays.asList("app-b"), keys(TRIE.subtree("app-")));
+        assertTrue(TRIE.subtree("nothing/").isEmpty());
+        assertSame(TRIE, TRIE.subtree(""));
+    }
+
+    @Test
+    public void shouldListTheChildrenLikeASeparator() {
+        assertEquals(Arrays.asList("app/", "app-b", "db/"), TRIE.children(""));
+        assertEquals(Arrays.asList("app/feature", "app/feature/", "app/features", "app/x"), TRIE.children("app/"));
+        assertEquals(Arrays.asList("app/feature/a", "app/feature/b/"), TRIE.children("app/feature/"));
+        assertEquals(Arrays.asList("db/"), TRIE.children("db/"));
+        assertTrue(TRIE.children("nothing/").isEmpty());
+    }
+
+    @Test
+    public void shouldIterateOverARange() {
+        assertEquals(Arrays.asList("app/feature/b/c", "app/features", "app/x"),
+                keys(TRIE.range("app/feature/b", "app-b")));
+        assertEquals(Arrays.asList("app/x", "app-b", "db/"), keys(TRIE.range("app/x", null)));
+        assertEquals(Arrays.asList("app/feature", "app/feature/a"), keys(TRIE.range(null, "app/feature/b")));
+        assertEquals(Arrays.asList("app/feature/b/c"),
+                keys(TRIE.subtree("app/feature/").range("app/feature/aa", "app/x")));
+    }
+
+    @Test
+    public void shouldShareTheUnchangedNodes() {
+        KeyTrie<Integer> updated = TRIE.withChanges(ImmutableMap.of("app/feature/a", 10, "new/key", 11),
+                Arrays.asList("app/x", "db/", "missing"));
+
+        assertEquals(Arrays.asList("app/feature", "app/feature/a", "app/feature/b/c", "app/features", "app-b",
+                "new/key"), keys(updated));
+        assertEquals(Optional.of(10), updated.get("app/feature/a"));
+        assertEquals(Optional.of(1), TRIE.get("app/feature/a"));
+        assertEquals(7, TRIE.size());
+        assertEquals(TRIE.subtree("app/feature/b").toMap(), updated.subtree("app/feature/b").toMap());
+
+        KeyTrie<Integer> emptied = updated;
+        for (Map.Entry<String, Integer> entry : updated) {
+            emptied = emptied.without(entry.getKey());
+        }
+        assertTrue(emptied.isEmpty());
+        assertTrue(emptied.children("").isEmpty());
+    }
+
+    private static List<String> keys(Iterable<Map.Entry<String, Integer>> entries) {
+        List<String> keys = new ArrayList<>();
+        for (Map.Entry<String, Integer> entry : entries) {
+            keys.add(entry.getKey());
+        }
+        return keys;
+    }
+}
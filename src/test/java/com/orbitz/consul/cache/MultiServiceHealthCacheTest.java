@@ -0,0 +1,233 @@
+package com.orbitz.consul.cache;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.orbitz.consul.Consul;
+import com.orbitz.consul.config.CacheConfig;
+import com.orbitz.consul.config.ClientConfig;
+import com.orbitz.consul.fake.FakeConsulServer;
+import com.orbitz.consul.model.agent.ImmutableCheck;
+import com.orbitz.consul.model.catalog.ImmutableCatalogDeregistration;
+import com.orbitz.consul.model.catalog.ImmutableCatalogRegistration;
+import com.orbitz.consul.model.health.ImmutableService;
+import com.orbitz.consul.model.health.ServiceHealth;
+import com.orbitz.consul.option.QueryOptions;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class MultiServiceHealthCacheTest {
+
+    private FakeConsulServer server;
+    private Consul consul;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new FakeConsulServer().start();
+        consul = Consul.builder()
+                .withHostAndPort(server.getHostAndPort())
+                .withPing(false)
+                .build();
+    }
+
+    @After
+    public void tearDown() {
+        consul.destroy();
+        server.close();
+    }
+
+    @Test
+    public void shouldAggregateTheFilteredServices() throws Exception {
+        register("node1", "web-1", "web", 8080, "v1");
+        register("node1", "db-1", "db", 5432, "primary");
+        register("node1", "cache-1", "cache", 6379);
+
+        try (MultiServiceHealthCache cache = newCache(ImmutableSet.of("web", "db")::contains, Duration.ZERO)) {
+            cache.start();
+            assertTrue(cache.awaitInitialized(10, TimeUnit.SECONDS));
+
+            assertEquals(ImmutableSet.of("web", "db"), cache.getMap().keySet());
+            assertEquals(8080, port(cache.getInstances("web")));
+            assertEquals(5432, port(cache.getInstances("db")));
+            assertTrue(cache.getInstances("cache").isEmpty());
+        }
+    }
+
+    @Test
+    public void shouldReadOnlyTheServicesWhoseTagsChanged() throws Exception {
+        register("node1", "web-1", "web", 8080, "v1");
+
+        try (MultiServiceHealthCache cache = newCache(service -> true, Duration.ZERO)) {
+            List<Map<String, ImmutableMap<ServiceHealthKey, ServiceHealth>>> notifications =
+                    new CopyOnWriteArrayList<>();
+            cache.addListener(notifications::add);
+            cache.start();
+            assertTrue(cache.awaitInitialized(10, TimeUnit.SECONDS));
+            assertEquals(1, notifications.size());
+
+            // same tags: the catalog of services does not change
+            register("node2", "web-2", "web", 8080, "v1");
+            register("node1", "db-1", "db", 5432);
+            await(cache, view -> view.containsKey("db"));
+            assertEquals(1, cache.getInstances("web").size());
+
+            register("node3", "web-3", "web", 8080, "v2");
+            await(cache, view -> view.get("web").size() == 3);
+            assertEquals(3, notifications.size());
+
+            assertTrue(cache.refresh("web"));
+            assertFalse(cache.refresh("unknown"));
+        }
+    }
+
+    @Test
+    public void shouldRemoveDeregisteredServices() throws Exception {
+        register("node1", "web-1", "web", 8080);
+        register("node1", "db-1", "db", 5432);
+
+        try (MultiServiceHealthCache cache = newCache(service -> true, Duration.ZERO)) {
+            cache.start();
+            assertTrue(cache.awaitInitialized(10, TimeUnit.SECONDS));
+
+            consul.catalogClient().deregister(ImmutableCatalogDeregistration.builder()
+                    .node("node1")
+                    .serviceId("db-1")
+                    .build());
+            await(cache, view -> !view.containsKey("db"));
+            assertEquals(ImmutableSet.of("web"), cache.getMap().keySet());
+        }
+    }
+
+    @Test
+    public void shouldResyncAllServices() throws Exception {
+        register("node1", "web-1", "web", 8080);
+
+        try (MultiServiceHealthCache cache = newCache(service -> true, Duration.ofMillis(100))) {
+            cache.start();
+            assertTrue(cache.awaitInitialized(10, TimeUnit.SECONDS));
+
+            register("node2", "web-2", "web", 8080);
+            await(cache, view -> view.get("web").size() == 2);
+        }
+    }
+
+    @Test
+    public void shouldReadTheServicesWhoseChecksChanged() throws Exception {
+        register("node1", "web-1", "web", 8080, "v1");
+        register("node2", "web-2", "web", 8080, "v1");
+
+        try (MultiServiceHealthCache cache = MultiServiceHealthCache.newCache(consul.catalogClient(),
+                consul.healthClient(), true, service -> true, 5, QueryOptions.BLANK, Duration.ZERO, true)) {
+            cache.start();
+            assertTrue(cache.awaitInitialized(10, TimeUnit.SECONDS));
+            assertEquals(2, cache.getInstances("web").size());
+
+            // a critical check leaves the tags of the service, hence the catalog, unchanged
+            registerCriticalCheck("node2", "web-2");
+            await(cache, view -> view.get("web").size() == 1);
+            assertEquals("web-1", cache.getInstances("web").keySet().iterator().next().getServiceId());
+        }
+    }
+
+    @Test
+    public void shouldResyncTheDefaultCacheEveryWatchDuration() throws Exception {
+        register("node1", "web-1", "web", 8080, "v1");
+        register("node2", "web-2", "web", 8080, "v1");
+        Consul client = Consul.builder()
+                .withHostAndPort(server.getHostAndPort())
+                .withClientConfiguration(new ClientConfig(CacheConfig.builder()
+                        .withWatchDuration(Duration.ofSeconds(1))
+                        .build()))
+                .withPing(false)
+                .build();
+
+        try (MultiServiceHealthCache cache = MultiServiceHealthCache.newCache(client.catalogClient(),
+                client.healthClient(), service -> true)) {
+            cache.start();
+            assertTrue(cache.awaitInitialized(10, TimeUnit.SECONDS));
+            assertEquals(2, cache.getInstances("web").size());
+
+            registerCriticalCheck("node2", "web-2");
+            await(cache, view -> view.get("web").size() == 1);
+            assertEquals("web-1", cache.getInstances("web").keySet().iterator().next().getServiceId());
+        } finally {
+            client.destroy();
+        }
+    }
+
+    @Test
+    public void shouldOnlyBlockOnTheCatalogUnlessTheChecksAreWatched() throws Exception {
+        register("node1", "web-1", "web", 8080);
+
+        try (MultiServiceHealthCache cache = newCache(service -> true, Duration.ZERO)) {
+            cache.start();
+            assertTrue(cache.awaitInitialized(10, TimeUnit.SECONDS));
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+            while (server.getBlockedQueries() < 1) {
+                assertTrue("Timed out waiting for the blocking query", System.nanoTime() < deadline);
+                Thread.sleep(10);
+            }
+            Thread.sleep(200);
+            assertEquals(1, server.getBlockedQueries());
+        }
+    }
+
+    private MultiServiceHealthCache newCache(Predicate<String> serviceFilter, Duration resyncInterval) {
+        return MultiServiceHealthCache.newCache(consul.catalogClient(), consul.healthClient(), false,
+                serviceFilter, 5, QueryOptions.BLANK, resyncInterval);
+    }
+
+    private void register(String node, String id, String service, int port, String... tags) {
+        consul.catalogClient().register(ImmutableCatalogRegistration.builder()
+                .node(node)
+                .address("10.0.0.1")
+                .service(ImmutableService.builder()
+                        .id(id)
+                        .service(service)
+                        .addTags(tags)
+                        .address("10.0.0.1")
+                        .port(port)
+                        .build())
+                .build());
+    }
+
+    private void registerCriticalCheck(String node, String serviceId) {
+        // the TTL check is critical until it is passed
+        consul.catalogClient().register(ImmutableCatalogRegistration.builder()
+                .node(node)
+                .address("10.0.0.1")
+                .check(ImmutableCheck.builder()
+                        .id(serviceId + "-ttl")
+                        .name(serviceId + "-ttl")
+                        .ttl("10s")
+                        .serviceId(serviceId)
+                        .build())
+                .build());
+    }
+
+    private static int port(ImmutableMap<ServiceHealthKey, ServiceHealth> instances) {
+        assertEquals(1, instances.size());
+        return instances.keySet().iterator().next().getPort();
+    }
+
+    private static void await(MultiServiceHealthCache cache,
+                              Predicate<Map<String, ImmutableMap<ServiceHealthKey, ServiceHealth>>> condition)
+            throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!condition.test(cache.getMap())) {
+            assertTrue("Timed out, services: " + cache.getMap(), System.nanoTime() < deadline);
+            Thread.sleep(10);
+        }
+    }
+}
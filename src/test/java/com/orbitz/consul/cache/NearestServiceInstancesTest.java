@@ -0,0 +1,129 @@
+package com.orbitz.consul.cache;
+
+import com.google.common.collect.ImmutableMap;
+import com.orbitz.consul.model.coordinate.Coordinate;
+import com.orbitz.consul.model.coordinate.ImmutableCoord;
+import com.orbitz.consul.model.coordinate.ImmutableCoordinate;
+import com.orbitz.consul.model.health.ImmutableNode;
+import com.orbitz.consul.model.health.ImmutableService;
+import com.orbitz.consul.model.health.ImmutableServiceHealth;
+import com.orbitz.consul.model.health.ServiceHealth;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class NearestServiceInstancesTest {
+
+    @Test
+    public void shouldEstimateRttLikeConsul() {
+        assertEquals(5.3, NearestServiceInstances.estimateRttSeconds(
+                new double[]{0, 0}, 0.1, 0.5, new double[]{3, 4}, 0.2, -0.5), 1e-9);
+        // adjustments making the estimation negative are ignored
+        assertEquals(0.3, NearestServiceInstances.estimateRttSeconds(
+                new double[]{0, 0}, 0.1, -1, new double[]{0, 0}, 0.2, -1), 1e-9);
+        assertTrue(Double.isNaN(NearestServiceInstances.estimateRttSeconds(
+                new double[]{0, 0}, 0, 0, new double[]{0}, 0, 0)));
+    }
+
+    @Test
+    public void shouldOrderInstancesByRttFromLocalNode() {
+        NearestServiceInstances view = new NearestServiceInstances(null, null, "local", 2);
+        view.onCoordinates(added(coordinate("local", 0, 0), coordinate("far", 0.3, 0),
+                coordinate("near", 0.01, 0), coordinate("middle", 0.1, 0)));
+        view.onInstances(added(instance("far"), instance("near"), instance("middle"), instance("unknown")));
+
+        assertEquals(Arrays.asList("near", "middle"), nodes(view.getNearest()));
+        assertEquals(Optional.of(Duration.ofMillis(300)), view.getEstimatedRtt("far"));
+        assertEquals(Optional.empty(), view.getEstimatedRtt("unknown"));
+    }
+
+    @Test
+    public void shouldPutInstancesWithoutCoordinateLast() {
+        NearestServiceInstances view = new NearestServiceInstances(null, null, "local", 5);
+        view.onInstances(added(instance("b"), instance("a")));
+        assertEquals(Arrays.asList("a", "b"), nodes(view.getNearest()));
+
+        view.onCoordinates(added(coordinate("local", 0, 0), coordinate("b", 0.01, 0)));
+        assertEquals(Arrays.asList("b", "a"), nodes(view.getNearest()));
+    }
+
+    @Test
+    public void shouldUpdateIncrementally() {
+        NearestServiceInstances view = new NearestServiceInstances(null, null, "local", 1);
+        List<List<ServiceHealth>> notifications = new ArrayList<>();
+        view.addListener(notifications::add);
+        view.onCoordinates(added(coordinate("local", 0, 0), coordinate("a", 0.01, 0), coordinate("b", 0.1, 0)));
+        view.onInstances(added(instance("a"), instance("b")));
+        assertEquals(Arrays.asList("a"), nodes(view.getNearest()));
+
+        // node a moved away
+        view.onCoordinates(new CacheDelta<>(ImmutableMap.of(), ImmutableMap.of(),
+                ImmutableMap.of("a", coordinate("a", 0.5, 0))));
+        assertEquals(Arrays.asList("b"), nodes(view.getNearest()));
+
+        // the local node moved next to a
+        view.onCoordinates(new CacheDelta<>(ImmutableMap.of(), ImmutableMap.of(),
+                ImmutableMap.of("local", coordinate("local", 0.49, 0))));
+        assertEquals(Arrays.asList("a"), nodes(view.getNearest()));
+
+        ServiceHealth a = instance("a");
+        view.onInstances(new CacheDelta<>(ImmutableMap.of(), ImmutableMap.of(ServiceHealthKey.fromServiceHealth(a), a),
+                ImmutableMap.of()));
+        assertEquals(Arrays.asList("b"), nodes(view.getNearest()));
+
+        assertEquals(Arrays.asList(Arrays.asList("a"), Arrays.asList("b"), Arrays.asList("a"), Arrays.asList("b")),
+                notifications.stream().map(NearestServiceInstancesTest::nodes).collect(Collectors.toList()));
+    }
+
+    private static List<String> nodes(List<ServiceHealth> instances) {
+        return instances.stream().map(instance -> instance.getNode().getNode()).collect(Collectors.toList());
+    }
+
+    private static CacheDelta<String, Coordinate> added(Coordinate... coordinates) {
+        ImmutableMap.Builder<String, Coordinate> added = ImmutableMap.builder();
+        for (Coordinate coordinate : coordinates) {
+            added.put(coordinate.getNode(), coordinate);
+        }
+        return new CacheDelta<>(added.build(), ImmutableMap.of(), ImmutableMap.of());
+    }
+
+    private static CacheDelta<ServiceHealthKey, ServiceHealth> added(ServiceHealth... instances) {
+        ImmutableMap.Builder<ServiceHealthKey, ServiceHealth> added = ImmutableMap.builder();
+        for (ServiceHealth instance : instances) {
+            added.put(ServiceHealthKey.fromServiceHealth(instance), instance);
+        }
+        return new CacheDelta<>(added.build(), ImmutableMap.of(), ImmutableMap.of());
+    }
+
+    private static Coordinate coordinate(String node, double x, double y) {
+        return ImmutableCoordinate.builder()
+                .node(node)
+                .coord(ImmutableCoord.builder()
+                        .vec(new double[]{x, y})
+                        .height(0)
+                        .adjustment(0)
+                        .error(0.2)
+                        .build())
+                .build();
+    }
+
+    private static ServiceHealth instance(String node) {
+        return ImmutableServiceHealth.builder()
+                .node(ImmutableNode.builder().node(node).address(node + ".example.com").build())
+                .service(ImmutableService.builder()
+                        .id("web")
+                        .service("web")
+                        .address("")
+                        .port(8080)
+                        .build())
+                .build();
+    }
+}
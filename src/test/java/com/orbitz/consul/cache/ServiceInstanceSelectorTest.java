@@ -0,0 +1,168 @@
+package com.orbitz.consul.cache;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.net.HostAndPort;
+import com.orbitz.consul.cache.ServiceInstanceSelector.Instance;
+import com.orbitz.consul.cache.ServiceInstanceSelector.Strategy;
+import com.orbitz.consul.model.catalog.ImmutableServiceWeights;
+import com.orbitz.consul.model.health.ImmutableHealthCheck;
+import com.orbitz.consul.model.health.ImmutableNode;
+import com.orbitz.consul.model.health.ImmutableService;
+import com.orbitz.consul.model.health.ImmutableServiceHealth;
+import com.orbitz.consul.model.health.ServiceHealth;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class ServiceInstanceSelectorTest {
+
+    @Test
+    public void shouldWeighInstancesByTheirChecks() {
+        assertEquals(1, ServiceInstanceSelector.weight(instance("a", 1, null, null)));
+        assertEquals(5, ServiceInstanceSelector.weight(instance("a", 1, "passing", weights(5, 2))));
+        assertEquals(2, ServiceInstanceSelector.weight(instance("a", 1, "warning", weights(5, 2))));
+        assertEquals(0, ServiceInstanceSelector.weight(instance("a", 1, "critical", weights(5, 2))));
+    }
+
+    @Test
+    public void shouldReturnNullWithoutSelectableInstance() {
+        ServiceInstanceSelector selector = new ServiceInstanceSelector(Strategy.ROUND_ROBIN);
+        assertNull(selector.select());
+
+        selector.notify(instances(instance("a", 1, "critical", null), instance("b", 2, "warning", weights(1, 0))));
+        assertEquals(0, selector.getInstanceCount());
+        assertNull(selector.select());
+    }
+
+    @Test
+    public void shouldSelectInProportionToWeightsInRoundRobin() {
+        ServiceInstanceSelector selector = new ServiceInstanceSelector(Strategy.ROUND_ROBIN);
+        selector.notify(instances(instance("a", 1, "passing", weights(1, 1)),
+                instance("b", 2, "passing", weights(3, 1))));
+
+        Map<Integer, Integer> counts = new HashMap<>();
+        int previousPort = -1;
+        int consecutive = 0;
+        for (int i = 0; i < 400; i++) {
+            Instance instance = selector.select();
+            instance.release();
+            int port = instance.getHostAndPort().getPort();
+            counts.merge(port, 1, Integer::sum);
+            consecutive = port == previousPort ? consecutive + 1 : 0;
+            assertTrue("Selections of an instance should be spread over a round", consecutive < 3);
+            previousPort = port;
+        }
+        assertEquals(100, (int) counts.get(1));
+        assertEquals(300, (int) counts.get(2));
+    }
+
+    @Test
+    public void shouldSelectInProportionToWeightsAtRandom() {
+        ServiceInstanceSelector selector = new ServiceInstanceSelector(Strategy.WEIGHTED_RANDOM);
+        selector.notify(instances(instance("a", 1, "passing", weights(1, 1)),
+                instance("b", 2, "warning", weights(10, 4))));
+
+        int first = 0;
+        for (int i = 0; i < 10000; i++) {
+            Instance instance = selector.select();
+            instance.release();
+            first += instance.getHostAndPort().getPort() == 1 ? 1 : 0;
+        }
+        assertTrue("Selected " + first + " times", first > 1500 && first < 2500);
+    }
+
+    @Test
+    public void shouldSelectLeastOutstandingInstance() {
+        ServiceInstanceSelector selector = new ServiceInstanceSelector(Strategy.LEAST_OUTSTANDING);
+        selector.notify(instances(instance("a", 1, "passing", null), instance("b", 2, "passing", null)));
+
+        Instance first = selector.select();
+        Instance second = selector.select();
+        assertNotEquals(first.getHostAndPort(), second.getHostAndPort());
+        Instance third = selector.select();
+        first.release();
+        third.release();
+        assertSame(first, selector.select());
+        assertEquals(1, first.getOutstanding());
+        assertEquals(1, second.getOutstanding());
+    }
+
+    @Test
+    public void shouldAvoidLoadedInstanceWithPowerOfTwoChoices() {
+        ServiceInstanceSelector selector = new ServiceInstanceSelector(Strategy.POWER_OF_TWO_CHOICES);
+        selector.notify(instances(instance("a", 1, "passing", null), instance("b", 2, "passing", null),
+                instance("c", 3, "passing", null)));
+
+        Instance loaded = null;
+        for (int i = 0; i < 10; i++) {
+            loaded = selector.select();
+            if (loaded.getHostAndPort().getPort() != 1) {
+                loaded.release();
+            }
+        }
+        // with three instances, two distinct draws always include a less loaded one than port 1
+        for (int i = 0; i < 1000; i++) {
+            Instance instance = selector.select();
+            instance.release();
+            assertNotEquals(1, instance.getHostAndPort().getPort());
+        }
+    }
+
+    @Test
+    public void shouldKeepOutstandingRequestsAcrossUpdates() {
+        ServiceInstanceSelector selector = new ServiceInstanceSelector(Strategy.LEAST_OUTSTANDING);
+        selector.notify(instances(instance("a", 1, "passing", null)));
+        Instance before = selector.select();
+
+        selector.notify(instances(instance("a", 1, "passing", weights(2, 1)), instance("b", 2, "passing", null)));
+        assertEquals(2, selector.getInstanceCount());
+        Instance after = selector.select();
+        assertEquals(HostAndPort.fromParts("10.0.0.2", 2), after.getHostAndPort());
+
+        before.release();
+        after.release();
+        assertEquals(0, before.getOutstanding());
+    }
+
+    private static Map<ServiceHealthKey, ServiceHealth> instances(ServiceHealth... instances) {
+        ImmutableMap.Builder<ServiceHealthKey, ServiceHealth> map = ImmutableMap.builder();
+        for (ServiceHealth instance : instances) {
+            map.put(ServiceHealthKey.fromServiceHealth(instance), instance);
+        }
+        return map.build();
+    }
+
+    private static ImmutableServiceWeights weights(int passing, int warning) {
+        return ImmutableServiceWeights.builder().passing(passing).warning(warning).build();
+    }
+
+    private static ServiceHealth instance(String id, int port, String status, ImmutableServiceWeights weights) {
+        ImmutableService.Builder service = ImmutableService.builder()
+                .id(id)
+                .service("web")
+                .address("")
+                .port(port);
+        if (weights != null) {
+            service.weights(weights);
+        }
+        ImmutableServiceHealth.Builder health = ImmutableServiceHealth.builder()
+                .node(ImmutableNode.builder().node("node-" + port).address("10.0.0." + port).build())
+                .service(service.build());
+        if (status != null) {
+            health.addChecks(ImmutableHealthCheck.builder()
+                    .node("node-" + port)
+                    .checkId("service:" + id)
+                    .name("check")
+                    .status(status)
+                    .build());
+        }
+        return health.build();
+    }
+}
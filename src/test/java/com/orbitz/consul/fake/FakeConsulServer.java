@@ -0,0 +1,436 @@
+package com.orbitz.consul.fake;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.google.common.net.HostAndPort;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.orbitz.consul.util.Jackson;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * An in-process Consul agent serving the KV store (including transactions), the catalog, the health of the
+ * services, the sessions, the events, the prepared queries and the LAN members over HTTP, without Docker.
+ * <p>
+ * Blocking queries behave as in Consul: a request with an {@code index} waits until the index of its result
+ * is greater, or until its {@code wait} (5 minutes by default, 10 at most) plus a random jitter of up to
+ * 1/16th of it elapsed. Every response carries the {@code X-Consul-Index}, {@code X-Consul-Knownleader} and
+ * {@code X-Consul-Lastcontact} headers.
+ * <pre>
+ * try (FakeConsulServer server = new FakeConsulServer().start()) {
+ *     Consul consul = Consul.builder().withHostAndPort(server.getHostAndPort()).withPing(false).build();
+ *     ...
+ * }
+ * </pre>
+ */
+public class FakeConsulServer implements AutoCloseable {
+
+    private static final String API_PREFIX = "/v1/";
+    private static final long DEFAULT_WAIT_NANOS = TimeUnit.MINUTES.toNanos(5);
+    private static final long MAX_WAIT_NANOS = TimeUnit.MINUTES.toNanos(10);
+    private static final JsonNodeFactory JSON = JsonNodeFactory.instance;
+    // the default txn_max_req_len of Consul, and its maximum number of operations in a transaction
+    private static final int MAX_TXN_BODY_BYTES = 512 * 1024;
+    private static final int MAX_TXN_OPERATIONS = 64;
+
+    static {
+        // the server flushes the headers before the body: without TCP_NODELAY, the body of a blocking query
+        // waits for the delayed ACK of the headers, i.e. 40ms on Linux
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+    }
+
+    private final FakeConsulState state = new FakeConsulState();
+    private final LongAdder requests = new LongAdder();
+    private final AtomicInteger blockedQueries = new AtomicInteger();
+    private volatile long responseDelayMillis;
+    private HttpServer server;
+    private ExecutorService executor;
+
+    /**
+     * Starts listening on an ephemeral port of the loopback interface.
+     */
+    public FakeConsulServer start() throws IOException {
+        return start(Executors.newCachedThreadPool(new ThreadFactoryBuilder()
+                .setNameFormat("fake-consul-%d")
+                .setDaemon(true)
+                .build()));
+    }
+
+    /**
+     * Starts listening on an ephemeral port of the loopback interface, handling the requests with the given
+     * executor, which is shut down with the server. A blocking query holds a thread of the executor while it waits.
+     */
+    public FakeConsulServer start(ExecutorService executor) throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 4096);
+        this.executor = executor;
+        server.setExecutor(executor);
+        server.createContext("/", this::handle);
+        server.start();
+        return this;
+    }
+
+    public HostAndPort getHostAndPort() {
+        InetSocketAddress address = server.getAddress();
+        return HostAndPort.fromParts(address.getHostString(), address.getPort());
+    }
+
+    /**
+     * Gets the number of requests which were received.
+     */
+    public long getRequestCount() {
+        return requests.sum();
+    }
+
+    /**
+     * Gets the number of blocking queries currently waiting for a change.
+     */
+    public int getBlockedQueries() {
+        return blockedQueries.get();
+    }
+
+    /**
+     * Delays every response by the given time, e.g. to simulate a slow agent.
+     */
+    public void setResponseDelay(long delay, TimeUnit unit) {
+        responseDelayMillis = unit.toMillis(delay);
+    }
+
+    @Override
+    public void close() {
+        if (server != null) {
+            server.stop(0);
+            executor.shutdownNow();
+        }
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        // counted before the response is sent, so that the client sees the count of its requests
+        requests.increment();
+        try {
+            long delay = responseDelayMillis;
+            if (delay > 0) {
+                TimeUnit.MILLISECONDS.sleep(delay);
+            }
+            String path = exchange.getRequestURI().getRawPath();
+            Map<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+            if (!path.startsWith(API_PREFIX)) {
+                reply(exchange, 404, null, 0);
+                return;
+            }
+            route(exchange, exchange.getRequestMethod(), path.substring(API_PREFIX.length()), query);
+        } catch (RuntimeException e) {
+            byte[] message = String.valueOf(e.getMessage()).getBytes(StandardCharsets.UTF_8);
+            reply(exchange, 500, message, 0);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void route(HttpExchange exchange, String method, String path, Map<String, String> query)
+            throws IOException {
+        if (path.startsWith("kv/")) {
+            kv(exchange, method, decode(path.substring("kv/".length())), query);
+        } else if (path.equals("txn") && method.equals("PUT")) {
+            byte[] body = readBody(exchange);
+            JsonNode operations = body.length == 0 ? null : Jackson.MAPPER.readTree(body);
+            if (body.length > MAX_TXN_BODY_BYTES) {
+                reply(exchange, 413, String.format("Request body(%d bytes) too large, max size: %d bytes",
+                        body.length, MAX_TXN_BODY_BYTES).getBytes(StandardCharsets.UTF_8), 0);
+            } else if (operations != null && operations.size() > MAX_TXN_OPERATIONS) {
+                reply(exchange, 413, String.format("Transaction contains too many operations (%d > %d)",
+                        operations.size(), MAX_TXN_OPERATIONS).getBytes(StandardCharsets.UTF_8), 0);
+            } else {
+                try {
+                    reply(exchange, 200, state.transaction(operations));
+                } catch (FakeConsulState.TxnException e) {
+                    reply(exchange, 409, e.getMessage().getBytes(StandardCharsets.UTF_8), 0);
+                }
+            }
+        } else if (path.startsWith("health/service/")) {
+            String service = decode(path.substring("health/service/".length()));
+            List<String> tags = tags(exchange);
+            boolean passing = query.containsKey("passing");
+            reply(exchange, block(query, "service", service, false,
+                    () -> state.getServiceHealth(service, tags, passing)));
+        } else if (path.startsWith("health/state/")) {
+            String status = decode(path.substring("health/state/".length()));
+            reply(exchange, block(query, "catalog", null, false, () -> state.getChecksByState(status)));
+        } else if (path.startsWith("catalog/")) {
+            catalog(exchange, method, path.substring("catalog/".length()), query);
+        } else if (path.startsWith("session/")) {
+            session(exchange, path.substring("session/".length()), query);
+        } else if (path.startsWith("event/fire/") && method.equals("PUT")) {
+            ObjectNode event = state.fireEvent(decode(path.substring("event/fire/".length())), readBody(exchange),
+                    query.getOrDefault("node", ""), query.getOrDefault("service", ""),
+                    query.getOrDefault("tag", ""));
+            reply(exchange, 200, event);
+        } else if (path.equals("event/list")) {
+            String name = query.get("name");
+            reply(exchange, block(query, "event", null, false, () -> state.listEvents(name)));
+        } else if (path.equals("query") && method.equals("POST")) {
+            JsonNode preparedQuery = readJson(exchange);
+            String id = state.createQuery(preparedQuery != null ? preparedQuery : JSON.objectNode());
+            reply(exchange, 200, JSON.objectNode().put("ID", id));
+        } else if (path.equals("query")) {
+            reply(exchange, block(query, "query", null, false, state::getQueries));
+        } else if (path.startsWith("query/")) {
+            String id = decode(path.substring("query/".length()));
+            reply(exchange, block(query, "query", null, false, () -> state.getQuery(id)));
+        } else if (path.equals("agent/members")) {
+            reply(exchange, block(query, "catalog", null, false, state::getMembers));
+        } else if ((path.startsWith("agent/join/") || path.startsWith("agent/force-leave/")) && method.equals("PUT")) {
+            // there is no gossip pool: the joins and leaves are acknowledged
+            reply(exchange, 200, null, 0);
+        } else if (path.startsWith("agent/service/maintenance/") && method.equals("PUT")) {
+            // the agent holds no services, only the catalog does
+            String serviceId = decode(path.substring("agent/service/maintenance/".length()));
+            reply(exchange, 404, ("Unknown service ID \"" + serviceId + "\"").getBytes(StandardCharsets.UTF_8), 0);
+        } else if (path.equals("status/leader")) {
+            reply(exchange, 200, JSON.textNode("127.0.0.1:8300"));
+        } else if (path.equals("status/peers")) {
+            reply(exchange, 200, JSON.arrayNode().add("127.0.0.1:8300"));
+        } else {
+            reply(exchange, 404, null, 0);
+        }
+    }
+
+    private void kv(HttpExchange exchange, String method, String key, Map<String, String> query) throws IOException {
+        switch (method) {
+            case "GET":
+                if (query.containsKey("keys")) {
+                    String separator = query.get("separator");
+                    reply(exchange, block(query, "kv", key, true, () -> state.getKeys(key, separator)));
+                } else if (query.containsKey("raw")) {
+                    FakeConsulState.KvEntry entry = state.getRawValue(key);
+                    reply(exchange, entry != null ? 200 : 404, entry != null ? entry.value : null,
+                            entry != null ? entry.modifyIndex : 1);
+                } else {
+                    boolean recurse = query.containsKey("recurse");
+                    reply(exchange, block(query, "kv", key, recurse, () -> state.getValues(key, recurse)));
+                }
+                break;
+            case "PUT":
+                boolean stored = state.putValue(key, readBody(exchange), parseLong(query.get("flags"), 0L),
+                        parseLong(query.get("cas"), null), query.get("acquire"), query.get("release"));
+                reply(exchange, 200, JSON.booleanNode(stored));
+                break;
+            case "DELETE":
+                boolean deleted = state.deleteValues(key, query.containsKey("recurse"),
+                        parseLong(query.get("cas"), null));
+                reply(exchange, 200, JSON.booleanNode(deleted));
+                break;
+            default:
+                reply(exchange, 405, null, 0);
+        }
+    }
+
+    private void catalog(HttpExchange exchange, String method, String path, Map<String, String> query)
+            throws IOException {
+        if (path.equals("register") && method.equals("PUT")) {
+            state.register(readJson(exchange));
+            reply(exchange, 200, JSON.booleanNode(true));
+        } else if (path.equals("deregister") && method.equals("PUT")) {
+            state.deregister(readJson(exchange));
+            reply(exchange, 200, JSON.booleanNode(true));
+        } else if (path.equals("datacenters")) {
+            reply(exchange, 200, JSON.arrayNode().add(FakeConsulState.DATACENTER));
+        } else if (path.equals("nodes")) {
+            reply(exchange, block(query, "catalog", null, false, state::getNodes));
+        } else if (path.equals("services")) {
+            reply(exchange, block(query, "catalog", null, false, state::getCatalogServices));
+        } else if (path.startsWith("service/")) {
+            String service = decode(path.substring("service/".length()));
+            List<String> tags = tags(exchange);
+            reply(exchange, block(query, "service", service, false, () -> state.getCatalogService(service, tags)));
+        } else if (path.startsWith("node/")) {
+            String node = decode(path.substring("node/".length()));
+            reply(exchange, block(query, "catalog", null, false, () -> state.getNode(node)));
+        } else {
+            reply(exchange, 404, null, 0);
+        }
+    }
+
+    private void session(HttpExchange exchange, String path, Map<String, String> query) throws IOException {
+        if (path.equals("create")) {
+            JsonNode session = readJson(exchange);
+            String id = state.createSession(session != null ? session : JSON.objectNode());
+            reply(exchange, 200, JSON.objectNode().put("ID", id));
+        } else if (path.startsWith("destroy/")) {
+            reply(exchange, 200, JSON.booleanNode(state.destroySession(decode(path.substring("destroy/".length())))));
+        } else if (path.startsWith("renew/")) {
+            reply(exchange, state.renewSession(decode(path.substring("renew/".length()))));
+        } else if (path.startsWith("info/")) {
+            String id = decode(path.substring("info/".length()));
+            reply(exchange, block(query, "session", null, false, () -> state.getSessionInfo(id)));
+        } else if (path.equals("list")) {
+            reply(exchange, block(query, "session", null, false, () -> state.listSessions(null)));
+        } else if (path.startsWith("node/")) {
+            String node = decode(path.substring("node/".length()));
+            reply(exchange, block(query, "session", null, false, () -> state.listSessions(node)));
+        } else {
+            reply(exchange, 404, null, 0);
+        }
+    }
+
+    /**
+     * Runs a read, waiting for its index to exceed the {@code index} of the query, if any.
+     *
+     * @param topic the topic of the read, see {@link FakeConsulState#watch(String, String, boolean)}
+     * @param key the key read, or null for the whole topic
+     * @param prefix whether the keys starting with the key are read
+     */
+    private FakeConsulState.Result block(Map<String, String> query, String topic, String key, boolean prefix,
+                                         Supplier<FakeConsulState.Result> read) {
+        long minIndex = parseLong(query.get("index"), 0L);
+        if (minIndex <= 0) {
+            return read.get();
+        }
+        long wait = query.containsKey("wait")
+                ? Math.min(FakeConsulState.parseDurationNanos(query.get("wait")), MAX_WAIT_NANOS)
+                : DEFAULT_WAIT_NANOS;
+        wait += ThreadLocalRandom.current().nextLong(wait / 16 + 1);
+        long deadline = System.nanoTime() + wait;
+
+        blockedQueries.incrementAndGet();
+        try {
+            while (true) {
+                FakeConsulState.Result result;
+                FakeConsulState.Watch watch;
+                long remaining;
+                synchronized (state) {
+                    state.expireSessions();
+                    result = read.get();
+                    remaining = deadline - System.nanoTime();
+                    if (result.index > minIndex || remaining <= 0) {
+                        return result;
+                    }
+                    watch = state.watch(topic, key, prefix);
+                }
+                try {
+                    watch.await(remaining);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return result;
+                } finally {
+                    state.unwatch(watch);
+                }
+            }
+        } finally {
+            blockedQueries.decrementAndGet();
+        }
+    }
+
+    private void reply(HttpExchange exchange, FakeConsulState.Result result) throws IOException {
+        if (result.body == null) {
+            reply(exchange, 404, null, result.index);
+        } else {
+            reply(exchange, 200, Jackson.MAPPER.writeValueAsBytes(result.body), result.index);
+        }
+    }
+
+    private void reply(HttpExchange exchange, int code, JsonNode body) throws IOException {
+        reply(exchange, code, Jackson.MAPPER.writeValueAsBytes(body), 0);
+    }
+
+    private void reply(HttpExchange exchange, int code, byte[] body, long index) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.getResponseHeaders().set("X-Consul-Index", Long.toString(Math.max(1, index)));
+        exchange.getResponseHeaders().set("X-Consul-Knownleader", "true");
+        exchange.getResponseHeaders().set("X-Consul-Lastcontact", "0");
+        if (body == null || body.length == 0) {
+            exchange.sendResponseHeaders(code, -1);
+            return;
+        }
+        exchange.sendResponseHeaders(code, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    private static byte[] readBody(HttpExchange exchange) throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        try (InputStream in = exchange.getRequestBody()) {
+            int read;
+            while ((read = in.read(buffer)) > 0) {
+                body.write(buffer, 0, read);
+            }
+        }
+        return body.toByteArray();
+    }
+
+    private static JsonNode readJson(HttpExchange exchange) throws IOException {
+        byte[] body = readBody(exchange);
+        return body.length == 0 ? null : Jackson.MAPPER.readTree(body);
+    }
+
+    /**
+     * Gets the {@code tag} parameters, which can be repeated.
+     */
+    private static List<String> tags(HttpExchange exchange) {
+        List<String> tags = new ArrayList<>();
+        String rawQuery = exchange.getRequestURI().getRawQuery();
+        if (rawQuery != null) {
+            for (String parameter : rawQuery.split("&")) {
+                if (parameter.startsWith("tag=")) {
+                    tags.add(decode(parameter.substring("tag=".length())));
+                }
+            }
+        }
+        return tags;
+    }
+
+    private static Map<String, String> parseQuery(String rawQuery) {
+        Map<String, String> query = new HashMap<>();
+        if (rawQuery == null || rawQuery.isEmpty()) {
+            return query;
+        }
+        for (String parameter : rawQuery.split("&")) {
+            int equals = parameter.indexOf('=');
+            if (equals < 0) {
+                query.put(decode(parameter), "");
+            } else {
+                query.put(decode(parameter.substring(0, equals)), decode(parameter.substring(equals + 1)));
+            }
+        }
+        return query;
+    }
+
+    private static String decode(String value) {
+        try {
+            return URLDecoder.decode(value.replace("+", "%2B"), StandardCharsets.UTF_8.name());
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static Long parseLong(String value, Long defaultValue) {
+        return value == null || value.isEmpty() ? defaultValue : Long.valueOf(value);
+    }
+}
@@ -0,0 +1,201 @@
+package com.orbitz.consul.fake;
+
+import com.orbitz.consul.Consul;
+import com.orbitz.consul.KeyValueClient;
+import com.orbitz.consul.model.ConsulResponse;
+import com.orbitz.consul.model.catalog.ImmutableCatalogDeregistration;
+import com.orbitz.consul.model.catalog.ImmutableCatalogRegistration;
+import com.orbitz.consul.model.event.Event;
+import com.orbitz.consul.model.health.ImmutableService;
+import com.orbitz.consul.model.health.ServiceHealth;
+import com.orbitz.consul.model.kv.ImmutableOperation;
+import com.orbitz.consul.model.kv.Operation;
+import com.orbitz.consul.model.kv.TxResponse;
+import com.orbitz.consul.model.kv.Value;
+import com.orbitz.consul.model.kv.Verb;
+import com.orbitz.consul.model.session.ImmutableSession;
+import com.orbitz.consul.model.session.SessionInfo;
+import com.orbitz.consul.option.ImmutablePutOptions;
+import com.orbitz.consul.option.QueryOptions;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class FakeConsulServerTest {
+
+    private FakeConsulServer server;
+    private Consul consul;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new FakeConsulServer().start();
+        consul = Consul.builder()
+                .withHostAndPort(server.getHostAndPort())
+                .withPing(false)
+                .build();
+    }
+
+    @After
+    public void tearDown() {
+        consul.destroy();
+        server.close();
+    }
+
+    @Test
+    public void shouldPutGetAndDeleteValues() {
+        KeyValueClient kv = consul.keyValueClient();
+        assertTrue(kv.putValue("app/a", "1"));
+        assertTrue(kv.putValue("app/b/c", "2"));
+        assertTrue(kv.putValue("other", "3"));
+
+        assertEquals(Optional.of("1"), kv.getValueAsString("app/a"));
+        assertEquals(Arrays.asList("app/a", "app/b/c"),
+                kv.getValues("app/").stream().map(Value::getKey).collect(Collectors.toList()));
+        assertEquals(Arrays.asList("app/a", "app/b/"), kv.getKeys("app/", "/"));
+
+        kv.deleteKeys("app/");
+        assertFalse(kv.getValue("app/a").isPresent());
+        assertEquals(Optional.of("3"), kv.getValueAsString("other"));
+    }
+
+    @Test
+    public void shouldCheckAndSet() {
+        KeyValueClient kv = consul.keyValueClient();
+        assertTrue(kv.putValue("key", "1", 0, ImmutablePutOptions.builder().cas(0L).build()));
+        assertFalse(kv.putValue("key", "2", 0, ImmutablePutOptions.builder().cas(0L).build()));
+
+        long modifyIndex = kv.getValue("key").get().getModifyIndex();
+        assertTrue(kv.putValue("key", "3", 0, ImmutablePutOptions.builder().cas(modifyIndex).build()));
+        assertFalse(kv.putValue("key", "4", 0, ImmutablePutOptions.builder().cas(modifyIndex).build()));
+        assertEquals(Optional.of("3"), kv.getValueAsString("key"));
+    }
+
+    @Test
+    public void shouldApplyTransactionsAtomically() {
+        KeyValueClient kv = consul.keyValueClient();
+        kv.putValue("tx/a", "1");
+        long modifyIndex = kv.getValue("tx/a").get().getModifyIndex();
+
+        ConsulResponse<TxResponse> response = kv.performTransaction(
+                operation(Verb.CHECK_INDEX, "tx/a").index(BigInteger.valueOf(modifyIndex)).build(),
+                operation(Verb.SET, "tx/b").value("2").build(),
+                operation(Verb.GET_TREE, "tx/").build());
+        assertEquals(3, response.getResponse().results().size());
+        assertEquals(Optional.of("2"), kv.getValueAsString("tx/b"));
+
+        try {
+            kv.performTransaction(
+                    operation(Verb.SET, "tx/c").value("3").build(),
+                    operation(Verb.CHECK_INDEX, "tx/a").index(BigInteger.valueOf(modifyIndex + 100)).build());
+        } catch (RuntimeException expected) {
+            // Consul answers 409 when an operation fails
+        }
+        assertFalse(kv.getValue("tx/c").isPresent());
+    }
+
+    @Test
+    public void shouldReturnBlockingQueryOnChange() throws Exception {
+        KeyValueClient kv = consul.keyValueClient();
+        kv.putValue("watched/a", "1");
+        kv.putValue("unrelated", "1");
+        BigInteger index = kv.getConsulResponseWithValues("watched/").getIndex();
+
+        CompletableFuture<ConsulResponse<List<Value>>> blocked = CompletableFuture.supplyAsync(() ->
+                kv.getConsulResponseWithValues("watched/", QueryOptions.blockSeconds(30, index).build()));
+        TimeUnit.MILLISECONDS.sleep(200);
+        kv.putValue("unrelated", "2");
+        TimeUnit.MILLISECONDS.sleep(200);
+        assertFalse("A write outside of the prefix must not wake the query", blocked.isDone());
+
+        kv.putValue("watched/b", "2");
+        ConsulResponse<List<Value>> response = blocked.get(5, TimeUnit.SECONDS);
+        assertEquals(2, response.getResponse().size());
+        assertTrue(response.getIndex().compareTo(index) > 0);
+    }
+
+    @Test
+    public void shouldTimeOutBlockingQueryWithSameIndex() {
+        KeyValueClient kv = consul.keyValueClient();
+        kv.putValue("idle", "1");
+        BigInteger index = kv.getConsulResponseWithValues("idle").getIndex();
+
+        long start = System.nanoTime();
+        ConsulResponse<List<Value>> response =
+                kv.getConsulResponseWithValues("idle", QueryOptions.blockSeconds(1, index).build());
+        long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        assertEquals(index, response.getIndex());
+        assertTrue("Waited " + elapsed + "ms", elapsed >= 1000 && elapsed < 1000 + 1000 / 16 + 500);
+    }
+
+    @Test
+    public void shouldServeCatalogAndHealth() {
+        consul.catalogClient().register(ImmutableCatalogRegistration.builder()
+                .node("node1")
+                .address("10.0.0.1")
+                .service(ImmutableService.builder()
+                        .id("web-1")
+                        .service("web")
+                        .addTags("v1")
+                        .address("10.0.0.1")
+                        .port(8080)
+                        .build())
+                .build());
+
+        List<ServiceHealth> healthy = consul.healthClient().getHealthyServiceInstances("web").getResponse();
+        assertEquals(1, healthy.size());
+        assertEquals("web-1", healthy.get(0).getService().getId());
+        assertEquals("node1", healthy.get(0).getNode().getNode());
+        assertEquals(Arrays.asList("v1"), consul.catalogClient().getServices().getResponse().get("web"));
+        assertEquals(8080, consul.catalogClient().getService("web").getResponse().get(0).getServicePort());
+
+        consul.catalogClient().deregister(ImmutableCatalogDeregistration.builder()
+                .node("node1")
+                .serviceId("web-1")
+                .build());
+        assertTrue(consul.healthClient().getAllServiceInstances("web").getResponse().isEmpty());
+    }
+
+    @Test
+    public void shouldReleaseLocksOfDestroyedSession() {
+        String session = consul.sessionClient()
+                .createSession(ImmutableSession.builder().name("lock").build())
+                .getId();
+        KeyValueClient kv = consul.keyValueClient();
+        assertTrue(kv.acquireLock("lock", session));
+        assertEquals(Optional.of(session), kv.getSession("lock"));
+
+        Optional<SessionInfo> info = consul.sessionClient().getSessionInfo(session);
+        assertEquals("lock", info.get().getName().get());
+
+        consul.sessionClient().destroySession(session);
+        assertFalse(kv.getSession("lock").isPresent());
+        assertTrue(consul.sessionClient().listSessions().isEmpty());
+    }
+
+    @Test
+    public void shouldFireAndListEvents() {
+        Event fired = consul.eventClient().fireEvent("deploy", "v2");
+        assertEquals(Optional.of("v2"), fired.getPayload());
+        consul.eventClient().fireEvent("other");
+
+        List<Event> events = consul.eventClient().listEvents("deploy").getEvents();
+        assertEquals(1, events.size());
+        assertEquals(fired.getId(), events.get(0).getId());
+    }
+
+    private static ImmutableOperation.Builder operation(Verb verb, String key) {
+        return Operation.builder(verb).key(key);
+    }
+}
@@ -0,0 +1,998 @@
+package com.orbitz.consul.fake;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The data of a {@link FakeConsulServer}: KV store, catalog, sessions, events and prepared queries, with a
+ * Raft-like index.
+ * <p>
+ * Every write takes a new index, stored as the ModifyIndex of what it changed. Reads return the highest index
+ * of what they read, so that blocking queries only return when their result may have changed. A blocking query
+ * reads and registers a {@link Watch} while synchronized on this object, then waits on its watch.
+ */
+class FakeConsulState {
+
+    static final String DATACENTER = "dc1";
+    private static final int MAX_EVENTS = 256;
+    private static final JsonNodeFactory JSON = JsonNodeFactory.instance;
+
+    private long index = 1;
+
+    private TreeMap<String, KvEntry> kv = new TreeMap<>();
+    private TreeMap<String, Long> kvTombstones = new TreeMap<>();
+    private long kvIndex = 1;
+
+    private final TreeMap<String, NodeEntry> nodes = new TreeMap<>();
+    private final TreeMap<String, ServiceEntry> services = new TreeMap<>();
+    private final TreeMap<String, CheckEntry> checks = new TreeMap<>();
+    private final Map<String, Long> serviceIndexes = new HashMap<>();
+    private long catalogIndex = 1;
+
+    private final Map<String, SessionEntry> sessions = new TreeMap<>();
+    private long sessionIndex = 1;
+
+    private final Deque<ObjectNode> events = new ArrayDeque<>();
+    private long eventIndex = 1;
+    private long eventLTime;
+
+    private final Map<String, ObjectNode> queries = new TreeMap<>();
+    private long queryIndex = 1;
+
+    /**
+     * The outcome of a read: the JSON body, or null for a 404, and the index of the data.
+     */
+    static final class Result {
+        final JsonNode body;
+        final long index;
+
+        Result(JsonNode body, long index) {
+            this.body = body;
+            this.index = Math.max(1, index);
+        }
+    }
+
+    /**
+     * An operation of a transaction which cannot be applied.
+     */
+    static final class TxnException extends Exception {
+        TxnException(String message) {
+            super(message, null, false, false);
+        }
+    }
+
+    /**
+     * A blocking query waiting for a change under a topic: the KV store, the catalog, a service, the sessions or
+     * the events. Only the watches of what changed are woken up, as with the watch sets of Consul, so that a write
+     * does not wake thousands of blocking queries which would find their result unchanged.
+     */
+    static final class Watch {
+        private final String topic;
+        private final String key;
+        private final boolean prefix;
+        // a latch rather than a monitor, so that a query waiting on a virtual thread does not pin it
+        private final CountDownLatch fired = new CountDownLatch(1);
+
+        private Watch(String topic, String key, boolean prefix) {
+            this.topic = topic;
+            this.key = key;
+            this.prefix = prefix;
+        }
+
+        /**
+         * Waits until something watched changed.
+         *
+         * @return false if the timeout elapsed first
+         */
+        boolean await(long timeoutNanos) throws InterruptedException {
+            return fired.await(timeoutNanos, TimeUnit.NANOSECONDS);
+        }
+
+        private void fire() {
+            fired.countDown();
+        }
+
+        private boolean matches(String changedTopic, String changedKey) {
+            if (!topic.equals(changedTopic)) {
+                return false;
+            }
+            if (key == null || changedKey == null) {
+                return true;
+            }
+            return prefix ? changedKey.startsWith(key) : changedKey.equals(key);
+        }
+    }
+
+    private final Set<Watch> watches = new LinkedHashSet<>();
+
+    /**
+     * Registers a watch, to be called with the result of a read so that no change is missed in between.
+     *
+     * @param topic the topic of the read
+     * @param key the key read, or null for the whole topic
+     * @param prefix whether the keys starting with the key are read
+     */
+    synchronized Watch watch(String topic, String key, boolean prefix) {
+        Watch watch = new Watch(topic, key, prefix);
+        watches.add(watch);
+        return watch;
+    }
+
+    synchronized void unwatch(Watch watch) {
+        watches.remove(watch);
+    }
+
+    private void changed(String topic, String key) {
+        Iterator<Watch> iterator = watches.iterator();
+        while (iterator.hasNext()) {
+            Watch watch = iterator.next();
+            if (watch.matches(topic, key)) {
+                iterator.remove();
+                watch.fire();
+            }
+        }
+    }
+
+    private void changed(String topic) {
+        changed(topic, (String) null);
+    }
+
+    private void changed(String topic, Collection<String> keys) {
+        for (String key : keys) {
+            changed(topic, key);
+        }
+    }
+
+    private long nextIndex() {
+        return ++index;
+    }
+
+    // ---------------------------------------------------------------- KV
+
+    static final class KvEntry {
+        final String key;
+        final byte[] value;
+        final long flags;
+        final long createIndex;
+        final long modifyIndex;
+        final long lockIndex;
+        final String session;
+
+        KvEntry(String key, byte[] value, long flags, long createIndex, long modifyIndex, long lockIndex, String session) {
+            this.key = key;
+            this.value = value;
+            this.flags = flags;
+            this.createIndex = createIndex;
+            this.modifyIndex = modifyIndex;
+            this.lockIndex = lockIndex;
+            this.session = session;
+        }
+
+        ObjectNode toJson(boolean withValue) {
+            ObjectNode json = JSON.objectNode()
+                    .put("LockIndex", lockIndex)
+                    .put("Key", key)
+                    .put("Flags", flags);
+            if (withValue && value != null) {
+                json.put("Value", Base64.getEncoder().encodeToString(value));
+            } else {
+                json.putNull("Value");
+            }
+            if (session != null) {
+                json.put("Session", session);
+            }
+            return json.put("CreateIndex", createIndex).put("ModifyIndex", modifyIndex);
+        }
+    }
+
+    synchronized Result getValues(String key, boolean recurse) {
+        Collection<KvEntry> entries = recurse ? prefix(kv, key).values() : single(kv.get(key));
+        if (entries.isEmpty()) {
+            return new Result(null, kvReadIndex(key, recurse, entries));
+        }
+        ArrayNode body = JSON.arrayNode();
+        entries.forEach(entry -> body.add(entry.toJson(true)));
+        return new Result(body, kvReadIndex(key, recurse, entries));
+    }
+
+    synchronized KvEntry getRawValue(String key) {
+        return kv.get(key);
+    }
+
+    synchronized Result getKeys(String prefix, String separator) {
+        Collection<KvEntry> entries = prefix(kv, prefix).values();
+        Set<String> keys = new LinkedHashSet<>();
+        for (KvEntry entry : entries) {
+            int end = separator == null || separator.isEmpty()
+                    ? -1 : entry.key.indexOf(separator, prefix.length());
+            keys.add(end < 0 ? entry.key : entry.key.substring(0, end + separator.length()));
+        }
+        ArrayNode body = JSON.arrayNode();
+        keys.forEach(body::add);
+        return new Result(keys.isEmpty() ? null : body, kvReadIndex(prefix, true, entries));
+    }
+
+    private long kvReadIndex(String key, boolean recurse, Collection<KvEntry> entries) {
+        long max = 0;
+        for (KvEntry entry : entries) {
+            max = Math.max(max, entry.modifyIndex);
+        }
+        Collection<Long> tombstones = recurse ? prefix(kvTombstones, key).values() : single(kvTombstones.get(key));
+        for (Long tombstone : tombstones) {
+            max = Math.max(max, tombstone);
+        }
+        return max > 0 ? max : kvIndex;
+    }
+
+    synchronized boolean putValue(String key, byte[] value, long flags, Long cas, String acquire, String release) {
+        expireSessions();
+        try {
+            long writeIndex = index + 1;
+            List<String> changedKeys = new ArrayList<>(1);
+            if (acquire != null) {
+                applyKv(kv, kvTombstones, writeIndex, changedKeys, "lock", key, value, flags, null, acquire);
+            } else if (release != null) {
+                applyKv(kv, kvTombstones, writeIndex, changedKeys, "unlock", key, value, flags, null, release);
+            } else if (cas != null) {
+                applyKv(kv, kvTombstones, writeIndex, changedKeys, "cas", key, value, flags, cas, null);
+            } else {
+                applyKv(kv, kvTombstones, writeIndex, changedKeys, "set", key, value, flags, null, null);
+            }
+            kvChanged(writeIndex, changedKeys);
+            return true;
+        } catch (TxnException e) {
+            return false;
+        }
+    }
+
+    synchronized boolean deleteValues(String key, boolean recurse, Long cas) {
+        try {
+            long writeIndex = index + 1;
+            List<String> changedKeys = new ArrayList<>(1);
+            if (recurse) {
+                applyKv(kv, kvTombstones, writeIndex, changedKeys, "delete-tree", key, null, 0, null, null);
+            } else if (cas != null) {
+                applyKv(kv, kvTombstones, writeIndex, changedKeys, "delete-cas", key, null, 0, cas, null);
+            } else {
+                applyKv(kv, kvTombstones, writeIndex, changedKeys, "delete", key, null, 0, null, null);
+            }
+            kvChanged(writeIndex, changedKeys);
+            return true;
+        } catch (TxnException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Applies the KV operations of a transaction atomically: either all of them or none.
+     *
+     * @return the body of the response
+     * @throws TxnException with the {@code Errors} of the response as message when an operation fails
+     */
+    synchronized ObjectNode transaction(JsonNode operations) throws TxnException {
+        expireSessions();
+        TreeMap<String, KvEntry> workingKv = new TreeMap<>(kv);
+        TreeMap<String, Long> workingTombstones = new TreeMap<>(kvTombstones);
+        long writeIndex = index + 1;
+        ArrayNode results = JSON.arrayNode();
+        List<String> changedKeys = new ArrayList<>();
+        int opIndex = 0;
+        for (JsonNode operation : operations) {
+            // Consul matches the field names regardless of their case, the client sends "kv"
+            JsonNode op = operation.has("KV") ? operation.get("KV") : operation.path("kv");
+            String verb = op.path("Verb").asText();
+            String key = op.path("Key").asText("");
+            byte[] value = op.hasNonNull("Value") ? Base64.getDecoder().decode(op.get("Value").asText()) : null;
+            Long casIndex = op.hasNonNull("Index") ? op.get("Index").asLong() : null;
+            String session = op.hasNonNull("Session") ? op.get("Session").asText() : null;
+            try {
+                List<KvEntry> entries = applyKv(workingKv, workingTombstones, writeIndex, changedKeys, verb, key,
+                        value, op.path("Flags").asLong(0), casIndex, session);
+                boolean read = verb.equals("get") || verb.equals("get-tree");
+                for (KvEntry entry : entries) {
+                    results.add(JSON.objectNode().set("KV", entry.toJson(read)));
+                }
+            } catch (TxnException e) {
+                ArrayNode errors = JSON.arrayNode();
+                errors.add(JSON.objectNode().put("OpIndex", opIndex).put("What", e.getMessage()));
+                throw new TxnException(JSON.objectNode().putNull("Results").set("Errors", errors).toString());
+            }
+            opIndex++;
+        }
+        if (!changedKeys.isEmpty()) {
+            kv = workingKv;
+            kvTombstones = workingTombstones;
+            kvChanged(writeIndex, changedKeys);
+        }
+        ObjectNode body = JSON.objectNode();
+        body.set("Results", results);
+        body.putNull("Errors");
+        return body;
+    }
+
+    private void kvChanged(long writeIndex, Collection<String> changedKeys) {
+        index = writeIndex;
+        kvIndex = writeIndex;
+        changed("kv", changedKeys);
+    }
+
+    private List<KvEntry> applyKv(TreeMap<String, KvEntry> store, TreeMap<String, Long> tombstones, long writeIndex,
+                                  Collection<String> changedKeys, String verb, String key, byte[] value, long flags,
+                                  Long casIndex, String session) throws TxnException {
+        KvEntry existing = store.get(key);
+        List<KvEntry> results = new ArrayList<>();
+        switch (verb) {
+            case "cas":
+                if (casIndex == null) {
+                    throw new TxnException("missing index for cas");
+                }
+                if (casIndex == 0 ? existing != null : existing == null || existing.modifyIndex != casIndex) {
+                    throw new TxnException("failed to set key \"" + key + "\", index is stale");
+                }
+                // fall through
+            case "set":
+                results.add(put(store, tombstones, new KvEntry(key, value, flags,
+                        existing != null ? existing.createIndex : writeIndex, writeIndex,
+                        existing != null ? existing.lockIndex : 0, existing != null ? existing.session : null)));
+                changedKeys.add(key);
+                break;
+            case "lock":
+                SessionEntry lockSession = session != null ? sessions.get(session) : null;
+                if (lockSession == null) {
+                    throw new TxnException("invalid session \"" + session + "\"");
+                }
+                if (existing != null && existing.session != null && !existing.session.equals(session)) {
+                    throw new TxnException("failed to lock key \"" + key + "\", lock is already held");
+                }
+                boolean held = existing != null && session.equals(existing.session);
+                results.add(put(store, tombstones, new KvEntry(key, value, flags,
+                        existing != null ? existing.createIndex : writeIndex, writeIndex,
+                        existing == null ? 1 : held ? existing.lockIndex : existing.lockIndex + 1, session)));
+                changedKeys.add(key);
+                break;
+            case "unlock":
+                if (existing == null || existing.session == null || !existing.session.equals(session)) {
+                    throw new TxnException("failed to unlock key \"" + key + "\", lock isn't held");
+                }
+                results.add(put(store, tombstones, new KvEntry(key, value, flags, existing.createIndex, writeIndex,
+                        existing.lockIndex, null)));
+                changedKeys.add(key);
+                break;
+            case "get":
+                if (existing == null) {
+                    throw new TxnException("key \"" + key + "\" doesn't exist");
+                }
+                results.add(existing);
+                break;
+            case "get-tree":
+                results.addAll(prefix(store, key).values());
+                break;
+            case "check-index":
+                if (existing == null || casIndex == null || existing.modifyIndex != casIndex) {
+                    throw new TxnException("current index for key \"" + key + "\" does not match");
+                }
+                break;
+            case "check-session":
+                if (existing == null || existing.session == null || !existing.session.equals(session)) {
+                    throw new TxnException("key \"" + key + "\" is not locked by session \"" + session + "\"");
+                }
+                break;
+            case "delete-cas":
+                if (existing == null || casIndex == null || existing.modifyIndex != casIndex) {
+                    throw new TxnException("failed to delete key \"" + key + "\", index is stale");
+                }
+                // fall through
+            case "delete":
+                if (store.remove(key) != null) {
+                    tombstones.put(key, writeIndex);
+                    changedKeys.add(key);
+                }
+                break;
+            case "delete-tree":
+                NavigableMap<String, KvEntry> tree = prefix(store, key);
+                for (String deleted : tree.keySet()) {
+                    tombstones.put(deleted, writeIndex);
+                    changedKeys.add(deleted);
+                }
+                tree.clear();
+                break;
+            default:
+                throw new TxnException("unknown KV verb \"" + verb + "\"");
+        }
+        return results;
+    }
+
+    private static KvEntry put(TreeMap<String, KvEntry> store, TreeMap<String, Long> tombstones, KvEntry entry) {
+        store.put(entry.key, entry);
+        tombstones.remove(entry.key);
+        return entry;
+    }
+
+    private static <V> NavigableMap<String, V> prefix(TreeMap<String, V> map, String prefix) {
+        return map.subMap(prefix, true, prefix + Character.MAX_VALUE, false);
+    }
+
+    private static <V> Collection<V> single(V value) {
+        List<V> list = new ArrayList<>(1);
+        if (value != null) {
+            list.add(value);
+        }
+        return list;
+    }
+
+    // ---------------------------------------------------------------- catalog and health
+
+    private static final class NodeEntry {
+        final String name;
+        final String id;
+        final String address;
+        final JsonNode taggedAddresses;
+        final JsonNode meta;
+        final long createIndex;
+        final long modifyIndex;
+
+        NodeEntry(String name, String id, String address, JsonNode taggedAddresses, JsonNode meta,
+                  long createIndex, long modifyIndex) {
+            this.name = name;
+            this.id = id;
+            this.address = address;
+            this.taggedAddresses = taggedAddresses;
+            this.meta = meta;
+            this.createIndex = createIndex;
+            this.modifyIndex = modifyIndex;
+        }
+
+        ObjectNode toJson() {
+            ObjectNode json = JSON.objectNode();
+            if (id != null) {
+                json.put("ID", id);
+            }
+            json.put("Node", name)
+                    .put("Address", address)
+                    .put("Datacenter", DATACENTER);
+            if (taggedAddresses != null) {
+                json.set("TaggedAddresses", taggedAddresses);
+            }
+            json.set("Meta", meta);
+            return json.put("CreateIndex", createIndex).put("ModifyIndex", modifyIndex);
+        }
+    }
+
+    private static final class ServiceEntry {
+        final String node;
+        final ObjectNode service;
+        final long createIndex;
+        final long modifyIndex;
+
+        ServiceEntry(String node, ObjectNode service, long createIndex, long modifyIndex) {
+            this.node = node;
+            this.service = service;
+            this.createIndex = createIndex;
+            this.modifyIndex = modifyIndex;
+        }
+
+        String id() {
+            return service.get("ID").asText();
+        }
+
+        String name() {
+            return service.get("Service").asText();
+        }
+
+        boolean hasTags(List<String> tags) {
+            for (String tag : tags) {
+                boolean found = false;
+                for (JsonNode serviceTag : service.get("Tags")) {
+                    found |= serviceTag.asText().equals(tag);
+                }
+                if (!found) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        ObjectNode toJson() {
+            return service.deepCopy().put("CreateIndex", createIndex).put("ModifyIndex", modifyIndex);
+        }
+    }
+
+    private static final class CheckEntry {
+        final String node;
+        final ObjectNode check;
+
+        CheckEntry(String node, ObjectNode check) {
+            this.node = node;
+            this.check = check;
+        }
+
+        String serviceId() {
+            return check.path("ServiceID").asText("");
+        }
+    }
+
+    synchronized void register(JsonNode registration) {
+        long writeIndex = nextIndex();
+        String nodeName = registration.path("Node").asText();
+        NodeEntry previous = nodes.get(nodeName);
+        nodes.put(nodeName, new NodeEntry(nodeName,
+                registration.hasNonNull("ID") ? registration.get("ID").asText() : null,
+                registration.path("Address").asText(),
+                registration.get("TaggedAddresses"),
+                registration.hasNonNull("NodeMeta") ? registration.get("NodeMeta") : JSON.objectNode(),
+                previous != null ? previous.createIndex : writeIndex, writeIndex));
+        Set<String> changedServices = servicesOf(nodeName);
+
+        JsonNode service = registration.get("Service");
+        if (service != null && !service.isNull()) {
+            ObjectNode normalized = JSON.objectNode();
+            String name = service.path("Service").asText();
+            normalized.put("ID", service.hasNonNull("ID") ? service.get("ID").asText() : name);
+            normalized.put("Service", name);
+            normalized.set("Tags", service.hasNonNull("Tags") ? service.get("Tags") : JSON.arrayNode());
+            normalized.put("Address", service.path("Address").asText(""));
+            normalized.set("Meta", service.hasNonNull("Meta") ? service.get("Meta") : JSON.objectNode());
+            normalized.put("Port", service.path("Port").asInt(0));
+            if (service.hasNonNull("Weights")) {
+                normalized.set("Weights", service.get("Weights"));
+            }
+            normalized.put("EnableTagOverride", service.path("EnableTagOverride").asBoolean(false));
+            String key = nodeName + "/" + normalized.get("ID").asText();
+            ServiceEntry existing = services.get(key);
+            services.put(key, new ServiceEntry(nodeName, normalized,
+                    existing != null ? existing.createIndex : writeIndex, writeIndex));
+            changedServices.add(name);
+        }
+
+        List<JsonNode> registeredChecks = new ArrayList<>();
+        if (registration.hasNonNull("Check")) {
+            registeredChecks.add(registration.get("Check"));
+        }
+        registration.path("Checks").forEach(registeredChecks::add);
+        for (JsonNode check : registeredChecks) {
+            ObjectNode normalized = JSON.objectNode();
+            String checkId = check.hasNonNull("CheckID") ? check.get("CheckID").asText() : check.path("ID").asText();
+            String serviceId = check.path("ServiceID").asText("");
+            ServiceEntry checkedService = services.get(nodeName + "/" + serviceId);
+            normalized.put("Node", nodeName)
+                    .put("CheckID", checkId)
+                    .put("Name", check.path("Name").asText(checkId))
+                    .put("Status", check.path("Status").asText("critical"))
+                    .put("Notes", check.path("Notes").asText(""))
+                    .put("Output", check.path("Output").asText(""))
+                    .put("ServiceID", serviceId)
+                    .put("ServiceName", checkedService != null ? checkedService.name() : "");
+            normalized.set("ServiceTags", checkedService != null ? checkedService.service.get("Tags") : JSON.arrayNode());
+            CheckEntry existing = checks.get(nodeName + "/" + checkId);
+            normalized.put("CreateIndex", existing != null ? existing.check.get("CreateIndex").asLong() : writeIndex)
+                    .put("ModifyIndex", writeIndex);
+            checks.put(nodeName + "/" + checkId, new CheckEntry(nodeName, normalized));
+            if (checkedService != null) {
+                changedServices.add(checkedService.name());
+            }
+        }
+
+        catalogChanged(writeIndex, changedServices);
+    }
+
+    synchronized void deregister(JsonNode deregistration) {
+        long writeIndex = nextIndex();
+        String nodeName = deregistration.path("Node").asText();
+        Set<String> changedServices = new LinkedHashSet<>();
+        if (deregistration.hasNonNull("ServiceID")) {
+            String serviceId = deregistration.get("ServiceID").asText();
+            ServiceEntry removed = services.remove(nodeName + "/" + serviceId);
+            if (removed != null) {
+                changedServices.add(removed.name());
+                checks.values().removeIf(check -> check.node.equals(nodeName) && check.serviceId().equals(serviceId));
+            }
+        } else if (deregistration.hasNonNull("CheckID")) {
+            CheckEntry removed = checks.remove(nodeName + "/" + deregistration.get("CheckID").asText());
+            if (removed != null) {
+                changedServices.addAll(removed.serviceId().isEmpty()
+                        ? servicesOf(nodeName)
+                        : single(removed.check.path("ServiceName").asText()));
+            }
+        } else {
+            changedServices.addAll(servicesOf(nodeName));
+            nodes.remove(nodeName);
+            services.values().removeIf(service -> service.node.equals(nodeName));
+            checks.values().removeIf(check -> check.node.equals(nodeName));
+        }
+        catalogChanged(writeIndex, changedServices);
+    }
+
+    private Set<String> servicesOf(String nodeName) {
+        Set<String> names = new LinkedHashSet<>();
+        for (ServiceEntry service : services.values()) {
+            if (service.node.equals(nodeName)) {
+                names.add(service.name());
+            }
+        }
+        return names;
+    }
+
+    private void catalogChanged(long writeIndex, Set<String> changedServices) {
+        catalogIndex = writeIndex;
+        for (String service : changedServices) {
+            serviceIndexes.put(service, writeIndex);
+        }
+        changed("catalog");
+        changed("service", changedServices);
+    }
+
+    synchronized Result getServiceHealth(String serviceName, List<String> tags, boolean passing) {
+        ArrayNode body = JSON.arrayNode();
+        for (ServiceEntry service : services.values()) {
+            if (!service.name().equals(serviceName) || !service.hasTags(tags)) {
+                continue;
+            }
+            ArrayNode serviceChecks = JSON.arrayNode();
+            boolean healthy = true;
+            for (CheckEntry check : checks.values()) {
+                if (check.node.equals(service.node)
+                        && (check.serviceId().isEmpty() || check.serviceId().equals(service.id()))) {
+                    serviceChecks.add(check.check);
+                    healthy &= check.check.get("Status").asText().equals("passing");
+                }
+            }
+            if (passing && !healthy) {
+                continue;
+            }
+            ObjectNode entry = JSON.objectNode();
+            entry.set("Node", nodes.get(service.node).toJson());
+            entry.set("Service", service.toJson());
+            entry.set("Checks", serviceChecks);
+            body.add(entry);
+        }
+        return new Result(body, serviceIndexes.getOrDefault(serviceName, catalogIndex));
+    }
+
+    synchronized Result getChecksByState(String status) {
+        ArrayNode body = JSON.arrayNode();
+        for (CheckEntry check : checks.values()) {
+            if (status.equals("any") || check.check.get("Status").asText().equals(status)) {
+                body.add(check.check);
+            }
+        }
+        return new Result(body, catalogIndex);
+    }
+
+    synchronized Result getCatalogServices() {
+        ObjectNode body = JSON.objectNode();
+        for (ServiceEntry service : services.values()) {
+            ArrayNode tags = body.has(service.name()) ? (ArrayNode) body.get(service.name()) : body.putArray(service.name());
+            for (JsonNode tag : service.service.get("Tags")) {
+                boolean found = false;
+                for (JsonNode existing : tags) {
+                    found |= existing.equals(tag);
+                }
+                if (!found) {
+                    tags.add(tag);
+                }
+            }
+        }
+        return new Result(body, catalogIndex);
+    }
+
+    synchronized Result getCatalogService(String serviceName, List<String> tags) {
+        ArrayNode body = JSON.arrayNode();
+        for (ServiceEntry service : services.values()) {
+            if (!service.name().equals(serviceName) || !service.hasTags(tags)) {
+                continue;
+            }
+            NodeEntry node = nodes.get(service.node);
+            ObjectNode entry = JSON.objectNode();
+            if (node.id != null) {
+                entry.put("ID", node.id);
+            }
+            entry.put("Node", node.name)
+                    .put("Address", node.address)
+                    .put("Datacenter", DATACENTER);
+            if (node.taggedAddresses != null) {
+                entry.set("TaggedAddresses", node.taggedAddresses);
+            }
+            entry.set("NodeMeta", node.meta);
+            entry.put("ServiceID", service.id())
+                    .put("ServiceName", service.name())
+                    .put("ServiceAddress", service.service.get("Address").asText())
+                    .put("ServicePort", service.service.get("Port").asInt());
+            entry.set("ServiceTags", service.service.get("Tags"));
+            entry.set("ServiceMeta", service.service.get("Meta"));
+            if (service.service.has("Weights")) {
+                entry.set("ServiceWeights", service.service.get("Weights"));
+            }
+            entry.put("ServiceEnableTagOverride", service.service.get("EnableTagOverride").asBoolean())
+                    .put("CreateIndex", service.createIndex)
+                    .put("ModifyIndex", service.modifyIndex);
+            body.add(entry);
+        }
+        return new Result(body, serviceIndexes.getOrDefault(serviceName, catalogIndex));
+    }
+
+    synchronized Result getNodes() {
+        ArrayNode body = JSON.arrayNode();
+        nodes.values().forEach(node -> body.add(node.toJson()));
+        return new Result(body, catalogIndex);
+    }
+
+    synchronized Result getNode(String nodeName) {
+        NodeEntry node = nodes.get(nodeName);
+        if (node == null) {
+            return new Result(JSON.nullNode(), catalogIndex);
+        }
+        ObjectNode nodeServices = JSON.objectNode();
+        for (ServiceEntry service : services.values()) {
+            if (service.node.equals(nodeName)) {
+                nodeServices.set(service.id(), service.toJson());
+            }
+        }
+        ObjectNode body = JSON.objectNode();
+        body.set("Node", node.toJson());
+        body.set("Services", nodeServices);
+        return new Result(body, catalogIndex);
+    }
+
+    /**
+     * Gets the LAN members of the agent, which are the nodes of the catalog.
+     */
+    synchronized Result getMembers() {
+        ArrayNode body = JSON.arrayNode();
+        for (NodeEntry node : nodes.values()) {
+            ObjectNode member = JSON.objectNode()
+                    .put("Name", node.name)
+                    .put("Addr", node.address)
+                    .put("Port", 8301)
+                    .put("Status", 1)
+                    .put("ProtocolMin", 1)
+                    .put("ProtocolMax", 5)
+                    .put("ProtocolCur", 2)
+                    .put("DelegateMin", 2)
+                    .put("DelegateMax", 5)
+                    .put("DelegateCur", 4);
+            member.set("Tags", JSON.objectNode().put("dc", DATACENTER).put("role", "node"));
+            body.add(member);
+        }
+        return new Result(body, catalogIndex);
+    }
+
+    // ---------------------------------------------------------------- sessions
+
+    private static final class SessionEntry {
+        final ObjectNode info;
+        final long ttlNanos;
+        long expiresAtNanos;
+
+        SessionEntry(ObjectNode info, long ttlNanos) {
+            this.info = info;
+            this.ttlNanos = ttlNanos;
+            renew();
+        }
+
+        void renew() {
+            // Consul lets a session live up to twice its TTL
+            expiresAtNanos = ttlNanos > 0 ? System.nanoTime() + 2 * ttlNanos : Long.MAX_VALUE;
+        }
+
+        String id() {
+            return info.get("ID").asText();
+        }
+    }
+
+    synchronized String createSession(JsonNode session) {
+        long writeIndex = nextIndex();
+        String id = UUID.randomUUID().toString();
+        ObjectNode info = JSON.objectNode()
+                .put("ID", id)
+                .put("Name", session.path("Name").asText(""))
+                .put("Node", session.path("Node").asText("fake-node"))
+                .put("LockDelay", TimeUnit.NANOSECONDS.toSeconds(
+                        parseDurationNanos(session.path("LockDelay").asText("15s"))) + "s")
+                .put("Behavior", session.path("Behavior").asText("release"))
+                .put("TTL", session.path("TTL").asText(""))
+                .put("CreateIndex", writeIndex)
+                .put("ModifyIndex", writeIndex);
+        info.set("Checks", session.hasNonNull("Checks") ? session.get("Checks") : JSON.arrayNode());
+        sessions.put(id, new SessionEntry(info, parseDurationNanos(session.path("TTL").asText(""))));
+        sessionIndex = writeIndex;
+        changed("session");
+        return id;
+    }
+
+    synchronized boolean destroySession(String id) {
+        SessionEntry session = sessions.remove(id);
+        if (session == null) {
+            return true;
+        }
+        long writeIndex = nextIndex();
+        invalidate(session, writeIndex);
+        sessionIndex = writeIndex;
+        changed("session");
+        return true;
+    }
+
+    synchronized Result renewSession(String id) {
+        expireSessions();
+        SessionEntry session = sessions.get(id);
+        if (session == null) {
+            return new Result(null, sessionIndex);
+        }
+        session.renew();
+        return new Result(JSON.arrayNode().add(session.info), sessionIndex);
+    }
+
+    synchronized Result getSessionInfo(String id) {
+        expireSessions();
+        SessionEntry session = sessions.get(id);
+        ArrayNode body = JSON.arrayNode();
+        if (session != null) {
+            body.add(session.info);
+        }
+        return new Result(body, session != null ? session.info.get("ModifyIndex").asLong() : sessionIndex);
+    }
+
+    synchronized Result listSessions(String node) {
+        expireSessions();
+        ArrayNode body = JSON.arrayNode();
+        for (SessionEntry session : sessions.values()) {
+            if (node == null || session.info.get("Node").asText().equals(node)) {
+                body.add(session.info);
+            }
+        }
+        return new Result(body, sessionIndex);
+    }
+
+    /**
+     * Destroys the sessions whose TTL elapsed without a renewal.
+     */
+    synchronized void expireSessions() {
+        long now = System.nanoTime();
+        Iterator<SessionEntry> iterator = sessions.values().iterator();
+        long writeIndex = 0;
+        while (iterator.hasNext()) {
+            SessionEntry session = iterator.next();
+            if (session.expiresAtNanos - now < 0) {
+                iterator.remove();
+                if (writeIndex == 0) {
+                    writeIndex = nextIndex();
+                }
+                invalidate(session, writeIndex);
+            }
+        }
+        if (writeIndex != 0) {
+            sessionIndex = writeIndex;
+            changed("session");
+        }
+    }
+
+    private void invalidate(SessionEntry session, long writeIndex) {
+        boolean delete = session.info.get("Behavior").asText().equals("delete");
+        for (KvEntry entry : new ArrayList<>(kv.values())) {
+            if (session.id().equals(entry.session)) {
+                if (delete) {
+                    kv.remove(entry.key);
+                    kvTombstones.put(entry.key, writeIndex);
+                } else {
+                    kv.put(entry.key, new KvEntry(entry.key, entry.value, entry.flags, entry.createIndex, writeIndex,
+                            entry.lockIndex, null));
+                }
+                kvIndex = writeIndex;
+                changed("kv", entry.key);
+            }
+        }
+    }
+
+    static long parseDurationNanos(String duration) {
+        if (duration == null || duration.isEmpty()) {
+            return 0;
+        }
+        int unit = 0;
+        while (unit < duration.length() && (Character.isDigit(duration.charAt(unit)) || duration.charAt(unit) == '.')) {
+            unit++;
+        }
+        double amount = Double.parseDouble(duration.substring(0, unit));
+        switch (duration.substring(unit)) {
+            case "ns":
+                return (long) amount;
+            case "us":
+                return (long) (amount * TimeUnit.MICROSECONDS.toNanos(1));
+            case "ms":
+                return (long) (amount * TimeUnit.MILLISECONDS.toNanos(1));
+            case "":
+            case "s":
+                return (long) (amount * TimeUnit.SECONDS.toNanos(1));
+            case "m":
+                return (long) (amount * TimeUnit.MINUTES.toNanos(1));
+            case "h":
+                return (long) (amount * TimeUnit.HOURS.toNanos(1));
+            default:
+                throw new IllegalArgumentException("Invalid duration " + duration);
+        }
+    }
+
+    // ---------------------------------------------------------------- events
+
+    synchronized ObjectNode fireEvent(String name, byte[] payload, String nodeFilter, String serviceFilter,
+                                      String tagFilter) {
+        ObjectNode event = JSON.objectNode()
+                .put("ID", UUID.randomUUID().toString())
+                .put("Name", name);
+        if (payload != null && payload.length > 0) {
+            event.put("Payload", Base64.getEncoder().encodeToString(payload));
+        } else {
+            event.putNull("Payload");
+        }
+        event.put("NodeFilter", nodeFilter)
+                .put("ServiceFilter", serviceFilter)
+                .put("TagFilter", tagFilter)
+                .put("Version", 1)
+                .put("LTime", ++eventLTime);
+        events.addLast(event);
+        if (events.size() > MAX_EVENTS) {
+            events.removeFirst();
+        }
+        eventIndex++;
+        changed("event");
+        return event;
+    }
+
+    synchronized Result listEvents(String name) {
+        ArrayNode body = JSON.arrayNode();
+        for (ObjectNode event : events) {
+            if (name == null || event.get("Name").asText().equals(name)) {
+                body.add(event);
+            }
+        }
+        return new Result(body, eventIndex);
+    }
+
+    // ---------------------------------------------------------------- prepared queries
+
+    synchronized String createQuery(JsonNode query) {
+        long writeIndex = nextIndex();
+        String id = UUID.randomUUID().toString();
+        ObjectNode stored = JSON.objectNode()
+                .put("ID", id)
+                .put("Name", query.path("Name").asText(""))
+                .put("Session", query.path("Session").asText(""))
+                .put("Token", query.path("Token").asText(""));
+        stored.set("Service", query.path("Service"));
+        stored.set("DNS", query.hasNonNull("DNS") ? query.get("DNS") : JSON.objectNode().put("TTL", ""));
+        stored.put("CreateIndex", writeIndex).put("ModifyIndex", writeIndex);
+        queries.put(id, stored);
+        queryIndex = writeIndex;
+        changed("query");
+        return id;
+    }
+
+    synchronized Result getQueries() {
+        ArrayNode body = JSON.arrayNode();
+        queries.values().forEach(body::add);
+        return new Result(body, queryIndex);
+    }
+
+    synchronized Result getQuery(String id) {
+        ObjectNode query = queries.get(id);
+        return query == null ? new Result(null, queryIndex)
+                : new Result(JSON.arrayNode().add(query), query.get("ModifyIndex").asLong());
+    }
+}
@@ -0,0 +1,91 @@
+package com.orbitz.consul.model.kv;
+
+import com.google.common.io.ByteStreams;
+import com.orbitz.consul.util.Jackson;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Optional;
+
+import static org.junit.Assert.*;
+
+public class ValueTest {
+
+    private static final String JSON = "{\"CreateIndex\":1,\"ModifyIndex\":2,\"LockIndex\":0,\"Key\":\"foo\",\"Flags\":0,\"Value\":\"YmFy\"}";
+
+    @Test
+    public void testValueIsDecodedOnce() throws IOException {
+        Value value = Jackson.MAPPER.readValue(JSON, Value.class);
+
+        assertEquals(Optional.of("YmFy"), value.getValue());
+        assertEquals(Optional.of("bar"), value.getValueAsString(StandardCharsets.UTF_8));
+        assertArrayEquals("bar".getBytes(StandardCharsets.UTF_8), value.getValueAsBytes().get());
+        assertArrayEquals("bar".getBytes(StandardCharsets.UTF_8), ByteStreams.toByteArray(value.getValueAsInputStream().get()));
+    }
+
+    @Test
+    public void testByteBufferIsReadOnlyView() throws IOException {
+        Value value = Jackson.MAPPER.readValue(JSON, Value.class);
+
+        ByteBuffer buffer = value.getValueAsByteBuffer().get();
+        assertTrue(buffer.isReadOnly());
+        buffer.get();
+        // reading a buffer does not move the position of the next ones
+        assertEquals(3, value.getValueAsByteBuffer().get().remaining());
+    }
+
+    @Test
+    public void testNullValue() throws IOException {
+        Value value = Jackson.MAPPER.readValue(JSON.replace("\"YmFy\"", "null"), Value.class);
+
+        assertFalse(value.getValue().isPresent());
+        assertFalse(value.getValueAsByteBuffer().isPresent());
+        assertFalse(value.getValueAsInputStream().isPresent());
+    }
+
+    @Test
+    public void testSerializationRoundTrip() throws IOException {
+        Value value = Jackson.MAPPER.readValue(JSON, Value.class);
+
+        String json = Jackson.MAPPER.writeValueAsString(value);
+
+        assertTrue(json, json.contains("\"Value\":\"YmFy\""));
+        assertEquals(value, Jackson.MAPPER.readValue(json, Value.class));
+    }
+
+    @Test
+    public void testBuilderCopiesWritableBuffer() {
+        ByteBuffer buffer = ByteBuffer.wrap("bar".getBytes(StandardCharsets.UTF_8));
+        Value value = ImmutableValue.builder()
+                .createIndex(1)
+                .modifyIndex(2)
+                .lockIndex(0)
+                .key("foo")
+                .flags(0)
+                .decodedValue(buffer)
+                .build();
+
+        buffer.put(0, (byte) 'c');
+        assertEquals(Optional.of("bar"), value.getValueAsString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    @SuppressWarnings("deprecation")
+    public void testEncodedValueIsDecodedIntoTheBuffer() {
+        Value value = ImmutableValue.builder()
+                .createIndex(1)
+                .modifyIndex(2)
+                .lockIndex(0)
+                .key("foo")
+                .flags(0)
+                .value("YmFy")
+                .build();
+
+        assertTrue(value.getValueAsByteBuffer().get().isReadOnly());
+        assertEquals(Optional.of("bar"), value.getValueAsString(StandardCharsets.UTF_8));
+        assertEquals(Optional.of("YmFy"), value.getValue());
+        assertEquals(Optional.of("baz"), ImmutableValue.copyOf(value).withValue("YmF6").getValueAsString(StandardCharsets.UTF_8));
+    }
+}
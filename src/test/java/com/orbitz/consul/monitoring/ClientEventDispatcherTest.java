@@ -0,0 +1,174 @@
+package com.orbitz.consul.monitoring;
+
+import com.orbitz.consul.cache.CacheDescriptor;
+import okhttp3.Request;
+import org.junit.After;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ClientEventDispatcherTest {
+
+    private static final Request REQUEST = new Request.Builder().url("http://localhost:8500/v1/kv/foo?index=1").build();
+
+    private ClientEventDispatcher dispatcher;
+
+    @After
+    public void tearDown() {
+        if (dispatcher != null) {
+            dispatcher.stop();
+        }
+    }
+
+    @Test
+    public void testEventsAreDispatchedInOrder() throws InterruptedException {
+        dispatcher = ClientEventDispatcher.builder().withCapacity(128).withBatchSize(4).build();
+        RecordingCallback callback = new RecordingCallback(false, 100);
+        ClientEventHandler handler = new ClientEventHandler("kv", callback, dispatcher);
+
+        CacheDescriptor descriptor = new CacheDescriptor("test");
+        for (int i = 0; i < 100; i++) {
+            handler.cachePollingSuccess(descriptor, i % 2 == 0, i);
+        }
+
+        assertTrue(callback.dispatched.await(5, TimeUnit.SECONDS));
+        for (int i = 0; i < 100; i++) {
+            assertEquals(Duration.ofMillis(i), callback.durations.get(i));
+        }
+        assertEquals(0, dispatcher.getDroppedEvents());
+    }
+
+    @Test
+    public void testDropPolicyCountsDroppedEvents() throws InterruptedException {
+        dispatcher = ClientEventDispatcher.builder().withCapacity(4).build();
+        RecordingCallback callback = new RecordingCallback(true, 4);
+        ClientEventHandler handler = new ClientEventHandler("kv", callback, dispatcher);
+
+        handler.httpRequestSuccess(REQUEST);
+        assertTrue(callback.blocked.await(5, TimeUnit.SECONDS));
+        for (int i = 0; i < 10; i++) {
+            handler.httpRequestSuccess(REQUEST);
+        }
+        // the slot of the event being dispatched is still held
+        assertEquals(7, dispatcher.getDroppedEvents());
+
+        callback.release.countDown();
+        assertTrue(callback.dispatched.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testSamplePolicyKeepsSomeEventsWhenBehind() throws InterruptedException {
+        dispatcher = ClientEventDispatcher.builder().withCapacity(8).withSampling(2).build();
+        RecordingCallback callback = new RecordingCallback(true, 8);
+        ClientEventHandler handler = new ClientEventHandler("kv", callback, dispatcher);
+
+        handler.httpRequestSuccess(REQUEST);
+        assertTrue(callback.blocked.await(5, TimeUnit.SECONDS));
+        for (int i = 0; i < 20; i++) {
+            handler.httpRequestSuccess(REQUEST);
+        }
+        // 3 events until half full, then every other one until full
+        assertEquals(13, dispatcher.getDroppedEvents());
+
+        callback.release.countDown();
+        assertTrue(callback.dispatched.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testBlockPolicyWaitsForFreeSlots() throws InterruptedException {
+        dispatcher = ClientEventDispatcher.builder()
+                .withCapacity(2)
+                .withOverflowPolicy(ClientEventDispatcher.OverflowPolicy.BLOCK)
+                .build();
+        RecordingCallback callback = new RecordingCallback(false, 1000);
+        ClientEventHandler handler = new ClientEventHandler("kv", callback, dispatcher);
+
+        for (int i = 0; i < 1000; i++) {
+            handler.httpRequestFailure(REQUEST, new RuntimeException());
+        }
+
+        assertTrue(callback.dispatched.await(5, TimeUnit.SECONDS));
+        assertEquals(0, dispatcher.getDroppedEvents());
+    }
+
+    @Test(timeout = 10_000)
+    public void testCallbackThrowingAnErrorDoesNotStopTheDispatcher() throws InterruptedException {
+        dispatcher = ClientEventDispatcher.builder()
+                .withCapacity(2)
+                .withOverflowPolicy(ClientEventDispatcher.OverflowPolicy.BLOCK)
+                .build();
+        RecordingCallback callback = new RecordingCallback(false, 10);
+        ClientEventHandler failing = new ClientEventHandler("kv", new ClientEventCallback() {
+            @Override
+            public void onHttpRequestSuccess(String clientName, String method, String queryString) {
+                throw new AssertionError("This callback always throws an error!");
+            }
+        }, dispatcher);
+        ClientEventHandler handler = new ClientEventHandler("kv", callback, dispatcher);
+
+        for (int i = 0; i < 10; i++) {
+            failing.httpRequestSuccess(REQUEST);
+            handler.httpRequestFailure(REQUEST, new RuntimeException());
+        }
+
+        assertTrue(callback.dispatched.await(5, TimeUnit.SECONDS));
+        assertEquals(0, dispatcher.getDroppedEvents());
+    }
+
+    @Test
+    public void testEventsAreDroppedOnceStopped() {
+        dispatcher = ClientEventDispatcher.builder().build();
+        ClientEventHandler handler = new ClientEventHandler("kv", new ClientEventCallback() {}, dispatcher);
+
+        handler.stop();
+        handler.httpRequestSuccess(REQUEST);
+
+        assertEquals(1, dispatcher.getDroppedEvents());
+    }
+
+    private static class RecordingCallback implements ClientEventCallback {
+
+        private final CountDownLatch blocked = new CountDownLatch(1);
+        private final CountDownLatch release = new CountDownLatch(1);
+        private final CountDownLatch dispatched;
+        private final boolean blockFirstEvent;
+        private final List<Duration> durations = Collections.synchronizedList(new ArrayList<>());
+
+        RecordingCallback(boolean blockFirstEvent, int expectedEvents) {
+            this.blockFirstEvent = blockFirstEvent;
+            this.dispatched = new CountDownLatch(expectedEvents);
+        }
+
+        @Override
+        public void onHttpRequestSuccess(String clientName, String method, String queryString) {
+            if (blockFirstEvent && blocked.getCount() > 0) {
+                blocked.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            dispatched.countDown();
+        }
+
+        @Override
+        public void onHttpRequestFailure(String clientName, String method, String queryString, Throwable throwable) {
+            dispatched.countDown();
+        }
+
+        @Override
+        public void onCachePollingSuccess(String clientName, CacheDescriptor cacheDescriptor, boolean withNotification, Duration duration) {
+            durations.add(duration);
+            dispatched.countDown();
+        }
+    }
+}
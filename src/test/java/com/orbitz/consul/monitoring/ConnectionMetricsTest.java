@@ -0,0 +1,68 @@
+package com.orbitz.consul.monitoring;
+
+import com.orbitz.consul.Consul;
+import com.orbitz.consul.KeyValueClient;
+import com.orbitz.consul.fake.FakeConsulServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ConnectionMetricsTest {
+
+    private FakeConsulServer server;
+    private ConsulMetrics metrics;
+    private Consul consul;
+
+    @Before
+    public void setUp() throws Exception {
+        server = new FakeConsulServer().start();
+        metrics = new ConsulMetrics();
+        consul = Consul.builder()
+                .withHostAndPort(server.getHostAndPort())
+                .withPing(false)
+                .withMetrics(metrics)
+                .withConnectionPoolSize(2, 60_000)
+                .build();
+    }
+
+    @After
+    public void tearDown() {
+        consul.destroy();
+        server.close();
+    }
+
+    @Test
+    public void shouldReuseTheConnection() {
+        KeyValueClient kv = consul.keyValueClient();
+        kv.putValue("key", "value");
+        for (int i = 0; i < 9; i++) {
+            kv.getValueAsString("key");
+        }
+
+        ConnectionMetrics connections = metrics.getConnectionMetrics();
+        assertEquals(1, connections.getOpened());
+        assertEquals(0, connections.getOpenedHttp2());
+        assertEquals(0, connections.getFailed());
+        assertEquals(10, connections.getAcquired());
+        assertEquals(0, connections.getInUse());
+        assertEquals(1, connections.getOpenConnections());
+        assertEquals(1, connections.getIdleConnections());
+        assertEquals(1, connections.getConnectLatency().getCount());
+    }
+
+    @Test
+    public void shouldStopReportingThePoolOfADestroyedClient() {
+        consul.keyValueClient().putValue("key", "value");
+        assertEquals(1, metrics.getConnectionMetrics().getOpenConnections());
+
+        consul.destroy();
+        assertEquals(0, metrics.getConnectionMetrics().getOpenConnections());
+        assertTrue(metrics.getConnectionMetrics().toString().contains("opened=1"));
+
+        metrics.reset();
+        assertEquals(0, metrics.getConnectionMetrics().getOpened());
+    }
+}
@@ -0,0 +1,59 @@
+package com.orbitz.consul.monitoring;
+
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void testBucketsBoundTheRelativeError() {
+        for (long micros = 0; micros < TimeUnit.HOURS.toMicros(1); micros = micros * 3 / 2 + 1) {
+            int index = LatencyHistogram.index(micros);
+            long highest = LatencyHistogram.highestValue(index);
+            assertTrue(micros + " > " + highest, micros <= highest);
+            assertTrue(micros + " is too far from " + highest, highest - micros <= micros / 32);
+            assertTrue(index < LatencyHistogram.BUCKET_COUNT);
+        }
+    }
+
+    @Test
+    public void testOutOfRangeValuesAreClamped() {
+        assertEquals(LatencyHistogram.BUCKET_COUNT - 1, LatencyHistogram.index(Long.MAX_VALUE));
+    }
+
+    @Test
+    public void testPercentiles() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int millis = 1; millis <= 1000; millis++) {
+            histogram.record(TimeUnit.MILLISECONDS.toNanos(millis));
+        }
+
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        assertEquals(1000, snapshot.getCount());
+        assertEquals(Duration.ofMillis(1000), snapshot.getMax());
+        assertEquals(Duration.ofNanos(500_500_000), snapshot.getMean());
+        assertAround(Duration.ofMillis(500), snapshot.getValueAtPercentile(50));
+        assertAround(Duration.ofMillis(990), snapshot.getValueAtPercentile(99));
+        assertAround(Duration.ofMillis(999), snapshot.getValueAtPercentile(99.9));
+        assertEquals(Duration.ofMillis(1000), snapshot.getValueAtPercentile(100));
+    }
+
+    @Test
+    public void testEmptySnapshot() {
+        LatencyHistogram.Snapshot snapshot = new LatencyHistogram().snapshot();
+
+        assertEquals(0, snapshot.getCount());
+        assertEquals(Duration.ZERO, snapshot.getMean());
+        assertEquals(Duration.ZERO, snapshot.getValueAtPercentile(99));
+    }
+
+    private static void assertAround(Duration expected, Duration actual) {
+        long error = Math.abs(actual.toNanos() - expected.toNanos());
+        assertTrue(actual + " is too far from " + expected, error <= expected.toNanos() / 32);
+    }
+}
@@ -0,0 +1,102 @@
+package com.orbitz.consul.monitoring;
+
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import org.junit.Before;
+import org.junit.Test;
+import retrofit2.Call;
+import retrofit2.Retrofit;
+import retrofit2.http.GET;
+import retrofit2.http.Path;
+import retrofit2.http.Query;
+
+import java.io.IOException;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class MetricsInterceptorTest {
+
+    private ConsulMetrics metrics;
+    private TestClient.Api api;
+
+    @Before
+    public void setUp() {
+        metrics = new ConsulMetrics();
+        OkHttpClient okHttpClient = new OkHttpClient.Builder()
+                .addInterceptor(new MetricsInterceptor(metrics))
+                // answers instead of Consul
+                .addInterceptor(chain -> new Response.Builder()
+                        .request(chain.request())
+                        .protocol(Protocol.HTTP_1_1)
+                        .code(chain.request().url().pathSegments().contains("broken") ? 500 : 200)
+                        .message("OK")
+                        .body(ResponseBody.create("[1,2,3]", MediaType.parse("application/json")))
+                        .build())
+                .build();
+        api = new Retrofit.Builder()
+                .baseUrl("http://localhost:8500/v1/")
+                .client(okHttpClient)
+                .build()
+                .create(TestClient.Api.class);
+    }
+
+    @Test
+    public void testRequestsAreRecordedPerEndpointTemplate() throws IOException {
+        api.getValue("foo", null).execute().body().string();
+        api.getValue("bar", null).execute().body().string();
+        api.getValue("broken", null).execute();
+
+        EndpointMetricsSnapshot snapshot = metrics.getSnapshot("test", "GET", "kv/{key}").get();
+        assertEquals(3, snapshot.getRequests());
+        assertEquals(1, snapshot.getErrors());
+        assertEquals(0, snapshot.getClientErrors());
+        // Retrofit reads the body of the error response too
+        assertEquals(21, snapshot.getBytesReceived());
+        assertEquals(3, snapshot.getLatency().getCount());
+        assertFalse(snapshot.isBlocking());
+    }
+
+    @Test
+    public void testBlockingQueriesAreRecordedApart() throws IOException {
+        api.getValue("foo", null).execute();
+        api.getValue("foo", 42L).execute();
+
+        List<EndpointMetricsSnapshot> snapshots = metrics.getSnapshots();
+        assertEquals(2, snapshots.size());
+        assertFalse(snapshots.get(0).isBlocking());
+        assertTrue(snapshots.get(1).isBlocking());
+        assertEquals(1, snapshots.get(1).getRequests());
+    }
+
+    @Test
+    public void testClientName() {
+        assertEquals("keyvalue", MetricsInterceptor.clientName(com.orbitz.consul.KeyValueClient.class));
+        assertEquals("preparedquery", MetricsInterceptor.clientName(com.orbitz.consul.PreparedQueryClient.class));
+    }
+
+    @Test
+    public void testEndpointOfRawPath() {
+        MetricsInterceptor.Endpoint endpoint = MetricsInterceptor.endpoint("/v1/kv/foo/bar");
+        assertEquals("kv", endpoint.clientName);
+        assertEquals("kv/*", endpoint.template);
+
+        endpoint = MetricsInterceptor.endpoint("/v1/agent/");
+        assertEquals("agent", endpoint.clientName);
+        assertEquals("agent", endpoint.template);
+    }
+
+    static class TestClient {
+
+        interface Api {
+
+            @GET("kv/{key}")
+            Call<ResponseBody> getValue(@Path("key") String key, @Query("index") Long index);
+        }
+    }
+}
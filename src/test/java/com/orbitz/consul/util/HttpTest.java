@@ -3,9 +3,11 @@ package com.orbitz.consul.util;
 import com.orbitz.consul.ConsulException;
 import com.orbitz.consul.async.ConsulResponseCallback;
 import com.orbitz.consul.model.ConsulResponse;
+import com.orbitz.consul.model.kv.Value;
 import com.orbitz.consul.monitoring.ClientEventHandler;
 import okhttp3.Headers;
 import okhttp3.MediaType;
+import okhttp3.Protocol;
 import okhttp3.Request;
 import okhttp3.ResponseBody;
 import org.junit.Before;
@@ -16,12 +18,19 @@ import retrofit2.Response;
 
 import java.io.IOException;
 import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Function;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 import static org.mockito.Mockito.*;
 
 public class HttpTest {
@@ -285,6 +294,44 @@ public class HttpTest {
         verify(clientEventHandler, only()).httpRequestFailure(any(Request.class), any(Throwable.class));
     }
 
+    @Test
+    public void extractingConsulResponseAsFutureShouldCompleteWhenRequestSucceed() throws Exception {
+        Call<String> call = mock(Call.class);
+        Request request = new Request.Builder().url("http://localhost:8500/this/endpoint").build();
+        when(call.request()).thenReturn(request);
+        doAnswer(invocation -> {
+            ((Callback<String>) invocation.getArguments()[0]).onResponse(call, Response.success("success"));
+            return null;
+        }).when(call).enqueue(any(Callback.class));
+
+        CompletableFuture<ConsulResponse<String>> future = http.extractConsulResponseAsync(call);
+
+        assertEquals("success", future.get(1, TimeUnit.SECONDS).getResponse());
+        verify(clientEventHandler, only()).httpRequestSuccess(any(Request.class));
+    }
+
+    @Test
+    public void extractingConsulResponseAsFutureShouldCompleteExceptionallyWhenRequestIsInvalid() throws Exception {
+        Call<String> call = mock(Call.class);
+        Request request = new Request.Builder().url("http://localhost:8500/this/endpoint").build();
+        when(call.request()).thenReturn(request);
+        doAnswer(invocation -> {
+            ((Callback<String>) invocation.getArguments()[0]).onResponse(call,
+                    Response.error(400, ResponseBody.create("failure", MediaType.parse(""))));
+            return null;
+        }).when(call).enqueue(any(Callback.class));
+
+        CompletableFuture<ConsulResponse<String>> future = http.extractConsulResponseAsync(call);
+
+        try {
+            future.get(1, TimeUnit.SECONDS);
+            fail("the future should have failed");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof ConsulException);
+            assertEquals(400, ((ConsulException) e.getCause()).getCode());
+        }
+    }
+
     @Test
     public void consulResponseShouldHaveResponseAndDefaultValuesIfNoHeader() {
         String responseMessage = "success";
@@ -319,4 +366,112 @@ public class HttpTest {
 
         assertEquals(true, consulResponse.isKnownLeader());
     }
+
+    @Test
+    public void readArrayShouldHandEachElementToConsumer() throws IOException {
+        ResponseBody body = ResponseBody.create(
+                "[{\"Key\":\"foo\",\"CreateIndex\":1,\"ModifyIndex\":2,\"LockIndex\":0,\"Flags\":0,\"Value\":\"YmFy\"}," +
+                "{\"Key\":\"foo/baz\",\"CreateIndex\":3,\"ModifyIndex\":4,\"LockIndex\":0,\"Flags\":0}]",
+                MediaType.get("application/json"));
+        List<Value> values = new ArrayList<>();
+
+        Http.readArray(body, Value.class, values::add);
+
+        assertEquals(2, values.size());
+        assertEquals("foo", values.get(0).getKey());
+        assertEquals(Optional.of("bar"), values.get(0).getValueAsString());
+        assertEquals(4L, values.get(1).getModifyIndex());
+    }
+
+    @Test
+    public void readArrayShouldAcceptEmptyBody() throws IOException {
+        List<Value> values = new ArrayList<>();
+
+        Http.readArray(ResponseBody.create("", MediaType.get("application/json")), Value.class, values::add);
+        Http.readArray(ResponseBody.create("[]", MediaType.get("application/json")), Value.class, values::add);
+
+        assertEquals(0, values.size());
+    }
+
+    @Test(expected = ConsulException.class)
+    public void readArrayShouldFailWhenBodyIsNotAnArray() throws IOException {
+        Http.readArray(ResponseBody.create("{}", MediaType.get("application/json")), Value.class, value -> { });
+    }
+
+    @Test
+    public void streamingCallbackShouldCallOnFailureWhenBodyIsInvalid() {
+        Call<ResponseBody> call = mock(Call.class);
+        ConsulResponseCallback<Void> callback = mock(ConsulResponseCallback.class);
+        Response<ResponseBody> response = Response.success(ResponseBody.create("{", MediaType.get("application/json")));
+
+        http.createStreamingCallback(call, Value.class, value -> { }, callback).onResponse(call, response);
+
+        verify(callback, never()).onComplete(any(ConsulResponse.class));
+        verify(callback).onFailure(any(Throwable.class));
+    }
+
+    @Test
+    public void streamingCallbackShouldPublishInvalidWhenBodyIsInvalid() {
+        Call<ResponseBody> call = mock(Call.class);
+        Response<ResponseBody> response = Response.success(ResponseBody.create("{", MediaType.get("application/json")));
+
+        http.createStreamingCallback(call, Value.class, value -> { }, mock(ConsulResponseCallback.class))
+                .onResponse(call, response);
+
+        verify(clientEventHandler, never()).httpRequestSuccess(any(Request.class));
+        verify(clientEventHandler).httpRequestInvalid(any(Request.class), any(Throwable.class));
+    }
+
+    @Test
+    public void streamingShouldPublishInvalidWhenBodyIsInvalid() throws IOException {
+        Call<ResponseBody> call = mock(Call.class);
+        doReturn(Response.success(ResponseBody.create("{}", MediaType.get("application/json")))).when(call).execute();
+
+        try {
+            http.streamConsulResponse(call, Value.class, value -> { });
+            fail();
+        } catch (ConsulException expected) {
+        }
+
+        verify(clientEventHandler, never()).httpRequestSuccess(any(Request.class));
+        verify(clientEventHandler).httpRequestInvalid(any(Request.class), any(Throwable.class));
+    }
+
+    @Test
+    public void consulResponseShouldHaveContentHashIfPresentInHeader() {
+        Response<String> response = Response.success("", Headers.of("X-Consul-ContentHash", "6a2d3b1c"));
+        ConsulResponse<String> consulResponse = Http.consulResponse(response);
+
+        assertEquals(Optional.of("6a2d3b1c"), consulResponse.getContentHash());
+    }
+
+    @Test
+    public void streamingCallbackShouldNotReadBodyWhenIndexIsUnchanged() {
+        Call<ResponseBody> call = mock(Call.class);
+        ConsulResponseCallback<Void> callback = mock(ConsulResponseCallback.class);
+        List<Value> values = new ArrayList<>();
+        String json = "[{\"Key\":\"foo\",\"CreateIndex\":1,\"ModifyIndex\":2,\"LockIndex\":0,\"Flags\":0}]";
+
+        http.createStreamingCallback(call, Value.class, values::add, callback)
+                .onResponse(call, streamedResponse("http://localhost/v1/kv/foo?recurse=true&index=2", "2", json));
+        assertEquals(0, values.size());
+
+        http.createStreamingCallback(call, Value.class, values::add, callback)
+                .onResponse(call, streamedResponse("http://localhost/v1/kv/foo?recurse=true&index=1", "2", json));
+        assertEquals(1, values.size());
+
+        verify(callback, times(2)).onComplete(any(ConsulResponse.class));
+        verify(callback, never()).onFailure(any(Throwable.class));
+    }
+
+    private static Response<ResponseBody> streamedResponse(String url, String index, String json) {
+        return Response.success(ResponseBody.create(json, MediaType.get("application/json")),
+                new okhttp3.Response.Builder()
+                        .request(new Request.Builder().url(url).build())
+                        .protocol(Protocol.HTTP_1_1)
+                        .code(200)
+                        .message("OK")
+                        .header("X-Consul-Index", index)
+                        .build());
+    }
 }
@@ -0,0 +1,188 @@
+package com.orbitz.consul.util;
+
+import com.orbitz.consul.async.ConsulResponseCallback;
+import com.orbitz.consul.model.ConsulResponse;
+import com.orbitz.consul.monitoring.ClientEventHandler;
+import okhttp3.Request;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import retrofit2.Call;
+import retrofit2.Callback;
+import retrofit2.Response;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.*;
+
+public class RequestCoalescerTest {
+
+    private RequestCoalescer requestCoalescer;
+    private Http http;
+
+    @Before
+    public void setUp() {
+        requestCoalescer = new RequestCoalescer();
+        http = new Http(mock(ClientEventHandler.class), requestCoalescer);
+    }
+
+    @Test
+    public void identicalSynchronousRequestsShareOneCall() throws Exception {
+        CountDownLatch executing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Call<String> first = createCall("GET", "http://localhost:8500/v1/kv/foo");
+        doAnswer(invocation -> {
+            executing.countDown();
+            release.await();
+            return Response.success("bar");
+        }).when(first).execute();
+        Call<String> second = createCall("GET", "http://localhost:8500/v1/kv/foo");
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<ConsulResponse<String>> firstResponse = executor.submit(() -> http.extractConsulResponse(first));
+            assertTrue(executing.await(5, TimeUnit.SECONDS));
+            Future<ConsulResponse<String>> secondResponse = executor.submit(() -> http.extractConsulResponse(second));
+            while (requestCoalescer.getCoalescedRequests() == 0) {
+                Thread.sleep(1);
+            }
+            release.countDown();
+
+            assertSame(firstResponse.get(5, TimeUnit.SECONDS), secondResponse.get(5, TimeUnit.SECONDS));
+            verify(second, never()).execute();
+            assertEquals(0.5, requestCoalescer.getCoalescingRatio(), 0.0);
+            assertEquals(0, requestCoalescer.getInFlightRequests());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void identicalAsynchronousRequestsShareOneCall() throws Exception {
+        Call<String> first = createCall("GET", "http://localhost:8500/v1/kv/foo");
+        Call<String> second = createCall("GET", "http://localhost:8500/v1/kv/foo");
+        ConsulResponseCallback<String> firstCallback = mock(ConsulResponseCallback.class);
+        ConsulResponseCallback<String> secondCallback = mock(ConsulResponseCallback.class);
+
+        http.extractConsulResponse(first, firstCallback);
+        http.extractConsulResponse(second, secondCallback);
+
+        ArgumentCaptor<Callback> callback = ArgumentCaptor.forClass(Callback.class);
+        verify(first).enqueue(callback.capture());
+        verify(second, never()).enqueue(any(Callback.class));
+
+        callback.getValue().onResponse(first, Response.success("bar"));
+        verify(firstCallback).onComplete(any(ConsulResponse.class));
+        verify(secondCallback).onComplete(any(ConsulResponse.class));
+        assertEquals(1, requestCoalescer.getCoalescedRequests());
+
+        // the response was received: a new request is sent again
+        Call<String> third = createCall("GET", "http://localhost:8500/v1/kv/foo");
+        http.extractConsulResponse(third, mock(ConsulResponseCallback.class));
+        verify(third).enqueue(any(Callback.class));
+    }
+
+    @Test
+    public void waitersAreCompletedWhenTheFirstCallbackThrows() throws Exception {
+        Call<String> first = createCall("GET", "http://localhost:8500/v1/kv/foo");
+        Call<String> second = createCall("GET", "http://localhost:8500/v1/kv/foo");
+        ConsulResponseCallback<String> firstCallback = mock(ConsulResponseCallback.class);
+        doThrow(new RuntimeException("This callback always throws an exception!"))
+                .when(firstCallback).onComplete(any(ConsulResponse.class));
+        ConsulResponseCallback<String> secondCallback = mock(ConsulResponseCallback.class);
+
+        http.extractConsulResponse(first, firstCallback);
+        http.extractConsulResponse(second, secondCallback);
+
+        ArgumentCaptor<Callback> callback = ArgumentCaptor.forClass(Callback.class);
+        verify(first).enqueue(callback.capture());
+        try {
+            callback.getValue().onResponse(first, Response.success("bar"));
+        } catch (RuntimeException e) {
+            // thrown by the first callback
+        }
+
+        verify(secondCallback).onComplete(any(ConsulResponse.class));
+        assertEquals(0, requestCoalescer.getInFlightRequests());
+    }
+
+    @Test
+    public void inFlightRequestIsReleasedWhenEnqueueThrows() throws Exception {
+        Call<String> first = createCall("GET", "http://localhost:8500/v1/kv/foo");
+        Call<String> second = createCall("GET", "http://localhost:8500/v1/kv/foo");
+        ConsulResponseCallback<String> secondCallback = mock(ConsulResponseCallback.class);
+        doAnswer(invocation -> {
+            // an identical request arrives while the first one is being enqueued
+            http.extractConsulResponse(second, secondCallback);
+            throw new IllegalStateException("Already Executed");
+        }).when(first).enqueue(any(Callback.class));
+
+        try {
+            http.extractConsulResponse(first, mock(ConsulResponseCallback.class));
+            fail("The exception of enqueue should be rethrown");
+        } catch (IllegalStateException e) {
+            assertEquals("Already Executed", e.getMessage());
+        }
+
+        verify(second, never()).enqueue(any(Callback.class));
+        verify(secondCallback).onFailure(any(IllegalStateException.class));
+        assertEquals(0, requestCoalescer.getInFlightRequests());
+
+        // the failed request is not cached: a new request is sent again
+        Call<String> third = createCall("GET", "http://localhost:8500/v1/kv/foo");
+        http.extractConsulResponse(third, mock(ConsulResponseCallback.class));
+        verify(third).enqueue(any(Callback.class));
+    }
+
+    @Test
+    public void differentRequestsAreNotCoalesced() throws Exception {
+        Call<String> first = createCall("GET", "http://localhost:8500/v1/kv/foo");
+        Call<String> second = createCall("GET", "http://localhost:8500/v1/kv/foo?recurse=true");
+        Call<String> third = createCall("PUT", "http://localhost:8500/v1/kv/foo");
+
+        http.extractConsulResponse(first, mock(ConsulResponseCallback.class));
+        http.extractConsulResponse(second, mock(ConsulResponseCallback.class));
+        http.extractConsulResponse(third, mock(ConsulResponseCallback.class));
+
+        verify(first).enqueue(any(Callback.class));
+        verify(second).enqueue(any(Callback.class));
+        verify(third).enqueue(any(Callback.class));
+        assertEquals(0, requestCoalescer.getCoalescedRequests());
+    }
+
+    @Test
+    public void failureIsSharedAndNotCached() throws Exception {
+        Call<String> first = createCall("GET", "http://localhost:8500/v1/kv/foo");
+        Call<String> second = createCall("GET", "http://localhost:8500/v1/kv/foo");
+        ConsulResponseCallback<String> secondCallback = mock(ConsulResponseCallback.class);
+
+        http.extractConsulResponse(first, mock(ConsulResponseCallback.class));
+        http.extractConsulResponse(second, secondCallback);
+
+        ArgumentCaptor<Callback> callback = ArgumentCaptor.forClass(Callback.class);
+        verify(first).enqueue(callback.capture());
+        callback.getValue().onFailure(first, new RuntimeException("failure"));
+
+        verify(secondCallback).onFailure(any(Throwable.class));
+        assertEquals(0, requestCoalescer.getInFlightRequests());
+    }
+
+    private static Call<String> createCall(String method, String url) {
+        Call<String> call = mock(Call.class);
+        Request request = new Request.Builder()
+                .url(url)
+                .method(method, method.equals("GET") ? null : okhttp3.RequestBody.create(new byte[0]))
+                .build();
+        doReturn(request).when(call).request();
+        return call;
+    }
+}
@@ -0,0 +1,83 @@
+package com.orbitz.consul.util;
+
+import com.orbitz.consul.Consul;
+import com.orbitz.consul.KeyValueClient;
+import com.orbitz.consul.async.ConsulResponseCallback;
+import com.orbitz.consul.fake.FakeConsulServer;
+import com.orbitz.consul.model.ConsulResponse;
+import com.orbitz.consul.model.kv.Value;
+import com.orbitz.consul.option.QueryOptions;
+import org.junit.Test;
+
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class VirtualThreadsTest {
+
+    @Test
+    public void shouldDetectVirtualThreadsFromJava21() {
+        String version = System.getProperty("java.specification.version");
+        boolean java21 = !version.startsWith("1.") && Integer.parseInt(version) >= 21;
+
+        assertEquals(java21, VirtualThreads.isAvailable());
+        assertEquals(java21, VirtualThreads.newThreadFactory("test-").isPresent());
+    }
+
+    @Test
+    public void shouldStartAThreadPerTask() throws Exception {
+        Optional<ExecutorService> executor = VirtualThreads.newThreadPerTaskExecutor("test-");
+        if (!executor.isPresent()) {
+            return;
+        }
+        try {
+            assertTrue(executor.get().submit(VirtualThreadsTest::isVirtual).get(5, TimeUnit.SECONDS));
+            assertTrue(executor.get().submit(() -> Thread.currentThread().getName()).get().startsWith("test-"));
+        } finally {
+            executor.get().shutdownNow();
+        }
+    }
+
+    @Test
+    public void shouldRunTheCallbacksOnVirtualThreadsWhenAvailable() throws Exception {
+        try (FakeConsulServer server = new FakeConsulServer().start()) {
+            Consul consul = Consul.builder()
+                    .withHostAndPort(server.getHostAndPort())
+                    .withVirtualThreads(true)
+                    .withPing(false)
+                    .build();
+            try {
+                KeyValueClient kv = consul.keyValueClient();
+                kv.putValue("key", "value");
+
+                CompletableFuture<Boolean> virtual = new CompletableFuture<>();
+                kv.getValue("key", QueryOptions.BLANK, new ConsulResponseCallback<Optional<Value>>() {
+                    @Override
+                    public void onComplete(ConsulResponse<Optional<Value>> consulResponse) {
+                        virtual.complete(isVirtual());
+                    }
+
+                    @Override
+                    public void onFailure(Throwable throwable) {
+                        virtual.completeExceptionally(throwable);
+                    }
+                });
+                assertEquals(VirtualThreads.isAvailable(), virtual.get(5, TimeUnit.SECONDS));
+            } finally {
+                consul.destroy();
+            }
+        }
+    }
+
+    private static boolean isVirtual() {
+        try {
+            return (Boolean) Thread.class.getMethod("isVirtual").invoke(Thread.currentThread());
+        } catch (ReflectiveOperationException e) {
+            return false;
+        }
+    }
+}
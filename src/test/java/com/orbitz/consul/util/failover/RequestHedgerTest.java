@@ -0,0 +1,165 @@
+package com.orbitz.consul.util.failover;
+
+import com.google.common.base.Stopwatch;
+import com.orbitz.consul.Consul;
+import com.orbitz.consul.KeyValueClient;
+import com.orbitz.consul.config.HedgingConfig;
+import com.orbitz.consul.fake.FakeConsulServer;
+import com.orbitz.consul.model.ConsulResponse;
+import com.orbitz.consul.model.kv.Value;
+import com.orbitz.consul.option.ImmutableQueryOptions;
+import com.orbitz.consul.option.QueryOptions;
+import okhttp3.Request;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.math.BigInteger;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class RequestHedgerTest {
+
+    private FakeConsulServer slow;
+    private FakeConsulServer fast;
+    private Consul consul;
+    private long seedRequests;
+
+    @Before
+    public void setUp() throws Exception {
+        slow = new FakeConsulServer().start();
+        fast = new FakeConsulServer().start();
+        for (FakeConsulServer server : Arrays.asList(slow, fast)) {
+            Consul seed = Consul.builder().withHostAndPort(server.getHostAndPort()).withPing(false).build();
+            seed.keyValueClient().putValue("key", "value");
+            seed.destroy();
+        }
+        seedRequests = fast.getRequestCount();
+    }
+
+    @After
+    public void tearDown() {
+        if (consul != null) {
+            consul.destroy();
+        }
+        slow.close();
+        fast.close();
+    }
+
+    @Test
+    public void shouldSendASlowReadToAnotherAgent() {
+        KeyValueClient kv = buildClient(1).keyValueClient();
+        warmUp(kv);
+
+        slow.setResponseDelay(2, TimeUnit.SECONDS);
+        Stopwatch stopwatch = Stopwatch.createStarted();
+        assertEquals(Optional.of("value"), kv.getValueAsString("key"));
+        assertTrue(stopwatch.elapsed(TimeUnit.MILLISECONDS) < 1500);
+        assertEquals(1, fast.getRequestCount() - seedRequests);
+    }
+
+    @Test
+    public void shouldNotHedgeBeyondTheBudget() {
+        KeyValueClient kv = buildClient(0).keyValueClient();
+        warmUp(kv);
+
+        slow.setResponseDelay(200, TimeUnit.MILLISECONDS);
+        Stopwatch stopwatch = Stopwatch.createStarted();
+        assertEquals(Optional.of("value"), kv.getValueAsString("key"));
+        assertTrue(stopwatch.elapsed(TimeUnit.MILLISECONDS) >= 200);
+        assertEquals(seedRequests, fast.getRequestCount());
+    }
+
+    @Test
+    public void shouldNotHedgeBlockingQueries() {
+        KeyValueClient kv = buildClient(1).keyValueClient();
+        warmUp(kv);
+
+        slow.setResponseDelay(200, TimeUnit.MILLISECONDS);
+        QueryOptions blocking = ImmutableQueryOptions.builder().wait("1s").index(BigInteger.ONE).build();
+        assertTrue(kv.getValue("key", blocking).isPresent());
+        assertEquals(seedRequests, fast.getRequestCount());
+    }
+
+    @Test
+    public void shouldNotRunTheAttemptsOnTheExecutorOfTheDispatcher() throws Exception {
+        ExecutorService dispatcherExecutor = Executors.newFixedThreadPool(1);
+        consul = Consul.builder()
+                .withMultipleHostAndPort(Arrays.asList(slow.getHostAndPort(), fast.getHostAndPort()), 60_000)
+                .withHedging(HedgingConfig.builder().withMinSamples(4).build())
+                .withExecutorService(dispatcherExecutor)
+                .withPing(false)
+                .build();
+        KeyValueClient kv = consul.keyValueClient();
+
+        // the only thread of the dispatcher runs the interceptor of a read, which waits for its attempts
+        List<CompletableFuture<ConsulResponse<Optional<Value>>>> reads = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            reads.add(kv.getValueAsync("key", QueryOptions.BLANK));
+        }
+        for (CompletableFuture<ConsulResponse<Optional<Value>>> read : reads) {
+            assertEquals(Optional.of("value"), read.get(5, TimeUnit.SECONDS).getResponse().get().getValueAsString());
+        }
+    }
+
+    @Test
+    public void shouldOnlyHedgeIdempotentReads() {
+        assertTrue(RequestHedger.isHedgeable(new Request.Builder().url("http://localhost:8500/v1/kv/key").build()));
+        assertFalse(RequestHedger.isHedgeable(new Request.Builder()
+                .url("http://localhost:8500/v1/kv/key?index=10").build()));
+        assertFalse(RequestHedger.isHedgeable(new Request.Builder()
+                .url("http://localhost:8500/v1/kv/key").delete().build()));
+    }
+
+    @Test
+    public void shouldOnlyHedgeReadsOfTheReplicatedState() {
+        assertTrue(RequestHedger.isHedgeable(new Request.Builder()
+                .url("http://localhost:8500/v1/health/service/web?passing").build()));
+        assertTrue(RequestHedger.isHedgeable(new Request.Builder()
+                .url("http://localhost:8500/v1/catalog/services").build()));
+        assertTrue(RequestHedger.isHedgeable(new Request.Builder()
+                .url("http://localhost:8500/v1/query/geo-web/execute").build()));
+        assertFalse(RequestHedger.isHedgeable(new Request.Builder()
+                .url("http://localhost:8500/v1/query/geo-web").build()));
+        assertFalse(RequestHedger.isHedgeable(new Request.Builder()
+                .url("http://localhost:8500/v1/agent/self").build()));
+        assertFalse(RequestHedger.isHedgeable(new Request.Builder()
+                .url("http://localhost:8500/v1/agent/services").build()));
+        assertFalse(RequestHedger.isHedgeable(new Request.Builder()
+                .url("http://localhost:8500/v1/snapshot").build()));
+    }
+
+    private Consul buildClient(double budgetRatio) {
+        consul = Consul.builder()
+                .withMultipleHostAndPort(Arrays.asList(slow.getHostAndPort(), fast.getHostAndPort()), 60_000)
+                .withHedging(HedgingConfig.builder()
+                        .withMinSamples(4)
+                        .withMinDelay(Duration.ofMillis(50))
+                        .withBudgetRatio(budgetRatio)
+                        .build())
+                .withPing(false)
+                .build();
+        return consul;
+    }
+
+    /**
+     * Measures the latency of the reads, all sent to the first agent
+     */
+    private void warmUp(KeyValueClient kv) {
+        for (int i = 0; i < 4; i++) {
+            assertEquals(Optional.of("value"), kv.getValueAsString("key"));
+        }
+        assertEquals(seedRequests, fast.getRequestCount());
+    }
+}
@@ -0,0 +1,119 @@
+package com.orbitz.consul.util.failover.strategy;
+
+import com.google.common.net.HostAndPort;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.Response;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class AdaptiveConsulFailoverStrategyTest {
+
+    private static final HostAndPort FAST = HostAndPort.fromParts("1.2.3.4", 8501);
+    private static final HostAndPort SLOW = HostAndPort.fromParts("localhost", 8501);
+
+    private AdaptiveConsulFailoverStrategy strategy;
+
+    @Before
+    public void setup() {
+        strategy = new AdaptiveConsulFailoverStrategy(Arrays.asList(FAST, SLOW), 0.1);
+    }
+
+    @Test
+    public void shouldRouteToTheFastestAgent() {
+        complete(send(FAST), 200, 1);
+        complete(send(SLOW), 200, 50);
+
+        int fast = 0;
+        for (int i = 0; i < 1000; i++) {
+            if (next(request()).url().host().equals(FAST.getHost())) {
+                fast++;
+            }
+        }
+        // the slow agent only receives the probes
+        assertTrue("fast agent received " + fast, fast > 820 && fast < 970);
+    }
+
+    @Test
+    public void shouldNotRecordTheLatencyOfBlockingQueries() {
+        Request blocking = new Request.Builder().url("https://1.2.3.4:8501/v1/kv/key?index=10&wait=5m").build();
+        complete(send(FAST), 200, 1);
+        complete(blocking, 200, 300_000);
+
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(1), strategy.getAverageLatencyNanos(FAST).get(), 0);
+    }
+
+    @Test
+    public void shouldFailOverToTheOtherAgent() {
+        Request first = next(request());
+        strategy.markRequestFailed(first);
+        assertTrue(strategy.isDown(HostAndPort.fromParts(first.url().host(), first.url().port())));
+
+        Request second = next(first);
+        assertFalse(second.url().host().equals(first.url().host()));
+
+        // each agent was tried once for this request
+        strategy.markRequestFailed(second);
+        assertFalse(strategy.computeNextStage(second, null).isPresent());
+        assertTrue(strategy.isRequestViable(request()));
+    }
+
+    @Test
+    public void shouldCountServerErrorsButNotClientErrors() {
+        complete(send(FAST), 404, 1);
+        assertFalse(strategy.isDown(FAST));
+        assertEquals(0, strategy.getErrorRate(FAST).get(), 0);
+
+        complete(send(FAST), 500, 1);
+        assertTrue(strategy.isDown(FAST));
+        assertEquals(0.25, strategy.getErrorRate(FAST).get(), 0);
+    }
+
+    @Test
+    public void shouldRecoverAfterASuccessfulProbe() {
+        strategy = new AdaptiveConsulFailoverStrategy(Arrays.asList(FAST, SLOW), 0);
+        complete(send(SLOW), 200, 50);
+        complete(send(FAST), 200, 1);
+        strategy.markRequestFailed(send(FAST));
+        assertEquals(SLOW.getHost(), next(request()).url().host());
+
+        // a probe answers: the agent is up again, and preferred as its average latency is still the lowest
+        complete(send(FAST), 200, 1);
+        assertFalse(strategy.isDown(FAST));
+        assertEquals(FAST.getHost(), next(request()).url().host());
+    }
+
+    private Request request() {
+        return new Request.Builder().url("https://1.2.3.4:8501/v1/agent/members").build();
+    }
+
+    private Request send(HostAndPort hostAndPort) {
+        return new Request.Builder()
+                .url("https://" + hostAndPort.getHost() + ":" + hostAndPort.getPort() + "/v1/agent/members")
+                .build();
+    }
+
+    private Request next(Request previous) {
+        Optional<Request> next = strategy.computeNextStage(previous, null);
+        assertTrue(next.isPresent());
+        return next.get();
+    }
+
+    private void complete(Request request, int code, long millis) {
+        Response response = new Response.Builder()
+                .request(request)
+                .protocol(Protocol.HTTP_1_1)
+                .code(code)
+                .message("")
+                .build();
+        strategy.markRequestCompleted(request, response, TimeUnit.MILLISECONDS.toNanos(millis));
+    }
+}
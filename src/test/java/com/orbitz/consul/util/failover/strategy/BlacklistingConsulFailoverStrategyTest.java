@@ -75,4 +75,18 @@ public class BlacklistingConsulFailoverStrategyTest {
 
         assertEquals(false, result3.isPresent());
     }
+
+    @Test
+    public void getHedgeToTheOtherUrlUnlessItIsBlacklisted() {
+        Request request = new Request.Builder().url("https://1.2.3.4:8501/v1/agent/members").build();
+
+        Optional<Request> hedge = blacklistingConsulFailoverStrategy.computeHedge(request);
+
+        assertEquals(true, hedge.isPresent());
+        assertEquals("https://localhost:8501/v1/agent/members", hedge.get().url().toString());
+
+        blacklistingConsulFailoverStrategy.markRequestFailed(hedge.get());
+
+        assertEquals(false, blacklistingConsulFailoverStrategy.computeHedge(request).isPresent());
+    }
 }